@@ -38,7 +38,7 @@ rawColumnDefinition: prefix? name;
 
 aggregatedColumnDefinition: functionCall;
 
-fromClause: FROM name alias?;
+fromClause: FROM (name (',' name)* | REGEXP) alias?;
 
 groupByClause: GROUP BY ID '(' TIMESPAN ')';
 
@@ -22,12 +22,37 @@ import static java.util.concurrent.TimeUnit.MINUTES;
 import static java.util.concurrent.TimeUnit.NANOSECONDS;
 import static java.util.concurrent.TimeUnit.SECONDS;
 
+import static org.hawkular.metrics.api.jaxrs.config.ConfigurationKey.AVAILABILITY_RUNS;
+import static org.hawkular.metrics.api.jaxrs.config.ConfigurationKey.BACKEND;
 import static org.hawkular.metrics.api.jaxrs.config.ConfigurationKey.CASSANDRA_CQL_PORT;
 import static org.hawkular.metrics.api.jaxrs.config.ConfigurationKey.CASSANDRA_KEYSPACE;
 import static org.hawkular.metrics.api.jaxrs.config.ConfigurationKey.CASSANDRA_NODES;
 import static org.hawkular.metrics.api.jaxrs.config.ConfigurationKey.CASSANDRA_RESETDB;
+import static org.hawkular.metrics.api.jaxrs.config.ConfigurationKey.CASSANDRA_SLOW_QUERY_THRESHOLD;
+import static org.hawkular.metrics.api.jaxrs.config.ConfigurationKey.CASSANDRA_STATEMENT_METRICS;
 import static org.hawkular.metrics.api.jaxrs.config.ConfigurationKey.CASSANDRA_USESSL;
 import static org.hawkular.metrics.api.jaxrs.config.ConfigurationKey.DEFAULT_TTL;
+import static org.hawkular.metrics.api.jaxrs.config.ConfigurationKey.FAULT_INJECTION;
+import static org.hawkular.metrics.api.jaxrs.config.ConfigurationKey.FAULT_INJECTION_RULES;
+import static org.hawkular.metrics.api.jaxrs.config.ConfigurationKey.HEAD_BLOCK_MAX_METRICS;
+import static org.hawkular.metrics.api.jaxrs.config.ConfigurationKey.HEAD_BLOCK_MAX_POINTS_PER_METRIC;
+import static org.hawkular.metrics.api.jaxrs.config.ConfigurationKey.HEAD_BLOCK_WINDOW;
+import static org.hawkular.metrics.api.jaxrs.config.ConfigurationKey.INGEST_LOG_DIRECTORY;
+import static org.hawkular.metrics.api.jaxrs.config.ConfigurationKey.INGEST_LOG_FSYNC;
+import static org.hawkular.metrics.api.jaxrs.config.ConfigurationKey.INGEST_LOG_FSYNC_INTERVAL;
+import static org.hawkular.metrics.api.jaxrs.config.ConfigurationKey.INGEST_LOG_MAX_SIZE;
+import static org.hawkular.metrics.api.jaxrs.config.ConfigurationKey.INGEST_LOG_REPLAY_RATE;
+import static org.hawkular.metrics.api.jaxrs.config.ConfigurationKey.INGEST_LOG_SEGMENT_SIZE;
+import static org.hawkular.metrics.api.jaxrs.config.ConfigurationKey.INSERTED_DATA_EVENTS_CAPACITY;
+import static org.hawkular.metrics.api.jaxrs.config.ConfigurationKey.INSERTED_DATA_EVENTS_OVERFLOW;
+import static org.hawkular.metrics.api.jaxrs.config.ConfigurationKey.INSERTED_DATA_EVENTS_SPILL_DIRECTORY;
+import static org.hawkular.metrics.api.jaxrs.config.ConfigurationKey.INSERTED_DATA_EVENTS_SPILL_MAX_SIZE;
+import static org.hawkular.metrics.api.jaxrs.config.ConfigurationKey.JMX_REPORTER;
+import static org.hawkular.metrics.api.jaxrs.config.ConfigurationKey.LATEST_DATA_CACHE_EXPIRATION;
+import static org.hawkular.metrics.api.jaxrs.config.ConfigurationKey.LATEST_DATA_CACHE_SIZE;
+import static org.hawkular.metrics.api.jaxrs.config.ConfigurationKey.LATEST_DATA_PERSIST;
+import static org.hawkular.metrics.api.jaxrs.config.ConfigurationKey.MAX_CONCURRENT_READS;
+import static org.hawkular.metrics.api.jaxrs.config.ConfigurationKey.SELF_MONITORING_INTERVAL;
 import static org.hawkular.metrics.api.jaxrs.config.ConfigurationKey.USE_VIRTUAL_CLOCK;
 import static org.hawkular.metrics.api.jaxrs.config.ConfigurationKey.WAIT_FOR_SERVICE;
 
@@ -40,6 +65,7 @@ import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicLong;
 
 import javax.annotation.PostConstruct;
 import javax.annotation.PreDestroy;
@@ -50,6 +76,7 @@ import javax.inject.Inject;
 import javax.net.ssl.SSLContext;
 
 import org.hawkular.metrics.api.jaxrs.config.Configurable;
+import org.hawkular.metrics.api.jaxrs.config.ConfigurationKey;
 import org.hawkular.metrics.api.jaxrs.config.ConfigurationProperty;
 import org.hawkular.metrics.api.jaxrs.log.RestLogger;
 import org.hawkular.metrics.api.jaxrs.log.RestLogging;
@@ -57,18 +84,31 @@ import org.hawkular.metrics.api.jaxrs.util.Eager;
 import org.hawkular.metrics.core.service.DataAccess;
 import org.hawkular.metrics.core.service.DataAccessImpl;
 import org.hawkular.metrics.core.service.DateTimeService;
+import org.hawkular.metrics.core.service.FaultInjectingDataAccess;
 import org.hawkular.metrics.core.service.MetricsService;
 import org.hawkular.metrics.core.service.MetricsServiceImpl;
+import org.hawkular.metrics.core.service.events.OverflowPolicy;
+import org.hawkular.metrics.core.service.ingest.FsyncPolicy;
+import org.hawkular.metrics.core.service.memory.MemoryDataAccess;
+import org.hawkular.metrics.core.service.monitoring.JvmMetricSet;
+import org.hawkular.metrics.core.service.monitoring.SystemTenantReporter;
 import org.hawkular.metrics.schema.SchemaManager;
 import org.hawkular.metrics.tasks.api.AbstractTrigger;
 import org.hawkular.metrics.tasks.api.Task2;
 import org.hawkular.metrics.tasks.api.TaskScheduler;
 import org.hawkular.metrics.tasks.impl.Queries;
 import org.hawkular.metrics.tasks.impl.TaskSchedulerImpl;
+import org.hawkular.rx.cassandra.driver.FaultInjectingRxSession;
+import org.hawkular.rx.cassandra.driver.FaultInjector;
+import org.hawkular.rx.cassandra.driver.RxSession;
 import org.hawkular.rx.cassandra.driver.RxSessionImpl;
+import org.hawkular.rx.cassandra.driver.StatementMetrics;
 
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.JmxReporter;
 import com.codahale.metrics.MetricRegistry;
 import com.datastax.driver.core.Cluster;
+import com.datastax.driver.core.Metrics;
 import com.datastax.driver.core.SSLOptions;
 import com.datastax.driver.core.Session;
 import com.google.common.base.Throwables;
@@ -104,6 +144,11 @@ public class MetricsServiceLifecycle {
 
     private final ScheduledExecutorService lifecycleExecutor;
 
+    @Inject
+    @Configurable
+    @ConfigurationProperty(BACKEND)
+    private String backend;
+
     @Inject
     @Configurable
     @ConfigurationProperty(CASSANDRA_CQL_PORT)
@@ -144,6 +189,126 @@ public class MetricsServiceLifecycle {
     @ConfigurationProperty(DEFAULT_TTL)
     private String defaultTTL;
 
+    @Inject
+    @Configurable
+    @ConfigurationProperty(LATEST_DATA_CACHE_SIZE)
+    private String latestDataCacheSize;
+
+    @Inject
+    @Configurable
+    @ConfigurationProperty(LATEST_DATA_CACHE_EXPIRATION)
+    private String latestDataCacheExpiration;
+
+    @Inject
+    @Configurable
+    @ConfigurationProperty(LATEST_DATA_PERSIST)
+    private String persistLatestData;
+
+    @Inject
+    @Configurable
+    @ConfigurationProperty(AVAILABILITY_RUNS)
+    private String availabilityRuns;
+
+    @Inject
+    @Configurable
+    @ConfigurationProperty(HEAD_BLOCK_WINDOW)
+    private String headBlockWindow;
+
+    @Inject
+    @Configurable
+    @ConfigurationProperty(HEAD_BLOCK_MAX_METRICS)
+    private String headBlockMaxMetrics;
+
+    @Inject
+    @Configurable
+    @ConfigurationProperty(HEAD_BLOCK_MAX_POINTS_PER_METRIC)
+    private String headBlockMaxPointsPerMetric;
+
+    @Inject
+    @Configurable
+    @ConfigurationProperty(MAX_CONCURRENT_READS)
+    private String maxConcurrentReads;
+
+    @Inject
+    @Configurable
+    @ConfigurationProperty(INGEST_LOG_DIRECTORY)
+    private String ingestLogDirectory;
+
+    @Inject
+    @Configurable
+    @ConfigurationProperty(INGEST_LOG_SEGMENT_SIZE)
+    private String ingestLogSegmentSize;
+
+    @Inject
+    @Configurable
+    @ConfigurationProperty(INGEST_LOG_MAX_SIZE)
+    private String ingestLogMaxSize;
+
+    @Inject
+    @Configurable
+    @ConfigurationProperty(INGEST_LOG_FSYNC)
+    private String ingestLogFsync;
+
+    @Inject
+    @Configurable
+    @ConfigurationProperty(INGEST_LOG_FSYNC_INTERVAL)
+    private String ingestLogFsyncInterval;
+
+    @Inject
+    @Configurable
+    @ConfigurationProperty(INGEST_LOG_REPLAY_RATE)
+    private String ingestLogReplayRate;
+
+    @Inject
+    @Configurable
+    @ConfigurationProperty(INSERTED_DATA_EVENTS_CAPACITY)
+    private String insertedDataEventsCapacity;
+
+    @Inject
+    @Configurable
+    @ConfigurationProperty(INSERTED_DATA_EVENTS_OVERFLOW)
+    private String insertedDataEventsOverflow;
+
+    @Inject
+    @Configurable
+    @ConfigurationProperty(INSERTED_DATA_EVENTS_SPILL_DIRECTORY)
+    private String insertedDataEventsSpillDirectory;
+
+    @Inject
+    @Configurable
+    @ConfigurationProperty(INSERTED_DATA_EVENTS_SPILL_MAX_SIZE)
+    private String insertedDataEventsSpillMaxSize;
+
+    @Inject
+    @Configurable
+    @ConfigurationProperty(JMX_REPORTER)
+    private String jmxReporterEnabled;
+
+    @Inject
+    @Configurable
+    @ConfigurationProperty(SELF_MONITORING_INTERVAL)
+    private String selfMonitoringInterval;
+
+    @Inject
+    @Configurable
+    @ConfigurationProperty(CASSANDRA_STATEMENT_METRICS)
+    private String statementMetricsEnabled;
+
+    @Inject
+    @Configurable
+    @ConfigurationProperty(CASSANDRA_SLOW_QUERY_THRESHOLD)
+    private String slowQueryThreshold;
+
+    @Inject
+    @Configurable
+    @ConfigurationProperty(FAULT_INJECTION)
+    private String faultInjectionEnabled;
+
+    @Inject
+    @Configurable
+    @ConfigurationProperty(FAULT_INJECTION_RULES)
+    private String faultInjectionRules;
+
     @Inject
     @ServiceReady
     Event<ServiceReadyEvent> metricsServiceReady;
@@ -154,8 +319,22 @@ public class MetricsServiceLifecycle {
 
     private DataAccess dataAcces;
 
+    private MemoryDataAccess memoryDataAccess;
+
+    private FaultInjector faultInjector;
+
+    private StatementMetrics statementMetrics;
+
     private Map<? super Action1<Task2>, Subscription> jobs = new HashMap<>();
 
+    private final MetricRegistry metricRegistry = new MetricRegistry();
+
+    private JmxReporter jmxReporter;
+
+    private SystemTenantReporter systemTenantReporter;
+
+    private final AtomicLong lastFinishedTimeSlice = new AtomicLong();
+
     MetricsServiceLifecycle() {
         ThreadFactory threadFactory = r -> {
             Thread thread = Executors.defaultThreadFactory().newThread(r);
@@ -178,10 +357,23 @@ public class MetricsServiceLifecycle {
 
     @PostConstruct
     void init() {
+        metricRegistry.register("jvm", new JvmMetricSet());
+        metricRegistry.register("scheduler-lag", (Gauge<Long>) () -> {
+            long timeSlice = lastFinishedTimeSlice.get();
+            // A time slice is done when its minute is over
+            return timeSlice == 0 ? 0 : System.currentTimeMillis() - timeSlice - MINUTES.toMillis(1);
+        });
+        if (Boolean.parseBoolean(jmxReporterEnabled)) {
+            jmxReporter = JmxReporter.forRegistry(metricRegistry).inDomain("org.hawkular.metrics").build();
+            jmxReporter.start();
+        }
+        if (Boolean.parseBoolean(faultInjectionEnabled)) {
+            initFaultInjection();
+        }
         lifecycleExecutor.submit(this::startMetricsService);
         if (Boolean.parseBoolean(waitForService)
-            // "hawkular-metrics.backend" is not a real Metrics configuration parameter (there's a single
-            // MetricsService implementation, which is backed by Cassandra).
+            // "hawkular.backend" is not a real Metrics configuration parameter (the storage is chosen with
+            // "hawkular.metrics.backend").
             // But it's been used historically to wait for the service to be available before completing the deployment.
             // Therefore, we still use it here for backward compatibililty.
             // TODO remove when Hawkular build has been updated to use the eager startup flag
@@ -201,6 +393,10 @@ public class MetricsServiceLifecycle {
             return;
         }
         log.infoInitializing();
+        if (isInMemory()) {
+            startInMemoryMetricsService();
+            return;
+        }
         connectionAttempts++;
         try {
             session = createSession();
@@ -222,24 +418,23 @@ public class MetricsServiceLifecycle {
             // will change at some point though because the task scheduling service will
             // probably move to the hawkular-commons repo.
             initSchema();
-            dataAcces = new DataAccessImpl(session);
+            if (Boolean.parseBoolean(statementMetricsEnabled)) {
+                statementMetrics = new StatementMetrics(metricRegistry,
+                        parseLong(slowQueryThreshold, CASSANDRA_SLOW_QUERY_THRESHOLD));
+            }
+            dataAcces = injectFaults(new DataAccessImpl(session, statementMetrics));
             initTaskScheduler();
 
-            metricsService = new MetricsServiceImpl();
-            metricsService.setDataAccess(dataAcces);
-            metricsService.setTaskScheduler(taskScheduler);
-            metricsService.setDateTimeService(createDateTimeService());
-            metricsService.setDefaultTTL(getDefaultTTL());
+            createMetricsService();
 
-            // TODO Set up a managed metric registry
-            // We want a managed registry that can be shared by the JAX-RS endpoint and the core. Then we can expose
-            // the registered metrics in various ways such as new REST endpoints, JMX, or via different
-            // com.codahale.metrics.Reporter instances.
-            metricsService.startUp(session, keyspace, false, false, new MetricRegistry());
+            // The registry is shared by the JAX-RS endpoint and the core. It is exposed through JMX and the
+            // /status/metrics endpoint.
+            metricsService.startUp(session, keyspace, false, false, metricRegistry);
 
             initJobs();
+            initSelfMonitoring();
 
-            metricsServiceReady.fire(new ServiceReadyEvent(metricsService.insertedDataEvents()));
+            metricsServiceReady.fire(new ServiceReadyEvent(metricsService.insertedDataEvents("bus")));
 
             state = State.STARTED;
             log.infoServiceStarted();
@@ -248,16 +443,101 @@ public class MetricsServiceLifecycle {
             log.fatalCannotConnectToCassandra(e);
             state = State.FAILED;
         } finally {
-            if (state != State.STARTED && metricsService != null) {
-                try {
-                    metricsService.shutdown();
-                } catch (Exception e) {
-                    log.errorCouldNotCloseServiceInstance(e);
-                }
+            shutdownIfNotStarted();
+        }
+    }
+
+    private boolean isInMemory() {
+        return "memory".equalsIgnoreCase(backend.trim());
+    }
+
+    /**
+     * Starts the service without Cassandra: there is no schema to create and no task scheduler.
+     */
+    private void startInMemoryMetricsService() {
+        try {
+            log.warnInMemoryStorage();
+            memoryDataAccess = new MemoryDataAccess();
+            dataAcces = injectFaults(memoryDataAccess);
+            createMetricsService();
+            metricsService.startUp(metricRegistry);
+            initSelfMonitoring();
+
+            metricsServiceReady.fire(new ServiceReadyEvent(metricsService.insertedDataEvents("bus")));
+
+            state = State.STARTED;
+            log.infoServiceStarted();
+        } catch (Exception e) {
+            log.fatalCannotStartInMemory(e);
+            state = State.FAILED;
+        } finally {
+            shutdownIfNotStarted();
+        }
+    }
+
+    /**
+     * Fault injection decorates the storage, so that latency and failures can be injected into Cassandra operations
+     * from the start, with the configured rules, or later through the /admin/faults endpoint.
+     */
+    private void initFaultInjection() {
+        faultInjector = new FaultInjector();
+        if (faultInjectionRules != null && !faultInjectionRules.trim().isEmpty()) {
+            faultInjector.setRules(FaultInjector.parseRules(faultInjectionRules));
+        }
+        log.warnFaultInjectionEnabled(faultInjector.getRules().toString());
+        metricRegistry.register("fault-injection-pending", (Gauge<Integer>) faultInjector::getPending);
+    }
+
+    private DataAccess injectFaults(DataAccess dataAccess) {
+        return faultInjector == null ? dataAccess : new FaultInjectingDataAccess(dataAccess, faultInjector);
+    }
+
+    private void shutdownIfNotStarted() {
+        if (state != State.STARTED && metricsService != null) {
+            try {
+                metricsService.shutdown();
+            } catch (Exception e) {
+                log.errorCouldNotCloseServiceInstance(e);
             }
         }
     }
 
+    private void createMetricsService() {
+        metricsService = new MetricsServiceImpl();
+        metricsService.setDataAccess(dataAcces);
+        metricsService.setTaskScheduler(taskScheduler);
+        metricsService.setDateTimeService(createDateTimeService());
+        metricsService.setDefaultTTL(getDefaultTTL());
+        metricsService.setLatestDataCacheSize(parseLong(latestDataCacheSize, LATEST_DATA_CACHE_SIZE));
+        metricsService.setLatestDataCacheExpiration(parseLong(latestDataCacheExpiration,
+                LATEST_DATA_CACHE_EXPIRATION));
+        metricsService.setPersistLatestData(Boolean.parseBoolean(persistLatestData));
+        metricsService.setAvailabilityRunsEnabled(Boolean.parseBoolean(availabilityRuns));
+        metricsService.setHeadBlockWindow(parseLong(headBlockWindow, HEAD_BLOCK_WINDOW));
+        metricsService.setHeadBlockMaxMetrics(parseLong(headBlockMaxMetrics, HEAD_BLOCK_MAX_METRICS));
+        metricsService.setHeadBlockMaxPointsPerMetric((int) parseLong(headBlockMaxPointsPerMetric,
+                HEAD_BLOCK_MAX_POINTS_PER_METRIC));
+        metricsService.setMaxConcurrentReads((int) parseLong(maxConcurrentReads, MAX_CONCURRENT_READS));
+        if (ingestLogDirectory != null && !ingestLogDirectory.trim().isEmpty()) {
+            metricsService.setIngestLogDirectory(ingestLogDirectory.trim());
+            metricsService.setIngestLogSegmentSize((int) parseLong(ingestLogSegmentSize,
+                    INGEST_LOG_SEGMENT_SIZE));
+            metricsService.setIngestLogMaxSize(parseLong(ingestLogMaxSize, INGEST_LOG_MAX_SIZE));
+            metricsService.setIngestLogFsyncPolicy(getIngestLogFsyncPolicy());
+            metricsService.setIngestLogFsyncInterval(parseLong(ingestLogFsyncInterval,
+                    INGEST_LOG_FSYNC_INTERVAL));
+            metricsService.setIngestLogReplayRate(parseLong(ingestLogReplayRate, INGEST_LOG_REPLAY_RATE));
+        }
+        metricsService.setInsertedDataEventsCapacity((int) parseLong(insertedDataEventsCapacity,
+                INSERTED_DATA_EVENTS_CAPACITY));
+        metricsService.setInsertedDataEventsOverflowPolicy(getInsertedDataEventsOverflowPolicy());
+        if (insertedDataEventsSpillDirectory != null && !insertedDataEventsSpillDirectory.trim().isEmpty()) {
+            metricsService.setInsertedDataEventsSpillDirectory(insertedDataEventsSpillDirectory.trim());
+        }
+        metricsService.setInsertedDataEventsSpillMaxSize(parseLong(insertedDataEventsSpillMaxSize,
+                INSERTED_DATA_EVENTS_SPILL_MAX_SIZE));
+    }
+
     private Session createSession() {
         Cluster.Builder clusterBuilder = new Cluster.Builder();
         int port;
@@ -305,7 +585,11 @@ public class MetricsServiceLifecycle {
     }
 
     private void initTaskScheduler() {
-        taskScheduler = new TaskSchedulerImpl(new RxSessionImpl(session), new Queries(session));
+        RxSession rxSession = new RxSessionImpl(session, statementMetrics);
+        if (faultInjector != null) {
+            rxSession = new FaultInjectingRxSession(rxSession, faultInjector);
+        }
+        taskScheduler = new TaskSchedulerImpl(rxSession, new Queries(session));
         if (Boolean.valueOf(useVirtualClock.toLowerCase())) {
             TestScheduler scheduler = Schedulers.test();
             scheduler.advanceTimeTo(System.currentTimeMillis(), MILLISECONDS);
@@ -325,6 +609,41 @@ public class MetricsServiceLifecycle {
         }
     }
 
+    private FsyncPolicy getIngestLogFsyncPolicy() {
+        try {
+            return FsyncPolicy.fromString(ingestLogFsync);
+        } catch (IllegalArgumentException e) {
+            log.warnInvalidConfigValue(ingestLogFsync, INGEST_LOG_FSYNC.toString(), INGEST_LOG_FSYNC.defaultValue());
+            return FsyncPolicy.fromString(INGEST_LOG_FSYNC.defaultValue());
+        }
+    }
+
+    private OverflowPolicy getInsertedDataEventsOverflowPolicy() {
+        OverflowPolicy overflowPolicy;
+        try {
+            overflowPolicy = OverflowPolicy.fromString(insertedDataEventsOverflow);
+        } catch (IllegalArgumentException e) {
+            overflowPolicy = null;
+        }
+        boolean spillDirectorySet = insertedDataEventsSpillDirectory != null
+                && !insertedDataEventsSpillDirectory.trim().isEmpty();
+        if (overflowPolicy == null || (overflowPolicy == OverflowPolicy.SPILL && !spillDirectorySet)) {
+            log.warnInvalidConfigValue(insertedDataEventsOverflow, INSERTED_DATA_EVENTS_OVERFLOW.toString(),
+                    INSERTED_DATA_EVENTS_OVERFLOW.defaultValue());
+            return OverflowPolicy.fromString(INSERTED_DATA_EVENTS_OVERFLOW.defaultValue());
+        }
+        return overflowPolicy;
+    }
+
+    private long parseLong(String value, ConfigurationKey key) {
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            log.warnInvalidConfigValue(value, key.toString(), key.defaultValue());
+            return Long.parseLong(key.defaultValue());
+        }
+    }
+
     private void initJobs() {
 //        GenerateRate generateRates = new GenerateRate(metricsService);
 //        CreateTenants createTenants = new CreateTenants(metricsService, dataAcces);
@@ -335,6 +654,25 @@ public class MetricsServiceLifecycle {
 //                .subscribe(createTenants));
     }
 
+    private void initSelfMonitoring() {
+        metricRegistry.removeMatching((name, metric) -> name.startsWith("cassandra."));
+        if (session != null) {
+            Metrics driverMetrics = session.getCluster().getMetrics();
+            if (driverMetrics != null) {
+                metricRegistry.register("cassandra", driverMetrics.getRegistry());
+            }
+        }
+        if (taskScheduler != null) {
+            taskScheduler.getFinishedTimeSlices().subscribe(lastFinishedTimeSlice::set);
+        }
+
+        long interval = parseLong(selfMonitoringInterval, SELF_MONITORING_INTERVAL);
+        if (interval > 0) {
+            systemTenantReporter = new SystemTenantReporter(metricRegistry, metricsService);
+            systemTenantReporter.start(interval, SECONDS);
+        }
+    }
+
     private DateTimeService createDateTimeService() {
         return new DateTimeService();
     }
@@ -354,6 +692,21 @@ public class MetricsServiceLifecycle {
         return taskScheduler;
     }
 
+    /**
+     * @return the fault injector of the storage, or null if fault injection is not enabled
+     */
+    public FaultInjector getFaultInjector() {
+        return faultInjector;
+    }
+
+    /**
+     * @return the registry shared by the {@link MetricsService} and the REST endpoints
+     */
+    @Produces
+    public MetricRegistry getMetricRegistry() {
+        return metricRegistry;
+    }
+
     @PreDestroy
     void destroy() {
         Future<?> stopFuture = lifecycleExecutor.submit(this::stopMetricsService);
@@ -363,11 +716,17 @@ public class MetricsServiceLifecycle {
             log.errorShutdownProblem(e);
         }
         lifecycleExecutor.shutdown();
+        if (jmxReporter != null) {
+            jmxReporter.stop();
+        }
     }
 
     private void stopMetricsService() {
         state = State.STOPPING;
         try {
+            if (systemTenantReporter != null) {
+                systemTenantReporter.stop();
+            }
             if (metricsService != null) {
                 metricsService.shutdown();
             }
@@ -375,6 +734,9 @@ public class MetricsServiceLifecycle {
                 taskScheduler.shutdown();
             }
             jobs.values().forEach(Subscription::unsubscribe);
+            if (memoryDataAccess != null) {
+                memoryDataAccess.shutdown();
+            }
             if (session != null) {
                 session.close();
                 session.getCluster().close();
@@ -0,0 +1,156 @@
+/*
+ * Copyright 2014-2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.metrics.api.jaxrs.bulk;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.hawkular.metrics.model.MetricId;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+/**
+ * Progress of a bulk import. Lines are numbered from 1; every line up to {@link #getLinesCommitted()} has been stored,
+ * so an interrupted import resumes after it.
+ */
+public class BulkImport {
+    private static final int MAX_ERRORS = 20;
+
+    public enum Status {
+        RUNNING, COMPLETED, INTERRUPTED, FAILED, THROTTLED
+    }
+
+    private final String id;
+    private final String tenantId;
+    private volatile Status status;
+    private volatile ImportFormat format;
+    private volatile long linesRead;
+    private volatile long linesCommitted;
+    private volatile long dataPoints;
+    private volatile long invalidLines;
+    private final List<String> errors = new ArrayList<>();
+    private final Map<String, Map<String, Long>> metrics = new HashMap<>();
+    private volatile long startTime;
+    private volatile long endTime;
+
+    BulkImport(String tenantId, String id) {
+        this.tenantId = tenantId;
+        this.id = id;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    @JsonIgnore
+    public String getTenantId() {
+        return tenantId;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public ImportFormat getFormat() {
+        return format;
+    }
+
+    /**
+     * @return the number of lines read, including those skipped when resuming
+     */
+    public long getLinesRead() {
+        return linesRead;
+    }
+
+    public long getLinesCommitted() {
+        return linesCommitted;
+    }
+
+    /**
+     * @return the number of data points stored
+     */
+    public long getDataPoints() {
+        return dataPoints;
+    }
+
+    public long getInvalidLines() {
+        return invalidLines;
+    }
+
+    /**
+     * @return the first errors met, with their line number
+     */
+    public synchronized List<String> getErrors() {
+        return new ArrayList<>(errors);
+    }
+
+    /**
+     * @return the number of data points stored for each metric, by metric type
+     */
+    public synchronized Map<String, Map<String, Long>> getMetrics() {
+        Map<String, Map<String, Long>> copy = new HashMap<>();
+        metrics.forEach((type, counts) -> copy.put(type, new HashMap<>(counts)));
+        return copy;
+    }
+
+    public long getStartTime() {
+        return startTime;
+    }
+
+    public long getEndTime() {
+        return endTime;
+    }
+
+    synchronized void start(ImportFormat format, long skipLines) {
+        this.format = format;
+        this.status = Status.RUNNING;
+        this.startTime = System.currentTimeMillis();
+        this.endTime = 0;
+        this.linesRead = 0;
+        this.linesCommitted = Math.max(linesCommitted, skipLines);
+    }
+
+    void lineRead() {
+        linesRead++;
+    }
+
+    synchronized void invalidLine(String error) {
+        invalidLines++;
+        if (errors.size() < MAX_ERRORS) {
+            errors.add("Line " + linesRead + ": " + error);
+        }
+    }
+
+    /**
+     * Records that the lines up to {@code line} and the given data points have been stored.
+     */
+    synchronized void committed(long line, Map<MetricId<?>, Integer> counts) {
+        linesCommitted = line;
+        counts.forEach((id, count) -> {
+            dataPoints += count;
+            metrics.computeIfAbsent(id.getType().getText(), type -> new HashMap<>()).merge(id.getName(),
+                    (long) count, Long::sum);
+        });
+    }
+
+    synchronized void finish(Status status) {
+        this.status = status;
+        this.endTime = System.currentTimeMillis();
+    }
+}
@@ -0,0 +1,271 @@
+/*
+ * Copyright 2014-2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.metrics.api.jaxrs.bulk;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import static org.hawkular.metrics.api.jaxrs.config.ConfigurationKey.BULK_IMPORT_BATCH_SIZE;
+import static org.hawkular.metrics.api.jaxrs.config.ConfigurationKey.BULK_IMPORT_RATE;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+
+import javax.annotation.PostConstruct;
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+
+import org.hawkular.metrics.api.jaxrs.config.Configurable;
+import org.hawkular.metrics.api.jaxrs.config.ConfigurationProperty;
+import org.hawkular.metrics.api.jaxrs.log.RestLogger;
+import org.hawkular.metrics.api.jaxrs.log.RestLogging;
+import org.hawkular.metrics.core.service.MetricsService;
+import org.hawkular.metrics.model.DataPoint;
+import org.hawkular.metrics.model.Metric;
+import org.hawkular.metrics.model.MetricId;
+import org.hawkular.metrics.model.MetricType;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.RateLimiter;
+
+import rx.Observable;
+import rx.schedulers.Schedulers;
+
+/**
+ * Streams import files into the metrics service.
+ * <p>
+ * Lines are parsed as they are read, and data points are stored in batches, grouped by metric so that each metric's
+ * points go to the same partition. Writes are throttled by a rate limiter shared by all the imports running on this
+ * node, which keeps backfills from starving live traffic. Each import is identified by a client-chosen id; posting
+ * the same file again with that id resumes after the last stored line.
+ * <p>
+ * A batch waits at most for two batches worth of permits, or a second if that is longer. When the limiter is too busy
+ * for that, the import stops as {@link BulkImport.Status#THROTTLED THROTTLED} and the client is expected to resume it
+ * after {@link #getRetryAfter()} seconds.
+ */
+@ApplicationScoped
+public class BulkImporter {
+    private static final RestLogger log = RestLogging.getRestLogger(BulkImporter.class);
+
+    @Inject
+    private MetricsService metricsService;
+
+    @Inject
+    @Configurable
+    @ConfigurationProperty(BULK_IMPORT_RATE)
+    private String rate;
+
+    @Inject
+    @Configurable
+    @ConfigurationProperty(BULK_IMPORT_BATCH_SIZE)
+    private String batchSize;
+
+    private RateLimiter rateLimiter;
+
+    private int maxBatchSize;
+
+    private long throttleWait;
+
+    private long retryAfter;
+
+    private final Cache<List<String>, BulkImport> imports = CacheBuilder.newBuilder()
+            .expireAfterAccess(1, TimeUnit.DAYS)
+            .build();
+
+    @PostConstruct
+    void init() {
+        double pointsPerSecond = parse(rate, BULK_IMPORT_RATE.toString(), BULK_IMPORT_RATE.defaultValue());
+        rateLimiter = pointsPerSecond > 0 ? RateLimiter.create(pointsPerSecond) : null;
+        maxBatchSize = (int) parse(batchSize, BULK_IMPORT_BATCH_SIZE.toString(),
+                BULK_IMPORT_BATCH_SIZE.defaultValue());
+        if (rateLimiter != null) {
+            double batchSeconds = maxBatchSize / pointsPerSecond;
+            throttleWait = Math.max(1000, (long) (2000 * batchSeconds));
+            retryAfter = Math.max(1, (long) Math.ceil(batchSeconds));
+        }
+    }
+
+    private static double parse(String value, String key, String defaultValue) {
+        try {
+            return Double.parseDouble(value);
+        } catch (NumberFormatException | NullPointerException e) {
+            log.warnInvalidConfigValue(value, key, defaultValue);
+            return Double.parseDouble(defaultValue);
+        }
+    }
+
+    /**
+     * @return the import, or null if there is none with this id
+     */
+    public BulkImport getImport(String tenantId, String id) {
+        return imports.getIfPresent(key(tenantId, id));
+    }
+
+    /**
+     * Starts or resumes an import.
+     *
+     * @param skipLines the number of lines known to be stored already; lines stored by a previous attempt with the
+     *                  same id are skipped anyway
+     * @return the import, or null if an import with this id is already running
+     */
+    public BulkImport begin(String tenantId, String id, ImportFormat format, long skipLines) {
+        BulkImport bulkImport = imports.asMap().computeIfAbsent(key(tenantId, id), k -> new BulkImport(tenantId, id));
+        synchronized (bulkImport) {
+            if (bulkImport.getStatus() == BulkImport.Status.RUNNING) {
+                return null;
+            }
+            bulkImport.start(format, skipLines);
+        }
+        return bulkImport;
+    }
+
+    /**
+     * @return the number of seconds a throttled import should wait before resuming
+     */
+    public long getRetryAfter() {
+        return retryAfter;
+    }
+
+    /**
+     * Runs the import on the I/O scheduler, see {@link #run(BulkImport, InputStream, DataPointParser)}.
+     *
+     * @return an observable emitting the import once it is over
+     */
+    public Observable<BulkImport> runAsync(BulkImport bulkImport, InputStream input, DataPointParser parser) {
+        return Observable.<BulkImport>create(subscriber -> {
+            run(bulkImport, input, parser);
+            subscriber.onNext(bulkImport);
+            subscriber.onCompleted();
+        }).subscribeOn(Schedulers.io());
+    }
+
+    /**
+     * Reads the whole of {@code input}, which may be gzip-compressed, and stores its data points. The import is
+     * interrupted if reading fails, throttled if the rate limiter is too busy, and failed if storing does.
+     */
+    public void run(BulkImport bulkImport, InputStream input, DataPointParser parser) {
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(decompress(input), UTF_8))) {
+            importLines(bulkImport, reader, parser);
+            bulkImport.finish(BulkImport.Status.COMPLETED);
+        } catch (ThrottledException e) {
+            bulkImport.finish(BulkImport.Status.THROTTLED);
+        } catch (IOException e) {
+            log.warnBulkImportInterrupted(bulkImport.getId(), bulkImport.getLinesCommitted(), e);
+            bulkImport.finish(BulkImport.Status.INTERRUPTED);
+        } catch (RuntimeException e) {
+            log.errorBulkImportFailed(bulkImport.getId(), bulkImport.getLinesCommitted(), e);
+            bulkImport.finish(BulkImport.Status.FAILED);
+        }
+    }
+
+    private void importLines(BulkImport bulkImport, BufferedReader reader, DataPointParser parser)
+            throws IOException {
+        String tenantId = bulkImport.getTenantId();
+        Map<MetricId<?>, List<DataPoint<?>>> batch = new LinkedHashMap<>();
+        List<MetricId<?>> lineIds = new ArrayList<>();
+        List<DataPoint<?>> lineDataPoints = new ArrayList<>();
+        int batchedDataPoints = 0;
+        long lineNumber = 0;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            bulkImport.lineRead();
+            if (lineNumber <= bulkImport.getLinesCommitted()) {
+                continue;
+            }
+            lineIds.clear();
+            lineDataPoints.clear();
+            try {
+                parser.parse(tenantId, line, (id, dataPoint) -> {
+                    lineIds.add(id);
+                    lineDataPoints.add(dataPoint);
+                });
+            } catch (IllegalArgumentException e) {
+                bulkImport.invalidLine(e.getMessage());
+                continue;
+            }
+            for (int i = 0; i < lineIds.size(); i++) {
+                batch.computeIfAbsent(lineIds.get(i), id -> new ArrayList<>()).add(lineDataPoints.get(i));
+            }
+            batchedDataPoints += lineIds.size();
+            if (batchedDataPoints >= maxBatchSize) {
+                store(batch, batchedDataPoints);
+                bulkImport.committed(lineNumber, counts(batch));
+                batch.clear();
+                batchedDataPoints = 0;
+            }
+        }
+        store(batch, batchedDataPoints);
+        bulkImport.committed(Math.max(lineNumber, bulkImport.getLinesCommitted()), counts(batch));
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private void store(Map<MetricId<?>, List<DataPoint<?>>> batch, int dataPoints) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        if (rateLimiter != null && !rateLimiter.tryAcquire(dataPoints, throttleWait, TimeUnit.MILLISECONDS)) {
+            throw new ThrottledException();
+        }
+        Map<MetricType<?>, List<Metric<?>>> byType = new HashMap<>();
+        batch.forEach((id, points) -> byType.computeIfAbsent(id.getType(), type -> new ArrayList<>())
+                .add(new Metric(id, points)));
+        Observable.from(byType.entrySet())
+                .flatMap(entry -> metricsService.addDataPoints((MetricType) entry.getKey(),
+                        Observable.from((List) entry.getValue())))
+                .toBlocking()
+                .lastOrDefault(null);
+    }
+
+    private static Map<MetricId<?>, Integer> counts(Map<MetricId<?>, List<DataPoint<?>>> batch) {
+        Map<MetricId<?>, Integer> counts = new HashMap<>();
+        batch.forEach((id, points) -> counts.put(id, points.size()));
+        return counts;
+    }
+
+    /**
+     * @return {@code input}, decompressed if it starts with the gzip magic number
+     */
+    public static InputStream decompress(InputStream input) throws IOException {
+        BufferedInputStream buffered = new BufferedInputStream(input);
+        buffered.mark(2);
+        int magic = buffered.read() | (buffered.read() << 8);
+        buffered.reset();
+        return magic == GZIPInputStream.GZIP_MAGIC ? new GZIPInputStream(buffered) : buffered;
+    }
+
+    private static List<String> key(String tenantId, String id) {
+        return Arrays.asList(tenantId, id);
+    }
+
+    private static class ThrottledException extends RuntimeException {
+        ThrottledException() {
+            super(null, null, false, false);
+        }
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright 2014-2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.metrics.api.jaxrs.bulk;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BiConsumer;
+
+import org.hawkular.metrics.model.DataPoint;
+import org.hawkular.metrics.model.MetricId;
+import org.hawkular.metrics.model.MetricType;
+
+/**
+ * Parses {@code metric,timestamp,value[,type]} lines. Fields may be enclosed in double quotes, in which case a double
+ * quote is escaped by doubling it. A first line whose timestamp is not a number is taken for a header, and lines
+ * starting with {@code #} are comments.
+ */
+class CsvParser implements DataPointParser {
+    private boolean firstLine = true;
+
+    @Override
+    public void parse(String tenantId, String line, BiConsumer<MetricId<?>, DataPoint<?>> consumer) {
+        boolean header = firstLine;
+        firstLine = false;
+        if (line.trim().isEmpty() || line.startsWith("#")) {
+            return;
+        }
+        List<String> fields = split(line);
+        if (fields.size() < 3 || fields.size() > 4) {
+            throw new IllegalArgumentException("Expected 3 or 4 fields but found " + fields.size());
+        }
+        long timestamp;
+        try {
+            timestamp = Long.parseLong(fields.get(1).trim());
+        } catch (NumberFormatException e) {
+            if (header) {
+                return;
+            }
+            throw new IllegalArgumentException("Invalid timestamp: " + fields.get(1));
+        }
+        MetricType<?> type = ImportValues.type(fields.size() == 4 ? fields.get(3) : null);
+        consumer.accept(new MetricId<>(tenantId, type, fields.get(0)),
+                ImportValues.dataPoint(type, timestamp, fields.get(2)));
+    }
+
+    static List<String> split(String line) {
+        List<String> fields = new ArrayList<>(4);
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"') {
+                    if (i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                        field.append('"');
+                        i++;
+                    } else {
+                        quoted = false;
+                    }
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        if (quoted) {
+            throw new IllegalArgumentException("Unterminated quoted field");
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+}
@@ -0,0 +1,37 @@
+/*
+ * Copyright 2014-2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.metrics.api.jaxrs.bulk;
+
+import java.util.function.BiConsumer;
+
+import org.hawkular.metrics.model.DataPoint;
+import org.hawkular.metrics.model.MetricId;
+
+/**
+ * Turns a line of an import file into data points.
+ */
+@FunctionalInterface
+public interface DataPointParser {
+
+    /**
+     * Parses {@code line} and hands each data point found to {@code consumer}. Blank lines, comments and headers do
+     * not produce any data point.
+     *
+     * @throws IllegalArgumentException if the line is malformed
+     */
+    void parse(String tenantId, String line, BiConsumer<MetricId<?>, DataPoint<?>> consumer);
+}
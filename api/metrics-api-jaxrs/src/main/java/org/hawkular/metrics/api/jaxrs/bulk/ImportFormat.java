@@ -0,0 +1,74 @@
+/*
+ * Copyright 2014-2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.metrics.api.jaxrs.bulk;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Formats accepted by the bulk import endpoint.
+ */
+public enum ImportFormat {
+    /**
+     * One data point per line: {@code metric,timestamp,value[,type]}. The type defaults to gauge.
+     */
+    CSV("text/csv"),
+    /**
+     * One JSON object per line, either a single data point, {@code {"id": .., "type": .., "timestamp": ..,
+     * "value": ..}}, or a metric with its data points, as accepted by {@code POST /gauges/data}.
+     */
+    NDJSON("application/x-ndjson"),
+    /**
+     * InfluxDB line protocol.
+     */
+    LINE("text/plain");
+
+    private final String mediaType;
+
+    ImportFormat(String mediaType) {
+        this.mediaType = mediaType;
+    }
+
+    public String getMediaType() {
+        return mediaType;
+    }
+
+    /**
+     * @param precision unit of the timestamps; only the line protocol expresses them in another unit than milliseconds
+     */
+    public DataPointParser newParser(TimeUnit precision) {
+        switch (this) {
+            case CSV:
+                return new CsvParser();
+            case NDJSON:
+                return new NdjsonParser();
+            default:
+                return new LineProtocolParser(precision);
+        }
+    }
+
+    /**
+     * @return the format matching a media type, or null if none does
+     */
+    public static ImportFormat fromMediaType(String mediaType) {
+        for (ImportFormat format : values()) {
+            if (format.mediaType.equalsIgnoreCase(mediaType)) {
+                return format;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,58 @@
+/*
+ * Copyright 2014-2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.metrics.api.jaxrs.bulk;
+
+import static org.hawkular.metrics.model.MetricType.AVAILABILITY;
+import static org.hawkular.metrics.model.MetricType.COUNTER;
+import static org.hawkular.metrics.model.MetricType.GAUGE;
+
+import org.hawkular.metrics.model.AvailabilityType;
+import org.hawkular.metrics.model.DataPoint;
+import org.hawkular.metrics.model.MetricType;
+
+/**
+ * Conversions shared by the parsers.
+ */
+final class ImportValues {
+
+    /**
+     * @return the metric type named {@code text}, gauge if {@code text} is null or empty
+     */
+    static MetricType<?> type(String text) {
+        MetricType<?> type = MetricType.fromTextCode(text == null ? null : text.trim().toLowerCase());
+        if (type == MetricType.UNDEFINED) {
+            return GAUGE;
+        }
+        if (!type.isUserType()) {
+            throw new IllegalArgumentException(text + " metrics cannot be imported");
+        }
+        return type;
+    }
+
+    static DataPoint<?> dataPoint(MetricType<?> type, long timestamp, String value) {
+        if (type == AVAILABILITY) {
+            return new DataPoint<>(timestamp, AvailabilityType.fromString(value.trim()));
+        }
+        if (type == COUNTER) {
+            return new DataPoint<>(timestamp, Long.parseLong(value.trim()));
+        }
+        return new DataPoint<>(timestamp, Double.parseDouble(value.trim()));
+    }
+
+    private ImportValues() {
+    }
+}
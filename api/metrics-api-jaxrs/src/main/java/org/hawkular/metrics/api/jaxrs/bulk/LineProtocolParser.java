@@ -0,0 +1,307 @@
+/*
+ * Copyright 2014-2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.metrics.api.jaxrs.bulk;
+
+import static java.util.Collections.emptyMap;
+import static java.util.Collections.unmodifiableMap;
+
+import static org.hawkular.metrics.model.MetricType.COUNTER;
+import static org.hawkular.metrics.model.MetricType.GAUGE;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+
+import org.hawkular.metrics.model.DataPoint;
+import org.hawkular.metrics.model.MetricId;
+import org.hawkular.metrics.model.MetricType;
+
+/**
+ * Parses the InfluxDB line protocol, {@code measurement[,tag=value...] field=value[,field=value...] [timestamp]}.
+ * <p>
+ * Each numeric field becomes a data point of the metric named after the measurement, or after the measurement and the
+ * field, separated by a dot, when the field is not named {@code value}. As with the Influx query endpoint, a
+ * measurement prefixed with {@code _counter.} designates a counter and one prefixed with {@code _gauge.} a gauge;
+ * gauge is the default. String and boolean fields are ignored. A line without timestamp gets the current time.
+ * <p>
+ * Tags are handed to {@link SeriesConsumer}s. Unless tags are made part of the metric names, in which case the tags
+ * sorted by key are appended to the name, as in {@code cpu.usage,cpu=cpu0,host=a}, series which only differ by their
+ * tags end up in the same metric.
+ * <p>
+ * Lines are scanned in place. Since consecutive lines usually belong to the same series, the metric ids and tags of the
+ * previous line are reused when the measurement and tags did not change. A parser is therefore not thread safe.
+ */
+public class LineProtocolParser implements DataPointParser {
+    private static final String GAUGE_PREFIX = "_gauge.";
+    private static final String COUNTER_PREFIX = "_counter.";
+
+    /**
+     * Receives the data points of a line along with the tags of their series.
+     */
+    @FunctionalInterface
+    public interface SeriesConsumer {
+        void accept(MetricId<?> id, Map<String, String> tags, DataPoint<?> dataPoint);
+    }
+
+    private final TimeUnit precision;
+    private final boolean tagsInName;
+
+    // The series of the previous line
+    private String seriesTenantId;
+    private String seriesKey;
+    private MetricType<?> type;
+    private String measurement;
+    private Map<String, String> tags;
+    private String tagsSuffix;
+    private final List<String> fieldKeys = new ArrayList<>();
+    private final List<MetricId<?>> fieldIds = new ArrayList<>();
+
+    /**
+     * @param precision unit of the timestamps
+     */
+    public LineProtocolParser(TimeUnit precision) {
+        this(precision, false);
+    }
+
+    /**
+     * @param precision unit of the timestamps
+     * @param tagsInName whether the tags are part of the metric names
+     */
+    public LineProtocolParser(TimeUnit precision, boolean tagsInName) {
+        this.precision = precision;
+        this.tagsInName = tagsInName;
+    }
+
+    /**
+     * @param precision the precision parameter of the InfluxDB write API, one of n (or ns), u, ms, s, m or h
+     *
+     * @return the matching unit, or null if {@code precision} is unknown
+     */
+    public static TimeUnit toTimeUnit(String precision) {
+        switch (precision) {
+            case "n":
+            case "ns":
+                return TimeUnit.NANOSECONDS;
+            case "u":
+                return TimeUnit.MICROSECONDS;
+            case "ms":
+                return TimeUnit.MILLISECONDS;
+            case "s":
+                return TimeUnit.SECONDS;
+            case "m":
+                return TimeUnit.MINUTES;
+            case "h":
+                return TimeUnit.HOURS;
+            default:
+                return null;
+        }
+    }
+
+    @Override
+    public void parse(String tenantId, String line, BiConsumer<MetricId<?>, DataPoint<?>> consumer) {
+        parse(tenantId, line, (id, tags, dataPoint) -> consumer.accept(id, dataPoint));
+    }
+
+    /**
+     * Parses {@code line} and hands each data point found to {@code consumer}. Blank lines and comments do not produce
+     * any data point.
+     *
+     * @throws IllegalArgumentException if the line is malformed
+     */
+    public void parse(String tenantId, String line, SeriesConsumer consumer) {
+        int start = 0;
+        int end = line.length();
+        while (start < end && Character.isWhitespace(line.charAt(start))) {
+            start++;
+        }
+        while (end > start && Character.isWhitespace(line.charAt(end - 1))) {
+            end--;
+        }
+        if (start == end || line.charAt(start) == '#') {
+            return;
+        }
+        int keyEnd = indexOf(line, ' ', start, end, false);
+        if (keyEnd < 0) {
+            throw new IllegalArgumentException("Expected measurement, fields and optional timestamp");
+        }
+        int fieldsEnd = indexOf(line, ' ', keyEnd + 1, end, true);
+        long timestamp;
+        if (fieldsEnd < 0) {
+            fieldsEnd = end;
+            timestamp = System.currentTimeMillis();
+        } else {
+            timestamp = precision.toMillis(parseTimestamp(line, fieldsEnd + 1, end));
+        }
+        if (fieldsEnd == keyEnd + 1) {
+            throw new IllegalArgumentException("Expected measurement, fields and optional timestamp");
+        }
+        if (!tenantId.equals(seriesTenantId) || seriesKey.length() != keyEnd - start
+                || !line.regionMatches(start, seriesKey, 0, seriesKey.length())) {
+            parseSeries(tenantId, line.substring(start, keyEnd));
+        }
+
+        int fieldStart = keyEnd + 1;
+        while (fieldStart < fieldsEnd) {
+            int fieldEnd = indexOf(line, ',', fieldStart, fieldsEnd, true);
+            if (fieldEnd < 0) {
+                fieldEnd = fieldsEnd;
+            }
+            int separator = indexOf(line, '=', fieldStart, fieldEnd, false);
+            if (separator <= fieldStart) {
+                throw new IllegalArgumentException("Invalid field: " + line.substring(fieldStart, fieldEnd));
+            }
+            if (separator + 1 == fieldEnd) {
+                throw new IllegalArgumentException("Missing value of field "
+                        + unescape(line.substring(fieldStart, separator)));
+            }
+            char first = line.charAt(separator + 1);
+            char last = line.charAt(fieldEnd - 1);
+            // String and boolean fields are skipped
+            if (first != '"' && (Character.isDigit(last) || last == 'i' || last == '.')) {
+                String value = line.substring(separator + 1, last == 'i' ? fieldEnd - 1 : fieldEnd);
+                MetricId<?> id = fieldId(line, fieldStart, separator);
+                consumer.accept(id, tags, ImportValues.dataPoint(type, timestamp, value));
+            }
+            fieldStart = fieldEnd + 1;
+        }
+    }
+
+    private void parseSeries(String tenantId, String key) {
+        int measurementEnd = indexOf(key, ',', 0, key.length(), false);
+        String name = unescape(measurementEnd < 0 ? key : key.substring(0, measurementEnd));
+        MetricType<?> seriesType = GAUGE;
+        if (name.startsWith(COUNTER_PREFIX)) {
+            seriesType = COUNTER;
+            name = name.substring(COUNTER_PREFIX.length());
+        } else if (name.startsWith(GAUGE_PREFIX)) {
+            name = name.substring(GAUGE_PREFIX.length());
+        }
+        if (name.isEmpty()) {
+            throw new IllegalArgumentException("Missing measurement");
+        }
+        Map<String, String> seriesTags = emptyMap();
+        StringBuilder suffix = new StringBuilder();
+        if (measurementEnd >= 0) {
+            Map<String, String> sorted = new TreeMap<>();
+            int tagStart = measurementEnd + 1;
+            while (tagStart <= key.length()) {
+                int tagEnd = indexOf(key, ',', tagStart, key.length(), false);
+                if (tagEnd < 0) {
+                    tagEnd = key.length();
+                }
+                int separator = indexOf(key, '=', tagStart, tagEnd, false);
+                if (separator <= tagStart || separator + 1 == tagEnd) {
+                    throw new IllegalArgumentException("Invalid tag: " + key.substring(tagStart, tagEnd));
+                }
+                sorted.put(unescape(key.substring(tagStart, separator)), unescape(key.substring(separator + 1,
+                        tagEnd)));
+                tagStart = tagEnd + 1;
+            }
+            sorted.forEach((tagName, tagValue) -> suffix.append(',').append(tagName).append('=').append(tagValue));
+            seriesTags = unmodifiableMap(sorted);
+        }
+
+        seriesTenantId = tenantId;
+        seriesKey = key;
+        type = seriesType;
+        measurement = name;
+        tags = seriesTags;
+        tagsSuffix = tagsInName ? suffix.toString() : "";
+        fieldKeys.clear();
+        fieldIds.clear();
+    }
+
+    /**
+     * @return the id of the metric of the field whose key spans from {@code start} to {@code end}
+     */
+    private MetricId<?> fieldId(String line, int start, int end) {
+        int length = end - start;
+        for (int i = 0; i < fieldKeys.size(); i++) {
+            String fieldKey = fieldKeys.get(i);
+            if (fieldKey.length() == length && line.regionMatches(start, fieldKey, 0, length)) {
+                return fieldIds.get(i);
+            }
+        }
+        String fieldKey = line.substring(start, end);
+        String field = unescape(fieldKey);
+        String name = "value".equals(field) ? measurement : measurement + "." + field;
+        MetricId<?> id = new MetricId<>(seriesTenantId, type, name + tagsSuffix);
+        fieldKeys.add(fieldKey);
+        fieldIds.add(id);
+        return id;
+    }
+
+    private static long parseTimestamp(String line, int start, int end) {
+        int i = start;
+        boolean negative = i < end && line.charAt(i) == '-';
+        if (negative) {
+            i++;
+        }
+        if (i == end || end - i > 19) {
+            throw new IllegalArgumentException("Invalid timestamp: " + line.substring(start, end));
+        }
+        long value = 0;
+        for (; i < end; i++) {
+            char c = line.charAt(i);
+            if (c < '0' || c > '9') {
+                throw new IllegalArgumentException("Invalid timestamp: " + line.substring(start, end));
+            }
+            value = value * 10 + (c - '0');
+        }
+        if (value < 0) {
+            throw new IllegalArgumentException("Invalid timestamp: " + line.substring(start, end));
+        }
+        return negative ? -value : value;
+    }
+
+    /**
+     * @return the index of the first occurrence of {@code c} between {@code start} and {@code end} which is not
+     * escaped, and not within double quotes if {@code quotes} are taken into account; -1 if there is none
+     */
+    private static int indexOf(String s, char c, int start, int end, boolean quotes) {
+        boolean quoted = false;
+        for (int i = start; i < end; i++) {
+            char current = s.charAt(i);
+            if (current == '\\') {
+                i++;
+            } else if (quotes && current == '"') {
+                quoted = !quoted;
+            } else if (current == c && !quoted) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static String unescape(String s) {
+        if (s.indexOf('\\') < 0) {
+            return s;
+        }
+        StringBuilder sb = new StringBuilder(s.length());
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '\\' && i + 1 < s.length()) {
+                c = s.charAt(++i);
+            }
+            sb.append(c);
+        }
+        return sb.toString();
+    }
+}
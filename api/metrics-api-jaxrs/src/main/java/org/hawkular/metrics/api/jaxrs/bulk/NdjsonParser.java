@@ -0,0 +1,80 @@
+/*
+ * Copyright 2014-2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.metrics.api.jaxrs.bulk;
+
+import java.io.IOException;
+import java.util.function.BiConsumer;
+
+import org.hawkular.metrics.core.service.export.TenantExporter;
+import org.hawkular.metrics.model.DataPoint;
+import org.hawkular.metrics.model.MetricId;
+import org.hawkular.metrics.model.MetricType;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Parses lines holding a JSON object, either a single data point or a metric with its data points:
+ * <pre>
+ * {"id": "cpu", "type": "gauge", "timestamp": 1449000000000, "value": 0.5}
+ * {"id": "cpu", "type": "gauge", "data": [{"timestamp": 1449000000000, "value": 0.5}]}
+ * </pre>
+ * The type defaults to gauge. Other fields, like the tags found in an export, are ignored, as is the header line of
+ * an export.
+ *
+ * @see org.hawkular.metrics.core.service.export.TenantExporter
+ */
+class NdjsonParser implements DataPointParser {
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    @Override
+    public void parse(String tenantId, String line, BiConsumer<MetricId<?>, DataPoint<?>> consumer) {
+        if (line.trim().isEmpty()) {
+            return;
+        }
+        JsonNode node;
+        try {
+            node = MAPPER.readTree(line);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Invalid JSON: " + e.getMessage());
+        }
+        if (node != null && TenantExporter.FORMAT.equals(node.path("format").asText(null))) {
+            return;
+        }
+        if (node == null || !node.isObject() || !node.hasNonNull("id")) {
+            throw new IllegalArgumentException("Expected an object with an id");
+        }
+        MetricType<?> type = ImportValues.type(node.path("type").asText(null));
+        MetricId<?> id = new MetricId<>(tenantId, type, node.get("id").asText());
+        if (node.has("data")) {
+            for (JsonNode dataPoint : node.get("data")) {
+                consumer.accept(id, dataPoint(type, dataPoint));
+            }
+        } else {
+            consumer.accept(id, dataPoint(type, node));
+        }
+    }
+
+    private static DataPoint<?> dataPoint(MetricType<?> type, JsonNode node) {
+        JsonNode timestamp = node.get("timestamp");
+        JsonNode value = node.get("value");
+        if (timestamp == null || !timestamp.canConvertToLong() || value == null || value.isNull()) {
+            throw new IllegalArgumentException("Expected a numeric timestamp and a value");
+        }
+        return ImportValues.dataPoint(type, timestamp.asLong(), value.asText());
+    }
+}
@@ -29,14 +29,59 @@ public enum ConfigurationKey {
     ALLOWED_CORS_ORIGINS("hawkular.metrics.allowed-cors-origins", "*", "ALLOWED_CORS_ORIGINS", false),
     ALLOWED_CORS_ACCESS_CONTROL_ALLOW_HEADERS("hawkular.metrics.allowed-cors-access-control-allow-headers",
                     null, " ALLOWED_CORS_ACCESS_CONTROL_ALLOW_HEADERS", false),
+    BACKEND("hawkular.metrics.backend", "cassandra", "METRICS_BACKEND", false),
     CASSANDRA_NODES("hawkular-metrics.cassandra-nodes", "127.0.0.1", "CASSANDRA_NODES", false),
     CASSANDRA_CQL_PORT("hawkular-metrics.cassandra-cql-port", "9042", "CASSANDRA_CQL_PORT", false),
     CASSANDRA_KEYSPACE("cassandra.keyspace", "hawkular_metrics", null, false),
     CASSANDRA_RESETDB("cassandra.resetdb", null, null, true),
+    CASSANDRA_STATEMENT_METRICS("hawkular.metrics.cassandra.statement-metrics", "true",
+            "CASSANDRA_STATEMENT_METRICS", false),
+    CASSANDRA_SLOW_QUERY_THRESHOLD("hawkular.metrics.cassandra.slow-query-threshold", "1000",
+            "CASSANDRA_SLOW_QUERY_THRESHOLD", false),
     CASSANDRA_USESSL("hawkular-metrics.cassandra-use-ssl", "false", "CASSANDRA_USESSL", false),
     WAIT_FOR_SERVICE("hawkular.metrics.waitForService", null, null, true),
     USE_VIRTUAL_CLOCK("hawkular.metrics.use-virtual-clock", "false", "USE_VIRTUAL_CLOCK", false),
-    DEFAULT_TTL("hawkular.metrics.default-ttl", "7", "DEFAULT_TTL", false);
+    DEFAULT_TTL("hawkular.metrics.default-ttl", "7", "DEFAULT_TTL", false),
+    LATEST_DATA_CACHE_SIZE("hawkular.metrics.latest-data.cache-size", "100000", "LATEST_DATA_CACHE_SIZE", false),
+    LATEST_DATA_CACHE_EXPIRATION("hawkular.metrics.latest-data.cache-expiration", "60", "LATEST_DATA_CACHE_EXPIRATION",
+            false),
+    LATEST_DATA_PERSIST("hawkular.metrics.latest-data.persist", "false", "LATEST_DATA_PERSIST", false),
+    AVAILABILITY_RUNS("hawkular.metrics.availability-runs", "false", "AVAILABILITY_RUNS", false),
+    HEAD_BLOCK_WINDOW("hawkular.metrics.head-block.window", "0", "HEAD_BLOCK_WINDOW", false),
+    HEAD_BLOCK_MAX_METRICS("hawkular.metrics.head-block.max-metrics", "10000", "HEAD_BLOCK_MAX_METRICS", false),
+    HEAD_BLOCK_MAX_POINTS_PER_METRIC("hawkular.metrics.head-block.max-points-per-metric", "1000",
+            "HEAD_BLOCK_MAX_POINTS_PER_METRIC", false),
+    INGEST_LOG_DIRECTORY("hawkular.metrics.ingest-log.directory", null, "INGEST_LOG_DIRECTORY", false),
+    INGEST_LOG_SEGMENT_SIZE("hawkular.metrics.ingest-log.segment-size", "67108864", "INGEST_LOG_SEGMENT_SIZE", false),
+    INGEST_LOG_MAX_SIZE("hawkular.metrics.ingest-log.max-size", "1073741824", "INGEST_LOG_MAX_SIZE", false),
+    INGEST_LOG_FSYNC("hawkular.metrics.ingest-log.fsync", "interval", "INGEST_LOG_FSYNC", false),
+    INGEST_LOG_FSYNC_INTERVAL("hawkular.metrics.ingest-log.fsync-interval", "1000", "INGEST_LOG_FSYNC_INTERVAL",
+            false),
+    INGEST_LOG_REPLAY_RATE("hawkular.metrics.ingest-log.replay-rate", "0", "INGEST_LOG_REPLAY_RATE", false),
+    BULK_IMPORT_RATE("hawkular.metrics.bulk-import.rate", "10000", "BULK_IMPORT_RATE", false),
+    BULK_IMPORT_BATCH_SIZE("hawkular.metrics.bulk-import.batch-size", "1000", "BULK_IMPORT_BATCH_SIZE", false),
+    QUOTA_DATA_POINTS("hawkular.metrics.quota.data-points", "0", "QUOTA_DATA_POINTS", false),
+    QUOTA_NEW_SERIES("hawkular.metrics.quota.new-series", "0", "QUOTA_NEW_SERIES", false),
+    QUOTA_QUERIES("hawkular.metrics.quota.queries", "0", "QUOTA_QUERIES", false),
+    QUOTA_KNOWN_SERIES("hawkular.metrics.quota.known-series", "1000000", "QUOTA_KNOWN_SERIES", false),
+    QUOTA_REFRESH_INTERVAL("hawkular.metrics.quota.refresh-interval", "60", "QUOTA_REFRESH_INTERVAL", false),
+    SELF_MONITORING_INTERVAL("hawkular.metrics.self-monitoring.interval", "0", "SELF_MONITORING_INTERVAL", false),
+    JMX_REPORTER("hawkular.metrics.jmx-reporter", "true", "JMX_REPORTER", false),
+    FAULT_INJECTION("hawkular.metrics.fault-injection", "false", "METRICS_FAULT_INJECTION", false),
+    FAULT_INJECTION_RULES("hawkular.metrics.fault-injection.rules", null, "METRICS_FAULT_INJECTION_RULES", false),
+    EXPORT_PARALLELISM("hawkular.metrics.export.parallelism", "4", "EXPORT_PARALLELISM", false),
+    MAX_CONCURRENT_READS("hawkular.metrics.max-concurrent-reads", "20", "MAX_CONCURRENT_READS", false),
+    INFLUX_QUERY_CACHE_SIZE("hawkular.metrics.influx.query-cache-size", "1000", "INFLUX_QUERY_CACHE_SIZE", false),
+    INFLUX_MAX_CONCURRENT_SERIES("hawkular.metrics.influx.max-concurrent-series", "8", "INFLUX_MAX_CONCURRENT_SERIES",
+            false),
+    INSERTED_DATA_EVENTS_CAPACITY("hawkular.metrics.inserted-data-events.capacity", "10000",
+            "INSERTED_DATA_EVENTS_CAPACITY", false),
+    INSERTED_DATA_EVENTS_OVERFLOW("hawkular.metrics.inserted-data-events.overflow", "drop-oldest",
+            "INSERTED_DATA_EVENTS_OVERFLOW", false),
+    INSERTED_DATA_EVENTS_SPILL_DIRECTORY("hawkular.metrics.inserted-data-events.spill-directory", null,
+            "INSERTED_DATA_EVENTS_SPILL_DIRECTORY", false),
+    INSERTED_DATA_EVENTS_SPILL_MAX_SIZE("hawkular.metrics.inserted-data-events.spill-max-size", "268435456",
+            "INSERTED_DATA_EVENTS_SPILL_MAX_SIZE", false);
 
     private final String name;
     private final String env;
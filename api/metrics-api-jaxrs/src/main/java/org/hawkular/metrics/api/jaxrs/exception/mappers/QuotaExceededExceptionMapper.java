@@ -0,0 +1,45 @@
+/*
+ * Copyright 2014-2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.metrics.api.jaxrs.exception.mappers;
+
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.ext.ExceptionMapper;
+import javax.ws.rs.ext.Provider;
+
+import org.hawkular.metrics.api.jaxrs.quota.QuotaExceededException;
+import org.hawkular.metrics.model.ApiError;
+
+/**
+ * Turns a {@link QuotaExceededException} into a 429 (Too Many Requests) response, with a Retry-After header telling
+ * the client how many seconds to wait.
+ */
+@Provider
+public class QuotaExceededExceptionMapper implements ExceptionMapper<QuotaExceededException> {
+
+    public static final int TOO_MANY_REQUESTS = 429;
+
+    @Override
+    public Response toResponse(QuotaExceededException exception) {
+        return Response.status(TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, exception.getRetryAfter())
+                .entity(new ApiError(exception.getMessage()))
+                .type(MediaType.APPLICATION_JSON_TYPE)
+                .build();
+    }
+}
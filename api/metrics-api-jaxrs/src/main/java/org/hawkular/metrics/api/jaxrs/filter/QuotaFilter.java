@@ -0,0 +1,97 @@
+/*
+ * Copyright 2014-2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.metrics.api.jaxrs.filter;
+
+import static org.hawkular.metrics.api.jaxrs.filter.TenantFilter.TENANT_HEADER_NAME;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import javax.inject.Inject;
+import javax.ws.rs.HttpMethod;
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.container.ContainerRequestFilter;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.ext.Provider;
+
+import org.hawkular.metrics.api.jaxrs.exception.mappers.QuotaExceededExceptionMapper;
+import org.hawkular.metrics.api.jaxrs.quota.QuotaExceededException;
+import org.hawkular.metrics.api.jaxrs.quota.QuotaManager;
+
+/**
+ * Enforces the query quota of the tenant on read requests for metrics and data points. Writes are checked by the
+ * handlers, once the number of data points is known.
+ * <p>
+ * The cost of a request is weighted by the time range given by its start and end parameters, and by the number of
+ * metrics given by its metrics parameters; metrics selected by the body of a POST query are not known at this point.
+ */
+@Provider
+public class QuotaFilter implements ContainerRequestFilter {
+
+    private static final String[] QUERY_PATHS = {"/gauges", "/counters", "/availability", "/metrics"};
+
+    private static final long DEFAULT_RANGE = TimeUnit.HOURS.toMillis(8);
+
+    @Inject
+    private QuotaManager quotaManager;
+
+    @Override
+    public void filter(ContainerRequestContext requestContext) throws IOException {
+        String tenantId = requestContext.getHeaderString(TENANT_HEADER_NAME);
+        if (tenantId == null || !isQuery(requestContext.getMethod(), requestContext.getUriInfo().getPath())) {
+            return;
+        }
+        try {
+            quotaManager.acquireQuery(tenantId, queryCost(requestContext.getUriInfo().getQueryParameters()));
+        } catch (QuotaExceededException e) {
+            requestContext.abortWith(new QuotaExceededExceptionMapper().toResponse(e));
+        }
+    }
+
+    private static long queryCost(MultivaluedMap<String, String> parameters) {
+        long now = System.currentTimeMillis();
+        long end = parseTime(parameters.getFirst("end"), now);
+        long start = parseTime(parameters.getFirst("start"), end - DEFAULT_RANGE);
+        List<String> metrics = parameters.get("metrics");
+        return QuotaManager.queryCost(start, end, metrics == null ? 1 : metrics.size());
+    }
+
+    private static long parseTime(String value, long defaultValue) {
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            // The handler rejects the request
+            return defaultValue;
+        }
+    }
+
+    private static boolean isQuery(String method, String path) {
+        if (!HttpMethod.GET.equals(method) && !(HttpMethod.POST.equals(method) && path.endsWith("/query"))) {
+            return false;
+        }
+        for (String queryPath : QUERY_PATHS) {
+            if (path.startsWith(queryPath)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
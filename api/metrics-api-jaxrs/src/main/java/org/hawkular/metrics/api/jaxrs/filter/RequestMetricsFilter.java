@@ -0,0 +1,146 @@
+/*
+ * Copyright 2014-2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.metrics.api.jaxrs.filter;
+
+import static org.hawkular.metrics.api.jaxrs.filter.TenantFilter.TENANT_HEADER_NAME;
+
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import javax.inject.Inject;
+import javax.ws.rs.Path;
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.container.ContainerRequestFilter;
+import javax.ws.rs.container.ContainerResponseContext;
+import javax.ws.rs.container.ContainerResponseFilter;
+import javax.ws.rs.container.ResourceInfo;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.ext.Provider;
+
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalNotification;
+
+/**
+ * Times requests, from the moment they are matched to a resource method until the response is sent, including the
+ * time spent waiting for an asynchronous response. Two timers are updated for each request:
+ * <ul>
+ *     <li>rest.&lt;HTTP method&gt;.&lt;path&gt;, for the endpoint; the path is the path template with its segments
+ *     separated by dots and without braces, such as {@code rest.GET.gauges.id.data} for
+ *     {@code GET /gauges/{id}/data}</li>
+ *     <li>tenant.&lt;id&gt;.rest, for the tenant, when the request has a tenant header</li>
+ * </ul>
+ * Tenant ids come from clients, so tenant timers are only kept for the {@link #MAX_TIMED_TENANTS} most recently seen
+ * tenants; the timers of the other tenants are removed from the registry.
+ */
+@Provider
+public class RequestMetricsFilter implements ContainerRequestFilter, ContainerResponseFilter {
+
+    private static final String START = RequestMetricsFilter.class.getName() + ".start";
+    private static final String RESOURCE = RequestMetricsFilter.class.getName() + ".resource";
+
+    static final int MAX_TIMED_TENANTS = 1_000;
+
+    @Context
+    private ResourceInfo resourceInfo;
+
+    @Inject
+    private MetricRegistry metricRegistry;
+
+    private final Map<Method, String> paths = new ConcurrentHashMap<>();
+
+    private final Cache<String, Timer> tenantTimers = CacheBuilder.newBuilder()
+            .maximumSize(MAX_TIMED_TENANTS)
+            .expireAfterAccess(1, TimeUnit.HOURS)
+            .removalListener((RemovalNotification<String, Timer> notification) -> {
+                if (notification.wasEvicted()) {
+                    metricRegistry.remove(notification.getKey());
+                }
+            })
+            .build();
+
+    @Override
+    public void filter(ContainerRequestContext requestContext) throws IOException {
+        Method method = resourceInfo.getResourceMethod();
+        if (method == null) {
+            return;
+        }
+        String path = paths.computeIfAbsent(method, m -> metricPath(pathTemplate(resourceInfo.getResourceClass(), m)));
+        requestContext.setProperty(RESOURCE, MetricRegistry.name("rest", requestContext.getMethod(), path));
+        requestContext.setProperty(START, System.nanoTime());
+    }
+
+    static String pathTemplate(Class<?> resourceClass, Method method) {
+        StringBuilder template = new StringBuilder();
+        for (Path path : new Path[]{resourceClass.getAnnotation(Path.class), method.getAnnotation(Path.class)}) {
+            if (path == null) {
+                continue;
+            }
+            String value = path.value();
+            if (!value.startsWith("/")) {
+                template.append('/');
+            }
+            template.append(value.endsWith("/") ? value.substring(0, value.length() - 1) : value);
+        }
+        return template.length() == 0 ? "/" : template.toString();
+    }
+
+    /**
+     * @return {@code pathTemplate} as a dot separated metric name, such as gauges.id.data for /gauges/{id}/data, or
+     * null for the root path
+     */
+    static String metricPath(String pathTemplate) {
+        StringBuilder path = new StringBuilder();
+        for (String segment : pathTemplate.split("/")) {
+            String name = segment.replaceAll("[{}]", "");
+            if (!name.isEmpty()) {
+                path.append(path.length() == 0 ? "" : ".").append(name);
+            }
+        }
+        return path.length() == 0 ? null : path.toString();
+    }
+
+    @Override
+    public void filter(ContainerRequestContext requestContext, ContainerResponseContext responseContext)
+            throws IOException {
+        Object start = requestContext.getProperty(START);
+        if (start == null) {
+            return;
+        }
+        long elapsed = System.nanoTime() - (Long) start;
+        metricRegistry.timer((String) requestContext.getProperty(RESOURCE)).update(elapsed, TimeUnit.NANOSECONDS);
+        String tenantId = requestContext.getHeaderString(TENANT_HEADER_NAME);
+        if (tenantId != null) {
+            tenantTimer(tenantId).update(elapsed, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private Timer tenantTimer(String tenantId) {
+        String name = MetricRegistry.name("tenant", tenantId, "rest");
+        Timer timer = tenantTimers.getIfPresent(name);
+        if (timer == null) {
+            timer = metricRegistry.timer(name);
+            tenantTimers.put(name, timer);
+        }
+        return timer;
+    }
+}
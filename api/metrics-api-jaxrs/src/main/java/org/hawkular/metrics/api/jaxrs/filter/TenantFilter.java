@@ -29,6 +29,7 @@ import javax.ws.rs.core.UriInfo;
 import javax.ws.rs.ext.Provider;
 
 import org.hawkular.metrics.api.jaxrs.handler.BaseHandler;
+import org.hawkular.metrics.api.jaxrs.handler.FaultInjectionHandler;
 import org.hawkular.metrics.api.jaxrs.handler.StatusHandler;
 import org.hawkular.metrics.model.ApiError;
 
@@ -54,8 +55,8 @@ public class TenantFilter implements ContainerRequestFilter {
         String path = uriInfo.getPath();
 
         if (path.startsWith("/tenants") || path.startsWith("/db") || path.startsWith(StatusHandler.PATH)
-            || path.equals(BaseHandler.PATH)) {
-            // Tenants, Influx and status handlers do not check the tenant header
+            || path.equals(BaseHandler.PATH) || path.startsWith(FaultInjectionHandler.PATH)) {
+            // Tenants, Influx, status and fault injection handlers do not check the tenant header
             return;
         }
 
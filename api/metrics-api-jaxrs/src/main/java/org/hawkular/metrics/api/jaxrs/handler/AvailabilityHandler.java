@@ -50,6 +50,7 @@ import javax.ws.rs.core.UriInfo;
 
 import org.hawkular.metrics.api.jaxrs.handler.observer.MetricCreatedObserver;
 import org.hawkular.metrics.api.jaxrs.handler.observer.ResultSetObserver;
+import org.hawkular.metrics.api.jaxrs.quota.QuotaManager;
 import org.hawkular.metrics.api.jaxrs.util.ApiUtils;
 import org.hawkular.metrics.core.service.Functions;
 import org.hawkular.metrics.core.service.MetricsService;
@@ -61,6 +62,7 @@ import org.hawkular.metrics.model.DataPoint;
 import org.hawkular.metrics.model.Metric;
 import org.hawkular.metrics.model.MetricId;
 import org.hawkular.metrics.model.MetricType;
+import org.hawkular.metrics.model.QueryRequest;
 import org.hawkular.metrics.model.param.BucketConfig;
 import org.hawkular.metrics.model.param.Duration;
 import org.hawkular.metrics.model.param.Tags;
@@ -88,6 +90,9 @@ public class AvailabilityHandler {
     @Inject
     private MetricsService metricsService;
 
+    @Inject
+    private QuotaManager quotaManager;
+
     @HeaderParam(TENANT_HEADER_NAME)
     private String tenantId;
 
@@ -232,6 +237,7 @@ public class AvailabilityHandler {
             @Suspended final AsyncResponse asyncResponse, @PathParam("id") String id,
             @ApiParam(value = "List of availability datapoints", required = true) List<DataPoint<AvailabilityType>> data
     ) {
+        quotaManager.acquireDataPoints(tenantId, AVAILABILITY, id, data);
         Observable<Metric<AvailabilityType>> metrics = Functions.dataPointToObservable(tenantId, id, data,
                 AVAILABILITY);
         Observable<Void> observable = metricsService.addDataPoints(AVAILABILITY, metrics);
@@ -253,6 +259,7 @@ public class AvailabilityHandler {
             @JsonDeserialize()
             List<Metric<AvailabilityType>> availabilities
     ) {
+        quotaManager.acquireDataPoints(tenantId, AVAILABILITY, availabilities);
         Observable<Metric<AvailabilityType>> metrics = Functions.metricToObservable(tenantId, availabilities,
                 AVAILABILITY);
         Observable<Void> observable = metricsService.addDataPoints(AVAILABILITY, metrics);
@@ -334,4 +341,90 @@ public class AvailabilityHandler {
                     .subscribe(asyncResponse::resume, t -> asyncResponse.resume(serverError(t)));
         }
     }
+
+    @GET
+    @Path("/{id}/data/latest")
+    @ApiOperation(value = "Retrieve the most recent data point of an availability metric.", response = DataPoint.class)
+    @ApiResponses(value = {
+            @ApiResponse(code = 200, message = "Successfully fetched the latest data point."),
+            @ApiResponse(code = 204, message = "No metric data was found."),
+            @ApiResponse(code = 500, message = "Unexpected error occurred while fetching metric data.",
+                    response = ApiError.class)
+    })
+    public void findLatestAvailabilityData(@Suspended AsyncResponse asyncResponse, @PathParam("id") String id) {
+        metricsService.findLatestDataPoint(new MetricId<>(tenantId, AVAILABILITY, id))
+                .map(dataPoint -> Response.ok(dataPoint).build())
+                .switchIfEmpty(Observable.just(noContent()))
+                .subscribe(asyncResponse::resume, t -> asyncResponse.resume(serverError(t)));
+    }
+
+    @POST
+    @Path("/raw/query")
+    @ApiOperation(value = "Fetch raw data points of multiple availability metrics in a single call.",
+            notes = "The metrics are given either by name or by a tags filter. Metrics are read concurrently and "
+            + "returned as a map of metric name to data points; metrics without data are omitted.",
+            response = Map.class)
+    @ApiResponses(value = {
+            @ApiResponse(code = 200, message = "Successfully fetched metric data."),
+            @ApiResponse(code = 204, message = "No metric data was found."),
+            @ApiResponse(code = 400, message = "Invalid query.", response = ApiError.class),
+            @ApiResponse(code = 500, message = "Unexpected error occurred while fetching metric data.",
+                    response = ApiError.class)
+    })
+    public void findAvailabilityRawData(
+            @Suspended AsyncResponse asyncResponse,
+            @ApiParam(required = true, value = "Query parameters") QueryRequest query) {
+        RawQuery rawQuery = new RawQuery(!query.getIds().isEmpty(), query.getTags(), query.getStart(),
+                query.getEnd(), query.getLimit(), query.getOrder(), query.getMaxPoints(), query.getDownsample());
+        if (!rawQuery.isValid()) {
+            asyncResponse.resume(badRequest(new ApiError(rawQuery.getProblem())));
+            return;
+        }
+        if (rawQuery.isDownsampled()) {
+            asyncResponse.resume(badRequest(new ApiError("Availability data cannot be downsampled")));
+            return;
+        }
+        rawQuery.findByName(metricsService, tenantId, AVAILABILITY, query.getIds())
+                .map(ApiUtils::mapToResponse)
+                .subscribe(asyncResponse::resume, t -> asyncResponse.resume(ApiUtils.error(t)));
+    }
+
+    @GET
+    @Path("/data/latest")
+    @ApiOperation(value = "Retrieve the most recent data point of multiple availability metrics.",
+            notes = "The metrics are determined using either a tags filter or a list of metric names. Metrics "
+            + "without data are omitted from the result.", response = Metric.class, responseContainer = "List")
+    @ApiResponses(value = {
+            @ApiResponse(code = 200, message = "Successfully fetched the latest data points."),
+            @ApiResponse(code = 204, message = "No metric data was found."),
+            @ApiResponse(code = 400, message = "Either the metrics or the tags parameter is required but not both.",
+                    response = ApiError.class),
+            @ApiResponse(code = 500, message = "Unexpected error occurred while fetching metric data.",
+                    response = ApiError.class)
+    })
+    public void findLatestAvailabilityData(
+            @Suspended AsyncResponse asyncResponse,
+            @ApiParam(value = "List of tags filters") @QueryParam("tags") Tags tags,
+            @ApiParam(value = "List of metric names") @QueryParam("metrics") List<String> metricNames) {
+
+        boolean noTags = tags == null || tags.getTags().isEmpty();
+        if (metricNames.isEmpty() && noTags) {
+            asyncResponse.resume(badRequest(new ApiError("Either metrics or tags parameter must be used")));
+            return;
+        }
+        if (!metricNames.isEmpty() && !noTags) {
+            asyncResponse.resume(badRequest(new ApiError("Cannot use both the metrics and tags parameters")));
+            return;
+        }
+
+        Observable<Metric<AvailabilityType>> latest;
+        if (metricNames.isEmpty()) {
+            latest = metricsService.findLatestDataPoints(tenantId, AVAILABILITY, tags.getTags());
+        } else {
+            latest = metricsService.findLatestDataPoints(tenantId, AVAILABILITY, metricNames);
+        }
+        latest.toList()
+                .map(ApiUtils::collectionToResponse)
+                .subscribe(asyncResponse::resume, t -> asyncResponse.resume(serverError(t)));
+    }
 }
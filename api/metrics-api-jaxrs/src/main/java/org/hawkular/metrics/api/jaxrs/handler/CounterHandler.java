@@ -51,6 +51,7 @@ import javax.ws.rs.core.UriInfo;
 
 import org.hawkular.metrics.api.jaxrs.handler.observer.MetricCreatedObserver;
 import org.hawkular.metrics.api.jaxrs.handler.observer.ResultSetObserver;
+import org.hawkular.metrics.api.jaxrs.quota.QuotaManager;
 import org.hawkular.metrics.api.jaxrs.util.ApiUtils;
 import org.hawkular.metrics.core.service.Functions;
 import org.hawkular.metrics.core.service.MetricsService;
@@ -62,6 +63,7 @@ import org.hawkular.metrics.model.Metric;
 import org.hawkular.metrics.model.MetricId;
 import org.hawkular.metrics.model.MetricType;
 import org.hawkular.metrics.model.NumericBucketPoint;
+import org.hawkular.metrics.model.QueryRequest;
 import org.hawkular.metrics.model.exception.RuntimeApiError;
 import org.hawkular.metrics.model.param.BucketConfig;
 import org.hawkular.metrics.model.param.Duration;
@@ -89,6 +91,9 @@ public class CounterHandler {
     @Inject
     private MetricsService metricsService;
 
+    @Inject
+    private QuotaManager quotaManager;
+
     @HeaderParam(TENANT_HEADER_NAME)
     private String tenantId;
 
@@ -234,6 +239,7 @@ public class CounterHandler {
             @Suspended final AsyncResponse asyncResponse,
             @ApiParam(value = "List of metrics", required = true) List<Metric<Long>> counters
     ) {
+        quotaManager.acquireDataPoints(tenantId, COUNTER, counters);
         Observable<Metric<Long>> metrics = Functions.metricToObservable(tenantId, counters, COUNTER);
         Observable<Void> observable = metricsService.addDataPoints(COUNTER, metrics);
         observable.subscribe(new ResultSetObserver(asyncResponse));
@@ -254,6 +260,7 @@ public class CounterHandler {
             @ApiParam(value = "List of data points containing timestamp and value", required = true)
             List<DataPoint<Long>> data
     ) {
+        quotaManager.acquireDataPoints(tenantId, COUNTER, id, data);
         Observable<Metric<Long>> metrics = Functions.dataPointToObservable(tenantId, id, data, COUNTER);
         Observable<Void> observable = metricsService.addDataPoints(COUNTER, metrics);
         observable.subscribe(new ResultSetObserver(asyncResponse));
@@ -263,8 +270,8 @@ public class CounterHandler {
     @Path("/{id}/data")
     @ApiOperation(value = "Retrieve counter data points.", notes = "When buckets or bucketDuration query parameter " +
             "is used, the time range between start and end will be divided in buckets of equal duration, and metric " +
-            "statistics will be computed for each bucket.", response = DataPoint.class, responseContainer =
-            "List")
+            "statistics will be computed for each bucket. When maxPoints is used, raw data points are downsampled to " +
+            "at most maxPoints.", response = DataPoint.class, responseContainer = "List")
     @ApiResponses(value = {
             @ApiResponse(code = 200, message = "Successfully fetched metric data."),
             @ApiResponse(code = 204, message = "No metric data was found."),
@@ -284,7 +291,12 @@ public class CounterHandler {
             @ApiParam(value = "Bucket duration") @QueryParam("bucketDuration") Duration bucketDuration,
             @ApiParam(value = "Percentiles to calculate") @QueryParam("percentiles") Percentiles percentiles,
             @ApiParam(value = "Limit the number of data points returned") @QueryParam("limit") Integer limit,
-            @ApiParam(value = "Data point sort order, based on timestamp") @QueryParam("order") Order order
+            @ApiParam(value = "Data point sort order, based on timestamp") @QueryParam("order") Order order,
+            @ApiParam(value = "Maximum number of data points returned, selected by downsampling")
+                @QueryParam("maxPoints") Integer maxPoints,
+            @ApiParam(value = "Downsampling algorithm used with maxPoints", allowableValues = "lttb, minmax, m4",
+                    defaultValue = "lttb")
+                @QueryParam("downsample") String downsample
     ) {
         MetricId<Long> metricId = new MetricId<>(tenantId, COUNTER, id);
 
@@ -294,6 +306,16 @@ public class CounterHandler {
             return;
         }
 
+        Downsample downsampling = new Downsample(maxPoints, downsample, limit);
+        if (!downsampling.isValid()) {
+            asyncResponse.resume(badRequest(new ApiError(downsampling.getProblem())));
+            return;
+        }
+        if ((bucketsCount != null || bucketDuration != null) && downsampling.isEnabled()) {
+            asyncResponse.resume(badRequest(new ApiError("maxPoints cannot be used with bucketed results")));
+            return;
+        }
+
         if (bucketsCount == null && bucketDuration == null && !Boolean.TRUE.equals(fromEarliest)) {
             TimeRange timeRange = new TimeRange(start, end);
             if (!timeRange.isValid()) {
@@ -319,7 +341,15 @@ public class CounterHandler {
                 order = Order.DESC;
             }
 
-            metricsService.findDataPoints(metricId, timeRange.getStart(), timeRange.getEnd(), limit, order)
+            Observable<DataPoint<Long>> dataPoints;
+            if (downsampling.isEnabled()) {
+                dataPoints = metricsService.findDataPoints(metricId, timeRange.getStart(), timeRange.getEnd(), 0,
+                        Order.ASC).compose(downsampling.transformer(timeRange.getStart(), timeRange.getEnd(), order));
+            } else {
+                dataPoints = metricsService.findDataPoints(metricId, timeRange.getStart(), timeRange.getEnd(), limit,
+                        order);
+            }
+            dataPoints
                     .toList()
                     .map(ApiUtils::collectionToResponse)
                     .subscribe(asyncResponse::resume, t -> asyncResponse.resume(ApiUtils.serverError(t)));
@@ -385,6 +415,88 @@ public class CounterHandler {
                 .subscribe(asyncResponse::resume, t -> asyncResponse.resume(ApiUtils.error(t)));
     }
 
+    @GET
+    @Path("/{id}/data/latest")
+    @ApiOperation(value = "Retrieve the most recent data point of a counter.", response = DataPoint.class)
+    @ApiResponses(value = {
+            @ApiResponse(code = 200, message = "Successfully fetched the latest data point."),
+            @ApiResponse(code = 204, message = "No metric data was found."),
+            @ApiResponse(code = 500, message = "Unexpected error occurred while fetching metric data.",
+                    response = ApiError.class)
+    })
+    public void findLatestCounterData(@Suspended AsyncResponse asyncResponse, @PathParam("id") String id) {
+        metricsService.findLatestDataPoint(new MetricId<>(tenantId, COUNTER, id))
+                .map(dataPoint -> Response.ok(dataPoint).build())
+                .switchIfEmpty(Observable.just(noContent()))
+                .subscribe(asyncResponse::resume, t -> asyncResponse.resume(serverError(t)));
+    }
+
+    @POST
+    @Path("/raw/query")
+    @ApiOperation(value = "Fetch raw data points of multiple counter metrics in a single call.", notes = "The metrics "
+            + "are given either by name or by a tags filter. Metrics are read concurrently and returned as a map of "
+            + "metric name to data points; metrics without data are omitted. With maxPoints, the data points of "
+            + "each metric are downsampled using lttb (default), minmax or m4.", response = Map.class)
+    @ApiResponses(value = {
+            @ApiResponse(code = 200, message = "Successfully fetched metric data."),
+            @ApiResponse(code = 204, message = "No metric data was found."),
+            @ApiResponse(code = 400, message = "Invalid query.", response = ApiError.class),
+            @ApiResponse(code = 500, message = "Unexpected error occurred while fetching metric data.",
+                    response = ApiError.class)
+    })
+    public void findCounterRawData(
+            @Suspended AsyncResponse asyncResponse,
+            @ApiParam(required = true, value = "Query parameters") QueryRequest query) {
+        RawQuery rawQuery = new RawQuery(!query.getIds().isEmpty(), query.getTags(), query.getStart(),
+                query.getEnd(), query.getLimit(), query.getOrder(), query.getMaxPoints(), query.getDownsample());
+        if (!rawQuery.isValid()) {
+            asyncResponse.resume(badRequest(new ApiError(rawQuery.getProblem())));
+            return;
+        }
+        rawQuery.findByName(metricsService, tenantId, COUNTER, query.getIds())
+                .map(ApiUtils::mapToResponse)
+                .subscribe(asyncResponse::resume, t -> asyncResponse.resume(ApiUtils.error(t)));
+    }
+
+    @GET
+    @Path("/data/latest")
+    @ApiOperation(value = "Retrieve the most recent data point of multiple counter metrics.", notes = "The metrics "
+            + "are determined using either a tags filter or a list of metric names. Metrics without data are "
+            + "omitted from the result.", response = Metric.class, responseContainer = "List")
+    @ApiResponses(value = {
+            @ApiResponse(code = 200, message = "Successfully fetched the latest data points."),
+            @ApiResponse(code = 204, message = "No metric data was found."),
+            @ApiResponse(code = 400, message = "Either the metrics or the tags parameter is required but not both.",
+                    response = ApiError.class),
+            @ApiResponse(code = 500, message = "Unexpected error occurred while fetching metric data.",
+                    response = ApiError.class)
+    })
+    public void findLatestCounterData(
+            @Suspended AsyncResponse asyncResponse,
+            @ApiParam(value = "List of tags filters") @QueryParam("tags") Tags tags,
+            @ApiParam(value = "List of metric names") @QueryParam("metrics") List<String> metricNames) {
+
+        boolean noTags = tags == null || tags.getTags().isEmpty();
+        if (metricNames.isEmpty() && noTags) {
+            asyncResponse.resume(badRequest(new ApiError("Either metrics or tags parameter must be used")));
+            return;
+        }
+        if (!metricNames.isEmpty() && !noTags) {
+            asyncResponse.resume(badRequest(new ApiError("Cannot use both the metrics and tags parameters")));
+            return;
+        }
+
+        Observable<Metric<Long>> latest;
+        if (metricNames.isEmpty()) {
+            latest = metricsService.findLatestDataPoints(tenantId, COUNTER, tags.getTags());
+        } else {
+            latest = metricsService.findLatestDataPoints(tenantId, COUNTER, metricNames);
+        }
+        latest.toList()
+                .map(ApiUtils::collectionToResponse)
+                .subscribe(asyncResponse::resume, t -> asyncResponse.resume(serverError(t)));
+    }
+
     @GET
     @Path("/{id}/rate")
     @ApiOperation(
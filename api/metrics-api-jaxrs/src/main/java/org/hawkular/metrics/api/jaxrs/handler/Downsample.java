@@ -0,0 +1,100 @@
+/*
+ * Copyright 2014-2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.metrics.api.jaxrs.handler;
+
+import java.util.Collections;
+import java.util.List;
+
+import org.hawkular.metrics.core.service.Downsampling;
+import org.hawkular.metrics.core.service.Order;
+import org.hawkular.metrics.core.service.transformers.DownsampleTransformer;
+import org.hawkular.metrics.model.DataPoint;
+
+import rx.Observable;
+import rx.Observable.Transformer;
+
+/**
+ * The maxPoints and downsample parameters of a raw data query. When maxPoints is given, data points are read in
+ * ascending order and downsampled as they are streamed from Cassandra; the requested order is applied afterwards, on
+ * the downsampled series.
+ */
+class Downsample {
+    private final Downsampling downsampling;
+    private final int maxPoints;
+    private final String problem;
+
+    Downsample(Integer maxPoints, String downsample, Integer limit) {
+        Downsampling algorithm = null;
+        String problem = null;
+        if (maxPoints == null) {
+            if (downsample != null) {
+                problem = "The downsample parameter requires maxPoints";
+            }
+        } else if (limit != null) {
+            problem = "Limit cannot be used with maxPoints";
+        } else {
+            try {
+                algorithm = downsample == null ? Downsampling.LTTB : Downsampling.fromString(downsample);
+                if (maxPoints < algorithm.getMinPoints()) {
+                    problem = "maxPoints must be at least " + algorithm.getMinPoints() + " for "
+                            + algorithm.name().toLowerCase();
+                }
+            } catch (IllegalArgumentException e) {
+                problem = "Invalid downsample: " + downsample;
+            }
+        }
+        this.downsampling = problem == null ? algorithm : null;
+        this.maxPoints = maxPoints == null ? 0 : maxPoints;
+        this.problem = problem;
+    }
+
+    boolean isEnabled() {
+        return downsampling != null;
+    }
+
+    boolean isValid() {
+        return problem == null;
+    }
+
+    String getProblem() {
+        return problem;
+    }
+
+    /**
+     * @param order the order in which the downsampled data points are emitted; they must be read in ascending order
+     * @return a transformer downsampling the data points of one metric, or letting them through when downsampling is
+     * not enabled
+     */
+    <T> Transformer<DataPoint<T>, DataPoint<T>> transformer(long start, long end, Order order) {
+        if (!isEnabled()) {
+            return dataPoints -> dataPoints;
+        }
+        Transformer<DataPoint<T>, DataPoint<T>> downsampler = new DownsampleTransformer<>(downsampling, start, end,
+                maxPoints);
+        if (order == Order.ASC) {
+            return downsampler;
+        }
+        return dataPoints -> dataPoints.compose(downsampler)
+                .toList()
+                .flatMap(Downsample::reverse);
+    }
+
+    private static <T> Observable<T> reverse(List<T> list) {
+        Collections.reverse(list);
+        return Observable.from(list);
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright 2014-2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.metrics.api.jaxrs.handler;
+
+import static org.hawkular.metrics.api.jaxrs.config.ConfigurationKey.EXPORT_PARALLELISM;
+import static org.hawkular.metrics.api.jaxrs.filter.TenantFilter.TENANT_HEADER_NAME;
+import static org.hawkular.metrics.api.jaxrs.util.ApiUtils.badRequest;
+
+import java.io.IOException;
+import java.util.zip.GZIPOutputStream;
+
+import javax.inject.Inject;
+import javax.ws.rs.DefaultValue;
+import javax.ws.rs.GET;
+import javax.ws.rs.HeaderParam;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
+
+import org.hawkular.metrics.api.jaxrs.config.Configurable;
+import org.hawkular.metrics.api.jaxrs.config.ConfigurationProperty;
+import org.hawkular.metrics.api.jaxrs.log.RestLogger;
+import org.hawkular.metrics.api.jaxrs.log.RestLogging;
+import org.hawkular.metrics.core.service.MetricsService;
+import org.hawkular.metrics.core.service.export.TenantExporter;
+import org.hawkular.metrics.model.ApiError;
+
+import io.swagger.annotations.Api;
+import io.swagger.annotations.ApiOperation;
+import io.swagger.annotations.ApiParam;
+import io.swagger.annotations.ApiResponse;
+import io.swagger.annotations.ApiResponses;
+
+/**
+ * Export of all the data of a tenant, in the format read back by the NDJSON import.
+ */
+@Path("/exports")
+@Api(tags = "Export")
+public class ExportHandler {
+    private static final RestLogger log = RestLogging.getRestLogger(ExportHandler.class);
+
+    public static final String APPLICATION_GZIP = "application/gzip";
+
+    private static final int CHUNK_SIZE = 1000;
+
+    @Inject
+    private MetricsService metricsService;
+
+    @Inject
+    @Configurable
+    @ConfigurationProperty(EXPORT_PARALLELISM)
+    private String parallelism;
+
+    @HeaderParam(TENANT_HEADER_NAME)
+    private String tenantId;
+
+    @GET
+    @Produces(APPLICATION_GZIP)
+    @ApiOperation(value = "Export the metrics of the tenant with their data points.", notes = "The response is " +
+            "gzip-compressed newline-delimited JSON: a header line, then for each metric a line with its tags " +
+            "followed by lines of data points. It can be imported again with the ndjson format.")
+    @ApiResponses(value = {
+            @ApiResponse(code = 200, message = "The export is streamed."),
+            @ApiResponse(code = 400, message = "Invalid time range.", response = ApiError.class)
+    })
+    public Response export(
+            @ApiParam(value = "Defaults to 0") @DefaultValue("0") @QueryParam("start") long start,
+            @ApiParam(value = "Defaults to now") @QueryParam("end") Long end
+    ) {
+        long to = end == null ? System.currentTimeMillis() : end;
+        if (start >= to) {
+            return badRequest(new ApiError("Start time must be before end time"));
+        }
+        TenantExporter exporter = new TenantExporter(metricsService, getParallelism(), CHUNK_SIZE);
+        StreamingOutput output = stream -> {
+            GZIPOutputStream gzip = new GZIPOutputStream(stream, 65536);
+            try {
+                exporter.export(tenantId, start, to, gzip);
+            } catch (IOException | RuntimeException e) {
+                // The response is already committed, the client sees a truncated archive
+                log.errorExportFailed(tenantId, e);
+                throw e;
+            }
+            gzip.finish();
+        };
+        return Response.ok(output)
+                .header("Content-Disposition", "attachment; filename=\"" + tenantId + ".ndjson.gz\"")
+                .build();
+    }
+
+    private int getParallelism() {
+        try {
+            return Math.max(1, Integer.parseInt(parallelism));
+        } catch (NumberFormatException | NullPointerException e) {
+            log.warnInvalidConfigValue(parallelism, EXPORT_PARALLELISM.toString(), EXPORT_PARALLELISM.defaultValue());
+            return Integer.parseInt(EXPORT_PARALLELISM.defaultValue());
+        }
+    }
+}
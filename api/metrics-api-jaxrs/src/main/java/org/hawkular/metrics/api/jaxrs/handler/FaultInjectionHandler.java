@@ -0,0 +1,124 @@
+/*
+ * Copyright 2014-2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.metrics.api.jaxrs.handler;
+
+import static javax.ws.rs.core.MediaType.APPLICATION_JSON;
+
+import static org.hawkular.metrics.api.jaxrs.util.ApiUtils.badRequest;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.inject.Inject;
+import javax.ws.rs.Consumes;
+import javax.ws.rs.DELETE;
+import javax.ws.rs.GET;
+import javax.ws.rs.PUT;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.Response.Status;
+
+import org.hawkular.metrics.api.jaxrs.MetricsServiceLifecycle;
+import org.hawkular.metrics.model.ApiError;
+import org.hawkular.rx.cassandra.driver.FaultInjector;
+import org.hawkular.rx.cassandra.driver.FaultRule;
+
+import io.swagger.annotations.ApiOperation;
+import io.swagger.annotations.ApiParam;
+import io.swagger.annotations.ApiResponse;
+import io.swagger.annotations.ApiResponses;
+
+/**
+ * Changes the faults injected into Cassandra operations at runtime. The endpoint only exists when the server was
+ * started with fault injection enabled, which is meant for test and staging environments.
+ */
+@Path(FaultInjectionHandler.PATH)
+@Consumes(APPLICATION_JSON)
+@Produces(APPLICATION_JSON)
+public class FaultInjectionHandler {
+    public static final String PATH = "/admin/faults";
+
+    private static final String DISABLED = "Fault injection is not enabled, see hawkular.metrics.fault-injection";
+
+    @Inject
+    MetricsServiceLifecycle metricsServiceLifecycle;
+
+    @GET
+    @ApiOperation(value = "Returns the fault rules, by operation.", response = Map.class)
+    @ApiResponses(value = {
+            @ApiResponse(code = 200, message = "Rules returned."),
+            @ApiResponse(code = 404, message = "Fault injection is not enabled.", response = ApiError.class)
+    })
+    public Response getRules() {
+        FaultInjector faultInjector = metricsServiceLifecycle.getFaultInjector();
+        if (faultInjector == null) {
+            return notFound();
+        }
+        Map<String, String> rules = new LinkedHashMap<>();
+        faultInjector.getRules().forEach((operation, rule) -> rules.put(operation, rule.toString()));
+        return Response.ok(rules).build();
+    }
+
+    @PUT
+    @ApiOperation(value = "Replaces the fault rules.", notes = "Rules are keyed by operation: a DataAccess method "
+            + "such as findGaugeData, a statement group such as select.data, read, write or * for any operation. A "
+            + "rule is written as comma separated faults, for example latency=exponential:20,timeout=0.01.")
+    @ApiResponses(value = {
+            @ApiResponse(code = 200, message = "Rules replaced."),
+            @ApiResponse(code = 400, message = "Invalid rule.", response = ApiError.class),
+            @ApiResponse(code = 404, message = "Fault injection is not enabled.", response = ApiError.class)
+    })
+    public Response setRules(@ApiParam(required = true) Map<String, String> rules) {
+        FaultInjector faultInjector = metricsServiceLifecycle.getFaultInjector();
+        if (faultInjector == null) {
+            return notFound();
+        }
+        if (rules == null) {
+            return badRequest(new ApiError("Rules are missing"));
+        }
+        Map<String, FaultRule> parsed = new LinkedHashMap<>();
+        for (Map.Entry<String, String> entry : rules.entrySet()) {
+            try {
+                parsed.put(entry.getKey(), FaultRule.parse(String.valueOf(entry.getValue())));
+            } catch (IllegalArgumentException e) {
+                return badRequest(new ApiError("Invalid rule for [" + entry.getKey() + "]: " + e.getMessage()));
+            }
+        }
+        faultInjector.setRules(parsed);
+        return Response.ok().build();
+    }
+
+    @DELETE
+    @ApiOperation(value = "Removes all the fault rules.")
+    @ApiResponses(value = {
+            @ApiResponse(code = 200, message = "Rules removed."),
+            @ApiResponse(code = 404, message = "Fault injection is not enabled.", response = ApiError.class)
+    })
+    public Response clearRules() {
+        FaultInjector faultInjector = metricsServiceLifecycle.getFaultInjector();
+        if (faultInjector == null) {
+            return notFound();
+        }
+        faultInjector.clear();
+        return Response.ok().build();
+    }
+
+    private static Response notFound() {
+        return Response.status(Status.NOT_FOUND).entity(new ApiError(DISABLED)).build();
+    }
+}
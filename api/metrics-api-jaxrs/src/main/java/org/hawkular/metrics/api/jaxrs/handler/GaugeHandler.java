@@ -20,6 +20,7 @@ import static javax.ws.rs.core.MediaType.APPLICATION_JSON;
 
 import static org.hawkular.metrics.api.jaxrs.filter.TenantFilter.TENANT_HEADER_NAME;
 import static org.hawkular.metrics.api.jaxrs.util.ApiUtils.badRequest;
+import static org.hawkular.metrics.api.jaxrs.util.ApiUtils.noContent;
 import static org.hawkular.metrics.api.jaxrs.util.ApiUtils.serverError;
 import static org.hawkular.metrics.model.MetricType.GAUGE;
 
@@ -50,6 +51,7 @@ import javax.ws.rs.core.UriInfo;
 
 import org.hawkular.metrics.api.jaxrs.handler.observer.MetricCreatedObserver;
 import org.hawkular.metrics.api.jaxrs.handler.observer.ResultSetObserver;
+import org.hawkular.metrics.api.jaxrs.quota.QuotaManager;
 import org.hawkular.metrics.api.jaxrs.util.ApiUtils;
 import org.hawkular.metrics.core.service.Functions;
 import org.hawkular.metrics.core.service.MetricsService;
@@ -60,6 +62,7 @@ import org.hawkular.metrics.model.Metric;
 import org.hawkular.metrics.model.MetricId;
 import org.hawkular.metrics.model.MetricType;
 import org.hawkular.metrics.model.NumericBucketPoint;
+import org.hawkular.metrics.model.QueryRequest;
 import org.hawkular.metrics.model.exception.RuntimeApiError;
 import org.hawkular.metrics.model.param.BucketConfig;
 import org.hawkular.metrics.model.param.Duration;
@@ -87,6 +90,9 @@ public class GaugeHandler {
     @Inject
     private MetricsService metricsService;
 
+    @Inject
+    private QuotaManager quotaManager;
+
     @HeaderParam(TENANT_HEADER_NAME)
     private String tenantId;
 
@@ -234,6 +240,7 @@ public class GaugeHandler {
             @ApiParam(value = "List of datapoints containing timestamp and value", required = true)
             List<DataPoint<Double>> data
     ) {
+        quotaManager.acquireDataPoints(tenantId, GAUGE, id, data);
         Observable<Metric<Double>> metrics = Functions.dataPointToObservable(tenantId, id, data, GAUGE);
         Observable<Void> observable = metricsService.addDataPoints(GAUGE, metrics);
         observable.subscribe(new ResultSetObserver(asyncResponse));
@@ -252,6 +259,7 @@ public class GaugeHandler {
             @Suspended final AsyncResponse asyncResponse,
             @ApiParam(value = "List of metrics", required = true) List<Metric<Double>> gauges
     ) {
+        quotaManager.acquireDataPoints(tenantId, GAUGE, gauges);
         Observable<Metric<Double>> metrics = Functions.metricToObservable(tenantId, gauges, GAUGE);
         Observable<Void> observable = metricsService.addDataPoints(GAUGE, metrics);
         observable.subscribe(new ResultSetObserver(asyncResponse));
@@ -261,7 +269,8 @@ public class GaugeHandler {
     @Path("/{id}/data")
     @ApiOperation(value = "Retrieve gauge data.", notes = "When buckets or bucketDuration query parameter is used, " +
             "the time range between start and end will be divided in buckets of equal duration, and metric statistics" +
-            " will be computed for each bucket.", response = DataPoint.class, responseContainer = "List")
+            " will be computed for each bucket. When maxPoints is used, raw data points are downsampled to at most " +
+            "maxPoints.", response = DataPoint.class, responseContainer = "List")
     @ApiResponses(value = {
             @ApiResponse(code = 200, message = "Successfully fetched metric data."),
             @ApiResponse(code = 204, message = "No metric data was found."),
@@ -281,7 +290,12 @@ public class GaugeHandler {
             @ApiParam(value = "Bucket duration") @QueryParam("bucketDuration") Duration bucketDuration,
             @ApiParam(value = "Percentiles to calculate") @QueryParam("percentiles") Percentiles percentiles,
             @ApiParam(value = "Limit the number of data points returned") @QueryParam("limit") Integer limit,
-            @ApiParam(value = "Data point sort order, based on timestamp") @QueryParam("order") Order order
+            @ApiParam(value = "Data point sort order, based on timestamp") @QueryParam("order") Order order,
+            @ApiParam(value = "Maximum number of data points returned, selected by downsampling")
+                @QueryParam("maxPoints") Integer maxPoints,
+            @ApiParam(value = "Downsampling algorithm used with maxPoints", allowableValues = "lttb, minmax, m4",
+                    defaultValue = "lttb")
+                @QueryParam("downsample") String downsample
             ) {
 
         MetricId<Double> metricId = new MetricId<>(tenantId, GAUGE, id);
@@ -292,6 +306,16 @@ public class GaugeHandler {
             return;
         }
 
+        Downsample downsampling = new Downsample(maxPoints, downsample, limit);
+        if (!downsampling.isValid()) {
+            asyncResponse.resume(badRequest(new ApiError(downsampling.getProblem())));
+            return;
+        }
+        if ((bucketsCount != null || bucketDuration != null) && downsampling.isEnabled()) {
+            asyncResponse.resume(badRequest(new ApiError("maxPoints cannot be used with bucketed results")));
+            return;
+        }
+
         if (bucketsCount == null && bucketDuration == null && !Boolean.TRUE.equals(fromEarliest)) {
             TimeRange timeRange = new TimeRange(start, end);
             if (!timeRange.isValid()) {
@@ -317,7 +341,15 @@ public class GaugeHandler {
                 order = Order.DESC;
             }
 
-            metricsService.findDataPoints(metricId, timeRange.getStart(), timeRange.getEnd(), limit, order)
+            Observable<DataPoint<Double>> dataPoints;
+            if (downsampling.isEnabled()) {
+                dataPoints = metricsService.findDataPoints(metricId, timeRange.getStart(), timeRange.getEnd(), 0,
+                        Order.ASC).compose(downsampling.transformer(timeRange.getStart(), timeRange.getEnd(), order));
+            } else {
+                dataPoints = metricsService.findDataPoints(metricId, timeRange.getStart(), timeRange.getEnd(), limit,
+                        order);
+            }
+            dataPoints
                     .toList()
                     .map(ApiUtils::collectionToResponse)
                     .subscribe(asyncResponse::resume, t -> asyncResponse.resume(ApiUtils.serverError(t)));
@@ -452,6 +484,88 @@ public class GaugeHandler {
         }
     }
 
+    @GET
+    @Path("/{id}/data/latest")
+    @ApiOperation(value = "Retrieve the most recent data point of a gauge.", response = DataPoint.class)
+    @ApiResponses(value = {
+            @ApiResponse(code = 200, message = "Successfully fetched the latest data point."),
+            @ApiResponse(code = 204, message = "No metric data was found."),
+            @ApiResponse(code = 500, message = "Unexpected error occurred while fetching metric data.",
+                    response = ApiError.class)
+    })
+    public void findLatestGaugeData(@Suspended AsyncResponse asyncResponse, @PathParam("id") String id) {
+        metricsService.findLatestDataPoint(new MetricId<>(tenantId, GAUGE, id))
+                .map(dataPoint -> Response.ok(dataPoint).build())
+                .switchIfEmpty(Observable.just(noContent()))
+                .subscribe(asyncResponse::resume, t -> asyncResponse.resume(serverError(t)));
+    }
+
+    @POST
+    @Path("/raw/query")
+    @ApiOperation(value = "Fetch raw data points of multiple gauge metrics in a single call.", notes = "The metrics "
+            + "are given either by name or by a tags filter. Metrics are read concurrently and returned as a map of "
+            + "metric name to data points; metrics without data are omitted. With maxPoints, the data points of "
+            + "each metric are downsampled using lttb (default), minmax or m4.", response = Map.class)
+    @ApiResponses(value = {
+            @ApiResponse(code = 200, message = "Successfully fetched metric data."),
+            @ApiResponse(code = 204, message = "No metric data was found."),
+            @ApiResponse(code = 400, message = "Invalid query.", response = ApiError.class),
+            @ApiResponse(code = 500, message = "Unexpected error occurred while fetching metric data.",
+                    response = ApiError.class)
+    })
+    public void findGaugeRawData(
+            @Suspended AsyncResponse asyncResponse,
+            @ApiParam(required = true, value = "Query parameters") QueryRequest query) {
+        RawQuery rawQuery = new RawQuery(!query.getIds().isEmpty(), query.getTags(), query.getStart(),
+                query.getEnd(), query.getLimit(), query.getOrder(), query.getMaxPoints(), query.getDownsample());
+        if (!rawQuery.isValid()) {
+            asyncResponse.resume(badRequest(new ApiError(rawQuery.getProblem())));
+            return;
+        }
+        rawQuery.findByName(metricsService, tenantId, GAUGE, query.getIds())
+                .map(ApiUtils::mapToResponse)
+                .subscribe(asyncResponse::resume, t -> asyncResponse.resume(ApiUtils.error(t)));
+    }
+
+    @GET
+    @Path("/data/latest")
+    @ApiOperation(value = "Retrieve the most recent data point of multiple gauge metrics.", notes = "The metrics "
+            + "are determined using either a tags filter or a list of metric names. Metrics without data are "
+            + "omitted from the result.", response = Metric.class, responseContainer = "List")
+    @ApiResponses(value = {
+            @ApiResponse(code = 200, message = "Successfully fetched the latest data points."),
+            @ApiResponse(code = 204, message = "No metric data was found."),
+            @ApiResponse(code = 400, message = "Either the metrics or the tags parameter is required but not both.",
+                    response = ApiError.class),
+            @ApiResponse(code = 500, message = "Unexpected error occurred while fetching metric data.",
+                    response = ApiError.class)
+    })
+    public void findLatestGaugeData(
+            @Suspended AsyncResponse asyncResponse,
+            @ApiParam(value = "List of tags filters") @QueryParam("tags") Tags tags,
+            @ApiParam(value = "List of metric names") @QueryParam("metrics") List<String> metricNames) {
+
+        boolean noTags = tags == null || tags.getTags().isEmpty();
+        if (metricNames.isEmpty() && noTags) {
+            asyncResponse.resume(badRequest(new ApiError("Either metrics or tags parameter must be used")));
+            return;
+        }
+        if (!metricNames.isEmpty() && !noTags) {
+            asyncResponse.resume(badRequest(new ApiError("Cannot use both the metrics and tags parameters")));
+            return;
+        }
+
+        Observable<Metric<Double>> latest;
+        if (metricNames.isEmpty()) {
+            latest = metricsService.findLatestDataPoints(tenantId, GAUGE, tags.getTags());
+        } else {
+            latest = metricsService.findLatestDataPoints(tenantId, GAUGE, metricNames);
+        }
+        latest.toList()
+                .map(ApiUtils::collectionToResponse)
+                .subscribe(asyncResponse::resume, t -> asyncResponse.resume(serverError(t)));
+    }
+
     @GET
     @Path("/{id}/periods")
     @ApiOperation(value = "Find condition periods.", notes = "Retrieve periods for which the condition holds true for" +
@@ -478,29 +592,7 @@ public class GaugeHandler {
             return;
         }
 
-        Predicate<Double> predicate;
-        switch (operator) { // Why not enum?
-            case "lt":
-                predicate = d -> d < threshold;
-                break;
-            case "lte":
-                predicate = d -> d <= threshold;
-                break;
-            case "eq":
-                predicate = d -> d == threshold;
-                break;
-            case "neq":
-                predicate = d -> d != threshold;
-                break;
-            case "gt":
-                predicate = d -> d > threshold;
-                break;
-            case "gte":
-                predicate = d -> d >= threshold;
-                break;
-            default:
-                predicate = null;
-        }
+        Predicate<Double> predicate = getPredicate(operator, threshold);
 
         if (predicate == null) {
             asyncResponse.resume(badRequest(
@@ -516,4 +608,87 @@ public class GaugeHandler {
                     .subscribe(asyncResponse::resume, t -> asyncResponse.resume(ApiUtils.serverError(t)));
         }
     }
+
+    @GET
+    @Path("/periods")
+    @ApiOperation(value = "Find condition periods of multiple gauge metrics.", notes = "The metrics are determined "
+            + "using either a tags filter or a list of metric names, and are read concurrently. The result maps metric "
+            + "names to the periods for which the condition holds true for each consecutive data point; metrics "
+            + "without any period are omitted.", response = Map.class)
+    @ApiResponses(value = {
+            @ApiResponse(code = 200, message = "Successfully fetched periods."),
+            @ApiResponse(code = 204, message = "No period was found."),
+            @ApiResponse(code = 400, message = "Missing or invalid query parameters", response = ApiError.class),
+            @ApiResponse(code = 500, message = "Unexpected error occurred while fetching periods.",
+                    response = ApiError.class)
+    })
+    public void findPeriodsOfMultipleGauges(
+            @Suspended final AsyncResponse asyncResponse,
+            @ApiParam(value = "Defaults to now - 8 hours") @QueryParam("start") Long start,
+            @ApiParam(value = "Defaults to now") @QueryParam("end") Long end,
+            @ApiParam(value = "A threshold against which values are compared", required = true)
+            @QueryParam("threshold") double threshold,
+            @ApiParam(value = "A comparison operation to perform between values and the threshold.", required = true,
+                    allowableValues = "gt, gte, lt, lte, eq, neq")
+            @QueryParam("op") String operator,
+            @ApiParam(value = "List of tags filters") @QueryParam("tags") Tags tags,
+            @ApiParam(value = "List of metric names") @QueryParam("metrics") List<String> metricNames
+    ) {
+        TimeRange timeRange = new TimeRange(start, end);
+        if (!timeRange.isValid()) {
+            asyncResponse.resume(badRequest(new ApiError(timeRange.getProblem())));
+            return;
+        }
+        boolean noTags = tags == null || tags.getTags().isEmpty();
+        if (metricNames.isEmpty() && noTags) {
+            asyncResponse.resume(badRequest(new ApiError("Either metrics or tags parameter must be used")));
+            return;
+        }
+        if (!metricNames.isEmpty() && !noTags) {
+            asyncResponse.resume(badRequest(new ApiError("Cannot use both the metrics and tags parameters")));
+            return;
+        }
+        Predicate<Double> predicate = getPredicate(operator, threshold);
+        if (predicate == null) {
+            asyncResponse.resume(badRequest(new ApiError("Invalid value for op parameter. Supported values are lt, "
+                    + "lte, eq, neq, gt, gte.")));
+            return;
+        }
+
+        Observable<Map<String, List<long[]>>> periods;
+        if (metricNames.isEmpty()) {
+            periods = metricsService.getPeriods(tenantId, tags.getTags(), predicate, timeRange.getStart(),
+                    timeRange.getEnd());
+        } else {
+            periods = metricsService.getPeriods(tenantId, metricNames, predicate, timeRange.getStart(),
+                    timeRange.getEnd());
+        }
+        periods.map(ApiUtils::mapToResponse)
+                .subscribe(asyncResponse::resume, t -> asyncResponse.resume(serverError(t)));
+    }
+
+    /**
+     * @return the predicate comparing values to {@code threshold}, or null if the operator is not supported
+     */
+    private static Predicate<Double> getPredicate(String operator, double threshold) {
+        if (operator == null) {
+            return null;
+        }
+        switch (operator) { // Why not enum?
+            case "lt":
+                return d -> d < threshold;
+            case "lte":
+                return d -> d <= threshold;
+            case "eq":
+                return d -> d == threshold;
+            case "neq":
+                return d -> d != threshold;
+            case "gt":
+                return d -> d > threshold;
+            case "gte":
+                return d -> d >= threshold;
+            default:
+                return null;
+        }
+    }
 }
@@ -0,0 +1,162 @@
+/*
+ * Copyright 2014-2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.metrics.api.jaxrs.handler;
+
+import static javax.ws.rs.core.MediaType.APPLICATION_JSON;
+import static javax.ws.rs.core.MediaType.WILDCARD;
+
+import static org.hawkular.metrics.api.jaxrs.exception.mappers.QuotaExceededExceptionMapper.TOO_MANY_REQUESTS;
+import static org.hawkular.metrics.api.jaxrs.filter.TenantFilter.TENANT_HEADER_NAME;
+import static org.hawkular.metrics.api.jaxrs.util.ApiUtils.badRequest;
+
+import java.io.InputStream;
+import java.util.concurrent.TimeUnit;
+
+import javax.inject.Inject;
+import javax.ws.rs.Consumes;
+import javax.ws.rs.DefaultValue;
+import javax.ws.rs.GET;
+import javax.ws.rs.HeaderParam;
+import javax.ws.rs.POST;
+import javax.ws.rs.Path;
+import javax.ws.rs.PathParam;
+import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.container.Suspended;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.Response.Status;
+
+import org.hawkular.metrics.api.jaxrs.bulk.BulkImport;
+import org.hawkular.metrics.api.jaxrs.bulk.BulkImporter;
+import org.hawkular.metrics.api.jaxrs.bulk.ImportFormat;
+import org.hawkular.metrics.api.jaxrs.bulk.LineProtocolParser;
+import org.hawkular.metrics.api.jaxrs.util.ApiUtils;
+import org.hawkular.metrics.model.ApiError;
+
+import io.swagger.annotations.Api;
+import io.swagger.annotations.ApiOperation;
+import io.swagger.annotations.ApiParam;
+import io.swagger.annotations.ApiResponse;
+import io.swagger.annotations.ApiResponses;
+
+/**
+ * Bulk import of historical data. The request returns once the whole file has been read and stored, or once the
+ * import stopped; the file is read and stored on an I/O thread rather than on the request thread.
+ */
+@Path("/imports")
+@Produces(APPLICATION_JSON)
+@Api(tags = "Import")
+public class ImportHandler {
+
+    @Inject
+    private BulkImporter importer;
+
+    @HeaderParam(TENANT_HEADER_NAME)
+    private String tenantId;
+
+    @POST
+    @Path("/{id}")
+    @Consumes(WILDCARD)
+    @ApiOperation(value = "Import a file of data points.", notes = "The file is streamed and may be gzip-compressed. " +
+            "Its format is given by the format parameter or else by the content type: text/csv for " +
+            "metric,timestamp,value[,type] lines, application/x-ndjson for one JSON object per line, text/plain for " +
+            "the InfluxDB line protocol. Posting again with the same id resumes after the last stored line.",
+            response = BulkImport.class)
+    @ApiResponses(value = {
+            @ApiResponse(code = 200, message = "The file was imported; invalid lines are reported."),
+            @ApiResponse(code = 400, message = "Unknown format or precision.", response = ApiError.class),
+            @ApiResponse(code = 409, message = "An import with this id is running.", response = ApiError.class),
+            @ApiResponse(code = 429, message = "Imports are throttled; the import can be resumed after the delay " +
+                    "given by the Retry-After header.", response = BulkImport.class),
+            @ApiResponse(code = 500, message = "Storing data points failed; the import can be resumed.",
+                    response = BulkImport.class)
+    })
+    public void importData(
+            @Suspended AsyncResponse asyncResponse,
+            @PathParam("id") String id,
+            @ApiParam(value = "File format, one of csv, ndjson or line; defaults to the one of the content type")
+            @QueryParam("format") String format,
+            @ApiParam(value = "Timestamp precision of the line protocol, one of n, u, ms, s, m or h")
+            @DefaultValue("n") @QueryParam("precision") String precision,
+            @ApiParam(value = "Number of lines to skip, when resuming an import this node does not know about")
+            @DefaultValue("0") @QueryParam("skipLines") long skipLines,
+            @HeaderParam(HttpHeaders.CONTENT_TYPE) MediaType contentType,
+            InputStream data
+    ) {
+        ImportFormat importFormat;
+        if (format != null) {
+            try {
+                importFormat = ImportFormat.valueOf(format.toUpperCase());
+            } catch (IllegalArgumentException e) {
+                asyncResponse.resume(badRequest(new ApiError("Unknown format: " + format)));
+                return;
+            }
+        } else {
+            importFormat = contentType == null ? null
+                    : ImportFormat.fromMediaType(contentType.getType() + "/" + contentType.getSubtype());
+            if (importFormat == null) {
+                asyncResponse.resume(badRequest(new ApiError("The format parameter is required for content type " +
+                        contentType)));
+                return;
+            }
+        }
+        TimeUnit timeUnit = LineProtocolParser.toTimeUnit(precision);
+        if (timeUnit == null) {
+            asyncResponse.resume(badRequest(new ApiError("Unknown precision: " + precision)));
+            return;
+        }
+
+        BulkImport bulkImport = importer.begin(tenantId, id, importFormat, skipLines);
+        if (bulkImport == null) {
+            asyncResponse.resume(Response.status(Status.CONFLICT).entity(new ApiError("Import " + id + " is running"))
+                    .build());
+            return;
+        }
+        importer.runAsync(bulkImport, data, importFormat.newParser(timeUnit))
+                .map(this::toResponse)
+                .subscribe(asyncResponse::resume, t -> asyncResponse.resume(ApiUtils.serverError(t)));
+    }
+
+    private Response toResponse(BulkImport bulkImport) {
+        switch (bulkImport.getStatus()) {
+            case COMPLETED:
+                return Response.ok(bulkImport).build();
+            case THROTTLED:
+                return Response.status(TOO_MANY_REQUESTS)
+                        .header(HttpHeaders.RETRY_AFTER, importer.getRetryAfter())
+                        .entity(bulkImport)
+                        .build();
+            default:
+                return Response.status(Status.INTERNAL_SERVER_ERROR).entity(bulkImport).build();
+        }
+    }
+
+    @GET
+    @Path("/{id}")
+    @ApiOperation(value = "Retrieve the progress of an import.", response = BulkImport.class)
+    @ApiResponses(value = {
+            @ApiResponse(code = 200, message = "Successfully fetched the import progress."),
+            @ApiResponse(code = 204, message = "No import with this id is known to this node.")
+    })
+    public Response getImport(@PathParam("id") String id) {
+        BulkImport bulkImport = importer.getImport(tenantId, id);
+        return bulkImport == null ? ApiUtils.noContent() : Response.ok(bulkImport).build();
+    }
+}
@@ -27,6 +27,10 @@ import static org.hawkular.metrics.model.MetricType.COUNTER;
 import static org.hawkular.metrics.model.MetricType.GAUGE;
 
 import java.net.URI;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.regex.PatternSyntaxException;
 
 import javax.inject.Inject;
@@ -44,16 +48,19 @@ import javax.ws.rs.core.Response;
 import javax.ws.rs.core.UriInfo;
 
 import org.hawkular.metrics.api.jaxrs.handler.observer.MetricCreatedObserver;
+import org.hawkular.metrics.api.jaxrs.quota.QuotaManager;
 import org.hawkular.metrics.api.jaxrs.util.ApiUtils;
 import org.hawkular.metrics.api.jaxrs.util.MetricTypeTextConverter;
 import org.hawkular.metrics.core.service.Functions;
 import org.hawkular.metrics.core.service.MetricsService;
 import org.hawkular.metrics.model.ApiError;
 import org.hawkular.metrics.model.AvailabilityType;
+import org.hawkular.metrics.model.DataPoint;
 import org.hawkular.metrics.model.Metric;
 import org.hawkular.metrics.model.MetricId;
 import org.hawkular.metrics.model.MetricType;
 import org.hawkular.metrics.model.MixedMetricsRequest;
+import org.hawkular.metrics.model.MixedQueryRequest;
 import org.hawkular.metrics.model.param.Tags;
 
 import com.google.common.base.Strings;
@@ -81,6 +88,9 @@ public class MetricHandler {
     @Inject
     private MetricsService metricsService;
 
+    @Inject
+    private QuotaManager quotaManager;
+
     @HeaderParam(TENANT_HEADER_NAME)
     private String tenantId;
 
@@ -178,6 +188,10 @@ public class MetricHandler {
             return;
         }
 
+        quotaManager.acquireDataPoints(tenantId, GAUGE, metricsRequest.getGauges());
+        quotaManager.acquireDataPoints(tenantId, AVAILABILITY, metricsRequest.getAvailabilities());
+        quotaManager.acquireDataPoints(tenantId, COUNTER, metricsRequest.getCounters());
+
         Observable<Metric<Double>> gauges = Functions.metricToObservable(tenantId, metricsRequest.getGauges(), GAUGE);
         Observable<Metric<AvailabilityType>> availabilities = Functions.metricToObservable(tenantId,
                 metricsRequest.getAvailabilities(), AVAILABILITY);
@@ -194,4 +208,53 @@ public class MetricHandler {
                         () -> asyncResponse.resume(Response.ok().build())
                 );
     }
+
+    @POST
+    @Path("/raw/query")
+    @ApiOperation(value = "Fetch raw data points of metrics of any type in a single call.", notes = "The metrics are "
+            + "given either by name for each type or by a tags filter, which selects metrics of all types. Metrics "
+            + "are read concurrently. The result maps gauges, counters and availabilities to a map of metric name to "
+            + "data points; metrics without data are omitted. With maxPoints, the data points of gauges and counters "
+            + "are downsampled; availabilities are returned as is.", response = Map.class)
+    @ApiResponses(value = {
+            @ApiResponse(code = 200, message = "Successfully fetched metric data."),
+            @ApiResponse(code = 204, message = "No metric data was found."),
+            @ApiResponse(code = 400, message = "Invalid query.", response = ApiError.class),
+            @ApiResponse(code = 500, message = "Unexpected error occurred while fetching metric data.",
+                    response = ApiError.class)
+    })
+    public void findRawData(
+            @Suspended AsyncResponse asyncResponse,
+            @ApiParam(required = true, value = "Query parameters") MixedQueryRequest query) {
+        boolean hasIds = !query.getGauges().isEmpty() || !query.getCounters().isEmpty()
+                || !query.getAvailabilities().isEmpty();
+        RawQuery rawQuery = new RawQuery(hasIds, query.getTags(), query.getStart(), query.getEnd(), query.getLimit(),
+                query.getOrder(), query.getMaxPoints(), query.getDownsample());
+        if (!rawQuery.isValid()) {
+            asyncResponse.resume(badRequest(new ApiError(rawQuery.getProblem())));
+            return;
+        }
+        Observable<Metric<?>> gauges = rawQuery.find(metricsService, tenantId, GAUGE, query.getGauges())
+                .map(metric -> metric);
+        Observable<Metric<?>> counters = rawQuery.find(metricsService, tenantId, COUNTER, query.getCounters())
+                .map(metric -> metric);
+        Observable<Metric<?>> availabilities = rawQuery.find(metricsService, tenantId, AVAILABILITY,
+                query.getAvailabilities()).map(metric -> metric);
+        gauges.mergeWith(counters).mergeWith(availabilities)
+                .collect(() -> new LinkedHashMap<String, Map<String, List<? extends DataPoint<?>>>>(),
+                        (results, metric) -> results.computeIfAbsent(getResultKey(metric.getType()),
+                                key -> new HashMap<>()).put(metric.getId(), metric.getDataPoints()))
+                .map(ApiUtils::mapToResponse)
+                .subscribe(asyncResponse::resume, t -> asyncResponse.resume(ApiUtils.error(t)));
+    }
+
+    private static String getResultKey(MetricType<?> type) {
+        if (type == GAUGE) {
+            return "gauges";
+        }
+        if (type == COUNTER) {
+            return "counters";
+        }
+        return "availabilities";
+    }
 }
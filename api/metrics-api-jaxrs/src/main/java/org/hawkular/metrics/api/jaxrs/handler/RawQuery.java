@@ -0,0 +1,121 @@
+/*
+ * Copyright 2014-2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.metrics.api.jaxrs.handler;
+
+import java.util.List;
+import java.util.Map;
+
+import org.hawkular.metrics.core.service.MetricsService;
+import org.hawkular.metrics.core.service.Order;
+import org.hawkular.metrics.model.DataPoint;
+import org.hawkular.metrics.model.Metric;
+import org.hawkular.metrics.model.MetricType;
+import org.hawkular.metrics.model.param.TimeRange;
+
+import rx.Observable;
+import rx.Observable.Transformer;
+
+/**
+ * Parameters of a raw data query of several metrics, with the defaults of the single metric queries applied.
+ */
+class RawQuery {
+    private final Map<String, String> tags;
+    private final TimeRange timeRange;
+    private final int limit;
+    private final Order order;
+    private final Downsample downsample;
+    private final String problem;
+
+    /**
+     * @param hasIds whether metric names were given, which cannot be used together with tags
+     */
+    RawQuery(boolean hasIds, Map<String, String> tags, Long start, Long end, Integer limit, String order,
+            Integer maxPoints, String downsample) {
+        this.tags = tags;
+        this.timeRange = new TimeRange(start, end);
+        this.limit = limit == null ? 0 : limit;
+        this.downsample = new Downsample(maxPoints, downsample, limit);
+        Order sortOrder = null;
+        String problem = null;
+        if (!hasIds && tags.isEmpty()) {
+            problem = "Either metric names or tags must be given";
+        } else if (hasIds && !tags.isEmpty()) {
+            problem = "Cannot use both metric names and tags";
+        } else if (!timeRange.isValid()) {
+            problem = timeRange.getProblem();
+        } else if (this.limit < 0) {
+            problem = "Limit must not be negative";
+        } else if (!this.downsample.isValid()) {
+            problem = this.downsample.getProblem();
+        } else if (order != null) {
+            try {
+                sortOrder = Order.valueOf(order.toUpperCase());
+            } catch (IllegalArgumentException e) {
+                problem = "Invalid order: " + order;
+            }
+        } else {
+            sortOrder = limit != null && start != null && end == null ? Order.ASC : Order.DESC;
+        }
+        this.order = sortOrder;
+        this.problem = problem;
+    }
+
+    boolean isValid() {
+        return problem == null;
+    }
+
+    String getProblem() {
+        return problem;
+    }
+
+    /**
+     * @return whether maxPoints was given
+     */
+    boolean isDownsampled() {
+        return downsample.isEnabled();
+    }
+
+    /**
+     * @param names the names of the metrics to read, or an empty list to read the metrics matching the tags
+     */
+    <T> Observable<Metric<T>> find(MetricsService metricsService, String tenantId, MetricType<T> type,
+            List<String> names) {
+        long start = timeRange.getStart();
+        long end = timeRange.getEnd();
+        // Availability is not numeric, its data points are always returned as is
+        boolean downsampled = isDownsampled() && type != MetricType.AVAILABILITY;
+        int limit = downsampled ? 0 : this.limit;
+        Order order = downsampled ? Order.ASC : this.order;
+        Transformer<DataPoint<T>, DataPoint<T>> transformer = downsampled
+                ? downsample.transformer(start, end, this.order) : dataPoints -> dataPoints;
+        if (!names.isEmpty()) {
+            return metricsService.findDataPoints(tenantId, type, names, start, end, limit, order, transformer);
+        }
+        if (!tags.isEmpty()) {
+            return metricsService.findDataPoints(tenantId, type, tags, start, end, limit, order, transformer);
+        }
+        return Observable.empty();
+    }
+
+    /**
+     * @return the data points of each metric found, by metric name
+     */
+    <T> Observable<Map<String, List<DataPoint<T>>>> findByName(MetricsService metricsService, String tenantId,
+            MetricType<T> type, List<String> names) {
+        return find(metricsService, tenantId, type, names).toMap(Metric::getId, Metric::getDataPoints);
+    }
+}
@@ -28,12 +28,16 @@ import javax.ws.rs.GET;
 import javax.ws.rs.Path;
 import javax.ws.rs.Produces;
 import javax.ws.rs.core.Context;
+import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 
 import org.hawkular.metrics.api.jaxrs.MetricsServiceLifecycle;
 import org.hawkular.metrics.api.jaxrs.MetricsServiceLifecycle.State;
+import org.hawkular.metrics.api.jaxrs.monitoring.MetricRegistryFormats;
 import org.hawkular.metrics.api.jaxrs.util.ManifestInformation;
 
+import com.codahale.metrics.MetricRegistry;
+
 import io.swagger.annotations.ApiOperation;
 
 /**
@@ -45,12 +49,19 @@ import io.swagger.annotations.ApiOperation;
 public class StatusHandler {
     public static final String PATH = "/status";
 
+    /**
+     * Content type of the Prometheus text exposition format
+     */
+    public static final String PROMETHEUS_TEXT = "text/plain; version=0.0.4";
+
     private static final String METRICSSERVICE_NAME = "MetricsService";
 
     @Inject
     MetricsServiceLifecycle metricsServiceLifecycle;
     @Inject
     ManifestInformation manifestInformation;
+    @Inject
+    MetricRegistry metricRegistry;
 
     @GET
     @ApiOperation(value = "Returns the current status for various components.",
@@ -62,4 +73,23 @@ public class StatusHandler {
         status.putAll(manifestInformation.getFrom(servletContext));
         return Response.ok(status).build();
     }
+
+    @GET
+    @Path("/metrics")
+    @ApiOperation(value = "Returns the internal metrics of the server: request and storage latencies, insertion rates. "
+            + "Per-tenant metrics are not included.", response = Map.class)
+    public Response metrics() {
+        return Response.ok(MetricRegistryFormats.toJson(metricRegistry, MetricRegistryFormats.WITHOUT_TENANTS))
+                .build();
+    }
+
+    @GET
+    @Path("/metrics")
+    @Produces(MediaType.TEXT_PLAIN)
+    @ApiOperation(value = "Returns the internal metrics of the server in the Prometheus text format. Per-tenant "
+            + "metrics are not included.")
+    public Response prometheusMetrics() {
+        return Response.ok(MetricRegistryFormats.toPrometheus(metricRegistry, MetricRegistryFormats.WITHOUT_TENANTS),
+                PROMETHEUS_TEXT).build();
+    }
 }
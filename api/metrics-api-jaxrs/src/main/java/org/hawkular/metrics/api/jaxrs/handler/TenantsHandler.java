@@ -18,23 +18,30 @@ package org.hawkular.metrics.api.jaxrs.handler;
 
 import static javax.ws.rs.core.MediaType.APPLICATION_JSON;
 
+import static org.hawkular.metrics.api.jaxrs.util.ApiUtils.badRequest;
 import static org.hawkular.metrics.api.jaxrs.util.ApiUtils.collectionToResponse;
 import static org.hawkular.metrics.api.jaxrs.util.ApiUtils.serverError;
 
 import java.net.URI;
+import java.util.Map;
 
 import javax.inject.Inject;
 import javax.ws.rs.Consumes;
 import javax.ws.rs.GET;
 import javax.ws.rs.POST;
+import javax.ws.rs.PUT;
 import javax.ws.rs.Path;
+import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
 import javax.ws.rs.container.AsyncResponse;
 import javax.ws.rs.container.Suspended;
 import javax.ws.rs.core.Context;
+import javax.ws.rs.core.Response;
 import javax.ws.rs.core.UriInfo;
 
 import org.hawkular.metrics.api.jaxrs.handler.observer.TenantCreatedObserver;
+import org.hawkular.metrics.api.jaxrs.quota.Quota;
+import org.hawkular.metrics.api.jaxrs.quota.QuotaManager;
 import org.hawkular.metrics.core.service.MetricsService;
 import org.hawkular.metrics.model.ApiError;
 import org.hawkular.metrics.model.TenantDefinition;
@@ -57,13 +64,16 @@ public class TenantsHandler {
     @Inject
     private MetricsService metricsService;
 
+    @Inject
+    private QuotaManager quotaManager;
+
     @POST
     @ApiOperation(value = "Create a new tenant.", notes = "Clients are not required to create explicitly create a "
             + "tenant before starting to store metric data. It is recommended to do so however to ensure that there "
             + "are no tenant id naming collisions and to provide default data retention settings.")
     @ApiResponses(value = {
             @ApiResponse(code = 201, message = "Tenant has been succesfully created."),
-            @ApiResponse(code = 400, message = "Missing or invalid retention properties. ",
+            @ApiResponse(code = 400, message = "Missing or invalid retention or quota properties. ",
                     response = ApiError.class),
             @ApiResponse(code = 409, message = "Given tenant id has already been created.",
                     response = ApiError.class),
@@ -75,11 +85,64 @@ public class TenantsHandler {
             @ApiParam(required = true) TenantDefinition tenantDefinition,
             @Context UriInfo uriInfo
     ) {
+        String problem = validateQuotas(tenantDefinition.getQuotas());
+        if (problem != null) {
+            asyncResponse.resume(badRequest(new ApiError(problem)));
+            return;
+        }
         URI location = uriInfo.getBaseUriBuilder().path("/tenants").build();
         metricsService.createTenant(tenantDefinition.toTenant())
+                .doOnCompleted(() -> quotaManager.updateQuotas(tenantDefinition.getId(), tenantDefinition.getQuotas()))
                 .subscribe(new TenantCreatedObserver(asyncResponse, location));
     }
 
+    @PUT
+    @Path("/{id}/quotas")
+    @ApiOperation(value = "Replace the quotas of a tenant.", notes = "Quotas are rates, in units per second, by quota "
+            + "name: data-points, new-series or queries. A missing quota falls back to the server default, a quota "
+            + "of zero means no limit. Other nodes apply the change on their next quota refresh.")
+    @ApiResponses(value = {
+            @ApiResponse(code = 200, message = "Quotas have been updated."),
+            @ApiResponse(code = 400, message = "Unknown quota or invalid rate.", response = ApiError.class),
+            @ApiResponse(code = 500, message = "Unexpected error occurred while updating the quotas.",
+                    response = ApiError.class)
+    })
+    public void updateQuotas(
+            @Suspended AsyncResponse asyncResponse,
+            @PathParam("id") String id,
+            @ApiParam(required = true) Map<String, Double> quotas
+    ) {
+        String problem = validateQuotas(quotas);
+        if (problem != null) {
+            asyncResponse.resume(badRequest(new ApiError(problem)));
+            return;
+        }
+        metricsService.updateTenantQuotas(id, quotas).subscribe(
+                aVoid -> {
+                },
+                error -> asyncResponse.resume(serverError(error)),
+                () -> {
+                    quotaManager.updateQuotas(id, quotas);
+                    asyncResponse.resume(Response.ok().build());
+                }
+        );
+    }
+
+    private static String validateQuotas(Map<String, Double> quotas) {
+        if (quotas == null) {
+            return "Quotas are missing";
+        }
+        for (Map.Entry<String, Double> entry : quotas.entrySet()) {
+            if (Quota.fromName(entry.getKey()) == null) {
+                return "Unknown quota [" + entry.getKey() + "]";
+            }
+            if (entry.getValue() == null || entry.getValue() < 0) {
+                return "Invalid rate [" + entry.getValue() + "] for quota [" + entry.getKey() + "]";
+            }
+        }
+        return null;
+    }
+
     @GET
     @ApiOperation(value = "Returns a list of tenants.", response = TenantDefinition.class, responseContainer = "List")
     @ApiResponses(value = {
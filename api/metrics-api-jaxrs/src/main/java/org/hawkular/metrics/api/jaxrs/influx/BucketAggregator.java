@@ -0,0 +1,264 @@
+/*
+ * Copyright 2014-2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.metrics.api.jaxrs.influx;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+
+import org.apache.commons.math3.stat.descriptive.rank.PSquarePercentile;
+import org.hawkular.metrics.api.jaxrs.influx.query.parse.definition.FunctionArgument;
+import org.hawkular.metrics.api.jaxrs.influx.query.parse.definition.NumberFunctionArgument;
+import org.hawkular.metrics.api.jaxrs.influx.query.validation.AggregationFunction;
+import org.hawkular.metrics.model.Buckets;
+import org.hawkular.metrics.model.DataPoint;
+
+/**
+ * Applies an Influx aggregation function to data points as they are read, one bucket at a time.
+ * <p>
+ * Each bucket only keeps the state its function needs: running sums, extremes and the newest and oldest points for the
+ * simple functions, Welford's running variance for {@code stddev}, a P² estimate for {@code median} and
+ * {@code percentile} (the estimator of the core bucketed stats), value counts for {@code mode} and {@code histogram},
+ * and at most {@code n} points for {@code top} and {@code bottom}. Memory therefore depends on the number of buckets,
+ * not on the number of points in the queried range.
+ * <p>
+ * Results do not depend on the order in which points are added. They match those of a list sorted by descending
+ * timestamp: {@code first} is the newest point of a bucket, {@code last} the oldest, and a bucket is reported at the
+ * timestamp of its newest point.
+ */
+final class BucketAggregator {
+    private static final Comparator<DataPoint<Double>> BY_TIMESTAMP = (p1, p2) -> Long.compare(p1.getTimestamp(),
+            p2.getTimestamp());
+
+    private final AggregationFunction function;
+    private final double argument;
+    private final Buckets buckets;
+    private final Map<Integer, Bucket> bucketsByIndex = new TreeMap<>();
+
+    /**
+     * @param aggregationFunction the name of the function, as found in the query
+     * @param aggregationFunctionArguments the arguments of the function; the second one is the percentile for
+     *                                     {@code percentile} and the number of points for {@code top} and
+     *                                     {@code bottom}
+     * @param buckets the bucket configuration of the query
+     * @throws IllegalArgumentException if the function is not supported
+     */
+    BucketAggregator(String aggregationFunction, List<FunctionArgument> aggregationFunctionArguments,
+            Buckets buckets) {
+        this.function = AggregationFunction.findByName(aggregationFunction);
+        if (function == null) {
+            throw new IllegalArgumentException("Unsupported aggregation function: " + aggregationFunction);
+        }
+        if (function == AggregationFunction.PERCENTILE || function == AggregationFunction.TOP
+                || function == AggregationFunction.BOTTOM) {
+            this.argument = ((NumberFunctionArgument) aggregationFunctionArguments.get(1)).getDoubleValue();
+        } else {
+            this.argument = 0;
+        }
+        this.buckets = buckets;
+    }
+
+    void add(DataPoint<? extends Number> dataPoint) {
+        int index = (int) ((dataPoint.getTimestamp() - buckets.getStart()) / buckets.getStep());
+        Bucket bucket = bucketsByIndex.get(index);
+        if (bucket == null) {
+            bucket = new Bucket();
+            bucketsByIndex.put(index, bucket);
+        }
+        bucket.add(dataPoint.getTimestamp(), dataPoint.getValue().doubleValue());
+    }
+
+    /**
+     * @return the aggregated points, bucket after bucket in ascending time order
+     */
+    List<DataPoint<Double>> getResult() {
+        List<DataPoint<Double>> result = new ArrayList<>(bucketsByIndex.size());
+        bucketsByIndex.values().forEach(bucket -> bucket.addResult(result));
+        return result;
+    }
+
+    private final class Bucket {
+        private long count;
+        private double sum;
+        private double min = Double.MAX_VALUE;
+        private double max = -Double.MAX_VALUE;
+        private DataPoint<Double> newest;
+        private DataPoint<Double> oldest;
+        private double mean;
+        private double m2;
+        private PSquarePercentile percentile;
+        private Map<Double, ValueCount> valueCounts;
+        private PriorityQueue<DataPoint<Double>> selected;
+
+        void add(long timestamp, double value) {
+            count++;
+            if (newest == null || timestamp > newest.getTimestamp()) {
+                newest = new DataPoint<>(timestamp, value);
+            }
+            if (oldest == null || timestamp < oldest.getTimestamp()) {
+                oldest = new DataPoint<>(timestamp, value);
+            }
+            switch (function) {
+            case MEAN:
+            case SUM:
+                sum += value;
+                break;
+            case MAX:
+                max = Math.max(max, value);
+                break;
+            case MIN:
+                min = Math.min(min, value);
+                break;
+            case MEDIAN:
+            case PERCENTILE:
+                if (percentile == null) {
+                    percentile = new PSquarePercentile(function == AggregationFunction.MEDIAN ? 50.0 : argument);
+                }
+                percentile.increment(value);
+                break;
+            case TOP:
+            case BOTTOM:
+                select(new DataPoint<>(timestamp, value));
+                break;
+            case HISTOGRAM:
+            case MODE:
+                if (valueCounts == null) {
+                    valueCounts = new HashMap<>();
+                }
+                ValueCount valueCount = valueCounts.get(value);
+                if (valueCount == null) {
+                    valueCounts.put(value, new ValueCount(timestamp));
+                } else {
+                    valueCount.count++;
+                    valueCount.newestTimestamp = Math.max(valueCount.newestTimestamp, timestamp);
+                }
+                break;
+            case STDDEV:
+                double delta = value - mean;
+                mean += delta / count;
+                m2 += delta * (value - mean);
+                break;
+            default:
+            }
+        }
+
+        /**
+         * Keeps the newest points for {@code top} and the oldest ones for {@code bottom}.
+         */
+        private void select(DataPoint<Double> dataPoint) {
+            int limit = (int) argument;
+            if (limit <= 0) {
+                return;
+            }
+            if (selected == null) {
+                // The head of the queue is the point evicted first
+                selected = new PriorityQueue<>(Math.min(limit, 64),
+                        function == AggregationFunction.TOP ? BY_TIMESTAMP : BY_TIMESTAMP.reversed());
+            }
+            selected.add(dataPoint);
+            if (selected.size() > limit) {
+                selected.poll();
+            }
+        }
+
+        void addResult(List<DataPoint<Double>> result) {
+            double value;
+            switch (function) {
+            case MEAN:
+                value = sum / count;
+                break;
+            case MAX:
+                value = max;
+                break;
+            case MIN:
+                value = min;
+                break;
+            case SUM:
+                value = sum;
+                break;
+            case COUNT:
+                value = count;
+                break;
+            case FIRST:
+                value = newest.getValue();
+                break;
+            case LAST:
+                value = oldest.getValue();
+                break;
+            case DIFFERENCE:
+                value = oldest.getValue() - newest.getValue();
+                break;
+            case DERIVATIVE:
+                long seconds = (oldest.getTimestamp() - newest.getTimestamp()) / 1000;
+                value = (oldest.getValue() - newest.getValue()) / (double) seconds;
+                break;
+            case MEDIAN:
+            case PERCENTILE:
+                value = percentile.getResult();
+                break;
+            case TOP:
+            case BOTTOM:
+                if (selected != null) {
+                    List<DataPoint<Double>> points = new ArrayList<>(selected);
+                    points.sort(function == AggregationFunction.TOP ? BY_TIMESTAMP.reversed() : BY_TIMESTAMP);
+                    result.addAll(points);
+                }
+                return;
+            case HISTOGRAM:
+            case MODE:
+                value = mode();
+                break;
+            case STDDEV:
+                value = Math.sqrt(m2 / (count - 1));
+                break;
+            default:
+                throw new IllegalArgumentException("Unsupported aggregation function: " + function);
+            }
+            result.add(new DataPoint<>(newest.getTimestamp(), value));
+        }
+
+        /**
+         * @return the most frequent value; on a tie, the one which occurs the latest
+         */
+        private double mode() {
+            double mode = 0.0;
+            ValueCount modeCount = null;
+            for (Map.Entry<Double, ValueCount> entry : valueCounts.entrySet()) {
+                ValueCount valueCount = entry.getValue();
+                if (modeCount == null || valueCount.count > modeCount.count || (valueCount.count == modeCount.count
+                        && valueCount.newestTimestamp > modeCount.newestTimestamp)) {
+                    mode = entry.getKey();
+                    modeCount = valueCount;
+                }
+            }
+            return mode;
+        }
+    }
+
+    private static final class ValueCount {
+        private int count = 1;
+        private long newestTimestamp;
+
+        ValueCount(long newestTimestamp) {
+            this.newestTimestamp = newestTimestamp;
+        }
+    }
+}
@@ -26,6 +26,7 @@ import static javax.ws.rs.core.Response.Status.BAD_REQUEST;
 import static javax.ws.rs.core.Response.Status.INTERNAL_SERVER_ERROR;
 import static javax.ws.rs.core.Response.Status.NOT_FOUND;
 
+import static org.hawkular.metrics.api.jaxrs.config.ConfigurationKey.INFLUX_MAX_CONCURRENT_SERIES;
 import static org.hawkular.metrics.core.service.MetricTypeFilter.COUNTER_FILTER;
 import static org.hawkular.metrics.core.service.MetricTypeFilter.GAUGE_FILTER;
 import static org.hawkular.metrics.model.MetricType.COUNTER;
@@ -33,14 +34,12 @@ import static org.hawkular.metrics.model.MetricType.GAUGE;
 
 import java.util.ArrayList;
 import java.util.EnumSet;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.SortedSet;
-import java.util.TreeSet;
 import java.util.regex.Pattern;
 import java.util.stream.Stream;
 
+import javax.annotation.PostConstruct;
 import javax.enterprise.context.ApplicationScoped;
 import javax.inject.Inject;
 import javax.ws.rs.Consumes;
@@ -57,8 +56,10 @@ import javax.ws.rs.core.Response.ResponseBuilder;
 import javax.ws.rs.core.Response.Status;
 
 import org.antlr.v4.runtime.tree.ParseTreeWalker;
-import org.apache.commons.math3.stat.descriptive.rank.Percentile;
+import org.hawkular.metrics.api.jaxrs.config.Configurable;
+import org.hawkular.metrics.api.jaxrs.config.ConfigurationProperty;
 import org.hawkular.metrics.api.jaxrs.influx.query.InfluxQueryParseTreeWalker;
+import org.hawkular.metrics.api.jaxrs.influx.query.SelectQueryCache;
 import org.hawkular.metrics.api.jaxrs.influx.query.parse.InfluxQueryParser;
 import org.hawkular.metrics.api.jaxrs.influx.query.parse.InfluxQueryParser.ListSeriesContext;
 import org.hawkular.metrics.api.jaxrs.influx.query.parse.InfluxQueryParser.QueryContext;
@@ -67,21 +68,22 @@ import org.hawkular.metrics.api.jaxrs.influx.query.parse.InfluxQueryParserFactor
 import org.hawkular.metrics.api.jaxrs.influx.query.parse.QueryParseException;
 import org.hawkular.metrics.api.jaxrs.influx.query.parse.definition.AggregatedColumnDefinition;
 import org.hawkular.metrics.api.jaxrs.influx.query.parse.definition.BooleanExpression;
-import org.hawkular.metrics.api.jaxrs.influx.query.parse.definition.FunctionArgument;
+import org.hawkular.metrics.api.jaxrs.influx.query.parse.definition.FromClause;
 import org.hawkular.metrics.api.jaxrs.influx.query.parse.definition.GroupByClause;
 import org.hawkular.metrics.api.jaxrs.influx.query.parse.definition.ListSeriesDefinitionsParser;
-import org.hawkular.metrics.api.jaxrs.influx.query.parse.definition.NumberFunctionArgument;
 import org.hawkular.metrics.api.jaxrs.influx.query.parse.definition.RegularExpression;
 import org.hawkular.metrics.api.jaxrs.influx.query.parse.definition.SelectQueryDefinitions;
 import org.hawkular.metrics.api.jaxrs.influx.query.parse.definition.SelectQueryDefinitionsParser;
 import org.hawkular.metrics.api.jaxrs.influx.query.parse.type.QueryType;
 import org.hawkular.metrics.api.jaxrs.influx.query.parse.type.QueryTypeVisitor;
 import org.hawkular.metrics.api.jaxrs.influx.query.translate.ToIntervalTranslator;
-import org.hawkular.metrics.api.jaxrs.influx.query.validation.AggregationFunction;
 import org.hawkular.metrics.api.jaxrs.influx.query.validation.IllegalQueryException;
 import org.hawkular.metrics.api.jaxrs.influx.query.validation.QueryValidator;
 import org.hawkular.metrics.api.jaxrs.influx.write.validation.InfluxObjectValidator;
 import org.hawkular.metrics.api.jaxrs.influx.write.validation.InvalidObjectException;
+import org.hawkular.metrics.api.jaxrs.log.RestLogger;
+import org.hawkular.metrics.api.jaxrs.log.RestLogging;
+import org.hawkular.metrics.api.jaxrs.quota.QuotaManager;
 import org.hawkular.metrics.core.service.MetricsService;
 import org.hawkular.metrics.core.service.Order;
 import org.hawkular.metrics.model.Buckets;
@@ -89,7 +91,6 @@ import org.hawkular.metrics.model.DataPoint;
 import org.hawkular.metrics.model.Metric;
 import org.hawkular.metrics.model.MetricId;
 import org.hawkular.metrics.model.MetricType;
-import org.jboss.logging.Logger;
 import org.joda.time.Instant;
 import org.joda.time.Interval;
 
@@ -109,7 +110,7 @@ import rx.Observer;
 @Produces(APPLICATION_JSON)
 @ApplicationScoped
 public class InfluxSeriesHandler {
-    private static final Logger log = Logger.getLogger(InfluxSeriesHandler.class);
+    private static final RestLogger log = RestLogging.getRestLogger(InfluxSeriesHandler.class);
 
     private static final EnumSet<InfluxTimeUnit> TIME_PRECISION_ALLOWED =
             EnumSet.of(InfluxTimeUnit.SECONDS, InfluxTimeUnit.MILLISECONDS, InfluxTimeUnit.MICROSECONDS);
@@ -130,6 +131,31 @@ public class InfluxSeriesHandler {
     QueryValidator queryValidator;
     @Inject
     ToIntervalTranslator toIntervalTranslator;
+    @Inject
+    QuotaManager quotaManager;
+    @Inject
+    SelectQueryCache selectQueryCache;
+
+    @Inject
+    @Configurable
+    @ConfigurationProperty(INFLUX_MAX_CONCURRENT_SERIES)
+    String maxConcurrentSeriesConfig;
+
+    private int maxConcurrentSeries;
+
+    @PostConstruct
+    void init() {
+        try {
+            maxConcurrentSeries = Integer.parseInt(maxConcurrentSeriesConfig);
+            if (maxConcurrentSeries < 1) {
+                throw new NumberFormatException();
+            }
+        } catch (NumberFormatException e) {
+            log.warnInvalidConfigValue(maxConcurrentSeriesConfig, INFLUX_MAX_CONCURRENT_SERIES.toString(),
+                    INFLUX_MAX_CONCURRENT_SERIES.defaultValue());
+            maxConcurrentSeries = Integer.parseInt(INFLUX_MAX_CONCURRENT_SERIES.defaultValue());
+        }
+    }
 
     @POST
     @Consumes(APPLICATION_JSON)
@@ -159,6 +185,7 @@ public class InfluxSeriesHandler {
         Map<MetricType<?>, List<Metric<?>>> metrics = influxObjects.stream()
                 .map(influxObject -> influxToMetrics(tenantId, influxObject, timePrecision))
                 .collect(groupingBy(metric -> metric.getMetricId().getType()));
+        metrics.forEach((type, typeMetrics) -> quotaManager.acquireDataPoints(tenantId, type, typeMetrics));
 
         Observable<Void> result = Observable.empty();
         if (metrics.containsKey(GAUGE)) {
@@ -226,6 +253,12 @@ public class InfluxSeriesHandler {
             return;
         }
 
+        SelectQueryDefinitions cachedDefinitions = selectQueryCache.get(queryString);
+        if (cachedDefinitions != null) {
+            select(asyncResponse, tenantId, cachedDefinitions, timePrecision);
+            return;
+        }
+
         InfluxQueryParser queryParser = parserFactory.newInstanceForQuery(queryString);
 
         QueryContext queryContext;
@@ -243,7 +276,7 @@ public class InfluxSeriesHandler {
             listSeries(asyncResponse, tenantId, queryContext.listSeries());
             break;
         case SELECT:
-            select(asyncResponse, tenantId, queryContext.selectQuery(), timePrecision);
+            select(asyncResponse, tenantId, queryString, queryContext.selectQuery(), timePrecision);
             break;
         default:
             asyncResponse.resume(errorResponse(BAD_REQUEST, "Query not yet supported: " + queryString));
@@ -251,21 +284,16 @@ public class InfluxSeriesHandler {
     }
 
     private void listSeries(AsyncResponse asyncResponse, String tenantId, ListSeriesContext listSeriesContext) {
+        quotaManager.acquireQuery(tenantId, 1);
         ListSeriesDefinitionsParser definitionsParser = new ListSeriesDefinitionsParser();
         parseTreeWalker.walk(definitionsParser, listSeriesContext);
 
-        RegularExpression regularExpression = definitionsParser.getRegularExpression();
-        final Pattern pattern;
-        if (regularExpression != null) {
-            int flag = regularExpression.isCaseSensitive() ? 0 : Pattern.CASE_INSENSITIVE;
-            try {
-                pattern = Pattern.compile(regularExpression.getExpression(), flag);
-            } catch (Exception e) {
-                asyncResponse.resume(errorResponse(BAD_REQUEST, Throwables.getRootCause(e).getMessage()));
-                return;
-            }
-        } else {
-            pattern = null;
+        Pattern pattern;
+        try {
+            pattern = toPattern(definitionsParser.getRegularExpression());
+        } catch (Exception e) {
+            asyncResponse.resume(errorResponse(BAD_REQUEST, Throwables.getRootCause(e).getMessage()));
+            return;
         }
 
         Observable.merge(metricsService.findMetrics(tenantId, GAUGE), metricsService.findMetrics(tenantId, COUNTER))
@@ -295,8 +323,8 @@ public class InfluxSeriesHandler {
         return ImmutableList.of(builder.createInfluxObject());
     }
 
-    private void select(AsyncResponse asyncResponse, String tenantId, SelectQueryContext selectQueryContext,
-            InfluxTimeUnit timePrecision) {
+    private void select(AsyncResponse asyncResponse, String tenantId, String queryString,
+            SelectQueryContext selectQueryContext, InfluxTimeUnit timePrecision) {
 
         SelectQueryDefinitionsParser definitionsParser = new SelectQueryDefinitionsParser();
         parseTreeWalker.walk(definitionsParser, selectQueryContext);
@@ -309,11 +337,22 @@ public class InfluxSeriesHandler {
             asyncResponse.resume(errorResponse(BAD_REQUEST, "Illegal query: " + e.getMessage()));
             return;
         }
+        selectQueryCache.put(queryString, queryDefinitions, definitionsParser.getWhereClauseParameters());
+
+        select(asyncResponse, tenantId, queryDefinitions, timePrecision);
+    }
 
-        String influxObjectName = queryDefinitions.getFromClause().getName();
-        MetricTypeAndName metricTypeAndName = new MetricTypeAndName(influxObjectName);
-        MetricType<?> metricType = metricTypeAndName.getType();
-        String metricName = metricTypeAndName.getName();
+    private void select(AsyncResponse asyncResponse, String tenantId, SelectQueryDefinitions queryDefinitions,
+            InfluxTimeUnit timePrecision) {
+
+        FromClause fromClause = queryDefinitions.getFromClause();
+        Pattern pattern;
+        try {
+            pattern = toPattern(fromClause.getRegularExpression());
+        } catch (Exception e) {
+            asyncResponse.resume(errorResponse(BAD_REQUEST, Throwables.getRootCause(e).getMessage()));
+            return;
+        }
 
         BooleanExpression whereClause = queryDefinitions.getWhereClause();
         Interval timeInterval;
@@ -326,6 +365,9 @@ public class InfluxSeriesHandler {
             asyncResponse.resume(errorResponse(BAD_REQUEST, "Invalid time interval"));
             return;
         }
+        quotaManager.acquireQuery(tenantId, QuotaManager.queryCost(timeInterval.getStartMillis(),
+                timeInterval.getEndMillis(), fromClause.getNames().size()));
+
         String columnName = getColumnName(queryDefinitions);
         Buckets buckets;
         try {
@@ -335,83 +377,131 @@ public class InfluxSeriesHandler {
             return;
         }
 
-        metricsService.idExists(new MetricId<>(tenantId, metricType, metricName)).flatMap(idExists -> {
-            if (idExists != Boolean.TRUE) {
-                return Observable.just(null);
-            }
-            long start = timeInterval.getStartMillis();
-            long end = timeInterval.getEndMillis();
-            MetricId<? extends Number> metricId;
-            if (metricType == GAUGE) {
-                metricId = new MetricId<>(tenantId, GAUGE, metricName);
-                return metricsService.findDataPoints(metricId, start, end, 0, Order.DESC).toList();
-            }
-            if (metricType == COUNTER) {
-                metricId = new MetricId<>(tenantId, COUNTER, metricName);
-                return metricsService.findDataPoints(metricId, start, end, 0, Order.DESC)
-                        .toSortedList((dataPoint, dataPoint2) -> {
-                    return Long.compare(dataPoint2.getTimestamp(), dataPoint.getTimestamp());
-                });
-            }
-            return Observable.just(null);
-        }).map(inputMetrics -> {
-            if (inputMetrics == null) {
-                return null;
-            }
+        findSeries(tenantId, fromClause, pattern)
+                .flatMap(series -> findSeriesDataPoints(series, queryDefinitions, timeInterval, buckets)
+                        .map(dataPoints -> toInfluxObject(series.getInfluxObjectName(), columnName, dataPoints,
+                                queryDefinitions, timePrecision)), maxConcurrentSeries)
+                .toSortedList((object1, object2) -> compareSeries(fromClause, object1, object2))
+                .subscribe(objects -> {
+                    if (objects.isEmpty() && fromClause.isSingleSeries()) {
+                        String msg = "Metric with id [" + fromClause.getName() + "] not found. ";
+                        asyncResponse.resume(errorResponse(NOT_FOUND, msg));
+                    } else {
+                        ResponseBuilder builder = Response.ok(objects);
+                        asyncResponse.resume(builder.build());
+                    }
+                }, asyncResponse::resume);
+    }
 
-            List<? extends DataPoint<? extends Number>> metrics = inputMetrics;
-            if (buckets != null) {
-                AggregatedColumnDefinition aggregatedColumnDefinition =
-                        (AggregatedColumnDefinition) queryDefinitions
-                                .getColumnDefinitions().get(0);
-                metrics = applyMapping(
-                        aggregatedColumnDefinition.getAggregationFunction(),
-                        aggregatedColumnDefinition.getAggregationFunctionArguments(),
-                        inputMetrics,
-                        buckets
-                );
-            }
+    private static Pattern toPattern(RegularExpression regularExpression) {
+        if (regularExpression == null) {
+            return null;
+        }
+        int flag = regularExpression.isCaseSensitive() ? 0 : Pattern.CASE_INSENSITIVE;
+        return Pattern.compile(regularExpression.getExpression(), flag);
+    }
 
-            if (!queryDefinitions.isOrderDesc()) {
-                metrics = Lists.reverse(metrics);
-            }
+    /**
+     * Resolves the series of the from clause through the metrics index. Named series are looked up one by one, missing
+     * ones are skipped. A regular expression is matched against the names of gauges and counters, which are then
+     * named like in a list series query.
+     */
+    private Observable<Series> findSeries(String tenantId, FromClause fromClause, Pattern pattern) {
+        if (pattern == null) {
+            return Observable.from(fromClause.getNames())
+                    .distinct()
+                    .flatMap(influxObjectName -> {
+                        MetricTypeAndName metricTypeAndName = new MetricTypeAndName(influxObjectName);
+                        MetricId<?> metricId = new MetricId<>(tenantId, metricTypeAndName.getType(),
+                                metricTypeAndName.getName());
+                        return metricsService.findMetric(metricId)
+                                .map(metric -> new Series(influxObjectName, metricId));
+                    }, maxConcurrentSeries);
+        }
+        Observable<Metric<?>> metrics = Observable.merge(metricsService.findMetrics(tenantId, GAUGE),
+                metricsService.findMetrics(tenantId, COUNTER));
+        return metrics.filter(metric -> pattern.matcher(metric.getMetricId().getName()).find())
+                .map(metric -> {
+                    MetricId<?> metricId = metric.getMetricId();
+                    String prefix = metricId.getType() == COUNTER ? COUNTER_PREFIX : GAUGE_PREFIX;
+                    return new Series(prefix + metricId.getName(), metricId);
+                });
+    }
 
-            if (queryDefinitions.getLimitClause() != null) {
-                metrics = metrics.subList(0, queryDefinitions.getLimitClause().getLimit());
-            }
+    @SuppressWarnings("unchecked")
+    private Observable<? extends List<? extends DataPoint<? extends Number>>> findSeriesDataPoints(Series series,
+            SelectQueryDefinitions queryDefinitions, Interval timeInterval, Buckets buckets) {
+
+        MetricId<?> metricId = series.getMetricId();
+        long start = timeInterval.getStartMillis();
+        long end = timeInterval.getEndMillis();
+        Observable<? extends DataPoint<? extends Number>> dataPoints;
+        if (metricId.getType() == GAUGE) {
+            dataPoints = metricsService.findDataPoints((MetricId<Double>) metricId, start, end, 0, Order.DESC);
+        } else if (metricId.getType() == COUNTER) {
+            dataPoints = metricsService.findDataPoints((MetricId<Long>) metricId, start, end, 0, Order.DESC);
+        } else {
+            return Observable.empty();
+        }
+        if (buckets == null && metricId.getType() == GAUGE) {
+            return dataPoints.toList();
+        }
+        if (buckets == null) {
+            return dataPoints.toSortedList((dataPoint, dataPoint2) -> {
+                return Long.compare(dataPoint2.getTimestamp(), dataPoint.getTimestamp());
+            });
+        }
+        AggregatedColumnDefinition aggregatedColumnDefinition =
+                (AggregatedColumnDefinition) queryDefinitions.getColumnDefinitions().get(0);
+        return dataPoints.collect(() -> new BucketAggregator(aggregatedColumnDefinition.getAggregationFunction(),
+                aggregatedColumnDefinition.getAggregationFunctionArguments(), buckets), BucketAggregator::add)
+                .map(BucketAggregator::getResult);
+    }
 
-            List<InfluxObject> objects = new ArrayList<>(1);
+    private static InfluxObject toInfluxObject(String influxObjectName, String columnName,
+            List<? extends DataPoint<? extends Number>> inputMetrics, SelectQueryDefinitions queryDefinitions,
+            InfluxTimeUnit timePrecision) {
 
-            List<String> columns = new ArrayList<>(2);
-            columns.add("time");
-            columns.add(columnName);
+        List<? extends DataPoint<? extends Number>> metrics = inputMetrics;
 
-            InfluxObject.Builder builder = new InfluxObject.Builder(influxObjectName, columns)
-                    .withForeseenPoints(metrics.size());
+        if (!queryDefinitions.isOrderDesc()) {
+            metrics = Lists.reverse(metrics);
+        }
 
-            for (DataPoint<? extends Number> m : metrics) {
-                List<Object> data = new ArrayList<>();
-                if (timePrecision == null) {
-                    data.add(m.getTimestamp());
-                } else {
-                    data.add(timePrecision.convert(m.getTimestamp(), InfluxTimeUnit.MILLISECONDS));
-                }
-                data.add(m.getValue());
-                builder.addPoint(data);
-            }
+        if (queryDefinitions.getLimitClause() != null) {
+            metrics = metrics.subList(0, Math.min(metrics.size(), queryDefinitions.getLimitClause().getLimit()));
+        }
+
+        List<String> columns = new ArrayList<>(2);
+        columns.add("time");
+        columns.add(columnName);
 
-            objects.add(builder.createInfluxObject());
+        InfluxObject.Builder builder = new InfluxObject.Builder(influxObjectName, columns)
+                .withForeseenPoints(metrics.size());
 
-            return objects;
-        }).subscribe(objects -> {
-            if (objects == null) {
-                String msg = "Metric with id [" + influxObjectName + "] not found. ";
-                asyncResponse.resume(errorResponse(NOT_FOUND, msg));
+        for (DataPoint<? extends Number> m : metrics) {
+            List<Object> data = new ArrayList<>();
+            if (timePrecision == null) {
+                data.add(m.getTimestamp());
             } else {
-                ResponseBuilder builder = Response.ok(objects);
-                asyncResponse.resume(builder.build());
+                data.add(timePrecision.convert(m.getTimestamp(), InfluxTimeUnit.MILLISECONDS));
             }
-        }, asyncResponse::resume);
+            data.add(m.getValue());
+            builder.addPoint(data);
+        }
+
+        return builder.createInfluxObject();
+    }
+
+    /**
+     * Series selected by name are returned in the order of the from clause, others by name.
+     */
+    private static int compareSeries(FromClause fromClause, InfluxObject object1, InfluxObject object2) {
+        if (fromClause.getRegularExpression() == null) {
+            List<String> names = fromClause.getNames();
+            return Integer.compare(names.indexOf(object1.getName()), names.indexOf(object2.getName()));
+        }
+        return object1.getName().compareTo(object2.getName());
     }
 
     private String getColumnName(SelectQueryDefinitions queryDefinitions) {
@@ -432,164 +522,6 @@ public class InfluxSeriesHandler {
         return Buckets.fromStep(timeInterval.getStartMillis(), timeInterval.getEndMillis(), bucketSize);
     }
 
-    private List<? extends DataPoint<? extends Number>> applyMapping(
-            String aggregationFunction,
-            List<FunctionArgument> aggregationFunctionArguments,
-            List<? extends DataPoint<? extends Number>> in,
-            Buckets buckets
-    ) {
-        Map<Integer, List<DataPoint<Double>>> tmpMap = new HashMap<>(buckets.getCount());
-
-        // Bucketize
-        for (DataPoint<? extends Number> rnm : in) {
-            int pos = (int) ((rnm.getTimestamp() - buckets.getStart()) / buckets.getStep());
-            List<DataPoint<Double>> bucket = tmpMap.get(pos);
-            if (bucket == null) {
-                bucket = new ArrayList<>();
-                tmpMap.put(pos, bucket);
-            }
-            bucket.add(new DataPoint<>(rnm.getTimestamp(), rnm.getValue().doubleValue()));
-        }
-
-        List<DataPoint<Double>> out = new ArrayList<>(buckets.getCount());
-        // Apply mapping to buckets to create final value
-        SortedSet<Integer> keySet = new TreeSet<>(tmpMap.keySet());
-        for (Integer pos : keySet) {
-            List<DataPoint<Double>> list = tmpMap.get(pos);
-            double retVal = 0.0;
-            boolean isSingleValue = true;
-            if (list != null) {
-                int size = list.size();
-                DataPoint<Double> lastElementInList = list.get(size - 1);
-                DataPoint<Double> firstElementInList = list.get(0);
-                AggregationFunction function = AggregationFunction.findByName(aggregationFunction);
-                switch (function) {
-                case MEAN:
-                    for (DataPoint<Double> rnm : list) {
-                        retVal += rnm.getValue();
-                    }
-                    log.debugf("Applying mean mapping, total = %f, size = %d", retVal, size);
-                    retVal /= size;
-                    break;
-                case MAX:
-                    retVal = -Double.MAX_VALUE;
-                    for (DataPoint<Double> rnm : list) {
-                        if (rnm.getValue() > retVal) {
-                            retVal = rnm.getValue();
-                        }
-                    }
-                    break;
-                case MIN:
-                    retVal = Double.MAX_VALUE;
-                    for (DataPoint<Double> rnm : list) {
-                        if (rnm.getValue() < retVal) {
-                            retVal = rnm.getValue();
-                        }
-                    }
-                    break;
-                case SUM:
-                    for (DataPoint<Double> rnm : list) {
-                        retVal += rnm.getValue();
-                    }
-                    break;
-                case COUNT:
-                    retVal = size;
-                    break;
-                case FIRST:
-                    if (!list.isEmpty()) {
-                        retVal = firstElementInList.getValue();
-                    }
-                    break;
-                case LAST:
-                    if (!list.isEmpty()) {
-                        retVal = lastElementInList.getValue();
-                    }
-                    break;
-                case DIFFERENCE:
-                    if (!list.isEmpty()) {
-                        retVal = (lastElementInList.getValue()) - (firstElementInList.getValue());
-                    }
-                    break;
-                case DERIVATIVE:
-                    if (!list.isEmpty()) {
-                        double y = (lastElementInList.getValue()) - (firstElementInList.getValue());
-                        long t = (lastElementInList.getTimestamp() - (firstElementInList.getTimestamp())) / 1000; // sec
-                        retVal = y / (double) t;
-                    }
-                    break;
-                case MEDIAN:
-                    retVal = quantil(list, 50.0);
-                    break;
-                case PERCENTILE:
-                    NumberFunctionArgument argument = (NumberFunctionArgument) aggregationFunctionArguments.get(1);
-                    retVal = quantil(list, argument.getDoubleValue());
-                    break;
-                case TOP:
-                    isSingleValue = false;
-                    argument = (NumberFunctionArgument) aggregationFunctionArguments.get(1);
-                    int numberOfTopElement = list.size() < (int) argument.getDoubleValue() ?
-                            list.size() : (int) argument.getDoubleValue();
-                    for (int elementPos = 0; elementPos < numberOfTopElement; elementPos++) {
-                        out.add(list.get(elementPos));
-                    }
-                    break;
-                case BOTTOM:
-                    isSingleValue = false;
-                    argument = (NumberFunctionArgument) aggregationFunctionArguments.get(1);
-                    int numberOfBottomElement = list.size() < (int) argument.getDoubleValue() ?
-                            list.size() : (int) argument.getDoubleValue();
-                    for (int elementPos = 0; elementPos < numberOfBottomElement; elementPos++) {
-                        out.add(list.get(list.size() - 1 - elementPos));
-                    }
-                    break;
-                case HISTOGRAM:
-                case MODE:
-                    int maxCount = 0;
-                    for (DataPoint<Double> rnm : list) {
-                        int count = 0;
-                        for (DataPoint<Double> rnm2 : list) {
-                            if (rnm.getValue().doubleValue() == rnm2.getValue().doubleValue()) {
-                                ++count;
-                            }
-                        }
-                        if (count > maxCount) {
-                            maxCount = count;
-                            retVal = rnm.getValue();
-                        }
-                    }
-                    break;
-                case STDDEV:
-                    double meanValue = 0.0;
-                    double sd = 0.0;
-                    for (DataPoint<Double> rnm : list) {
-                        meanValue += rnm.getValue();
-                    }
-                    meanValue /= size;
-                    for (DataPoint<Double> rnm : list) {
-                        sd += Math.pow(rnm.getValue() - meanValue, 2) / (size - 1);
-                    }
-                    retVal = Math.sqrt(sd);
-                    break;
-                default:
-                    log.warnf("Mapping of '%s' function not supported yet", function);
-                }
-                if (isSingleValue) {
-                    out.add(new DataPoint<>(firstElementInList.getTimestamp(), retVal));
-                }
-            }
-        }
-
-        return out;
-    }
-
-    private double quantil(List<DataPoint<Double>> in, double quantil) {
-        double[] values = new double[in.size()];
-        for (int i = 0; i < in.size(); i++) {
-            values[i] = in.get(i).getValue();
-        }
-        return new Percentile(quantil).evaluate(values);
-    }
-
     private Response errorResponse(Status status, String message) {
         return Response.status(status).entity(message).type(TEXT_PLAIN_TYPE).build();
     }
@@ -640,6 +572,24 @@ public class InfluxSeriesHandler {
         }
     }
 
+    private static class Series {
+        private final String influxObjectName;
+        private final MetricId<?> metricId;
+
+        public Series(String influxObjectName, MetricId<?> metricId) {
+            this.influxObjectName = influxObjectName;
+            this.metricId = metricId;
+        }
+
+        public String getInfluxObjectName() {
+            return influxObjectName;
+        }
+
+        public MetricId<?> getMetricId() {
+            return metricId;
+        }
+    }
+
     private static class MetricTypeAndName {
         private final MetricType<?> type;
         private final String name;
@@ -0,0 +1,178 @@
+/*
+ * Copyright 2014-2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.metrics.api.jaxrs.influx;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import static javax.ws.rs.core.MediaType.TEXT_PLAIN_TYPE;
+import static javax.ws.rs.core.MediaType.WILDCARD;
+import static javax.ws.rs.core.Response.Status.BAD_REQUEST;
+import static javax.ws.rs.core.Response.Status.INTERNAL_SERVER_ERROR;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+import javax.ws.rs.Consumes;
+import javax.ws.rs.DefaultValue;
+import javax.ws.rs.POST;
+import javax.ws.rs.Path;
+import javax.ws.rs.PathParam;
+import javax.ws.rs.QueryParam;
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.container.Suspended;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.Response.Status;
+
+import org.hawkular.metrics.api.jaxrs.bulk.BulkImporter;
+import org.hawkular.metrics.api.jaxrs.bulk.LineProtocolParser;
+import org.hawkular.metrics.api.jaxrs.quota.QuotaManager;
+import org.hawkular.metrics.core.service.MetricsService;
+import org.hawkular.metrics.model.DataPoint;
+import org.hawkular.metrics.model.Metric;
+import org.hawkular.metrics.model.MetricId;
+import org.hawkular.metrics.model.MetricType;
+import org.jboss.logging.Logger;
+
+import com.google.common.base.Throwables;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+import rx.Observable;
+
+/**
+ * Write endpoint for the InfluxDB line protocol, as sent by Telegraf and other collectors to {@code /write}.
+ * <p>
+ * The body may be gzip-compressed. Lines are parsed as they are read, see {@link LineProtocolParser}; the tags of a
+ * line are part of its metric names, so that series which only differ by their tags are kept apart, and they are also
+ * set as metric tags the first time this node sees a series. Data points are grouped by metric and stored with one
+ * batch per metric type.
+ * <p>
+ * As with InfluxDB, a successful write gets a 204 response. When some lines are invalid, the other ones are stored and
+ * the response is a 400 naming the first invalid line.
+ */
+@Path("/db/{tenantId}/write")
+@ApplicationScoped
+public class InfluxWriteHandler {
+    private static final Logger log = Logger.getLogger(InfluxWriteHandler.class);
+
+    private static final int TAGGED_SERIES_CACHE_SIZE = 100_000;
+
+    @Inject
+    MetricsService metricsService;
+    @Inject
+    QuotaManager quotaManager;
+
+    private final Cache<MetricId<?>, Map<String, String>> taggedSeries = CacheBuilder.newBuilder()
+            .maximumSize(TAGGED_SERIES_CACHE_SIZE)
+            .build();
+
+    @POST
+    @Consumes(WILDCARD)
+    public void write(
+            @Suspended AsyncResponse asyncResponse,
+            @PathParam("tenantId") String tenantId,
+            @DefaultValue("n") @QueryParam("precision") String precision,
+            InputStream body
+    ) {
+        TimeUnit timeUnit = LineProtocolParser.toTimeUnit(precision);
+        if (timeUnit == null) {
+            asyncResponse.resume(errorResponse(BAD_REQUEST, "Invalid precision: " + precision));
+            return;
+        }
+
+        LineProtocolParser parser = new LineProtocolParser(timeUnit, true);
+        Map<MetricId<?>, List<DataPoint<?>>> dataPoints = new LinkedHashMap<>();
+        Map<MetricId<?>, Map<String, String>> newTags = new HashMap<>();
+        int invalidLines = 0;
+        String firstError = null;
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(BulkImporter.decompress(body),
+                UTF_8))) {
+            long lineNumber = 0;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                try {
+                    parser.parse(tenantId, line, (id, tags, dataPoint) -> {
+                        List<DataPoint<?>> metricDataPoints = dataPoints.get(id);
+                        if (metricDataPoints == null) {
+                            metricDataPoints = new ArrayList<>();
+                            dataPoints.put(id, metricDataPoints);
+                            if (!tags.isEmpty() && !tags.equals(taggedSeries.getIfPresent(id))) {
+                                newTags.put(id, tags);
+                            }
+                        }
+                        metricDataPoints.add(dataPoint);
+                    });
+                } catch (IllegalArgumentException e) {
+                    if (invalidLines++ == 0) {
+                        firstError = "line " + lineNumber + ": " + e.getMessage();
+                    }
+                }
+            }
+        } catch (IOException e) {
+            asyncResponse.resume(errorResponse(BAD_REQUEST, "Could not read request: " + e.getMessage()));
+            return;
+        }
+
+        Observable<Void> result = store(tenantId, dataPoints).mergeWith(storeTags(newTags));
+        int invalid = invalidLines;
+        String error = firstError;
+        result.subscribe(aVoid -> {}, t -> {
+            log.tracef(t, "Influx line protocol write error");
+            asyncResponse.resume(errorResponse(INTERNAL_SERVER_ERROR, Throwables.getRootCause(t).getMessage()));
+        }, () -> {
+            if (invalid == 0) {
+                asyncResponse.resume(Response.noContent().build());
+            } else {
+                asyncResponse.resume(errorResponse(BAD_REQUEST, "partial write: " + invalid
+                        + " invalid line(s), first at " + error));
+            }
+        });
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private Observable<Void> store(String tenantId, Map<MetricId<?>, List<DataPoint<?>>> dataPoints) {
+        Map<MetricType<?>, List<Metric<?>>> byType = new HashMap<>();
+        dataPoints.forEach((id, points) -> byType.computeIfAbsent(id.getType(), type -> new ArrayList<>())
+                .add(new Metric(id, points)));
+        byType.forEach((type, metrics) -> quotaManager.acquireDataPoints(tenantId, type, metrics));
+        return Observable.from(byType.entrySet())
+                .flatMap(entry -> metricsService.addDataPoints((MetricType) entry.getKey(),
+                        Observable.from((List) entry.getValue())));
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private Observable<Void> storeTags(Map<MetricId<?>, Map<String, String>> newTags) {
+        return Observable.from(newTags.entrySet())
+                .flatMap(entry -> metricsService.addTags(new Metric(entry.getKey()), entry.getValue())
+                        .doOnCompleted(() -> taggedSeries.put(entry.getKey(), entry.getValue())));
+    }
+
+    private static Response errorResponse(Status status, String message) {
+        return Response.status(status).entity(message).type(TEXT_PLAIN_TYPE).build();
+    }
+}
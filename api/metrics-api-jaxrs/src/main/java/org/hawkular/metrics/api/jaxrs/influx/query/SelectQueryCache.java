@@ -0,0 +1,254 @@
+/*
+ * Copyright 2014-2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.metrics.api.jaxrs.influx.query;
+
+import static org.hawkular.metrics.api.jaxrs.config.ConfigurationKey.INFLUX_QUERY_CACHE_SIZE;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.annotation.PostConstruct;
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+
+import org.antlr.v4.runtime.Token;
+import org.hawkular.metrics.api.jaxrs.config.Configurable;
+import org.hawkular.metrics.api.jaxrs.config.ConfigurationProperty;
+import org.hawkular.metrics.api.jaxrs.influx.query.parse.InfluxQueryLexer;
+import org.hawkular.metrics.api.jaxrs.influx.query.parse.InfluxQueryParserFactory;
+import org.hawkular.metrics.api.jaxrs.influx.query.parse.definition.AndBooleanExpression;
+import org.hawkular.metrics.api.jaxrs.influx.query.parse.definition.BooleanExpression;
+import org.hawkular.metrics.api.jaxrs.influx.query.parse.definition.EqBooleanExpression;
+import org.hawkular.metrics.api.jaxrs.influx.query.parse.definition.GtBooleanExpression;
+import org.hawkular.metrics.api.jaxrs.influx.query.parse.definition.LtBooleanExpression;
+import org.hawkular.metrics.api.jaxrs.influx.query.parse.definition.NeqBooleanExpression;
+import org.hawkular.metrics.api.jaxrs.influx.query.parse.definition.Operand;
+import org.hawkular.metrics.api.jaxrs.influx.query.parse.definition.OrBooleanExpression;
+import org.hawkular.metrics.api.jaxrs.influx.query.parse.definition.SelectQueryDefinitions;
+import org.hawkular.metrics.api.jaxrs.influx.query.parse.definition.WhereClauseParameter;
+import org.hawkular.metrics.api.jaxrs.log.RestLogger;
+import org.hawkular.metrics.api.jaxrs.log.RestLogging;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+/**
+ * Keeps the validated definitions of recent select queries, so that a query sent again is neither parsed nor
+ * validated.
+ * <p>
+ * Dashboards send the same query over and over, only changing the time bounds. Queries are therefore looked up by a
+ * key built from their tokens, in which the literals of the where clause are replaced with placeholders of the same
+ * kind. On a hit, the where clause of the cached definitions is rebuilt with the literals of the new query. Since
+ * placeholders keep the kind of the literal and the sign in front of it, a query which matches a cached one passes
+ * validation as well.
+ * <p>
+ * The cache is bounded by the number of queries, zero disables it. The following metrics are registered:
+ * influx-query-cache-hits, influx-query-cache-misses and influx-query-cache-size.
+ */
+@ApplicationScoped
+public class SelectQueryCache {
+    private static final RestLogger log = RestLogging.getRestLogger(SelectQueryCache.class);
+
+    @Inject
+    InfluxQueryParserFactory parserFactory;
+
+    @Inject
+    MetricRegistry metricRegistry;
+
+    @Inject
+    @Configurable
+    @ConfigurationProperty(INFLUX_QUERY_CACHE_SIZE)
+    String cacheSize;
+
+    private Cache<String, CachedQuery> cache;
+    private Counter hits;
+    private Counter misses;
+
+    @PostConstruct
+    void init() {
+        long maximumSize;
+        try {
+            maximumSize = Long.parseLong(cacheSize);
+        } catch (NumberFormatException e) {
+            log.warnInvalidConfigValue(cacheSize, INFLUX_QUERY_CACHE_SIZE.toString(),
+                    INFLUX_QUERY_CACHE_SIZE.defaultValue());
+            maximumSize = Long.parseLong(INFLUX_QUERY_CACHE_SIZE.defaultValue());
+        }
+        if (maximumSize > 0) {
+            cache = CacheBuilder.newBuilder().maximumSize(maximumSize).build();
+        }
+        hits = metricRegistry.counter("influx-query-cache-hits");
+        misses = metricRegistry.counter("influx-query-cache-misses");
+        metricRegistry.remove("influx-query-cache-size");
+        metricRegistry.register("influx-query-cache-size", (Gauge<Long>) () -> cache == null ? 0 : cache.size());
+    }
+
+    /**
+     * @param queryText the text of an Influx query
+     *
+     * @return the validated definitions of the query, or null if no query like this one is cached
+     */
+    public SelectQueryDefinitions get(String queryText) {
+        if (cache == null) {
+            return null;
+        }
+        NormalizedQuery normalizedQuery = normalize(queryText);
+        CachedQuery cachedQuery = normalizedQuery == null ? null : cache.getIfPresent(normalizedQuery.key);
+        if (cachedQuery == null) {
+            misses.inc();
+            return null;
+        }
+        SelectQueryDefinitions definitions;
+        try {
+            definitions = cachedQuery.bind(normalizedQuery.literals);
+        } catch (RuntimeException e) {
+            // Let the query go through the parser, which reports the invalid literal
+            misses.inc();
+            return null;
+        }
+        hits.inc();
+        return definitions;
+    }
+
+    /**
+     * Caches the definitions of a select query which passed validation.
+     *
+     * @param queryText the text of the query
+     * @param definitions the definitions of the query
+     * @param whereClauseParameters the literals of the where clause, as found by the definitions parser
+     */
+    public void put(String queryText, SelectQueryDefinitions definitions,
+            List<WhereClauseParameter> whereClauseParameters) {
+        if (cache == null) {
+            return;
+        }
+        NormalizedQuery normalizedQuery = normalize(queryText);
+        if (normalizedQuery == null || normalizedQuery.literals.size() != whereClauseParameters.size()) {
+            return;
+        }
+        cache.put(normalizedQuery.key, new CachedQuery(definitions, normalizedQuery.literals, whereClauseParameters));
+    }
+
+    private NormalizedQuery normalize(String queryText) {
+        List<? extends Token> tokens = parserFactory.newInfluxQueryLexer(queryText).getAllTokens();
+        if (tokens.isEmpty() || tokens.get(0).getType() != InfluxQueryLexer.SELECT) {
+            return null;
+        }
+        StringBuilder key = new StringBuilder(queryText.length());
+        List<String> literals = new ArrayList<>();
+        boolean whereClause = false;
+        for (Token token : tokens) {
+            int type = token.getType();
+            if (type == InfluxQueryLexer.WHERE) {
+                whereClause = true;
+            } else if (type == InfluxQueryLexer.GROUP || type == InfluxQueryLexer.LIMIT
+                    || type == InfluxQueryLexer.ORDER) {
+                whereClause = false;
+            }
+            if (whereClause && (type == InfluxQueryLexer.TIMESPAN || type == InfluxQueryLexer.DATE_STRING
+                    || type == InfluxQueryLexer.INT || type == InfluxQueryLexer.FLOAT)) {
+                key.append('?').append(type);
+                literals.add(token.getText());
+            } else {
+                key.append(token.getText());
+            }
+            key.append(' ');
+        }
+        return new NormalizedQuery(key.toString(), literals);
+    }
+
+    private static final class NormalizedQuery {
+        private final String key;
+        private final List<String> literals;
+
+        NormalizedQuery(String key, List<String> literals) {
+            this.key = key;
+            this.literals = literals;
+        }
+    }
+
+    private static final class CachedQuery {
+        private final SelectQueryDefinitions definitions;
+        private final List<String> literals;
+        private final List<WhereClauseParameter> whereClauseParameters;
+
+        CachedQuery(SelectQueryDefinitions definitions, List<String> literals,
+                List<WhereClauseParameter> whereClauseParameters) {
+            this.definitions = definitions;
+            this.literals = literals;
+            this.whereClauseParameters = whereClauseParameters;
+        }
+
+        SelectQueryDefinitions bind(List<String> newLiterals) {
+            if (newLiterals.equals(literals)) {
+                return definitions;
+            }
+            Map<Operand, Operand> operands = new IdentityHashMap<>();
+            for (int i = 0; i < newLiterals.size(); i++) {
+                WhereClauseParameter parameter = whereClauseParameters.get(i);
+                operands.put(parameter.getOperand(), parameter.bind(newLiterals.get(i)));
+            }
+            return new SelectQueryDefinitions(definitions.isStarColumn(), definitions.getColumnDefinitions(),
+                    definitions.getFromClause(), definitions.getGroupByClause(),
+                    bind(definitions.getWhereClause(), operands), definitions.getLimitClause(),
+                    definitions.isOrderDesc());
+        }
+
+        private static BooleanExpression bind(BooleanExpression expression, Map<Operand, Operand> operands) {
+            if (expression instanceof AndBooleanExpression) {
+                AndBooleanExpression and = (AndBooleanExpression) expression;
+                return new AndBooleanExpression(bind(and.getLeftExpression(), operands),
+                        bind(and.getRightExpression(), operands));
+            }
+            if (expression instanceof OrBooleanExpression) {
+                OrBooleanExpression or = (OrBooleanExpression) expression;
+                return new OrBooleanExpression(bind(or.getLeftExpression(), operands),
+                        bind(or.getRightExpression(), operands));
+            }
+            if (expression instanceof EqBooleanExpression) {
+                EqBooleanExpression eq = (EqBooleanExpression) expression;
+                return new EqBooleanExpression(bind(eq.getLeftOperand(), operands),
+                        bind(eq.getRightOperand(), operands));
+            }
+            if (expression instanceof NeqBooleanExpression) {
+                NeqBooleanExpression neq = (NeqBooleanExpression) expression;
+                return new NeqBooleanExpression(bind(neq.getLeftOperand(), operands),
+                        bind(neq.getRightOperand(), operands));
+            }
+            if (expression instanceof GtBooleanExpression) {
+                GtBooleanExpression gt = (GtBooleanExpression) expression;
+                return new GtBooleanExpression(bind(gt.getLeftOperand(), operands),
+                        bind(gt.getRightOperand(), operands));
+            }
+            if (expression instanceof LtBooleanExpression) {
+                LtBooleanExpression lt = (LtBooleanExpression) expression;
+                return new LtBooleanExpression(bind(lt.getLeftOperand(), operands),
+                        bind(lt.getRightOperand(), operands));
+            }
+            return expression;
+        }
+
+        private static Operand bind(Operand operand, Map<Operand, Operand> operands) {
+            return operands.getOrDefault(operand, operand);
+        }
+    }
+}
@@ -39,7 +39,7 @@ public class InfluxQueryParserFactory {
         return influxQueryParser;
     }
 
-    private InfluxQueryLexer newInfluxQueryLexer(String queryText) {
+    public InfluxQueryLexer newInfluxQueryLexer(String queryText) {
         ANTLRInputStream input = new ANTLRInputStream(queryText);
         InfluxQueryLexer lexer = new InfluxQueryLexer(input);
         lexer.removeErrorListeners();
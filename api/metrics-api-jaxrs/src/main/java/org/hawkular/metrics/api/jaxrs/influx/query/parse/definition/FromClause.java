@@ -16,22 +16,58 @@
  */
 package org.hawkular.metrics.api.jaxrs.influx.query.parse.definition;
 
+import java.util.Collections;
+import java.util.List;
+
 /**
+ * The series selected by a query: either a list of names or a regular expression.
+ *
  * @author Thomas Segismont
  */
 public class FromClause {
-    private final String name;
+    private final List<String> names;
+    private final RegularExpression regularExpression;
     private final boolean aliased;
     private final String alias;
 
-    public FromClause(String name, String alias) {
-        this.name = name;
+    public FromClause(List<String> names, String alias) {
+        this(names, null, alias);
+    }
+
+    public FromClause(RegularExpression regularExpression, String alias) {
+        this(Collections.emptyList(), regularExpression, alias);
+    }
+
+    private FromClause(List<String> names, RegularExpression regularExpression, String alias) {
+        this.names = Collections.unmodifiableList(names);
+        this.regularExpression = regularExpression;
         this.aliased = (alias != null);
         this.alias = alias;
     }
 
+    /**
+     * @return the first series name, or null if series are selected with a regular expression
+     */
     public String getName() {
-        return name;
+        return names.isEmpty() ? null : names.get(0);
+    }
+
+    public List<String> getNames() {
+        return names;
+    }
+
+    /**
+     * @return the regular expression matching series names, or null if series are selected by name
+     */
+    public RegularExpression getRegularExpression() {
+        return regularExpression;
+    }
+
+    /**
+     * @return true if the clause selects exactly one series, by name
+     */
+    public boolean isSingleSeries() {
+        return regularExpression == null && names.size() == 1;
     }
 
     public boolean isAliased() {
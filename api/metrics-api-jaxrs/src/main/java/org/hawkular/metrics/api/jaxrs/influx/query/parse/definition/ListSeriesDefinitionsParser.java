@@ -33,10 +33,7 @@ public class ListSeriesDefinitionsParser extends InfluxQueryBaseListener {
         if (regexp == null) {
             return;
         }
-        String text = regexp.getText();
-        boolean caseSensitive = text.charAt(text.length() - 1) == '/';
-        String expression = text.substring(1, text.length() - (caseSensitive ? 1 : 2));
-        regularExpression = new RegularExpression(expression, caseSensitive);
+        regularExpression = RegularExpression.fromText(regexp.getText());
     }
 
     public RegularExpression getRegularExpression() {
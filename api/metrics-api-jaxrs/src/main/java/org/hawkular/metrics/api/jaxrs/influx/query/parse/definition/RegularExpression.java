@@ -28,6 +28,15 @@ public class RegularExpression {
         this.caseSensitive = caseSensitive;
     }
 
+    /**
+     * @param text the text of a REGEXP token, like {@code /^cpu/i}
+     */
+    public static RegularExpression fromText(String text) {
+        boolean caseSensitive = text.charAt(text.length() - 1) == '/';
+        String expression = text.substring(1, text.length() - (caseSensitive ? 1 : 2));
+        return new RegularExpression(expression, caseSensitive);
+    }
+
     public String getExpression() {
         return expression;
     }
@@ -58,6 +58,7 @@ import java.util.Arrays;
 import java.util.Deque;
 import java.util.List;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -113,6 +114,7 @@ public class SelectQueryDefinitionsParser extends InfluxQueryBaseListener {
     private String prefix;
     private String name;
     private String alias;
+    private List<String> fromNames;
     private String function;
     private List<ColumnDefinition> columnDefinitions;
     private RawColumnDefinitionBuilder rawColumnDefinitionBuilder;
@@ -120,6 +122,7 @@ public class SelectQueryDefinitionsParser extends InfluxQueryBaseListener {
     private List<FunctionArgument> functionArguments;
     private Deque<BooleanExpression> booleanExpressionQueue;
     private Deque<Operand> operandQueue;
+    private List<WhereClauseParameter> whereClauseParameters = new ArrayList<>();
 
     @Override
     public void enterColumnDefinitionList(ColumnDefinitionListContext ctx) {
@@ -180,13 +183,20 @@ public class SelectQueryDefinitionsParser extends InfluxQueryBaseListener {
     public void enterFromClause(FromClauseContext ctx) {
         name = null;
         alias = null;
+        fromNames = new ArrayList<>(1);
     }
 
     @Override
     public void exitFromClause(FromClauseContext ctx) {
-        definitionsBuilder.setFromClause(new FromClause(name, alias));
+        TerminalNode regexp = ctx.REGEXP();
+        if (regexp != null) {
+            definitionsBuilder.setFromClause(new FromClause(RegularExpression.fromText(regexp.getText()), alias));
+        } else {
+            definitionsBuilder.setFromClause(new FromClause(fromNames, alias));
+        }
         name = null;
         alias = null;
+        fromNames = null;
     }
 
     @Override
@@ -279,68 +289,23 @@ public class SelectQueryDefinitionsParser extends InfluxQueryBaseListener {
 
     @Override
     public void exitAbsoluteMomentOperand(AbsoluteMomentOperandContext ctx) {
-        String timespan = ctx.TIMESPAN().getText();
-        Matcher matcher = TIMESPAN_MATCHER.matcher(timespan);
-        if (!matcher.matches()) {
-            throw new IllegalStateException("Unknown timespan format: " + timespan);
-        }
-        long amount = Long.parseLong(matcher.group(1));
-        String unitId = matcher.group(2);
-        InfluxTimeUnit unit = InfluxTimeUnit.findById(unitId);
-        if (unit == null) {
-            throw new RuntimeException("Unknown time unit: " + unitId);
-        }
-        operandQueue.addLast(new DateOperand(new Instant(unit.convertTo(TimeUnit.MILLISECONDS, amount))));
+        addParameterOperand(ctx.TIMESPAN().getText(), SelectQueryDefinitionsParser::toAbsoluteMomentOperand);
     }
 
     @Override
     public void exitPastMomentOperand(PastMomentOperandContext ctx) {
         String functionName = ctx.ID().getText();
-        TerminalNode intNode = ctx.INT();
-        long timeshift;
-        InfluxTimeUnit timeshiftUnit;
-        if (intNode == null) {
-            String timespan = ctx.TIMESPAN().getText();
-            Matcher matcher = TIMESPAN_MATCHER.matcher(timespan);
-            if (!matcher.matches()) {
-                throw new IllegalStateException("Unknown timespan format: " + timespan);
-            }
-            timeshift = Long.parseLong(matcher.group(1));
-            String unitId = matcher.group(2);
-            timeshiftUnit = InfluxTimeUnit.findById(unitId);
-            if (timeshiftUnit == null) {
-                throw new RuntimeException("Unknown time unit: " + unitId);
-            }
-        } else {
-            timeshift = Long.parseLong(intNode.getText());
-            timeshiftUnit = InfluxTimeUnit.MICROSECONDS;
-        }
-        operandQueue.addLast(new MomentOperand(functionName, -1 * timeshift, timeshiftUnit));
+        boolean timespan = ctx.INT() == null;
+        String literal = timespan ? ctx.TIMESPAN().getText() : ctx.INT().getText();
+        addParameterOperand(literal, text -> toMomentOperand(functionName, -1, text, timespan));
     }
 
     @Override
     public void exitFutureMomentOperand(FutureMomentOperandContext ctx) {
         String functionName = ctx.ID().getText();
-        TerminalNode intNode = ctx.INT();
-        long timeshift;
-        InfluxTimeUnit timeshiftUnit;
-        if (intNode == null) {
-            String timespan = ctx.TIMESPAN().getText();
-            Matcher matcher = TIMESPAN_MATCHER.matcher(timespan);
-            if (!matcher.matches()) {
-                throw new IllegalStateException("Unknown timespan format: " + timespan);
-            }
-            timeshift = Long.parseLong(matcher.group(1));
-            String unitId = matcher.group(2);
-            timeshiftUnit = InfluxTimeUnit.findById(unitId);
-            if (timeshiftUnit == null) {
-                throw new RuntimeException("Unknown time unit: " + unitId);
-            }
-        } else {
-            timeshift = Long.parseLong(intNode.getText());
-            timeshiftUnit = InfluxTimeUnit.MICROSECONDS;
-        }
-        operandQueue.addLast(new MomentOperand(functionName, timeshift, timeshiftUnit));
+        boolean timespan = ctx.INT() == null;
+        String literal = timespan ? ctx.TIMESPAN().getText() : ctx.INT().getText();
+        addParameterOperand(literal, text -> toMomentOperand(functionName, 1, text, timespan));
     }
 
     @Override
@@ -351,27 +316,65 @@ public class SelectQueryDefinitionsParser extends InfluxQueryBaseListener {
 
     @Override
     public void exitDateOperand(DateOperandContext ctx) {
-        String dateString = ctx.DATE_STRING().getText();
-        dateString = dateString.substring(1, dateString.length() - 1);
-        operandQueue.addLast(new DateOperand(Instant.parse(dateString, DATE_FORMATTER)));
+        addParameterOperand(ctx.DATE_STRING().getText(), SelectQueryDefinitionsParser::toDateOperand);
     }
 
     @Override
     public void exitLongOperand(LongOperandContext ctx) {
-        long value = Long.parseLong(ctx.INT().getText());
-        if (ctx.DASH() != null) {
-            value = -1 * value;
-        }
-        operandQueue.addLast(new LongOperand(value));
+        int sign = ctx.DASH() != null ? -1 : 1;
+        addParameterOperand(ctx.INT().getText(), text -> new LongOperand(sign * Long.parseLong(text)));
     }
 
     @Override
     public void exitDoubleOperand(DoubleOperandContext ctx) {
-        double value = Double.parseDouble(ctx.FLOAT().getText());
-        if (ctx.DASH() != null) {
-            value = -1 * value;
+        int sign = ctx.DASH() != null ? -1 : 1;
+        addParameterOperand(ctx.FLOAT().getText(), text -> new DoubleOperand(sign * Double.parseDouble(text)));
+    }
+
+    private void addParameterOperand(String literal, Function<String, Operand> operandFactory) {
+        Operand operand = operandFactory.apply(literal);
+        operandQueue.addLast(operand);
+        whereClauseParameters.add(new WhereClauseParameter(operand, operandFactory));
+    }
+
+    private static Operand toAbsoluteMomentOperand(String timespan) {
+        Matcher matcher = TIMESPAN_MATCHER.matcher(timespan);
+        if (!matcher.matches()) {
+            throw new IllegalStateException("Unknown timespan format: " + timespan);
+        }
+        long amount = Long.parseLong(matcher.group(1));
+        String unitId = matcher.group(2);
+        InfluxTimeUnit unit = InfluxTimeUnit.findById(unitId);
+        if (unit == null) {
+            throw new RuntimeException("Unknown time unit: " + unitId);
         }
-        operandQueue.addLast(new DoubleOperand(value));
+        return new DateOperand(new Instant(unit.convertTo(TimeUnit.MILLISECONDS, amount)));
+    }
+
+    private static Operand toMomentOperand(String functionName, int sign, String literal, boolean timespan) {
+        long timeshift;
+        InfluxTimeUnit timeshiftUnit;
+        if (timespan) {
+            Matcher matcher = TIMESPAN_MATCHER.matcher(literal);
+            if (!matcher.matches()) {
+                throw new IllegalStateException("Unknown timespan format: " + literal);
+            }
+            timeshift = Long.parseLong(matcher.group(1));
+            String unitId = matcher.group(2);
+            timeshiftUnit = InfluxTimeUnit.findById(unitId);
+            if (timeshiftUnit == null) {
+                throw new RuntimeException("Unknown time unit: " + unitId);
+            }
+        } else {
+            timeshift = Long.parseLong(literal);
+            timeshiftUnit = InfluxTimeUnit.MICROSECONDS;
+        }
+        return new MomentOperand(functionName, sign * timeshift, timeshiftUnit);
+    }
+
+    private static Operand toDateOperand(String dateString) {
+        dateString = dateString.substring(1, dateString.length() - 1);
+        return new DateOperand(Instant.parse(dateString, DATE_FORMATTER));
     }
 
     @Override
@@ -388,12 +391,18 @@ public class SelectQueryDefinitionsParser extends InfluxQueryBaseListener {
     @Override
     public void exitIdName(IdNameContext ctx) {
         name = ctx.ID().getText();
+        if (fromNames != null) {
+            fromNames.add(name);
+        }
     }
 
     @Override
     public void exitStringName(StringNameContext ctx) {
         String doubleQuotedString = ctx.DOUBLE_QUOTED_STRING().getText();
         name = doubleQuotedString.substring(1, doubleQuotedString.length() - 1);
+        if (fromNames != null) {
+            fromNames.add(name);
+        }
     }
 
     @Override
@@ -462,4 +471,11 @@ public class SelectQueryDefinitionsParser extends InfluxQueryBaseListener {
     public SelectQueryDefinitions getSelectQueryDefinitions() {
         return definitionsBuilder.createSelectQueryDefinitions();
     }
+
+    /**
+     * @return the literals of the where clause operands, in the order they appear in the query
+     */
+    public List<WhereClauseParameter> getWhereClauseParameters() {
+        return whereClauseParameters;
+    }
 }
@@ -0,0 +1,49 @@
+/*
+ * Copyright 2014-2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.metrics.api.jaxrs.influx.query.parse.definition;
+
+import java.util.function.Function;
+
+/**
+ * A literal of a where clause operand, such as the {@code 6h} of {@code now() - 6h}. The operand can be built again
+ * from another literal of the same kind, without parsing the query.
+ */
+public class WhereClauseParameter {
+    private final Operand operand;
+    private final Function<String, Operand> operandFactory;
+
+    public WhereClauseParameter(Operand operand, Function<String, Operand> operandFactory) {
+        this.operand = operand;
+        this.operandFactory = operandFactory;
+    }
+
+    /**
+     * @return the operand built from the literal found in the query
+     */
+    public Operand getOperand() {
+        return operand;
+    }
+
+    /**
+     * @param literal the text of a literal of the same kind as the one found in the query
+     *
+     * @return the operand the query would have if it had {@code literal} instead
+     */
+    public Operand bind(String literal) {
+        return operandFactory.apply(literal);
+    }
+}
@@ -16,6 +16,8 @@
  */
 package org.hawkular.metrics.api.jaxrs.influx.query.validation;
 
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 
 import org.hawkular.metrics.api.jaxrs.influx.query.parse.definition.AggregatedColumnDefinition;
@@ -42,23 +44,30 @@ public class MetricNameRule implements SelectQueryValidationRule {
     @Override
     public void checkQuery(SelectQueryDefinitions queryDefinitions) throws IllegalQueryException {
         FromClause fromClause = queryDefinitions.getFromClause();
-        String metricEffectiveName = fromClause.isAliased() ? fromClause.getAlias() : fromClause.getName();
+        // Series selected with a regular expression can only be referred to through an alias
+        Collection<String> metricEffectiveNames;
+        if (fromClause.isAliased()) {
+            metricEffectiveNames = Collections.singleton(fromClause.getAlias());
+        } else {
+            metricEffectiveNames = fromClause.getNames();
+        }
         if (!queryDefinitions.isStarColumn()) {
-            checkColumnDefinitions(queryDefinitions.getColumnDefinitions(), metricEffectiveName);
+            checkColumnDefinitions(queryDefinitions.getColumnDefinitions(), metricEffectiveNames);
         }
         BooleanExpression whereClause = queryDefinitions.getWhereClause();
         if (whereClause != null) {
-            checkBooleanExpression(whereClause, metricEffectiveName);
+            checkBooleanExpression(whereClause, metricEffectiveNames);
         }
     }
 
-    private void checkColumnDefinitions(List<ColumnDefinition> columnDefinitions, String metricEffectiveName)
+    private void checkColumnDefinitions(List<ColumnDefinition> columnDefinitions,
+            Collection<String> metricEffectiveNames)
         throws IllegalQueryException {
 
         for (ColumnDefinition columnDefinition : columnDefinitions) {
             if (columnDefinition instanceof RawColumnDefinition) {
                 RawColumnDefinition definition = (RawColumnDefinition) columnDefinition;
-                if (definition.isPrefixed() && !definition.getPrefix().equals(metricEffectiveName)) {
+                if (definition.isPrefixed() && !metricEffectiveNames.contains(definition.getPrefix())) {
                     throw new IllegalQueryException("Unexpected prefix: " + definition.getPrefix());
                 }
             } else if (columnDefinition instanceof AggregatedColumnDefinition) {
@@ -66,7 +75,7 @@ public class MetricNameRule implements SelectQueryValidationRule {
                 for (FunctionArgument argument : definition.getAggregationFunctionArguments()) {
                     if (argument instanceof NameFunctionArgument) {
                         NameFunctionArgument nameArgument = (NameFunctionArgument) argument;
-                        if (nameArgument.isPrefixed() && !nameArgument.getPrefix().equals(metricEffectiveName)) {
+                        if (nameArgument.isPrefixed() && !metricEffectiveNames.contains(nameArgument.getPrefix())) {
                             throw new IllegalQueryException("Unexpected prefix: " + nameArgument.getPrefix());
                         }
                     }
@@ -77,42 +86,42 @@ public class MetricNameRule implements SelectQueryValidationRule {
         }
     }
 
-    private void checkBooleanExpression(BooleanExpression booleanExpression, String metricEffectiveName)
+    private void checkBooleanExpression(BooleanExpression booleanExpression, Collection<String> metricEffectiveNames)
         throws IllegalQueryException {
 
         if (booleanExpression instanceof AndBooleanExpression) {
             AndBooleanExpression and = (AndBooleanExpression) booleanExpression;
-            checkBooleanExpression(and.getLeftExpression(), metricEffectiveName);
-            checkBooleanExpression(and.getRightExpression(), metricEffectiveName);
+            checkBooleanExpression(and.getLeftExpression(), metricEffectiveNames);
+            checkBooleanExpression(and.getRightExpression(), metricEffectiveNames);
         } else if (booleanExpression instanceof OrBooleanExpression) {
             OrBooleanExpression or = (OrBooleanExpression) booleanExpression;
-            checkBooleanExpression(or.getLeftExpression(), metricEffectiveName);
-            checkBooleanExpression(or.getRightExpression(), metricEffectiveName);
+            checkBooleanExpression(or.getLeftExpression(), metricEffectiveNames);
+            checkBooleanExpression(or.getRightExpression(), metricEffectiveNames);
         } else if (booleanExpression instanceof NeqBooleanExpression) {
             NeqBooleanExpression neq = (NeqBooleanExpression) booleanExpression;
-            checkOperand(neq.getLeftOperand(), metricEffectiveName);
-            checkOperand(neq.getRightOperand(), metricEffectiveName);
+            checkOperand(neq.getLeftOperand(), metricEffectiveNames);
+            checkOperand(neq.getRightOperand(), metricEffectiveNames);
         } else if (booleanExpression instanceof GtBooleanExpression) {
             GtBooleanExpression gt = (GtBooleanExpression) booleanExpression;
-            checkOperand(gt.getLeftOperand(), metricEffectiveName);
-            checkOperand(gt.getRightOperand(), metricEffectiveName);
+            checkOperand(gt.getLeftOperand(), metricEffectiveNames);
+            checkOperand(gt.getRightOperand(), metricEffectiveNames);
         } else if (booleanExpression instanceof LtBooleanExpression) {
             LtBooleanExpression lt = (LtBooleanExpression) booleanExpression;
-            checkOperand(lt.getLeftOperand(), metricEffectiveName);
-            checkOperand(lt.getRightOperand(), metricEffectiveName);
+            checkOperand(lt.getLeftOperand(), metricEffectiveNames);
+            checkOperand(lt.getRightOperand(), metricEffectiveNames);
         } else if (booleanExpression instanceof EqBooleanExpression) {
             EqBooleanExpression eq = (EqBooleanExpression) booleanExpression;
-            checkOperand(eq.getLeftOperand(), metricEffectiveName);
-            checkOperand(eq.getRightOperand(), metricEffectiveName);
+            checkOperand(eq.getLeftOperand(), metricEffectiveNames);
+            checkOperand(eq.getRightOperand(), metricEffectiveNames);
         } else {
             throw new IllegalQueryException("Unexpected expression type: " + booleanExpression.getClass());
         }
     }
 
-    private void checkOperand(Operand operand, String metricEffectiveName) throws IllegalQueryException {
+    private void checkOperand(Operand operand, Collection<String> metricEffectiveNames) throws IllegalQueryException {
         if (operand instanceof NameOperand) {
             NameOperand nameOperand = (NameOperand) operand;
-            if (nameOperand.isPrefixed() && !nameOperand.getPrefix().equals(metricEffectiveName)) {
+            if (nameOperand.isPrefixed() && !metricEffectiveNames.contains(nameOperand.getPrefix())) {
                 throw new IllegalQueryException("Unexpected prefix: " + nameOperand.getPrefix());
             }
 
@@ -81,4 +81,37 @@ public interface RestLogger extends BasicLogger {
     @LogMessage(level = WARN)
     @Message(id = 200011, value = "Invalid value [%s] for default TTL. Will use a default of %s days")
     void warnInvalidDefaultTTL(String ttl, String defaultTTL);
+
+    @LogMessage(level = WARN)
+    @Message(id = 200012, value = "Invalid value [%s] for %s. Will use a default of %s")
+    void warnInvalidConfigValue(String value, String key, String defaultValue);
+
+    @LogMessage(level = WARN)
+    @Message(id = 200013, value = "Bulk import [%s] was interrupted after line %d")
+    void warnBulkImportInterrupted(String id, long line, @Cause Throwable t);
+
+    @LogMessage(level = ERROR)
+    @Message(id = 200014, value = "Bulk import [%s] failed after line %d")
+    void errorBulkImportFailed(String id, long line, @Cause Throwable t);
+
+    @LogMessage(level = ERROR)
+    @Message(id = 200015, value = "Export of tenant [%s] failed")
+    void errorExportFailed(String tenantId, @Cause Throwable t);
+
+    @LogMessage(level = WARN)
+    @Message(id = 200016, value = "Could not refresh the tenant quotas")
+    void warnQuotaRefreshFailed(@Cause Throwable t);
+
+    @LogMessage(level = WARN)
+    @Message(id = 200017, value = "Metrics are stored in memory, they will be lost when the server stops")
+    void warnInMemoryStorage();
+
+    @LogMessage(level = FATAL)
+    @Message(id = 200018, value = "An error occurred trying to start the in-memory metrics service")
+    void fatalCannotStartInMemory(@Cause Exception e);
+
+    @LogMessage(level = WARN)
+    @Message(id = 200019, value = "Fault injection is enabled, Cassandra operations may be slowed down or failed on "
+            + "purpose. Initial rules: %s")
+    void warnFaultInjectionEnabled(String rules);
 }
@@ -0,0 +1,252 @@
+/*
+ * Copyright 2014-2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.metrics.api.jaxrs.monitoring;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.Metered;
+import com.codahale.metrics.MetricFilter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Snapshot;
+import com.codahale.metrics.Timer;
+
+/**
+ * Renders the content of a {@link MetricRegistry} as JSON-ready maps or in the Prometheus text exposition format.
+ * <p>
+ * Registry names are dot-separated. A {@code tenant.<id>} segment, as used for per-tenant metrics, becomes a
+ * {@code tenant} label in the Prometheus format so that tenants do not multiply the metric names. Durations are
+ * reported in milliseconds in JSON and in seconds for Prometheus, following the conventions of each format.
+ */
+public final class MetricRegistryFormats {
+
+    private static final Pattern TENANT_SEGMENT = Pattern.compile("(^|\\.)tenant\\.([^.]+)(?=\\.|$)");
+    private static final Pattern INVALID_CHARACTERS = Pattern.compile("[^a-zA-Z0-9_:]");
+    private static final String PREFIX = "hawkular_";
+    private static final double[] QUANTILES = {0.5, 0.75, 0.95, 0.99, 0.999};
+
+    /**
+     * Leaves out the metrics which have a {@code tenant.<id>} segment, for output which must not disclose tenant ids.
+     */
+    public static final MetricFilter WITHOUT_TENANTS = (name, metric) -> !TENANT_SEGMENT.matcher(name).find();
+
+    private MetricRegistryFormats() {
+        // Utility class
+    }
+
+    /**
+     * @return the metrics grouped by kind, then sorted by name
+     */
+    public static Map<String, Object> toJson(MetricRegistry registry) {
+        return toJson(registry, MetricFilter.ALL);
+    }
+
+    /**
+     * @return the metrics matching {@code filter}, grouped by kind, then sorted by name
+     */
+    public static Map<String, Object> toJson(MetricRegistry registry, MetricFilter filter) {
+        Map<String, Object> json = new TreeMap<>();
+
+        Map<String, Object> gauges = new TreeMap<>();
+        registry.getGauges(filter).forEach((name, gauge) -> gauges.put(name, gauge.getValue()));
+        json.put("gauges", gauges);
+
+        Map<String, Object> counters = new TreeMap<>();
+        registry.getCounters(filter).forEach((name, counter) -> counters.put(name, counter.getCount()));
+        json.put("counters", counters);
+
+        Map<String, Object> meters = new TreeMap<>();
+        registry.getMeters(filter).forEach((name, meter) -> meters.put(name, meterToJson(meter)));
+        json.put("meters", meters);
+
+        Map<String, Object> histograms = new TreeMap<>();
+        registry.getHistograms(filter).forEach((name, histogram) -> {
+            Map<String, Object> values = snapshotToJson(histogram.getSnapshot(), 1);
+            values.put("count", histogram.getCount());
+            histograms.put(name, values);
+        });
+        json.put("histograms", histograms);
+
+        Map<String, Object> timers = new TreeMap<>();
+        registry.getTimers(filter).forEach((name, timer) -> {
+            Map<String, Object> values = meterToJson(timer);
+            values.putAll(snapshotToJson(timer.getSnapshot(), TimeUnit.MILLISECONDS.toNanos(1)));
+            values.put("duration_units", "milliseconds");
+            timers.put(name, values);
+        });
+        json.put("timers", timers);
+
+        return json;
+    }
+
+    private static Map<String, Object> meterToJson(Metered meter) {
+        Map<String, Object> values = new TreeMap<>();
+        values.put("count", meter.getCount());
+        values.put("mean_rate", meter.getMeanRate());
+        values.put("m1_rate", meter.getOneMinuteRate());
+        values.put("m5_rate", meter.getFiveMinuteRate());
+        values.put("m15_rate", meter.getFifteenMinuteRate());
+        values.put("rate_units", "events/second");
+        return values;
+    }
+
+    private static Map<String, Object> snapshotToJson(Snapshot snapshot, double divisor) {
+        Map<String, Object> values = new TreeMap<>();
+        values.put("min", snapshot.getMin() / divisor);
+        values.put("max", snapshot.getMax() / divisor);
+        values.put("mean", snapshot.getMean() / divisor);
+        values.put("stddev", snapshot.getStdDev() / divisor);
+        values.put("p50", snapshot.getMedian() / divisor);
+        values.put("p75", snapshot.get75thPercentile() / divisor);
+        values.put("p95", snapshot.get95thPercentile() / divisor);
+        values.put("p99", snapshot.get99thPercentile() / divisor);
+        values.put("p999", snapshot.get999thPercentile() / divisor);
+        return values;
+    }
+
+    /**
+     * @return the metrics in the Prometheus text exposition format, version 0.0.4
+     */
+    public static String toPrometheus(MetricRegistry registry) {
+        return toPrometheus(registry, MetricFilter.ALL);
+    }
+
+    /**
+     * @return the metrics matching {@code filter} in the Prometheus text exposition format, version 0.0.4
+     */
+    public static String toPrometheus(MetricRegistry registry, MetricFilter filter) {
+        PrometheusWriter writer = new PrometheusWriter();
+        for (Map.Entry<String, Gauge> entry : registry.getGauges(filter).entrySet()) {
+            Object value = entry.getValue().getValue();
+            if (value instanceof Number) {
+                writer.sample(entry.getKey(), "", "gauge", ((Number) value).doubleValue());
+            } else if (value instanceof Boolean) {
+                writer.sample(entry.getKey(), "", "gauge", (Boolean) value ? 1 : 0);
+            }
+        }
+        for (Map.Entry<String, Counter> entry : registry.getCounters(filter).entrySet()) {
+            writer.sample(entry.getKey(), "", "gauge", entry.getValue().getCount());
+        }
+        for (Map.Entry<String, Meter> entry : registry.getMeters(filter).entrySet()) {
+            writer.sample(entry.getKey(), "_total", "counter", entry.getValue().getCount());
+        }
+        for (Map.Entry<String, Histogram> entry : registry.getHistograms(filter).entrySet()) {
+            Histogram histogram = entry.getValue();
+            writer.summary(entry.getKey(), histogram.getSnapshot(), histogram.getCount(), 1);
+        }
+        for (Map.Entry<String, Timer> entry : registry.getTimers(filter).entrySet()) {
+            Timer timer = entry.getValue();
+            writer.summary(entry.getKey() + ".seconds", timer.getSnapshot(), timer.getCount(),
+                    TimeUnit.SECONDS.toNanos(1));
+        }
+        return writer.toString();
+    }
+
+    private static final class PrometheusWriter {
+        /**
+         * Samples grouped by metric name, since Prometheus wants all the samples of a metric together
+         */
+        private final SortedMap<String, StringBuilder> families = new TreeMap<>();
+
+        void sample(String registryName, String suffix, String type, double value) {
+            Name name = Name.parse(registryName);
+            family(name.name + suffix, type).append(name.name).append(suffix).append(name.labels("")).append(' ')
+                    .append(format(value)).append('\n');
+        }
+
+        void summary(String registryName, Snapshot snapshot, long count, double divisor) {
+            Name name = Name.parse(registryName);
+            StringBuilder family = family(name.name, "summary");
+            for (double quantile : QUANTILES) {
+                family.append(name.name).append(name.labels("quantile=\"" + quantile + "\"")).append(' ')
+                        .append(format(snapshot.getValue(quantile) / divisor)).append('\n');
+            }
+            family.append(name.name).append("_sum").append(name.labels("")).append(' ')
+                    .append(format(snapshot.getMean() * count / divisor)).append('\n');
+            family.append(name.name).append("_count").append(name.labels("")).append(' ').append(count)
+                    .append('\n');
+        }
+
+        private StringBuilder family(String name, String type) {
+            return families.computeIfAbsent(name, n -> new StringBuilder("# TYPE ").append(n).append(' ')
+                    .append(type).append('\n'));
+        }
+
+        private static String format(double value) {
+            if (Double.isNaN(value)) {
+                return "NaN";
+            }
+            if (Double.isInfinite(value)) {
+                return value > 0 ? "+Inf" : "-Inf";
+            }
+            return Double.toString(value);
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder text = new StringBuilder();
+            families.values().forEach(text::append);
+            return text.toString();
+        }
+    }
+
+    private static final class Name {
+        final String name;
+        final String tenant;
+
+        private Name(String name, String tenant) {
+            this.name = name;
+            this.tenant = tenant;
+        }
+
+        static Name parse(String registryName) {
+            String tenant = null;
+            Matcher matcher = TENANT_SEGMENT.matcher(registryName);
+            if (matcher.find()) {
+                tenant = matcher.group(2);
+                registryName = registryName.substring(0, matcher.start()) + matcher.group(1) + "tenant"
+                        + registryName.substring(matcher.end());
+            }
+            String name = PREFIX + INVALID_CHARACTERS.matcher(registryName).replaceAll("_").toLowerCase(Locale.ROOT);
+            return new Name(name, tenant);
+        }
+
+        String labels(String other) {
+            StringBuilder labels = new StringBuilder();
+            if (tenant != null) {
+                labels.append("tenant=\"").append(escape(tenant)).append('"');
+            }
+            if (!other.isEmpty()) {
+                labels.append(labels.length() > 0 ? "," : "").append(other);
+            }
+            return labels.length() == 0 ? "" : "{" + labels + "}";
+        }
+
+        private static String escape(String value) {
+            return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+        }
+    }
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyright 2014-2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.metrics.api.jaxrs.quota;
+
+/**
+ * The rates which can be limited per tenant. Each quota is stored in the {@code quotas} column of the tenants table
+ * under its {@link #getName() name}, as a number of units per second.
+ */
+public enum Quota {
+    /**
+     * Data points stored.
+     */
+    DATA_POINTS("data-points"),
+    /**
+     * Data points stored for metrics which this node has not seen recently.
+     */
+    NEW_SERIES("new-series"),
+    /**
+     * Read requests, costing a unit per series and per started day of the queried time range, see
+     * {@link QuotaManager#queryCost(long, long, int)}, up to a second worth of the quota.
+     */
+    QUERIES("queries");
+
+    private final String name;
+
+    Quota(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return the quota with this name, or null if there is none
+     */
+    public static Quota fromName(String name) {
+        for (Quota quota : values()) {
+            if (quota.name.equals(name)) {
+                return quota;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,49 @@
+/*
+ * Copyright 2014-2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.metrics.api.jaxrs.quota;
+
+/**
+ * Thrown when a request would exceed a tenant {@link Quota}. It is turned into a 429 response with a Retry-After
+ * header.
+ */
+public class QuotaExceededException extends RuntimeException {
+    private final String tenantId;
+    private final Quota quota;
+    private final long retryAfter;
+
+    public QuotaExceededException(String tenantId, Quota quota, long retryAfter) {
+        super("Tenant [" + tenantId + "] exceeded its " + quota.getName() + " quota, retry in " + retryAfter + "s");
+        this.tenantId = tenantId;
+        this.quota = quota;
+        this.retryAfter = retryAfter;
+    }
+
+    public String getTenantId() {
+        return tenantId;
+    }
+
+    public Quota getQuota() {
+        return quota;
+    }
+
+    /**
+     * @return the number of seconds to wait before retrying
+     */
+    public long getRetryAfter() {
+        return retryAfter;
+    }
+}
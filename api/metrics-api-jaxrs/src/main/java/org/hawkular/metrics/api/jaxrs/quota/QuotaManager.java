@@ -0,0 +1,409 @@
+/*
+ * Copyright 2014-2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.metrics.api.jaxrs.quota;
+
+import static java.util.Collections.emptyMap;
+
+import static org.hawkular.metrics.api.jaxrs.config.ConfigurationKey.QUOTA_DATA_POINTS;
+import static org.hawkular.metrics.api.jaxrs.config.ConfigurationKey.QUOTA_KNOWN_SERIES;
+import static org.hawkular.metrics.api.jaxrs.config.ConfigurationKey.QUOTA_NEW_SERIES;
+import static org.hawkular.metrics.api.jaxrs.config.ConfigurationKey.QUOTA_QUERIES;
+import static org.hawkular.metrics.api.jaxrs.config.ConfigurationKey.QUOTA_REFRESH_INTERVAL;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+
+import org.hawkular.metrics.api.jaxrs.MetricsServiceLifecycle;
+import org.hawkular.metrics.api.jaxrs.MetricsServiceLifecycle.State;
+import org.hawkular.metrics.api.jaxrs.config.Configurable;
+import org.hawkular.metrics.api.jaxrs.config.ConfigurationKey;
+import org.hawkular.metrics.api.jaxrs.config.ConfigurationProperty;
+import org.hawkular.metrics.api.jaxrs.log.RestLogger;
+import org.hawkular.metrics.api.jaxrs.log.RestLogging;
+import org.hawkular.metrics.model.Metric;
+import org.hawkular.metrics.model.MetricId;
+import org.hawkular.metrics.model.MetricType;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.common.cache.RemovalNotification;
+
+/**
+ * Enforces the per-tenant {@link Quota quotas} with a {@link TokenBucket} per tenant and quota.
+ * <p>
+ * Quotas are read from the tenants table periodically, falling back to the configured defaults for the tenants and
+ * quotas which are not set; a rate of zero means no limit. Checking a quota never touches Cassandra, so the limits
+ * apply per node. New series are detected with a bounded cache of the metrics recently written to on this node, sized
+ * by {@link ConfigurationKey#QUOTA_KNOWN_SERIES}; it should hold the series actively written to, or existing series are
+ * charged as new ones. The cost of a query is capped at the capacity of the query bucket of the tenant, so that a
+ * single query over a long time range cannot lock the tenant out of queries for longer than a second.
+ * <p>
+ * For each tenant, the following metrics are registered: tenant.&lt;id&gt;.data-points, tenant.&lt;id&gt;.new-series
+ * and tenant.&lt;id&gt;.queries meter what has been granted, tenant.&lt;id&gt;.quota-rejections counts the rejected
+ * requests. The buckets of a tenant, along with its metrics, are dropped when the tenant has not been seen for an
+ * hour, or when more than {@value #MAX_TRACKED_TENANTS} tenants are tracked, so that clients sending made up tenant
+ * ids do not grow them without bound.
+ */
+@ApplicationScoped
+public class QuotaManager {
+    private static final RestLogger log = RestLogging.getRestLogger(QuotaManager.class);
+
+    private static final int MAX_TRACKED_TENANTS = 10_000;
+
+    private static final long DAY = TimeUnit.DAYS.toMillis(1);
+
+    @Inject
+    private MetricsServiceLifecycle metricsServiceLifecycle;
+
+    @Inject
+    private MetricRegistry metricRegistry;
+
+    @Inject
+    @Configurable
+    @ConfigurationProperty(QUOTA_DATA_POINTS)
+    private String dataPoints;
+
+    @Inject
+    @Configurable
+    @ConfigurationProperty(QUOTA_NEW_SERIES)
+    private String newSeries;
+
+    @Inject
+    @Configurable
+    @ConfigurationProperty(QUOTA_QUERIES)
+    private String queries;
+
+    @Inject
+    @Configurable
+    @ConfigurationProperty(QUOTA_KNOWN_SERIES)
+    private String knownSeriesCacheSize;
+
+    @Inject
+    @Configurable
+    @ConfigurationProperty(QUOTA_REFRESH_INTERVAL)
+    private String refreshInterval;
+
+    private final Map<Quota, Double> defaults = new EnumMap<>(Quota.class);
+
+    private final LoadingCache<String, TenantQuotas> tenants = CacheBuilder.newBuilder()
+            .maximumSize(MAX_TRACKED_TENANTS)
+            .expireAfterAccess(1, TimeUnit.HOURS)
+            .removalListener((RemovalNotification<String, TenantQuotas> notification) -> notification.getValue()
+                    .unregister(metricRegistry))
+            .build(CacheLoader.from(this::createTenantQuotas));
+
+    private Cache<MetricId<?>, Boolean> knownSeries;
+
+    private LongSupplier clock = System::nanoTime;
+
+    private volatile Map<String, Map<String, Double>> configured = emptyMap();
+
+    private ScheduledExecutorService refresher;
+
+    public QuotaManager() {
+    }
+
+    /**
+     * Creates a manager applying {@code defaults} to every tenant, without reading quotas from Cassandra.
+     *
+     * @param clock the time source of the token buckets, in nanoseconds
+     */
+    QuotaManager(MetricRegistry metricRegistry, Map<Quota, Double> defaults, long knownSeriesCacheSize,
+            LongSupplier clock) {
+        this.metricRegistry = metricRegistry;
+        this.clock = clock;
+        configure(defaults, knownSeriesCacheSize);
+    }
+
+    @PostConstruct
+    void init() {
+        Map<Quota, Double> defaults = new EnumMap<>(Quota.class);
+        defaults.put(Quota.DATA_POINTS, parse(dataPoints, QUOTA_DATA_POINTS));
+        defaults.put(Quota.NEW_SERIES, parse(newSeries, QUOTA_NEW_SERIES));
+        defaults.put(Quota.QUERIES, parse(queries, QUOTA_QUERIES));
+        configure(defaults, (long) parse(knownSeriesCacheSize, QUOTA_KNOWN_SERIES));
+        long interval = (long) parse(refreshInterval, QUOTA_REFRESH_INTERVAL);
+        if (interval > 0) {
+            refresher = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "QuotaRefresher");
+                thread.setDaemon(true);
+                return thread;
+            });
+            refresher.scheduleWithFixedDelay(this::refresh, 0, interval, TimeUnit.SECONDS);
+        }
+    }
+
+    private void configure(Map<Quota, Double> defaults, long knownSeriesCacheSize) {
+        this.defaults.putAll(defaults);
+        knownSeries = CacheBuilder.newBuilder()
+                .maximumSize(knownSeriesCacheSize)
+                .expireAfterAccess(1, TimeUnit.HOURS)
+                .build();
+    }
+
+    @PreDestroy
+    void destroy() {
+        if (refresher != null) {
+            refresher.shutdownNow();
+        }
+        tenants.invalidateAll();
+    }
+
+    private static double parse(String value, ConfigurationKey key) {
+        try {
+            return Double.parseDouble(value);
+        } catch (NumberFormatException | NullPointerException e) {
+            log.warnInvalidConfigValue(value, key.toString(), key.defaultValue());
+            return Double.parseDouble(key.defaultValue());
+        }
+    }
+
+    private void refresh() {
+        if (metricsServiceLifecycle.getState() != State.STARTED) {
+            return;
+        }
+        try {
+            configured = metricsServiceLifecycle.getMetricsService().getTenantQuotas().toBlocking().single();
+            tenants.asMap().values().forEach(tenantQuotas -> tenantQuotas.setRates(getRates(tenantQuotas.tenantId)));
+        } catch (Exception e) {
+            log.warnQuotaRefreshFailed(e);
+        }
+    }
+
+    /**
+     * Applies new quotas for a tenant on this node right away. Other nodes pick them up on their next refresh.
+     */
+    public void updateQuotas(String tenantId, Map<String, Double> quotas) {
+        Map<String, Map<String, Double>> updated = new HashMap<>(configured);
+        updated.put(tenantId, quotas);
+        configured = updated;
+        TenantQuotas tenantQuotas = tenants.getIfPresent(tenantId);
+        if (tenantQuotas != null) {
+            tenantQuotas.setRates(getRates(tenantId));
+        }
+    }
+
+    /**
+     * Acquires the quotas needed to store {@code metrics}.
+     *
+     * @throws QuotaExceededException if the tenant is over one of its quotas
+     */
+    public void acquireDataPoints(String tenantId, MetricType<?> type, List<? extends Metric<?>> metrics) {
+        if (metrics == null) {
+            return;
+        }
+        TenantQuotas tenantQuotas = getTenantQuotas(tenantId);
+        long points = 0;
+        List<MetricId<?>> unknown = new ArrayList<>();
+        for (Metric<?> metric : metrics) {
+            points += metric.getDataPoints().size();
+            if (tenantQuotas.isLimited(Quota.NEW_SERIES)) {
+                MetricId<?> id = new MetricId<>(tenantId, type, metric.getMetricId().getName());
+                if (knownSeries.getIfPresent(id) == null) {
+                    unknown.add(id);
+                }
+            }
+        }
+        acquire(tenantQuotas, unknown, points);
+    }
+
+    /**
+     * Acquires the quotas needed to store {@code dataPoints} for a single metric.
+     *
+     * @throws QuotaExceededException if the tenant is over one of its quotas
+     */
+    public void acquireDataPoints(String tenantId, MetricType<?> type, String metric, List<?> dataPoints) {
+        if (dataPoints == null) {
+            return;
+        }
+        TenantQuotas tenantQuotas = getTenantQuotas(tenantId);
+        List<MetricId<?>> unknown = new ArrayList<>(1);
+        if (tenantQuotas.isLimited(Quota.NEW_SERIES)) {
+            MetricId<?> id = new MetricId<>(tenantId, type, metric);
+            if (knownSeries.getIfPresent(id) == null) {
+                unknown.add(id);
+            }
+        }
+        acquire(tenantQuotas, unknown, dataPoints.size());
+    }
+
+    private void acquire(TenantQuotas tenantQuotas, List<MetricId<?>> unknown, long points) {
+        tenantQuotas.acquire(Quota.NEW_SERIES, unknown.size(), Quota.DATA_POINTS, points);
+        unknown.forEach(id -> knownSeries.put(id, Boolean.TRUE));
+    }
+
+    /**
+     * Acquires the quota for a read request.
+     *
+     * @param cost the cost of the request, see {@link #queryCost(long, long, int)}; it is capped at the capacity of
+     *             the query bucket of the tenant
+     * @throws QuotaExceededException if the tenant is over its query quota
+     */
+    public void acquireQuery(String tenantId, long cost) {
+        TenantQuotas tenantQuotas = getTenantQuotas(tenantId);
+        tenantQuotas.acquire(Quota.QUERIES, tenantQuotas.cap(Quota.QUERIES, cost), null, 0);
+    }
+
+    /**
+     * A query costs a unit per series and per started day of its time range: reading the raw data of a series over a
+     * long period is as expensive as reading many series over a short one.
+     *
+     * @param series the number of series read, or 1 if it is not known up front
+     */
+    public static long queryCost(long start, long end, int series) {
+        long days = end > start ? (end - start + DAY - 1) / DAY : 1;
+        return Math.max(1, series) * days;
+    }
+
+    private TenantQuotas getTenantQuotas(String tenantId) {
+        return tenants.getUnchecked(tenantId);
+    }
+
+    private TenantQuotas createTenantQuotas(String tenantId) {
+        TenantQuotas created = new TenantQuotas(tenantId, metricRegistry, clock);
+        created.setRates(getRates(tenantId));
+        return created;
+    }
+
+    private Map<Quota, Double> getRates(String tenantId) {
+        Map<Quota, Double> rates = new EnumMap<>(defaults);
+        configured.getOrDefault(tenantId, emptyMap()).forEach((name, rate) -> {
+            Quota quota = Quota.fromName(name);
+            if (quota != null && rate != null) {
+                rates.put(quota, rate);
+            }
+        });
+        return rates;
+    }
+
+    private static final class TenantQuotas {
+        private final String tenantId;
+        private final Meter[] usage;
+        private final Counter rejections;
+        private final LongSupplier clock;
+        private volatile TokenBucket[] buckets = new TokenBucket[Quota.values().length];
+
+        TenantQuotas(String tenantId, MetricRegistry metricRegistry, LongSupplier clock) {
+            this.tenantId = tenantId;
+            this.clock = clock;
+            usage = new Meter[Quota.values().length];
+            for (Quota quota : Quota.values()) {
+                usage[quota.ordinal()] = register(metricRegistry, MetricRegistry.name("tenant", tenantId,
+                        quota.getName()), new Meter());
+            }
+            rejections = register(metricRegistry, MetricRegistry.name("tenant", tenantId, "quota-rejections"),
+                    new Counter());
+        }
+
+        private static <T extends com.codahale.metrics.Metric> T register(MetricRegistry metricRegistry, String name,
+                T metric) {
+            metricRegistry.remove(name);
+            return metricRegistry.register(name, metric);
+        }
+
+        void setRates(Map<Quota, Double> rates) {
+            TokenBucket[] current = buckets;
+            TokenBucket[] updated = new TokenBucket[current.length];
+            for (Quota quota : Quota.values()) {
+                double rate = rates.getOrDefault(quota, 0.0);
+                TokenBucket bucket = current[quota.ordinal()];
+                if (rate > 0) {
+                    updated[quota.ordinal()] = bucket != null && bucket.getRate() == rate ? bucket
+                            : new TokenBucket(rate, clock);
+                }
+            }
+            buckets = updated;
+        }
+
+        boolean isLimited(Quota quota) {
+            return buckets[quota.ordinal()] != null;
+        }
+
+        /**
+         * @return {@code amount}, or the capacity of the bucket of {@code quota} if it is smaller
+         */
+        long cap(Quota quota, long amount) {
+            TokenBucket bucket = buckets[quota.ordinal()];
+            return bucket == null ? amount : Math.min(amount, bucket.getCapacity());
+        }
+
+        /**
+         * Acquires {@code amount} of {@code quota} and {@code otherAmount} of {@code other}, or neither of them.
+         */
+        void acquire(Quota quota, long amount, Quota other, long otherAmount) {
+            TokenBucket[] current = buckets;
+            TokenBucket bucket = current[quota.ordinal()];
+            tryAcquire(quota, bucket, amount);
+            if (other != null) {
+                try {
+                    tryAcquire(other, current[other.ordinal()], otherAmount);
+                } catch (QuotaExceededException e) {
+                    if (bucket != null && amount > 0) {
+                        bucket.release(amount);
+                    }
+                    throw e;
+                }
+                usage[other.ordinal()].mark(otherAmount);
+            }
+            usage[quota.ordinal()].mark(amount);
+        }
+
+        private void tryAcquire(Quota quota, TokenBucket bucket, long amount) {
+            if (bucket == null || amount == 0) {
+                return;
+            }
+            long wait = bucket.tryAcquire(amount);
+            if (wait > 0) {
+                rejections.inc();
+                throw new QuotaExceededException(tenantId, quota, Math.max(1, TimeUnit.NANOSECONDS.toSeconds(
+                        wait + TimeUnit.SECONDS.toNanos(1) - 1)));
+            }
+        }
+
+        void unregister(MetricRegistry metricRegistry) {
+            for (Quota quota : Quota.values()) {
+                unregister(metricRegistry, MetricRegistry.name("tenant", tenantId, quota.getName()),
+                        usage[quota.ordinal()]);
+            }
+            unregister(metricRegistry, MetricRegistry.name("tenant", tenantId, "quota-rejections"), rejections);
+        }
+
+        private static void unregister(MetricRegistry metricRegistry, String name, com.codahale.metrics.Metric metric) {
+            // A tenant seen again right after being evicted may have registered new metrics under the same names
+            if (metricRegistry.getMetrics().get(name) == metric) {
+                metricRegistry.remove(name);
+            }
+        }
+    }
+}
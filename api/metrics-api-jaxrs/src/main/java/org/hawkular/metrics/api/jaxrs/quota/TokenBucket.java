@@ -0,0 +1,86 @@
+/*
+ * Copyright 2014-2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.metrics.api.jaxrs.quota;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * A lock-free token bucket, refilled at a constant rate and holding up to a second worth of tokens.
+ * <p>
+ * The bucket is implemented as the time at which it will be full again. Acquiring tokens pushes this time forward;
+ * acquisition fails if it would end up more than the bucket capacity ahead of now. A request bigger than the capacity
+ * is granted when the bucket is full, and the following requests wait until the debt is paid.
+ */
+final class TokenBucket {
+    private static final long CAPACITY = TimeUnit.SECONDS.toNanos(1);
+
+    private final double rate;
+    private final double nanosPerToken;
+    private final LongSupplier clock;
+    private final AtomicLong fullAt;
+
+    TokenBucket(double rate) {
+        this(rate, System::nanoTime);
+    }
+
+    TokenBucket(double rate, LongSupplier clock) {
+        this.rate = rate;
+        this.nanosPerToken = CAPACITY / rate;
+        this.clock = clock;
+        this.fullAt = new AtomicLong(clock.getAsLong());
+    }
+
+    double getRate() {
+        return rate;
+    }
+
+    /**
+     * @return the number of tokens held by the bucket when full, at least one
+     */
+    long getCapacity() {
+        return Math.max(1, (long) rate);
+    }
+
+    /**
+     * @return zero if the tokens were acquired, otherwise the number of nanoseconds to wait before trying again
+     */
+    long tryAcquire(long tokens) {
+        long cost = (long) Math.min(Long.MAX_VALUE / 2, Math.ceil(tokens * nanosPerToken));
+        while (true) {
+            long now = clock.getAsLong();
+            long current = fullAt.get();
+            long start = Math.max(current, now);
+            long next = start + cost;
+            if (next - now > CAPACITY && current - now > 0) {
+                // Not enough tokens, wait for the bucket to have room for the request, or to be full for a big one
+                return Math.min(next - now - CAPACITY, current - now);
+            }
+            if (fullAt.compareAndSet(current, next)) {
+                return 0;
+            }
+        }
+    }
+
+    /**
+     * Gives back tokens acquired by a request which did not go through.
+     */
+    void release(long tokens) {
+        fullAt.addAndGet(-(long) Math.min(Long.MAX_VALUE / 2, Math.ceil(tokens * nanosPerToken)));
+    }
+}
@@ -0,0 +1,165 @@
+/*
+ * Copyright 2014-2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.metrics.api.jaxrs.bulk;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.emptyList;
+import static java.util.Collections.emptyMap;
+
+import static org.hawkular.metrics.model.MetricType.AVAILABILITY;
+import static org.hawkular.metrics.model.MetricType.COUNTER;
+import static org.hawkular.metrics.model.MetricType.GAUGE;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.util.AbstractMap.SimpleEntry;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.TimeUnit;
+
+import org.hawkular.metrics.model.AvailabilityType;
+import org.hawkular.metrics.model.DataPoint;
+import org.hawkular.metrics.model.MetricId;
+import org.junit.Test;
+
+public class DataPointParserTest {
+
+    private static List<Entry<MetricId<?>, DataPoint<?>>> parse(DataPointParser parser, String line) {
+        List<Entry<MetricId<?>, DataPoint<?>>> result = new ArrayList<>();
+        parser.parse("t", line, (id, dataPoint) -> result.add(new SimpleEntry<>(id, dataPoint)));
+        return result;
+    }
+
+    private static Entry<MetricId<?>, DataPoint<?>> entry(MetricId<?> id, DataPoint<?> dataPoint) {
+        return new SimpleEntry<>(id, dataPoint);
+    }
+
+    @Test
+    public void shouldParseCsv() {
+        DataPointParser parser = new CsvParser();
+
+        assertEquals(emptyList(), parse(parser, "metric,timestamp,value,type"));
+        assertEquals(asList(entry(new MetricId<>("t", GAUGE, "cpu"), new DataPoint<>(10L, 1.5))),
+                parse(parser, "cpu,10,1.5"));
+        assertEquals(asList(entry(new MetricId<>("t", COUNTER, "a,b"), new DataPoint<>(10L, 7L))),
+                parse(parser, "\"a,b\",10,7,counter"));
+        assertEquals(asList(entry(new MetricId<>("t", AVAILABILITY, "db"), new DataPoint<>(10L, AvailabilityType.UP))),
+                parse(parser, "db,10,up,availability"));
+        assertEquals(emptyList(), parse(parser, "# comment"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectCsvWithInvalidTimestamp() {
+        DataPointParser parser = new CsvParser();
+        parse(parser, "cpu,10,1.5");
+        parse(parser, "cpu,abc,1.5");
+    }
+
+    @Test
+    public void shouldParseNdjson() {
+        DataPointParser parser = new NdjsonParser();
+
+        assertEquals(asList(entry(new MetricId<>("t", GAUGE, "cpu"), new DataPoint<>(10L, 1.5))),
+                parse(parser, "{\"id\": \"cpu\", \"timestamp\": 10, \"value\": 1.5}"));
+        assertEquals(asList(
+                entry(new MetricId<>("t", COUNTER, "c"), new DataPoint<>(10L, 1L)),
+                entry(new MetricId<>("t", COUNTER, "c"), new DataPoint<>(20L, 2L))),
+                parse(parser, "{\"id\": \"c\", \"type\": \"counter\", \"data\": [{\"timestamp\": 10, \"value\": 1}, " +
+                        "{\"timestamp\": 20, \"value\": 2}]}"));
+        assertEquals(emptyList(), parse(parser, "{\"format\": \"hawkular-metrics-export\", \"version\": 1}"));
+        assertEquals(emptyList(), parse(parser, "{\"id\": \"c\", \"tags\": {\"a\": \"b\"}, \"data\": []}"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectNdjsonWithoutTimestamp() {
+        parse(new NdjsonParser(), "{\"id\": \"cpu\", \"value\": 1.5}");
+    }
+
+    @Test
+    public void shouldParseLineProtocol() {
+        DataPointParser parser = new LineProtocolParser(TimeUnit.SECONDS);
+
+        assertEquals(asList(entry(new MetricId<>("t", GAUGE, "cpu"), new DataPoint<>(10_000L, 1.5))),
+                parse(parser, "cpu,host=a value=1.5 10"));
+        assertEquals(asList(
+                entry(new MetricId<>("t", GAUGE, "disk usage.free"), new DataPoint<>(10_000L, 3.0)),
+                entry(new MetricId<>("t", GAUGE, "disk usage.used"), new DataPoint<>(10_000L, 4.0))),
+                parse(parser, "disk\\ usage,path=/a\\ b free=3i,used=4,label=\"x y\",ok=t 10"));
+        assertEquals(asList(entry(new MetricId<>("t", COUNTER, "requests"), new DataPoint<>(10_000L, 42L))),
+                parse(parser, "_counter.requests value=42i 10"));
+    }
+
+    @Test
+    public void shouldPutTagsInNames() {
+        LineProtocolParser parser = new LineProtocolParser(TimeUnit.MILLISECONDS, true);
+        List<Map<String, String>> tags = new ArrayList<>();
+        List<MetricId<?>> ids = new ArrayList<>();
+        LineProtocolParser.SeriesConsumer consumer = (id, seriesTags, dataPoint) -> {
+            ids.add(id);
+            tags.add(seriesTags);
+        };
+
+        parser.parse("t", "cpu,host=a,cpu=cpu\\ 0 usage=1,value=2 10", consumer);
+        parser.parse("t", "cpu,host=a,cpu=cpu\\ 0 usage=3 20", consumer);
+        parser.parse("t", "cpu,host=b,cpu=cpu\\ 0 usage=4 30", consumer);
+        parser.parse("t", "cpu usage=5 40", consumer);
+
+        assertEquals(asList(
+                new MetricId<>("t", GAUGE, "cpu.usage,cpu=cpu 0,host=a"),
+                new MetricId<>("t", GAUGE, "cpu,cpu=cpu 0,host=a"),
+                new MetricId<>("t", GAUGE, "cpu.usage,cpu=cpu 0,host=a"),
+                new MetricId<>("t", GAUGE, "cpu.usage,cpu=cpu 0,host=b"),
+                new MetricId<>("t", GAUGE, "cpu.usage")), ids);
+        Map<String, String> expected = new HashMap<>();
+        expected.put("cpu", "cpu 0");
+        expected.put("host", "a");
+        assertEquals(expected, tags.get(0));
+        assertSame(tags.get(0), tags.get(2));
+        assertEquals("b", tags.get(3).get("host"));
+        assertEquals(emptyMap(), tags.get(4));
+    }
+
+    @Test
+    public void shouldIgnoreTagsInNamesByDefault() {
+        DataPointParser parser = new LineProtocolParser(TimeUnit.MILLISECONDS);
+
+        assertEquals(asList(entry(new MetricId<>("t", GAUGE, "cpu.usage"), new DataPoint<>(10L, 1.0))),
+                parse(parser, "cpu,host=a usage=1 10"));
+
+        List<MetricId<?>> ids = new ArrayList<>();
+        parser.parse("u", "cpu,host=a usage=1 10", (id, dataPoint) -> ids.add(id));
+        assertEquals(asList(new MetricId<>("u", GAUGE, "cpu.usage")), ids);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectInvalidTimestamp() {
+        parse(new LineProtocolParser(TimeUnit.NANOSECONDS), "cpu value=1 10x");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectInvalidTag() {
+        parse(new LineProtocolParser(TimeUnit.NANOSECONDS), "cpu,host value=1 10");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectLineWithoutFields() {
+        parse(new LineProtocolParser(TimeUnit.NANOSECONDS), "cpu");
+    }
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright 2014-2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.metrics.api.jaxrs.filter;
+
+import static org.hawkular.metrics.api.jaxrs.filter.TenantFilter.TENANT_HEADER_NAME;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.container.ContainerResponseContext;
+import javax.ws.rs.container.ResourceInfo;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.runners.MockitoJUnitRunner;
+
+import com.codahale.metrics.MetricRegistry;
+
+@RunWith(MockitoJUnitRunner.class)
+public class RequestMetricsFilterTest {
+
+    @Mock
+    private ResourceInfo resourceInfo;
+
+    @Spy
+    private MetricRegistry metricRegistry = new MetricRegistry();
+
+    @InjectMocks
+    private RequestMetricsFilter filter;
+
+    @Path("/gauges")
+    public static class Resource {
+        @GET
+        public void findGauges() {
+        }
+
+        @GET
+        @Path("/{id}/data")
+        public void findGaugeData() {
+        }
+
+        @GET
+        @Path("{id}/data/")
+        public void findGaugeDataJson() {
+        }
+    }
+
+    private static ContainerRequestContext request(String method, String tenantId) {
+        Map<String, Object> properties = new HashMap<>();
+        ContainerRequestContext requestContext = mock(ContainerRequestContext.class);
+        when(requestContext.getMethod()).thenReturn(method);
+        when(requestContext.getHeaderString(TENANT_HEADER_NAME)).thenReturn(tenantId);
+        when(requestContext.getProperty(anyString())).then(invocation -> properties.get(
+                invocation.getArguments()[0]));
+        doAnswer(invocation -> properties.put((String) invocation.getArguments()[0], invocation.getArguments()[1]))
+                .when(requestContext).setProperty(anyString(), any());
+        return requestContext;
+    }
+
+    @Test
+    public void shouldCombineClassAndMethodPaths() throws Exception {
+        assertEquals("/gauges", RequestMetricsFilter.pathTemplate(Resource.class,
+                Resource.class.getMethod("findGauges")));
+        assertEquals("/gauges/{id}/data", RequestMetricsFilter.pathTemplate(Resource.class,
+                Resource.class.getMethod("findGaugeData")));
+        assertEquals("/gauges/{id}/data", RequestMetricsFilter.pathTemplate(Resource.class,
+                Resource.class.getMethod("findGaugeDataJson")));
+        assertEquals("/", RequestMetricsFilter.pathTemplate(Object.class, Object.class.getMethod("toString")));
+    }
+
+    @Test
+    public void shouldNameTimersAfterPathSegments() throws Exception {
+        assertEquals("gauges", RequestMetricsFilter.metricPath("/gauges"));
+        assertEquals("gauges.id.data", RequestMetricsFilter.metricPath("/gauges/{id}/data"));
+        assertEquals("db.tenantId.series", RequestMetricsFilter.metricPath("/db/{tenantId}/series"));
+        assertNull(RequestMetricsFilter.metricPath("/"));
+    }
+
+    @Test
+    public void shouldTimeEndpointsAndRecentTenants() throws Exception {
+        doReturn(Resource.class).when(resourceInfo).getResourceClass();
+        when(resourceInfo.getResourceMethod()).thenReturn(Resource.class.getMethod("findGaugeData"));
+
+        int requests = RequestMetricsFilter.MAX_TIMED_TENANTS + 100;
+        for (int i = 0; i < requests; i++) {
+            ContainerRequestContext requestContext = request("GET", "t" + i);
+            filter.filter(requestContext);
+            filter.filter(requestContext, mock(ContainerResponseContext.class));
+        }
+
+        assertEquals(requests, metricRegistry.timer("rest.GET.gauges.id.data").getCount());
+        long tenantTimers = metricRegistry.getTimers().keySet().stream().filter(name -> name.startsWith("tenant."))
+                .count();
+        assertTrue(tenantTimers <= RequestMetricsFilter.MAX_TIMED_TENANTS);
+        assertEquals(1, metricRegistry.timer("tenant.t" + (requests - 1) + ".rest").getCount());
+    }
+}
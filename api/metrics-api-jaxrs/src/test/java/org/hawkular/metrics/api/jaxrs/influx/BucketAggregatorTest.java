@@ -0,0 +1,144 @@
+/*
+ * Copyright 2014-2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.metrics.api.jaxrs.influx;
+
+import static java.util.Arrays.asList;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.hawkular.metrics.api.jaxrs.influx.query.parse.definition.DoubleFunctionArgument;
+import org.hawkular.metrics.api.jaxrs.influx.query.parse.definition.FunctionArgument;
+import org.hawkular.metrics.api.jaxrs.influx.query.parse.definition.LongFunctionArgument;
+import org.hawkular.metrics.api.jaxrs.influx.query.parse.definition.NameFunctionArgument;
+import org.hawkular.metrics.model.Buckets;
+import org.hawkular.metrics.model.DataPoint;
+import org.junit.Test;
+
+public class BucketAggregatorTest {
+    private static final long START = 1_000_000L;
+    private static final Buckets BUCKETS = new Buckets(START, 10_000, 2);
+    private static final double DELTA = 0.0001;
+
+    // Two buckets, in descending timestamp order as read from the database
+    private static final List<DataPoint<Double>> POINTS = asList(
+            point(18_000, 4.0),
+            point(15_000, 2.0),
+            point(12_000, 4.0),
+            point(10_000, 6.0),
+            point(8_000, 1.0),
+            point(6_000, 3.0),
+            point(4_000, 3.0),
+            point(2_000, 1.0),
+            point(0, 7.0));
+
+    private static DataPoint<Double> point(long offset, double value) {
+        return new DataPoint<>(START + offset, value);
+    }
+
+    private static List<DataPoint<Double>> aggregate(String function, List<DataPoint<Double>> points,
+            FunctionArgument... arguments) {
+        List<FunctionArgument> functionArguments = new ArrayList<>();
+        functionArguments.add(new NameFunctionArgument(null, "value"));
+        functionArguments.addAll(asList(arguments));
+        BucketAggregator aggregator = new BucketAggregator(function, functionArguments, BUCKETS);
+        points.forEach(aggregator::add);
+        return aggregator.getResult();
+    }
+
+    private static void assertValues(String function, double first, double second, FunctionArgument... arguments) {
+        List<DataPoint<Double>> result = aggregate(function, POINTS, arguments);
+        assertEquals(2, result.size());
+        assertEquals(START + 8_000, result.get(0).getTimestamp());
+        assertEquals(first, result.get(0).getValue(), DELTA);
+        assertEquals(START + 18_000, result.get(1).getTimestamp());
+        assertEquals(second, result.get(1).getValue(), DELTA);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnknownFunction() throws Exception {
+        aggregate("spread", POINTS);
+    }
+
+    @Test
+    public void testSimpleFunctions() throws Exception {
+        assertValues("mean", 3.0, 4.0);
+        assertValues("sum", 15.0, 16.0);
+        assertValues("count", 5.0, 4.0);
+        assertValues("min", 1.0, 2.0);
+        assertValues("max", 7.0, 6.0);
+        assertValues("first", 1.0, 4.0);
+        assertValues("last", 7.0, 6.0);
+        assertValues("difference", 6.0, 2.0);
+        assertValues("derivative", -0.75, -0.25);
+    }
+
+    @Test
+    public void testStddev() throws Exception {
+        assertValues("stddev", Math.sqrt(6.0), Math.sqrt(8.0 / 3.0));
+    }
+
+    @Test
+    public void testModeFavorsNewestValueOnTie() throws Exception {
+        assertValues("mode", 1.0, 4.0);
+        assertValues("histogram", 1.0, 4.0);
+    }
+
+    @Test
+    public void testPercentiles() throws Exception {
+        assertValues("median", 3.0, 4.0);
+        assertValues("percentile", 7.0, 6.0, new DoubleFunctionArgument(100.0));
+
+        List<DataPoint<Double>> points = new ArrayList<>();
+        for (int i = 0; i < 10_000; i++) {
+            points.add(point(i, i % 1000));
+        }
+        List<DataPoint<Double>> result = aggregate("percentile", points, new LongFunctionArgument(90));
+        assertEquals(1, result.size());
+        assertEquals(900.0, result.get(0).getValue(), 10.0);
+    }
+
+    @Test
+    public void testTopAndBottom() throws Exception {
+        List<DataPoint<Double>> top = aggregate("top", POINTS, new LongFunctionArgument(2));
+        assertEquals(asList(POINTS.get(4), POINTS.get(5), POINTS.get(0), POINTS.get(1)), top);
+        assertEquals(asList(4.0, 2.0), asList(top.get(2).getValue(), top.get(3).getValue()));
+
+        List<DataPoint<Double>> bottom = aggregate("bottom", POINTS, new LongFunctionArgument(10));
+        List<DataPoint<Double>> expected = new ArrayList<>(POINTS.subList(4, 9));
+        Collections.reverse(expected);
+        List<DataPoint<Double>> newerBucket = new ArrayList<>(POINTS.subList(0, 4));
+        Collections.reverse(newerBucket);
+        expected.addAll(newerBucket);
+        assertEquals(expected, bottom);
+    }
+
+    @Test
+    public void testResultDoesNotDependOnOrder() throws Exception {
+        List<DataPoint<Double>> shuffled = new ArrayList<>(POINTS);
+        Collections.shuffle(shuffled, new Random(42));
+        for (String function : asList("mean", "first", "last", "difference", "derivative", "mode", "stddev")) {
+            assertEquals(function, aggregate(function, POINTS), aggregate(function, shuffled));
+        }
+        assertEquals(aggregate("top", POINTS, new LongFunctionArgument(3)),
+                aggregate("top", shuffled, new LongFunctionArgument(3)));
+    }
+}
@@ -0,0 +1,137 @@
+/*
+ * Copyright 2014-2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.metrics.api.jaxrs.influx.query;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import org.antlr.v4.runtime.tree.ParseTreeWalker;
+import org.hawkular.metrics.api.jaxrs.influx.query.parse.InfluxQueryParserFactory;
+import org.hawkular.metrics.api.jaxrs.influx.query.parse.definition.AggregatedColumnDefinition;
+import org.hawkular.metrics.api.jaxrs.influx.query.parse.definition.SelectQueryDefinitions;
+import org.hawkular.metrics.api.jaxrs.influx.query.parse.definition.SelectQueryDefinitionsParser;
+import org.hawkular.metrics.api.jaxrs.influx.query.translate.ToIntervalTranslator;
+import org.joda.time.Interval;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.codahale.metrics.MetricRegistry;
+
+public class SelectQueryCacheTest {
+    private static final String QUERY = "select mean(value) from \"_gauge.a\" where time > %s and time < %s"
+            + " group by time(1m) order asc";
+
+    private final InfluxQueryParserFactory parserFactory = new InfluxQueryParserFactory();
+    private final ToIntervalTranslator toIntervalTranslator = new ToIntervalTranslator();
+    private final MetricRegistry metricRegistry = new MetricRegistry();
+    private SelectQueryCache cache;
+
+    @Before
+    public void setup() {
+        cache = newCache("10");
+    }
+
+    private SelectQueryCache newCache(String size) {
+        SelectQueryCache cache = new SelectQueryCache();
+        cache.parserFactory = parserFactory;
+        cache.metricRegistry = metricRegistry;
+        cache.cacheSize = size;
+        cache.init();
+        return cache;
+    }
+
+    private SelectQueryDefinitions parseAndCache(String queryText) {
+        SelectQueryDefinitionsParser definitionsParser = new SelectQueryDefinitionsParser();
+        ParseTreeWalker.DEFAULT.walk(definitionsParser, parserFactory.newInstanceForQuery(queryText).selectQuery());
+        SelectQueryDefinitions definitions = definitionsParser.getSelectQueryDefinitions();
+        cache.put(queryText, definitions, definitionsParser.getWhereClauseParameters());
+        return definitions;
+    }
+
+    private Interval interval(SelectQueryDefinitions definitions) {
+        return toIntervalTranslator.toInterval(definitions.getWhereClause());
+    }
+
+    @Test
+    public void shouldReturnCachedDefinitionsForSameQuery() {
+        String queryText = String.format(QUERY, "now() - 6h", "now()");
+        assertNull(cache.get(queryText));
+
+        SelectQueryDefinitions definitions = parseAndCache(queryText);
+        assertSame(definitions, cache.get(queryText));
+        assertEquals(1, metricRegistry.counter("influx-query-cache-hits").getCount());
+        assertEquals(1, metricRegistry.counter("influx-query-cache-misses").getCount());
+    }
+
+    @Test
+    public void shouldBindNewTimeLiterals() {
+        parseAndCache(String.format(QUERY, "1457000000s", "'2016-03-03 11:00:00'"));
+
+        String queryText = String.format(QUERY, "1457100000s", "'2016-03-04 17:20:00.500'");
+        SelectQueryDefinitions definitions = cache.get(queryText);
+        assertNotNull(definitions);
+
+        SelectQueryDefinitionsParser definitionsParser = new SelectQueryDefinitionsParser();
+        ParseTreeWalker.DEFAULT.walk(definitionsParser, parserFactory.newInstanceForQuery(queryText).selectQuery());
+        assertEquals(interval(definitionsParser.getSelectQueryDefinitions()), interval(definitions));
+        assertEquals(1457100000000L, interval(definitions).getStartMillis());
+        AggregatedColumnDefinition column = (AggregatedColumnDefinition) definitions.getColumnDefinitions().get(0);
+        assertEquals("mean", column.getAggregationFunction());
+        assertFalse(definitions.isOrderDesc());
+    }
+
+    @Test
+    public void shouldBindRelativeMoments() {
+        parseAndCache(String.format(QUERY, "now() - 6h", "now() - 1h"));
+
+        SelectQueryDefinitions definitions = cache.get(String.format(QUERY, "now() - 2d", "now() - 30m"));
+        assertNotNull(definitions);
+        Interval interval = interval(definitions);
+        assertEquals(2 * 24 * 3600_000L - 30 * 60_000L, interval.toDurationMillis(), 1000);
+    }
+
+    @Test
+    public void shouldMissWhenQueryShapeDiffers() {
+        parseAndCache(String.format(QUERY, "now() - 6h", "now()"));
+
+        assertNull(cache.get(String.format(QUERY, "now() + 6h", "now()")));
+        assertNull(cache.get(String.format(QUERY, "now() - 6", "now()")));
+        assertNull(cache.get(String.format(QUERY, "now() - 6h", "now()").replace("1m", "5m")));
+        assertNull(cache.get(String.format(QUERY, "now() - 6h", "now()").replace("_gauge.a", "_gauge.b")));
+        assertNull(cache.get("list series"));
+    }
+
+    @Test
+    public void shouldMissWhenLiteralIsInvalid() {
+        parseAndCache(String.format(QUERY, "'2016-03-03'", "now()"));
+
+        assertNull(cache.get(String.format(QUERY, "'2016-13-03'", "now()")));
+    }
+
+    @Test
+    public void shouldNotCacheWhenDisabled() {
+        cache = newCache("0");
+        String queryText = String.format(QUERY, "now() - 6h", "now()");
+        parseAndCache(queryText);
+
+        assertNull(cache.get(queryText));
+        assertEquals(0L, metricRegistry.getGauges().get("influx-query-cache-size").getValue());
+    }
+}
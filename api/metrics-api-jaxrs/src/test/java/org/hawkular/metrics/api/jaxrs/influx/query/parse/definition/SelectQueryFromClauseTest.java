@@ -16,8 +16,11 @@
  */
 package org.hawkular.metrics.api.jaxrs.influx.query.parse.definition;
 
+import static java.util.Arrays.asList;
+
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
 import org.antlr.v4.runtime.tree.ParseTreeWalker;
@@ -66,4 +69,31 @@ public class SelectQueryFromClauseTest {
         assertFalse(fromClause.isAliased());
         assertEquals("1sqd !! \\\"  dkJl7k1", fromClause.getName());
     }
+
+    @Test
+    public void shouldDetectNameList() {
+        InfluxQueryParser parser = parserFactory.newInstanceForQuery("select * from a, \"b c\", _d");
+        parseTreeWalker.walk(definitionsParser, parser.selectQuery());
+        SelectQueryDefinitions definitions = definitionsParser.getSelectQueryDefinitions();
+        FromClause fromClause = definitions.getFromClause();
+
+        assertFalse(fromClause.isSingleSeries());
+        assertNull(fromClause.getRegularExpression());
+        assertEquals(asList("a", "b c", "_d"), fromClause.getNames());
+        assertEquals("a", fromClause.getName());
+    }
+
+    @Test
+    public void shouldDetectRegularExpression() {
+        InfluxQueryParser parser = parserFactory.newInstanceForQuery("select x.value from /^cpu\\./i as x");
+        parseTreeWalker.walk(definitionsParser, parser.selectQuery());
+        SelectQueryDefinitions definitions = definitionsParser.getSelectQueryDefinitions();
+        FromClause fromClause = definitions.getFromClause();
+
+        assertFalse(fromClause.isSingleSeries());
+        assertTrue(fromClause.getNames().isEmpty());
+        assertEquals("^cpu\\.", fromClause.getRegularExpression().getExpression());
+        assertFalse(fromClause.getRegularExpression().isCaseSensitive());
+        assertEquals("x", fromClause.getAlias());
+    }
 }
@@ -0,0 +1,92 @@
+/*
+ * Copyright 2014-2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.metrics.api.jaxrs.monitoring;
+
+import static java.util.Collections.emptyMap;
+import static java.util.Collections.singleton;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+
+public class MetricRegistryFormatsTest {
+
+    private MetricRegistry registry;
+
+    @Before
+    public void setUp() {
+        registry = new MetricRegistry();
+        registry.meter("gauge-inserts").mark(3);
+        registry.meter("tenant.t1.data-points").mark(5);
+        registry.counter("tenant.t1.quota-rejections").inc();
+        registry.register("ingest-log-lag", (Gauge<Long>) () -> 42L);
+        registry.timer("rest.POST.gauges.id.data").update(2, TimeUnit.MILLISECONDS);
+        registry.timer("tenant.t1.rest").update(3, TimeUnit.MILLISECONDS);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void shouldGroupMetricsByKindInJson() {
+        Map<String, Object> json = MetricRegistryFormats.toJson(registry);
+
+        assertEquals(42L, ((Map<String, Object>) json.get("gauges")).get("ingest-log-lag"));
+        assertEquals(1L, ((Map<String, Object>) json.get("counters")).get("tenant.t1.quota-rejections"));
+        Map<String, Object> meter = (Map<String, Object>) ((Map<String, Object>) json.get("meters"))
+                .get("gauge-inserts");
+        assertEquals(3L, meter.get("count"));
+        Map<String, Object> timer = (Map<String, Object>) ((Map<String, Object>) json.get("timers"))
+                .get("rest.POST.gauges.id.data");
+        assertEquals(1L, timer.get("count"));
+        assertEquals(2.0, (Double) timer.get("max"), 0.001);
+    }
+
+    @Test
+    public void shouldWritePrometheusText() {
+        String text = MetricRegistryFormats.toPrometheus(registry);
+
+        assertTrue(text, text.contains("# TYPE hawkular_gauge_inserts_total counter\n"
+                + "hawkular_gauge_inserts_total 3.0\n"));
+        assertTrue(text, text.contains("hawkular_tenant_data_points_total{tenant=\"t1\"} 5.0\n"));
+        assertTrue(text, text.contains("hawkular_tenant_quota_rejections{tenant=\"t1\"} 1.0\n"));
+        assertTrue(text, text.contains("hawkular_ingest_log_lag 42.0\n"));
+        assertTrue(text, text.contains("# TYPE hawkular_rest_post_gauges_id_data_seconds summary\n"));
+        assertTrue(text, text.contains("hawkular_rest_post_gauges_id_data_seconds{quantile=\"0.5\"} 0.002\n"));
+        assertTrue(text, text.contains("hawkular_rest_post_gauges_id_data_seconds_count 1\n"));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void shouldLeaveOutTenantMetrics() {
+        Map<String, Object> json = MetricRegistryFormats.toJson(registry, MetricRegistryFormats.WITHOUT_TENANTS);
+        assertEquals(emptyMap(), json.get("counters"));
+        assertEquals(singleton("gauge-inserts"), ((Map<String, Object>) json.get("meters")).keySet());
+        assertEquals(singleton("rest.POST.gauges.id.data"), ((Map<String, Object>) json.get("timers")).keySet());
+
+        String text = MetricRegistryFormats.toPrometheus(registry, MetricRegistryFormats.WITHOUT_TENANTS);
+        assertFalse(text, text.contains("t1"));
+        assertTrue(text, text.contains("hawkular_gauge_inserts_total 3.0\n"));
+    }
+}
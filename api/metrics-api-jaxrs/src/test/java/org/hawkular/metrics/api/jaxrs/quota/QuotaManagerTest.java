@@ -0,0 +1,146 @@
+/*
+ * Copyright 2014-2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.metrics.api.jaxrs.quota;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.nCopies;
+import static java.util.Collections.singletonList;
+import static java.util.Collections.singletonMap;
+
+import static org.hawkular.metrics.model.MetricType.GAUGE;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.hawkular.metrics.model.DataPoint;
+import org.hawkular.metrics.model.Metric;
+import org.hawkular.metrics.model.MetricId;
+import org.junit.Test;
+
+import com.codahale.metrics.MetricRegistry;
+
+public class QuotaManagerTest {
+
+    private final AtomicLong now = new AtomicLong(TimeUnit.HOURS.toNanos(1));
+    private final MetricRegistry metricRegistry = new MetricRegistry();
+
+    private QuotaManager create(Quota quota, double rate, Quota other, double otherRate) {
+        Map<Quota, Double> defaults = new EnumMap<>(Quota.class);
+        defaults.put(quota, rate);
+        if (other != null) {
+            defaults.put(other, otherRate);
+        }
+        return new QuotaManager(metricRegistry, defaults, 1000, now::get);
+    }
+
+    private static Metric<Double> gauge(String name, int points) {
+        return new Metric<>(new MetricId<>("t1", GAUGE, name), nCopies(points, new DataPoint<>(1L, 1.0)));
+    }
+
+    private static void assertRejected(Quota quota, Runnable request) {
+        try {
+            request.run();
+            fail("Expected " + quota.getName() + " to be exceeded");
+        } catch (QuotaExceededException e) {
+            assertEquals(quota, e.getQuota());
+        }
+    }
+
+    private long count(String name) {
+        return metricRegistry.meter(MetricRegistry.name("tenant", "t1", name)).getCount();
+    }
+
+    @Test
+    public void shouldLimitDataPoints() {
+        QuotaManager quotaManager = create(Quota.DATA_POINTS, 100, null, 0);
+
+        quotaManager.acquireDataPoints("t1", GAUGE, singletonList(gauge("g1", 100)));
+        assertRejected(Quota.DATA_POINTS, () -> quotaManager.acquireDataPoints("t1", GAUGE, "g1",
+                nCopies(10, new DataPoint<>(1L, 1.0))));
+
+        now.addAndGet(TimeUnit.MILLISECONDS.toNanos(100));
+        quotaManager.acquireDataPoints("t1", GAUGE, "g1", nCopies(10, new DataPoint<>(1L, 1.0)));
+        assertEquals(110, count("data-points"));
+        assertEquals(1, metricRegistry.counter("tenant.t1.quota-rejections").getCount());
+    }
+
+    @Test
+    public void shouldOnlyChargeNewSeries() {
+        QuotaManager quotaManager = create(Quota.NEW_SERIES, 2, null, 0);
+
+        quotaManager.acquireDataPoints("t1", GAUGE, asList(gauge("g1", 1), gauge("g2", 1)));
+        quotaManager.acquireDataPoints("t1", GAUGE, asList(gauge("g1", 5), gauge("g2", 5)));
+        assertRejected(Quota.NEW_SERIES, () -> quotaManager.acquireDataPoints("t1", GAUGE,
+                singletonList(gauge("g3", 1))));
+        assertEquals(2, count("new-series"));
+    }
+
+    @Test
+    public void shouldReleaseNewSeriesWhenDataPointsAreRejected() {
+        QuotaManager quotaManager = create(Quota.NEW_SERIES, 2, Quota.DATA_POINTS, 10);
+
+        quotaManager.acquireDataPoints("t1", GAUGE, singletonList(gauge("g1", 10)));
+        assertRejected(Quota.DATA_POINTS, () -> quotaManager.acquireDataPoints("t1", GAUGE,
+                singletonList(gauge("g2", 1))));
+        assertEquals(1, count("new-series"));
+        assertEquals(10, count("data-points"));
+
+        // Lifting the data point quota keeps the new series bucket, which still has the token given back
+        quotaManager.updateQuotas("t1", singletonMap(Quota.DATA_POINTS.getName(), 0.0));
+        quotaManager.acquireDataPoints("t1", GAUGE, singletonList(gauge("g2", 1)));
+        assertRejected(Quota.NEW_SERIES, () -> quotaManager.acquireDataPoints("t1", GAUGE,
+                singletonList(gauge("g3", 1))));
+        assertEquals(2, count("new-series"));
+    }
+
+    @Test
+    public void shouldCapQueryCostAtBucketCapacity() {
+        QuotaManager quotaManager = create(Quota.QUERIES, 10, null, 0);
+        long cost = QuotaManager.queryCost(0, System.currentTimeMillis(), 5);
+        assertTrue(cost > 10);
+
+        quotaManager.acquireQuery("t1", cost);
+        try {
+            quotaManager.acquireQuery("t1", 1);
+            fail("Expected the query quota to be exceeded");
+        } catch (QuotaExceededException e) {
+            assertEquals(1, e.getRetryAfter());
+        }
+
+        now.addAndGet(TimeUnit.SECONDS.toNanos(1));
+        quotaManager.acquireQuery("t1", cost);
+        assertEquals(20, count("queries"));
+    }
+
+    @Test
+    public void shouldRemoveTenantMetricsWhenDestroyed() {
+        QuotaManager quotaManager = create(Quota.QUERIES, 10, null, 0);
+        quotaManager.acquireQuery("t1", 1);
+        List<String> names = asList("tenant.t1.data-points", "tenant.t1.new-series", "tenant.t1.queries",
+                "tenant.t1.quota-rejections");
+        assertTrue(metricRegistry.getNames().containsAll(names));
+
+        quotaManager.destroy();
+        assertTrue(metricRegistry.getNames().isEmpty());
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright 2014-2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.metrics.api.jaxrs.quota;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Test;
+
+public class TokenBucketTest {
+
+    private final AtomicLong now = new AtomicLong(TimeUnit.HOURS.toNanos(1));
+
+    @Test
+    public void shouldGrantUpToOneSecondOfTokens() {
+        TokenBucket bucket = new TokenBucket(10, now::get);
+
+        assertEquals(0, bucket.tryAcquire(10));
+        long wait = bucket.tryAcquire(1);
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(100), wait);
+
+        now.addAndGet(wait);
+        assertEquals(0, bucket.tryAcquire(1));
+    }
+
+    @Test
+    public void shouldRefillAtConstantRate() {
+        TokenBucket bucket = new TokenBucket(100, now::get);
+
+        assertEquals(0, bucket.tryAcquire(100));
+        now.addAndGet(TimeUnit.MILLISECONDS.toNanos(500));
+        assertEquals(0, bucket.tryAcquire(50));
+        assertTrue(bucket.tryAcquire(1) > 0);
+    }
+
+    @Test
+    public void shouldGrantBigRequestWhenFullAndMakeFollowingOnesWait() {
+        TokenBucket bucket = new TokenBucket(10, now::get);
+
+        assertEquals(0, bucket.tryAcquire(30));
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(2100), bucket.tryAcquire(1));
+
+        now.addAndGet(TimeUnit.SECONDS.toNanos(2) + TimeUnit.MILLISECONDS.toNanos(100));
+        assertEquals(0, bucket.tryAcquire(1));
+    }
+
+    @Test
+    public void shouldRejectBigRequestUntilFull() {
+        TokenBucket bucket = new TokenBucket(10, now::get);
+
+        assertEquals(0, bucket.tryAcquire(5));
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(500), bucket.tryAcquire(20));
+
+        now.addAndGet(TimeUnit.MILLISECONDS.toNanos(500));
+        assertEquals(0, bucket.tryAcquire(20));
+    }
+
+    @Test
+    public void shouldGiveBackReleasedTokens() {
+        TokenBucket bucket = new TokenBucket(10, now::get);
+
+        assertEquals(0, bucket.tryAcquire(10));
+        bucket.release(4);
+        assertEquals(0, bucket.tryAcquire(4));
+        assertTrue(bucket.tryAcquire(1) > 0);
+    }
+
+    @Test
+    public void shouldWeightQueryCostByRangeAndSeries() {
+        long day = TimeUnit.DAYS.toMillis(1);
+
+        assertEquals(1, QuotaManager.queryCost(0, TimeUnit.HOURS.toMillis(8), 1));
+        assertEquals(1, QuotaManager.queryCost(0, 0, 0));
+        assertEquals(3650, QuotaManager.queryCost(0, 3650 * day, 1));
+        assertEquals(6, QuotaManager.queryCost(0, day + 1, 3));
+    }
+}
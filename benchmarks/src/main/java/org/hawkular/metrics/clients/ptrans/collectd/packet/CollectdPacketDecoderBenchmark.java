@@ -0,0 +1,126 @@
+/*
+ * Copyright 2014-2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.metrics.clients.ptrans.collectd.packet;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.hawkular.metrics.clients.ptrans.collectd.event.CollectdEventsDecoder;
+import org.hawkular.metrics.clients.ptrans.collectd.event.DataType;
+import org.hawkular.metrics.clients.ptrans.collectd.event.Event;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.util.CharsetUtil;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.datagram.DatagramPacket;
+import io.vertx.core.net.SocketAddress;
+
+/**
+ * Decoding of a collectd network packet into parts, then into events.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class CollectdPacketDecoderBenchmark {
+
+    @Param({"1", "50"})
+    public int valueLists;
+
+    private CollectdPacketDecoder packetDecoder;
+    private CollectdEventsDecoder eventsDecoder;
+    private DatagramPacket packet;
+    private CollectdPacket collectdPacket;
+
+    @Setup
+    public void setup() {
+        packetDecoder = new CollectdPacketDecoder();
+        eventsDecoder = new CollectdEventsDecoder();
+
+        ByteBuf buffer = Unpooled.buffer();
+        writeString(buffer, PartType.HOST, "web01.example.com");
+        writeNumeric(buffer, PartType.TIME_HIGH_RESOLUTION, 1_450_000_000L << 30);
+        writeNumeric(buffer, PartType.INTERVAL_HIGH_RESOLUTION, 10L << 30);
+        writeString(buffer, PartType.PLUGIN, "cpu");
+        for (int i = 0; i < valueLists; i++) {
+            writeString(buffer, PartType.PLUGIN_INSTANCE, String.valueOf(i));
+            writeString(buffer, PartType.TYPE, "cpu");
+            writeString(buffer, PartType.INSTANCE, "idle");
+            writeGauge(buffer, 98.5 + i);
+        }
+        Buffer data = Buffer.buffer(buffer);
+        packet = new DatagramPacket() {
+            @Override
+            public SocketAddress sender() {
+                return null;
+            }
+
+            @Override
+            public Buffer data() {
+                return data;
+            }
+        };
+        collectdPacket = packetDecoder.decode(packet);
+    }
+
+    private static void writeString(ByteBuf buffer, PartType partType, String value) {
+        byte[] bytes = value.getBytes(CharsetUtil.US_ASCII);
+        buffer.writeShort(partType.getId());
+        buffer.writeShort(4 + bytes.length + 1);
+        buffer.writeBytes(bytes);
+        buffer.writeByte(0);
+    }
+
+    private static void writeNumeric(ByteBuf buffer, PartType partType, long value) {
+        buffer.writeShort(partType.getId());
+        buffer.writeShort(12);
+        buffer.writeLong(value);
+    }
+
+    private static void writeGauge(ByteBuf buffer, double value) {
+        buffer.writeShort(PartType.VALUES.getId());
+        buffer.writeShort(4 + 2 + 1 + 8);
+        buffer.writeShort(1);
+        buffer.writeByte(DataType.GAUGE.getId());
+        // Gauges are the only little-endian values of the protocol
+        buffer.writeLong(Long.reverseBytes(Double.doubleToLongBits(value)));
+    }
+
+    @Benchmark
+    public CollectdPacket decodePacket() {
+        return packetDecoder.decode(packet);
+    }
+
+    @Benchmark
+    public List<Event> decodeEvents() {
+        return eventsDecoder.decode(collectdPacket);
+    }
+}
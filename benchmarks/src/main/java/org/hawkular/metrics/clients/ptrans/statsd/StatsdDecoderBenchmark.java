@@ -0,0 +1,80 @@
+/*
+ * Copyright 2014-2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.metrics.clients.ptrans.statsd;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.netty.buffer.Unpooled;
+import io.netty.channel.socket.DatagramPacket;
+import io.netty.util.CharsetUtil;
+
+/**
+ * Decoding of a statsd datagram.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class StatsdDecoderBenchmark {
+
+    private StatsdDecoder decoder;
+    private DatagramPacket gauge;
+    private DatagramPacket counter;
+    private List<Object> out;
+
+    @Setup
+    public void setup() {
+        decoder = new StatsdDecoder();
+        InetSocketAddress recipient = new InetSocketAddress("localhost", 8125);
+        // The decoder does not consume the buffer, so a packet can be decoded again and again
+        gauge = new DatagramPacket(Unpooled.copiedBuffer("web.frontend.response_time:321.5|g", CharsetUtil.UTF_8),
+                recipient);
+        counter = new DatagramPacket(Unpooled.copiedBuffer("web.frontend.requests:1|c", CharsetUtil.UTF_8),
+                recipient);
+        out = new ArrayList<>(1);
+    }
+
+    @Benchmark
+    public List<Object> decodeGauge() throws Exception {
+        out.clear();
+        decoder.decode(null, gauge, out);
+        return out;
+    }
+
+    @Benchmark
+    public List<Object> decodeCounter() throws Exception {
+        out.clear();
+        decoder.decode(null, counter, out);
+        return out;
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright 2014-2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.metrics.core.service;
+
+import static java.util.Collections.emptyList;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.hawkular.metrics.model.Buckets;
+import org.hawkular.metrics.model.DataPoint;
+import org.hawkular.metrics.model.NumericBucketPoint;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import rx.Observable;
+
+/**
+ * Bucket lookup and the bucketing of a series into statistics, as done for every bucketed query.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class BucketsBenchmark {
+
+    @Param({"1000", "100000"})
+    public int points;
+
+    @Param({"60"})
+    public int bucketCount;
+
+    private Buckets buckets;
+    private long[] timestamps;
+    private List<DataPoint<Double>> dataPoints;
+
+    @Setup
+    public void setup() {
+        long end = 1_000_000_000L;
+        long start = end - points * 10_000L;
+        buckets = Buckets.fromCount(start, end, bucketCount);
+        Random random = new Random(42);
+        timestamps = new long[points];
+        dataPoints = new ArrayList<>(points);
+        for (int i = 0; i < points; i++) {
+            // Descending order, like the data table
+            timestamps[i] = end - 1 - i * 10_000L;
+            dataPoints.add(new DataPoint<>(timestamps[i], random.nextDouble() * 100));
+        }
+    }
+
+    @Benchmark
+    public void getIndex(Blackhole blackhole) {
+        for (long timestamp : timestamps) {
+            blackhole.consume(buckets.getIndex(timestamp));
+        }
+    }
+
+    @Benchmark
+    public List<NumericBucketPoint> bucketize() {
+        return MetricsServiceImpl.bucketize(Observable.from(dataPoints), buckets, emptyList()).toBlocking().single();
+    }
+
+    @Benchmark
+    public List<NumericBucketPoint> bucketizeWithPercentiles() {
+        return MetricsServiceImpl.bucketize(Observable.from(dataPoints), buckets, Arrays.asList(90.0, 99.0))
+                .toBlocking().single();
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright 2014-2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.metrics.core.service;
+
+import static java.util.Collections.emptyList;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.hawkular.metrics.model.Buckets;
+import org.hawkular.metrics.model.DataPoint;
+import org.hawkular.metrics.model.NumericBucketPoint;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Statistics of a single bucket, with the median only or with extra percentiles.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class NumericDataPointCollectorBenchmark {
+
+    @Param({"100", "10000"})
+    public int points;
+
+    private Buckets buckets;
+    private DataPoint<Double>[] dataPoints;
+
+    @Setup
+    @SuppressWarnings("unchecked")
+    public void setup() {
+        buckets = new Buckets(1, points, 1);
+        Random random = new Random(42);
+        dataPoints = new DataPoint[points];
+        for (int i = 0; i < points; i++) {
+            dataPoints[i] = new DataPoint<>(1L + i, random.nextGaussian() * 10 + 50);
+        }
+    }
+
+    @Benchmark
+    public NumericBucketPoint withoutPercentiles() {
+        return collect(emptyList());
+    }
+
+    @Benchmark
+    public NumericBucketPoint withPercentiles() {
+        return collect(Arrays.asList(75.0, 90.0, 95.0, 99.0));
+    }
+
+    private NumericBucketPoint collect(List<Double> percentiles) {
+        NumericDataPointCollector collector = new NumericDataPointCollector(buckets, 0, percentiles);
+        for (DataPoint<Double> dataPoint : dataPoints) {
+            collector.increment(dataPoint);
+        }
+        return collector.toBucketPoint();
+    }
+}
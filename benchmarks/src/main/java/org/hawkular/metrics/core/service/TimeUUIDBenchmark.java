@@ -0,0 +1,69 @@
+/*
+ * Copyright 2014-2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.metrics.core.service;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Time-based UUID generation, done for every data point written.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class TimeUUIDBenchmark {
+
+    private long timestamp = 1_450_000_000_000L;
+
+    @Benchmark
+    public UUID timeUUIDUtils() {
+        return TimeUUIDUtils.getTimeUUID(timestamp++);
+    }
+
+    @Benchmark
+    public UUID uuidGen() {
+        return UUIDGen.getTimeUUID(timestamp++);
+    }
+
+    @Benchmark
+    public UUID uuidGenNow() {
+        return UUIDGen.getTimeUUID();
+    }
+
+    /**
+     * {@link UUIDGen#getTimeUUID()} is shared state, see how it behaves under contention.
+     */
+    @Benchmark
+    @Threads(4)
+    public UUID uuidGenNowContended() {
+        return UUIDGen.getTimeUUID();
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright 2014-2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.metrics.core.service.transformers;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.datastax.driver.core.BatchStatement;
+import com.datastax.driver.core.SimpleStatement;
+import com.datastax.driver.core.Statement;
+import com.datastax.driver.core.utils.UUIDs;
+
+import rx.Observable;
+
+/**
+ * Grouping of the insert statements of a write request into batches.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class BatchStatementTransformerBenchmark {
+
+    @Param({"10", "1000"})
+    public int statements;
+
+    private List<Statement> statementList;
+    private BatchStatementTransformer transformer;
+
+    @Setup
+    public void setup() {
+        statementList = new ArrayList<>(statements);
+        for (int i = 0; i < statements; i++) {
+            statementList.add(new DataPointStatement("INSERT INTO data (tenant_id, type, metric, dpart, time, n_value) "
+                    + "VALUES (?, ?, ?, ?, ?, ?)", "t1", 0, "m" + i, 0L, UUIDs.timeBased(), 1.0));
+        }
+        transformer = new BatchStatementTransformer();
+    }
+
+    @Benchmark
+    public List<BatchStatement> batch() {
+        return Observable.from(statementList).compose(transformer).toList().toBlocking().single();
+    }
+
+    /**
+     * Batching only looks at the number of statements, so there is no need for a cluster to build them.
+     */
+    private static class DataPointStatement extends SimpleStatement {
+        DataPointStatement(String query, Object... values) {
+            super(query, null, values);
+        }
+    }
+}
@@ -0,0 +1,138 @@
+/*
+ * Copyright 2014-2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.metrics.model;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.hawkular.metrics.model.fasterxml.jackson.AvailabilityTypeDeserializer;
+import org.hawkular.metrics.model.fasterxml.jackson.AvailabilityTypeSerializer;
+import org.hawkular.metrics.model.fasterxml.jackson.MetricTypeDeserializer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.fasterxml.jackson.annotation.JsonInclude.Include;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+
+/**
+ * JSON (de)serialization of write requests and query responses. The mapper is configured like the one of the REST
+ * endpoint.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class JsonBenchmark {
+
+    @Param({"10", "1000"})
+    public int points;
+
+    private ObjectMapper mapper;
+    private ObjectReader metricsReader;
+    private ObjectReader dataPointsReader;
+    private List<Metric<Double>> metrics;
+    private List<DataPoint<Double>> dataPoints;
+    private List<NumericBucketPoint> bucketPoints;
+    private byte[] metricsJson;
+    private byte[] dataPointsJson;
+
+    @Setup
+    public void setup() throws IOException {
+        mapper = new ObjectMapper();
+        mapper.configure(JsonParser.Feature.ALLOW_SINGLE_QUOTES, true);
+        mapper.configure(JsonParser.Feature.ALLOW_UNQUOTED_FIELD_NAMES, true);
+        mapper.setSerializationInclusion(Include.NON_EMPTY);
+        mapper.setSerializationInclusion(Include.NON_NULL);
+        mapper.configure(SerializationFeature.WRITE_EMPTY_JSON_ARRAYS, false);
+        mapper.configure(SerializationFeature.WRITE_NULL_MAP_VALUES, false);
+        SimpleModule module = new SimpleModule();
+        module.addDeserializer(AvailabilityType.class, new AvailabilityTypeDeserializer());
+        module.addDeserializer(MetricType.class, new MetricTypeDeserializer());
+        module.addSerializer(AvailabilityType.class, new AvailabilityTypeSerializer());
+        mapper.registerModule(module);
+
+        metricsReader = mapper.reader(new TypeReference<List<Metric<Double>>>() {});
+        dataPointsReader = mapper.reader(new TypeReference<List<DataPoint<Double>>>() {});
+
+        dataPoints = new ArrayList<>(points);
+        bucketPoints = new ArrayList<>(points);
+        for (int i = 0; i < points; i++) {
+            dataPoints.add(new DataPoint<>(1_450_000_000_000L + i * 10_000L, i * 1.5));
+            bucketPoints.add(new NumericBucketPoint.Builder(i * 60_000L, (i + 1) * 60_000L)
+                    .setMin(1).setAvg(2).setMedian(2).setMax(3).setSamples(6).build());
+        }
+        // Many series with a few points each, like a collector report
+        metrics = new ArrayList<>();
+        List<Map<String, Object>> request = new ArrayList<>();
+        for (int i = 0; i < points; i += 10) {
+            List<DataPoint<Double>> data = dataPoints.subList(i, Math.min(i + 10, points));
+            metrics.add(new Metric<>(new MetricId<>("t1", MetricType.GAUGE, "gauge-" + i), data));
+            Map<String, Object> metric = new HashMap<>();
+            metric.put("id", "gauge-" + i);
+            metric.put("data", data);
+            request.add(metric);
+        }
+        // What clients send, without the tenant id the response holds
+        metricsJson = mapper.writeValueAsBytes(request);
+        dataPointsJson = mapper.writeValueAsBytes(dataPoints);
+    }
+
+    @Benchmark
+    public List<Metric<Double>> readMetrics() throws IOException {
+        return metricsReader.readValue(metricsJson);
+    }
+
+    @Benchmark
+    public List<DataPoint<Double>> readDataPoints() throws IOException {
+        return dataPointsReader.readValue(dataPointsJson);
+    }
+
+    @Benchmark
+    public byte[] writeMetrics() throws IOException {
+        return mapper.writeValueAsBytes(metrics);
+    }
+
+    @Benchmark
+    public byte[] writeDataPoints() throws IOException {
+        return mapper.writeValueAsBytes(dataPoints);
+    }
+
+    @Benchmark
+    public byte[] writeBucketPoints() throws IOException {
+        return mapper.writeValueAsBytes(bucketPoints);
+    }
+}
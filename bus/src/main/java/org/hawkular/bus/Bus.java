@@ -17,11 +17,16 @@
 package org.hawkular.bus;
 
 import java.util.Collections;
+import java.util.Iterator;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import javax.annotation.Resource;
 import javax.enterprise.concurrent.ManagedExecutorService;
 import javax.enterprise.context.Dependent;
+import javax.inject.Inject;
 import javax.jms.CompletionListener;
 import javax.jms.ConnectionFactory;
 import javax.jms.Destination;
@@ -34,9 +39,22 @@ import javax.jms.TextMessage;
 import org.hawkular.bus.common.BasicMessage;
 import org.jboss.logging.Logger;
 
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+
 import rx.Observable;
 
 /**
+ * Sends messages to the bus.
+ * <p>
+ * A JMS context is intended for single threaded usage, so each sending thread gets its own context and producer,
+ * which are reused for every message the thread sends. Contexts of threads which are gone are closed the next time a
+ * context is created, the others when the bus is destroyed.
+ * <p>
+ * The bus-send timer measures the time between a send and the completion notification of the broker, and the
+ * bus-send-failures counter is incremented when a send fails.
+ *
  * @author jsanda
  */
 @Dependent
@@ -57,6 +75,19 @@ public class Bus {
     @Resource
     private ManagedExecutorService executorService;
 
+    @Inject
+    private MetricRegistry metricRegistry;
+
+    private final Map<Thread, PooledProducer> producers = new ConcurrentHashMap<>();
+    private Timer sendTimer;
+    private Counter sendFailures;
+
+    @PostConstruct
+    void init() {
+        sendTimer = metricRegistry.timer("bus-send");
+        sendFailures = metricRegistry.counter("bus-send-failures");
+    }
+
     /**
      * Sends a message asynchronously.
      *
@@ -67,42 +98,75 @@ public class Bus {
      */
     public <T extends BasicMessage> Observable<TextMessage> send(Destination destination, T message) {
         return Observable.create(subscriber -> {
+            Timer.Context timerContext = sendTimer.time();
             try {
-                // We create a context per request (i.e., method invocation) in order to avoid any concurrency
-                // issues since the underlying JMS session is intended for single threaded usage.
-                JMSContext context = connectionFactory.createContext();
-                try {
-                    JMSProducer producer = context.createProducer();
-                    TextMessage jmsMessage = context.createTextMessage();
-                    prepareJMSMessage(message, jmsMessage, Collections.emptyMap());
-                    producer.setAsync(new CompletionListener() {
-                        @Override
-                        public void onCompletion(Message message) {
-                            subscriber.onNext((TextMessage) message);
-                            close(context);
-                            // TODO Should we wait until context is closed to call onCompleted?
-                            subscriber.onCompleted();
-                        }
-
-                        @Override
-                        public void onException(Message message, Exception exception) {
-                            close(context);
-                            subscriber.onError(exception);
-                        }
-                    });
-                    producer.send(destination, jmsMessage);
-                } catch (Exception e) {
-                    close(context);
-                    subscriber.onError(e);
-
-                }
+                PooledProducer pooledProducer = getPooledProducer();
+                TextMessage jmsMessage = pooledProducer.context.createTextMessage();
+                prepareJMSMessage(message, jmsMessage, Collections.emptyMap());
+                // The listener is called from a provider thread, it must not use the context
+                pooledProducer.producer.setAsync(new CompletionListener() {
+                    @Override
+                    public void onCompletion(Message message) {
+                        timerContext.stop();
+                        subscriber.onNext((TextMessage) message);
+                        subscriber.onCompleted();
+                    }
+
+                    @Override
+                    public void onException(Message message, Exception exception) {
+                        sendFailures.inc();
+                        subscriber.onError(exception);
+                    }
+                });
+                pooledProducer.producer.send(destination, jmsMessage);
             } catch (Exception e) {
-                // No need to call close() here since we failed to create the context
+                sendFailures.inc();
+                // The context may be broken, the next message sent from this thread will get a new one
+                PooledProducer pooledProducer = producers.remove(Thread.currentThread());
+                if (pooledProducer != null) {
+                    close(pooledProducer.context);
+                }
                 subscriber.onError(e);
             }
         });
     }
 
+    private PooledProducer getPooledProducer() {
+        Thread thread = Thread.currentThread();
+        PooledProducer pooledProducer = producers.get(thread);
+        if (pooledProducer == null) {
+            closeProducersOfTerminatedThreads();
+            JMSContext context = connectionFactory.createContext();
+            pooledProducer = new PooledProducer(context, context.createProducer());
+            producers.put(thread, pooledProducer);
+            log.debugf("Created JMS context for %s", thread);
+        }
+        return pooledProducer;
+    }
+
+    private void closeProducersOfTerminatedThreads() {
+        Iterator<Map.Entry<Thread, PooledProducer>> iterator = producers.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<Thread, PooledProducer> entry = iterator.next();
+            if (!entry.getKey().isAlive()) {
+                iterator.remove();
+                close(entry.getValue().context);
+            }
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        producers.values().forEach(pooledProducer -> {
+            try {
+                pooledProducer.context.close();
+            } catch (Exception e) {
+                log.warn("Failed to close " + pooledProducer.context, e);
+            }
+        });
+        producers.clear();
+    }
+
     private <T extends BasicMessage> Message prepareJMSMessage(T message, TextMessage jmsMessage,
             Map<String, String> headers) throws JMSException {
         String json = message.toJSON();
@@ -148,4 +212,13 @@ public class Bus {
         });
     }
 
+    private static class PooledProducer {
+        final JMSContext context;
+        final JMSProducer producer;
+
+        PooledProducer(JMSContext context, JMSProducer producer) {
+            this.context = context;
+            this.producer = producer;
+        }
+    }
 }
@@ -17,13 +17,15 @@
 
 package org.hawkular.metrics.component.publish;
 
-import static java.util.stream.Collectors.toList;
-
 import static org.hawkular.metrics.model.MetricType.AVAILABILITY;
 
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.TimeUnit;
 
+import javax.annotation.PostConstruct;
 import javax.annotation.PreDestroy;
 import javax.annotation.Resource;
 import javax.enterprise.context.ApplicationScoped;
@@ -37,15 +39,29 @@ import org.hawkular.metrics.api.jaxrs.ServiceReady;
 import org.hawkular.metrics.api.jaxrs.ServiceReadyEvent;
 import org.hawkular.metrics.api.jaxrs.util.Eager;
 import org.hawkular.metrics.model.AvailabilityType;
+import org.hawkular.metrics.model.DataPoint;
 import org.hawkular.metrics.model.Metric;
 import org.hawkular.metrics.model.MetricId;
 import org.jboss.logging.Logger;
 
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+
 import rx.Observable;
 import rx.Subscription;
 import rx.schedulers.Schedulers;
 
 /**
+ * Publishes inserted data points on the bus.
+ * <p>
+ * Inserted metrics are buffered for 50 milliseconds. The data points of a buffer are then sent in one message per
+ * tenant and topic, instead of one message per metric. The bus-published-data-points meter counts the data points
+ * sent, and the bus-message-data-points histogram tracks how many of them each message holds.
+ * <p>
+ * Metrics which no consumer watches, according to the {@link SubscriptionRegistry}, are skipped before any message
+ * is built; the bus-unwatched-data-points meter counts their data points.
+ *
  * @author Thomas Segismont
  */
 @ApplicationScoped
@@ -53,6 +69,8 @@ import rx.schedulers.Schedulers;
 public class InsertedDataSubscriber {
     private static final Logger log = Logger.getLogger(InsertedDataSubscriber.class);
 
+    private static final int MAX_BUFFERED_METRICS = 1000;
+
     @Resource(mappedName = "java:/topic/HawkularMetricData")
     private Topic numericTopic;
 
@@ -62,68 +80,94 @@ public class InsertedDataSubscriber {
     @Inject
     private Bus bus;
 
+    @Inject
+    private SubscriptionRegistry subscriptionRegistry;
+
+    @Inject
+    private MetricRegistry metricRegistry;
+
+    private Meter publishedDataPoints;
+    private Meter unwatchedDataPoints;
+    private Histogram messageDataPoints;
     private Subscription subscription;
 
+    @PostConstruct
+    void init() {
+        publishedDataPoints = metricRegistry.meter("bus-published-data-points");
+        messageDataPoints = metricRegistry.histogram("bus-message-data-points");
+        unwatchedDataPoints = metricRegistry.meter("bus-unwatched-data-points");
+    }
+
     public void onMetricsServiceReady(@Observes @ServiceReady ServiceReadyEvent event) {
-        Observable<List<Metric<?>>> events = event.getInsertedData().buffer(50, TimeUnit.MILLISECONDS, 100)
-                .filter(list -> !list.isEmpty())
-                .onBackpressureBuffer()
-                .observeOn(Schedulers.io());
-        subscription = events.subscribe(list -> list.forEach(this::onInsertedData));
+        // Events are delivered from a thread dedicated to this subscriber, out of a bounded queue: publishing is
+        // done from that thread so that a slow broker makes the queue overflow instead of filling the heap
+        Observable<List<Metric<?>>> events = event.getInsertedData()
+                .buffer(50, TimeUnit.MILLISECONDS, MAX_BUFFERED_METRICS, Schedulers.io())
+                .filter(list -> !list.isEmpty());
+        subscription = events.subscribe(this::onInsertedData);
     }
 
-    private void onInsertedData(Metric<?> metric) {
-        log.tracef("Inserted metric: %s", metric);
-        if (metric.getMetricId().getType() == AVAILABILITY) {
-            @SuppressWarnings("unchecked")
-            Metric<AvailabilityType> avail = (Metric<AvailabilityType>) metric;
-            publishAvailablility(avail);
-        } else {
-            @SuppressWarnings("unchecked")
-            Metric<? extends Number> numeric = (Metric<? extends Number>) metric;
-            publishNumeric(numeric);
+    private void onInsertedData(List<Metric<?>> metrics) {
+        Map<String, List<MetricDataMessage.SingleMetric>> numericData = new LinkedHashMap<>();
+        Map<String, List<AvailDataMessage.SingleAvail>> availData = new LinkedHashMap<>();
+        int unwatched = 0;
+        for (Metric<?> metric : metrics) {
+            log.tracef("Inserted metric: %s", metric);
+            MetricId<?> metricId = metric.getMetricId();
+            String tenantId = metricId.getTenantId();
+            if (!subscriptionRegistry.isWatched(metricId)) {
+                unwatched += metric.getDataPoints().size();
+                continue;
+            }
+            if (metricId.getType() == AVAILABILITY) {
+                @SuppressWarnings("unchecked")
+                Metric<AvailabilityType> avail = (Metric<AvailabilityType>) metric;
+                List<AvailDataMessage.SingleAvail> data = availData.computeIfAbsent(tenantId, t -> new ArrayList<>());
+                for (DataPoint<AvailabilityType> dataPoint : avail.getDataPoints()) {
+                    data.add(new AvailDataMessage.SingleAvail(tenantId, metricId.getName(), dataPoint.getTimestamp(),
+                            dataPoint.getValue().getText().toUpperCase()));
+                }
+            } else {
+                @SuppressWarnings("unchecked")
+                Metric<? extends Number> numeric = (Metric<? extends Number>) metric;
+                List<MetricDataMessage.SingleMetric> data = numericData.computeIfAbsent(tenantId,
+                        t -> new ArrayList<>());
+                for (DataPoint<? extends Number> dataPoint : numeric.getDataPoints()) {
+                    data.add(new MetricDataMessage.SingleMetric(metricId.getName(), dataPoint.getTimestamp(),
+                            dataPoint.getValue().doubleValue()));
+                }
+            }
         }
+        if (unwatched > 0) {
+            unwatchedDataPoints.mark(unwatched);
+        }
+        numericData.forEach((tenantId, data) -> publish(numericTopic, createNumericMessage(tenantId, data),
+                data.size()));
+        availData.forEach((tenantId, data) -> publish(availabilityTopic, createAvailMessage(data), data.size()));
     }
 
-    private void publishNumeric(Metric<? extends Number> metric) {
-        BasicMessage message = createNumericMessage(metric);
-        bus.send(numericTopic, message).subscribe(
-                msg -> log.tracef("Sent message %s", msg),
+    private void publish(Topic topic, BasicMessage message, int dataPoints) {
+        messageDataPoints.update(dataPoints);
+        bus.send(topic, message).subscribe(
+                msg -> {
+                    publishedDataPoints.mark(dataPoints);
+                    log.tracef("Sent message %s", msg);
+                },
                 t -> log.warnf(t, "Failed to send message %s", message)
         );
     }
 
-    private BasicMessage createNumericMessage(Metric<? extends Number> numeric) {
-        MetricId<?> numericId = numeric.getMetricId();
-        List<MetricDataMessage.SingleMetric> numericList = numeric.getDataPoints().stream()
-                .map(dataPoint -> new MetricDataMessage.SingleMetric(numericId.getName(), dataPoint.getTimestamp(),
-                        dataPoint.getValue().doubleValue()))
-                .collect(toList());
+    private BasicMessage createNumericMessage(String tenantId, List<MetricDataMessage.SingleMetric> data) {
         MetricDataMessage.MetricData metricData = new MetricDataMessage.MetricData();
-        metricData.setTenantId(numericId.getTenantId());
-        metricData.setData(numericList);
+        metricData.setTenantId(tenantId);
+        metricData.setData(data);
         return new MetricDataMessage(metricData);
-
-    }
-
-    private void publishAvailablility(Metric<AvailabilityType> metric) {
-        BasicMessage message = createAvailMessage(metric);
-        bus.send(availabilityTopic, message).subscribe(
-                msg -> log.tracef("Sent message %s", msg),
-                t -> log.warnf(t, "Failed to send message %s", message)
-        );
     }
 
-    private BasicMessage createAvailMessage(Metric<AvailabilityType> avail) {
-        MetricId<AvailabilityType> availId = avail.getMetricId();
-        List<AvailDataMessage.SingleAvail> availList = avail.getDataPoints().stream()
-                .map(dataPoint -> new AvailDataMessage.SingleAvail(availId.getTenantId(), availId.getName(),
-                        dataPoint.getTimestamp(),
-                        dataPoint.getValue().getText().toUpperCase()))
-                .collect(toList());
-        AvailDataMessage.AvailData metricData = new AvailDataMessage.AvailData();
-        metricData.setData(availList);
-        return new AvailDataMessage(metricData);
+    private BasicMessage createAvailMessage(List<AvailDataMessage.SingleAvail> data) {
+        AvailDataMessage.AvailData availData = new AvailDataMessage.AvailData();
+        availData.setData(data);
+        return new AvailDataMessage(availData);
     }
 
     @PreDestroy
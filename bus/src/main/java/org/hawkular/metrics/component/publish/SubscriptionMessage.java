@@ -0,0 +1,123 @@
+/*
+ * Copyright 2014-2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.metrics.component.publish;
+
+import java.util.List;
+import java.util.Objects;
+
+import org.hawkular.bus.common.AbstractMessage;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+/**
+ * A bus message for messages on HawkularMetricsSubscriptions Topic, by which consumers of the data topics tell which
+ * metrics they are interested in.
+ * <p>
+ * A subscription without metric ids covers every metric of the tenant. Metric ids are names of metrics of the given
+ * type, such as gauge or availability, which is required along with them. Unsubscribing without a tenant id drops
+ * every subscription of the subscriber.
+ */
+public class SubscriptionMessage extends AbstractMessage {
+
+    public enum Action {
+        SUBSCRIBE, UNSUBSCRIBE
+    }
+
+    @JsonInclude
+    private Action action;
+
+    @JsonInclude
+    private String subscriber;
+
+    @JsonInclude
+    private String tenantId;
+
+    @JsonInclude
+    private String type;
+
+    @JsonInclude
+    private List<String> metricIds;
+
+    protected SubscriptionMessage() {
+    }
+
+    public SubscriptionMessage(Action action, String subscriber, String tenantId, String type,
+            List<String> metricIds) {
+        this.action = action;
+        this.subscriber = subscriber;
+        this.tenantId = tenantId;
+        this.type = type;
+        this.metricIds = metricIds;
+    }
+
+    public Action getAction() {
+        return action;
+    }
+
+    public void setAction(Action action) {
+        this.action = action;
+    }
+
+    public String getSubscriber() {
+        return subscriber;
+    }
+
+    public void setSubscriber(String subscriber) {
+        this.subscriber = subscriber;
+    }
+
+    public String getTenantId() {
+        return tenantId;
+    }
+
+    public void setTenantId(String tenantId) {
+        this.tenantId = tenantId;
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public void setType(String type) {
+        this.type = type;
+    }
+
+    public List<String> getMetricIds() {
+        return metricIds;
+    }
+
+    public void setMetricIds(List<String> metricIds) {
+        this.metricIds = metricIds;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        SubscriptionMessage that = (SubscriptionMessage) o;
+        return action == that.action &&
+                Objects.equals(subscriber, that.subscriber) &&
+                Objects.equals(tenantId, that.tenantId) &&
+                Objects.equals(type, that.type) &&
+                Objects.equals(metricIds, that.metricIds);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(action, subscriber, tenantId, type, metricIds);
+    }
+}
@@ -0,0 +1,260 @@
+/*
+ * Copyright 2014-2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.metrics.component.publish;
+
+import static java.util.stream.Collectors.toCollection;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+import javax.jms.ConnectionFactory;
+import javax.jms.JMSContext;
+import javax.jms.Message;
+import javax.jms.TextMessage;
+import javax.jms.Topic;
+import javax.naming.InitialContext;
+import javax.naming.NamingException;
+
+import org.hawkular.bus.common.AbstractMessage;
+import org.hawkular.metrics.api.jaxrs.util.Eager;
+import org.hawkular.metrics.model.MetricId;
+import org.hawkular.metrics.model.MetricType;
+import org.jboss.logging.Logger;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+
+/**
+ * Keeps track of the metrics which consumers of the data topics are interested in, so that the data points of the
+ * other metrics are not published.
+ * <p>
+ * Consumers send {@link SubscriptionMessage}s to the HawkularMetricsSubscriptions topic to register interest in a
+ * whole tenant or in some metrics of a tenant, matched by type and name. Subscriptions are shared by all the consumers
+ * of a topic: once data points are filtered, a consumer which never subscribed only gets the metrics watched by the
+ * others. Filtering is therefore opt-in, the {@value #SUBSCRIBERS_PROPERTY} system property (or the
+ * {@value #SUBSCRIBERS_ENV} environment variable) lists the names of every consumer of the data topics, separated by
+ * commas, and every metric is considered watched until each of them has registered a subscription. Every metric is
+ * also considered watched when the property is not set or when the topic does not exist.
+ * <p>
+ * Lookups are served from an immutable index which is rebuilt whenever subscriptions change, so checking a metric
+ * costs at most two hash lookups and no locking. The bus-subscriptions gauge reports the number of subscribers.
+ */
+@ApplicationScoped
+@Eager
+public class SubscriptionRegistry {
+    private static final Logger log = Logger.getLogger(SubscriptionRegistry.class);
+
+    static final String SUBSCRIPTIONS_TOPIC = "java:/topic/HawkularMetricsSubscriptions";
+
+    static final String SUBSCRIBERS_PROPERTY = "hawkular.metrics.publish.subscribers";
+    static final String SUBSCRIBERS_ENV = "PUBLISH_SUBSCRIBERS";
+
+    // Message listeners cannot be set with a pooled connection factory
+    @Resource(mappedName = "java:/HawkularBusConnectionFactory")
+    private ConnectionFactory connectionFactory;
+
+    @Inject
+    private MetricRegistry metricRegistry;
+
+    /**
+     * Subscriber -> tenant -> metric ids, an empty set standing for the whole tenant.
+     */
+    private final Map<String, Map<String, Set<MetricId<?>>>> subscriptions = new HashMap<>();
+
+    /**
+     * The consumers which must all subscribe before data points are filtered, empty if they are never filtered.
+     */
+    private Set<String> consumers = Collections.emptySet();
+
+    /**
+     * Null as long as data points are not filtered.
+     */
+    private volatile Index index;
+
+    private JMSContext context;
+
+    @PostConstruct
+    void init() {
+        metricRegistry.remove("bus-subscriptions");
+        metricRegistry.register("bus-subscriptions", (Gauge<Integer>) this::getSubscriberCount);
+
+        String names = System.getProperty(SUBSCRIBERS_PROPERTY, System.getenv(SUBSCRIBERS_ENV));
+        if (names != null) {
+            consumers = Arrays.stream(names.split(","))
+                    .map(String::trim)
+                    .filter(name -> !name.isEmpty())
+                    .collect(toCollection(HashSet::new));
+        }
+
+        Topic topic;
+        try {
+            topic = (Topic) new InitialContext().lookup(SUBSCRIPTIONS_TOPIC);
+        } catch (NamingException e) {
+            log.infof("%s is not available, all inserted data points will be published", SUBSCRIPTIONS_TOPIC);
+            return;
+        }
+        try {
+            context = connectionFactory.createContext();
+            context.createConsumer(topic).setMessageListener(this::onMessage);
+        } catch (Exception e) {
+            log.warnf(e, "Failed to listen to %s, all inserted data points will be published", SUBSCRIPTIONS_TOPIC);
+            shutdown();
+        }
+    }
+
+    private void onMessage(Message message) {
+        try {
+            String json = ((TextMessage) message).getText();
+            apply(AbstractMessage.fromJSON(json, SubscriptionMessage.class));
+        } catch (Exception e) {
+            log.warnf(e, "Failed to process subscription message %s", message);
+        }
+    }
+
+    /**
+     * Registers or drops the subscriptions described by {@code message}.
+     */
+    public synchronized void apply(SubscriptionMessage message) {
+        String subscriber = message.getSubscriber();
+        String tenantId = message.getTenantId();
+        if (message.getAction() == null || subscriber == null) {
+            throw new IllegalArgumentException("Subscription messages require an action and a subscriber");
+        }
+        Set<MetricId<?>> metricIds = toMetricIds(tenantId, message.getType(), message.getMetricIds());
+        boolean firstSubscription = subscriptions.isEmpty();
+        switch (message.getAction()) {
+            case SUBSCRIBE:
+                if (tenantId == null) {
+                    throw new IllegalArgumentException("Subscribing requires a tenant id");
+                }
+                Map<String, Set<MetricId<?>>> tenants = subscriptions.computeIfAbsent(subscriber,
+                        s -> new HashMap<>());
+                Set<MetricId<?>> current = tenants.get(tenantId);
+                if (current == null || metricIds.isEmpty()) {
+                    tenants.put(tenantId, metricIds);
+                } else if (!current.isEmpty()) {
+                    current.addAll(metricIds);
+                }
+                break;
+            case UNSUBSCRIBE:
+                if (tenantId == null) {
+                    subscriptions.remove(subscriber);
+                } else {
+                    unsubscribe(subscriber, tenantId, metricIds);
+                }
+                break;
+        }
+        log.debugf("Applied %s from %s, %d subscriber(s) registered", message.getAction(), subscriber,
+                subscriptions.size());
+        boolean filtered = !consumers.isEmpty() && subscriptions.keySet().containsAll(consumers);
+        if (filtered && index == null) {
+            log.infof("All of %s subscribed, only watched metrics will be published", consumers);
+        } else if (!filtered && index != null) {
+            log.infof("%s unsubscribed, all inserted data points will be published", subscriber);
+        } else if (!filtered && firstSubscription && !subscriptions.isEmpty()) {
+            if (consumers.isEmpty()) {
+                log.warnf("%s subscribed but %s is not set, all inserted data points will still be published",
+                        subscriber, SUBSCRIBERS_PROPERTY);
+            } else {
+                log.warnf("%s subscribed, all inserted data points will be published until all of %s subscribe",
+                        subscriber, consumers);
+            }
+        }
+        index = filtered ? new Index(subscriptions) : null;
+    }
+
+    private static Set<MetricId<?>> toMetricIds(String tenantId, String type, List<String> names) {
+        if (names == null || names.isEmpty()) {
+            return new HashSet<>();
+        }
+        if (tenantId == null || type == null) {
+            throw new IllegalArgumentException("Metric ids require a tenant id and a type");
+        }
+        MetricType<?> metricType = MetricType.fromTextCode(type);
+        return names.stream()
+                .map(name -> new MetricId<>(tenantId, metricType, name))
+                .collect(toCollection(HashSet::new));
+    }
+
+    private void unsubscribe(String subscriber, String tenantId, Set<MetricId<?>> metricIds) {
+        Map<String, Set<MetricId<?>>> tenants = subscriptions.get(subscriber);
+        if (tenants == null) {
+            return;
+        }
+        Set<MetricId<?>> current = tenants.get(tenantId);
+        if (current == null) {
+            return;
+        }
+        if (metricIds.isEmpty()) {
+            tenants.remove(tenantId);
+        } else if (!current.isEmpty()) {
+            // Dropping metrics from a whole tenant subscription leaves it as is
+            current.removeAll(metricIds);
+            if (current.isEmpty()) {
+                tenants.remove(tenantId);
+            }
+        }
+        if (tenants.isEmpty()) {
+            subscriptions.remove(subscriber);
+        }
+    }
+
+    /**
+     * @return true if the data points of the metric identified by {@code metricId} should be published
+     */
+    public boolean isWatched(MetricId<?> metricId) {
+        Index index = this.index;
+        return index == null || index.tenants.contains(metricId.getTenantId()) || index.metrics.contains(metricId);
+    }
+
+    public synchronized int getSubscriberCount() {
+        return subscriptions.size();
+    }
+
+    @PreDestroy
+    void shutdown() {
+        if (context != null) {
+            context.close();
+            context = null;
+        }
+    }
+
+    private static class Index {
+        final Set<String> tenants = new HashSet<>();
+        final Set<MetricId<?>> metrics = new HashSet<>();
+
+        Index(Map<String, Map<String, Set<MetricId<?>>>> subscriptions) {
+            subscriptions.values().forEach(tenantSubscriptions -> tenantSubscriptions.forEach((tenantId, ids) -> {
+                if (ids.isEmpty()) {
+                    tenants.add(tenantId);
+                } else {
+                    metrics.addAll(ids);
+                }
+            }));
+        }
+    }
+}
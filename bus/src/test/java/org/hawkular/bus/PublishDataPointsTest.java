@@ -17,19 +17,24 @@
 package org.hawkular.bus;
 
 import static java.util.Arrays.asList;
+import static java.util.Collections.singletonList;
 import static java.util.stream.Collectors.toList;
+import static java.util.stream.Collectors.toSet;
 
 import static org.hawkular.metrics.model.AvailabilityType.DOWN;
 import static org.hawkular.metrics.model.AvailabilityType.UNKNOWN;
 import static org.hawkular.metrics.model.AvailabilityType.UP;
 import static org.hawkular.metrics.model.MetricType.AVAILABILITY;
+import static org.hawkular.metrics.model.MetricType.COUNTER;
 import static org.hawkular.metrics.model.MetricType.GAUGE;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
@@ -49,6 +54,8 @@ import org.hawkular.metrics.api.jaxrs.ServiceReady;
 import org.hawkular.metrics.api.jaxrs.ServiceReadyEvent;
 import org.hawkular.metrics.component.publish.AvailDataMessage;
 import org.hawkular.metrics.component.publish.MetricDataMessage;
+import org.hawkular.metrics.component.publish.SubscriptionMessage;
+import org.hawkular.metrics.component.publish.SubscriptionRegistry;
 import org.hawkular.metrics.model.AvailabilityType;
 import org.hawkular.metrics.model.DataPoint;
 import org.hawkular.metrics.model.Metric;
@@ -81,7 +88,8 @@ public class PublishDataPointsTest {
                 "org.hawkular.metrics:hawkular-metrics-model:" + System.getProperty("version.org.hawkular.metrics"),
                 "org.hawkular.metrics:hawkular-metrics-api-util:" + System.getProperty("version.org.hawkular.metrics"),
                 "org.hawkular.commons:hawkular-bus-common:" + System.getProperty("version.org.hawkular.commons"),
-                "io.reactivex:rxjava:" + System.getProperty("version.io.reactivex.rxjava")
+                "io.reactivex:rxjava:" + System.getProperty("version.io.reactivex.rxjava"),
+                "com.codahale.metrics:metrics-core:" + System.getProperty("version.com.codahale.metrics")
         );
 
         Collection<JavaArchive> dependencies = new HashSet<JavaArchive>();
@@ -105,6 +113,12 @@ public class PublishDataPointsTest {
     @Resource(mappedName = "java:/topic/HawkularAvailData")
     Topic availabilityDataTopic;
 
+    @Resource(mappedName = "java:/topic/HawkularMetricsSubscriptions")
+    Topic subscriptionsTopic;
+
+    @Inject
+    SubscriptionRegistry subscriptionRegistry;
+
     @Inject
     @JMSConnectionFactory("java:/HawkularBusConnectionFactory")
     JMSContext context;
@@ -169,6 +183,87 @@ public class PublishDataPointsTest {
         assertEquals(expected, actual);
     }
 
+    @Test
+    public void publishWatchedMetricsOnly() throws Exception {
+        String tenantId = "subscription-tenant";
+        long timestamp = System.currentTimeMillis();
+        Metric<Double> watched = new Metric<>(new MetricId<>(tenantId, GAUGE, "watched"),
+                singletonList(new DataPoint<>(timestamp, 1.0)));
+        Metric<Double> unwatched = new Metric<>(new MetricId<>(tenantId, GAUGE, "unwatched"),
+                singletonList(new DataPoint<>(timestamp, 2.0)));
+        Metric<Long> sameName = new Metric<>(new MetricId<>(tenantId, COUNTER, "watched"),
+                singletonList(new DataPoint<>(timestamp, 3L)));
+
+        // The consumers listed by the hawkular.metrics.publish.subscribers property in arquillian.xml
+        subscribe(new SubscriptionMessage(SubscriptionMessage.Action.SUBSCRIBE, "test", tenantId,
+                GAUGE.getText(), singletonList("watched")), 1);
+        subscribe(new SubscriptionMessage(SubscriptionMessage.Action.SUBSCRIBE, "alerts", tenantId,
+                GAUGE.getText(), singletonList("watched")), 2);
+        try {
+            MetricMessageListener<MetricDataMessage> listener = new MetricMessageListener<>(1,
+                    MetricDataMessage.class);
+            context.createConsumer(gaugeDataTopic).setMessageListener(listener);
+
+            Observable<Metric<?>> observable = Observable.just(unwatched, sameName, watched);
+            serviceReadyEvent.fire(new ServiceReadyEvent(observable));
+
+            MetricDataMessage.MetricData data = new MetricDataMessage.MetricData();
+            data.setTenantId(tenantId);
+            data.setData(singletonList(new MetricDataMessage.SingleMetric("watched", timestamp, 1.0)));
+            List<MetricDataMessage> expected = singletonList(new MetricDataMessage(data));
+            List<MetricDataMessage> actual = listener.getMessages(5, TimeUnit.SECONDS);
+
+            assertEquals(expected, actual);
+        } finally {
+            subscribe(new SubscriptionMessage(SubscriptionMessage.Action.UNSUBSCRIBE, "alerts", null, null, null),
+                    1);
+            subscribe(new SubscriptionMessage(SubscriptionMessage.Action.UNSUBSCRIBE, "test", null, null, null),
+                    0);
+        }
+    }
+
+    @Test
+    public void publishAllMetricsUntilEveryConsumerSubscribed() throws Exception {
+        String tenantId = "partial-subscription-tenant";
+        long timestamp = System.currentTimeMillis();
+        Metric<Double> watched = new Metric<>(new MetricId<>(tenantId, GAUGE, "watched"),
+                singletonList(new DataPoint<>(timestamp, 1.0)));
+        Metric<Double> unwatched = new Metric<>(new MetricId<>(tenantId, GAUGE, "unwatched"),
+                singletonList(new DataPoint<>(timestamp, 2.0)));
+
+        // The alerts consumer has not subscribed yet, so it must still get every metric
+        subscribe(new SubscriptionMessage(SubscriptionMessage.Action.SUBSCRIBE, "test", tenantId,
+                GAUGE.getText(), singletonList("watched")), 1);
+        try {
+            MetricMessageListener<MetricDataMessage> listener = new MetricMessageListener<>(2,
+                    MetricDataMessage.class);
+            context.createConsumer(gaugeDataTopic).setMessageListener(listener);
+
+            serviceReadyEvent.fire(new ServiceReadyEvent(Observable.just(unwatched, watched)));
+
+            Set<String> actual = listener.getMessages(5, TimeUnit.SECONDS).stream()
+                    .flatMap(message -> message.getMetricData().getData().stream())
+                    .map(MetricDataMessage.SingleMetric::getSource)
+                    .collect(toSet());
+
+            assertEquals(new HashSet<>(asList("watched", "unwatched")), actual);
+        } finally {
+            subscribe(new SubscriptionMessage(SubscriptionMessage.Action.UNSUBSCRIBE, "test", null, null, null),
+                    0);
+        }
+    }
+
+    private void subscribe(SubscriptionMessage message, int expectedSubscribers) throws Exception {
+        context.createProducer().send(subscriptionsTopic, message.toJSON());
+        long deadline = System.currentTimeMillis() + 5000;
+        while (subscriptionRegistry.getSubscriberCount() != expectedSubscribers
+                && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue("Subscription message was not applied",
+                subscriptionRegistry.getSubscriberCount() == expectedSubscribers);
+    }
+
     private class MetricMessageListener<T extends AbstractMessage> implements MessageListener {
 
         private List<TextMessage> messages;
@@ -0,0 +1,119 @@
+/*
+ * Copyright 2014-2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.metrics.clients.export;
+
+import java.io.BufferedOutputStream;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.CommandLineParser;
+import org.apache.commons.cli.HelpFormatter;
+import org.apache.commons.cli.Option;
+import org.apache.commons.cli.Options;
+import org.apache.commons.cli.ParseException;
+import org.apache.commons.cli.PosixParser;
+import org.hawkular.metrics.core.service.DataAccessImpl;
+import org.hawkular.metrics.core.service.DateTimeService;
+import org.hawkular.metrics.core.service.MetricsServiceImpl;
+import org.hawkular.metrics.core.service.export.TenantExporter;
+
+import com.codahale.metrics.MetricRegistry;
+import com.datastax.driver.core.Cluster;
+import com.datastax.driver.core.Session;
+
+/**
+ * Exports the data of a tenant straight from Cassandra, without going through a Hawkular Metrics server. The output
+ * is the gzip-compressed format of the REST export, which the bulk import can read back.
+ */
+public class Main {
+
+    private static final String NODES_OPT = "nodes";
+    private static final String PORT_OPT = "port";
+    private static final String KEYSPACE_OPT = "keyspace";
+    private static final String TENANT_OPT = "tenant";
+    private static final String OUTPUT_OPT = "output";
+    private static final String PARALLELISM_OPT = "parallelism";
+    private static final String START_OPT = "start";
+    private static final String END_OPT = "end";
+    private static final String HELP_OPT = "help";
+
+    private static final int CHUNK_SIZE = 1000;
+
+    private static Options getOptions() {
+        Options options = new Options();
+        options.addOption(new Option("n", NODES_OPT, true, "Comma separated Cassandra nodes, defaults to 127.0.0.1"));
+        options.addOption(new Option(null, PORT_OPT, true, "Cassandra CQL port, defaults to 9042"));
+        options.addOption(new Option("k", KEYSPACE_OPT, true, "Keyspace, defaults to hawkular_metrics"));
+        options.addOption(new Option("t", TENANT_OPT, true, "Tenant to export, required"));
+        options.addOption(new Option("o", OUTPUT_OPT, true, "Output file, defaults to the standard output"));
+        options.addOption(new Option("p", PARALLELISM_OPT, true, "Number of metrics read at once, defaults to 4"));
+        options.addOption(new Option(null, START_OPT, true, "Start time in milliseconds, defaults to 0"));
+        options.addOption(new Option(null, END_OPT, true, "End time in milliseconds, defaults to now"));
+        options.addOption(new Option("h", HELP_OPT, false, "Print usage and exit"));
+        return options;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Options options = getOptions();
+        CommandLine cmd;
+        try {
+            CommandLineParser parser = new PosixParser();
+            cmd = parser.parse(options, args);
+        } catch (ParseException e) {
+            System.err.println(e.getMessage());
+            new HelpFormatter().printHelp("hawkular-metrics-export", options, true);
+            System.exit(1);
+            return;
+        }
+        if (cmd.hasOption(HELP_OPT) || !cmd.hasOption(TENANT_OPT)) {
+            new HelpFormatter().printHelp("hawkular-metrics-export", options, true);
+            System.exit(cmd.hasOption(HELP_OPT) ? 0 : 1);
+            return;
+        }
+        String tenantId = cmd.getOptionValue(TENANT_OPT);
+        String keyspace = cmd.getOptionValue(KEYSPACE_OPT, "hawkular_metrics");
+        int parallelism = Integer.parseInt(cmd.getOptionValue(PARALLELISM_OPT, "4"));
+        long start = Long.parseLong(cmd.getOptionValue(START_OPT, "0"));
+        long end = cmd.hasOption(END_OPT) ? Long.parseLong(cmd.getOptionValue(END_OPT)) : System.currentTimeMillis();
+
+        Cluster cluster = new Cluster.Builder()
+                .addContactPoints(cmd.getOptionValue(NODES_OPT, "127.0.0.1").split(","))
+                .withPort(Integer.parseInt(cmd.getOptionValue(PORT_OPT, "9042")))
+                .build();
+        try {
+            Session session = cluster.connect(keyspace);
+            MetricsServiceImpl metricsService = new MetricsServiceImpl();
+            metricsService.setDataAccess(new DataAccessImpl(session));
+            metricsService.setDateTimeService(new DateTimeService());
+            metricsService.startUp(session, keyspace, false, false, new MetricRegistry());
+
+            TenantExporter exporter = new TenantExporter(metricsService, parallelism, CHUNK_SIZE);
+            OutputStream file = cmd.hasOption(OUTPUT_OPT) ? new FileOutputStream(cmd.getOptionValue(OUTPUT_OPT))
+                    : System.out;
+            try (GZIPOutputStream output = new GZIPOutputStream(new BufferedOutputStream(file, 65536), 65536)) {
+                TenantExporter.Summary summary = exporter.export(tenantId, start, end, output);
+                System.err.printf("Exported %d metrics and %d data points of tenant %s%n", summary.getMetrics(),
+                        summary.getDataPoints(), tenantId);
+            }
+            metricsService.shutdown();
+        } finally {
+            cluster.close();
+        }
+    }
+}
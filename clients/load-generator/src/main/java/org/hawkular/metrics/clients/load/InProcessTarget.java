@@ -0,0 +1,132 @@
+/*
+ * Copyright 2014-2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.metrics.clients.load;
+
+import static java.util.Collections.emptyList;
+
+import java.util.List;
+import java.util.Map;
+
+import org.hawkular.metrics.core.service.DataAccessImpl;
+import org.hawkular.metrics.core.service.DateTimeService;
+import org.hawkular.metrics.core.service.MetricsServiceImpl;
+import org.hawkular.metrics.core.service.memory.MemoryDataAccess;
+import org.hawkular.metrics.model.Buckets;
+import org.hawkular.metrics.model.Metric;
+import org.hawkular.metrics.model.MetricId;
+import org.hawkular.metrics.model.MetricType;
+import org.hawkular.metrics.model.exception.MetricAlreadyExistsException;
+
+import com.codahale.metrics.MetricRegistry;
+import com.datastax.driver.core.Cluster;
+import com.datastax.driver.core.Session;
+
+import rx.Observable;
+
+/**
+ * Sends the load straight to a {@link MetricsServiceImpl} running in the same JVM, which leaves the REST layer and the
+ * network out of the measurements. The service stores data in memory, or in Cassandra.
+ */
+public class InProcessTarget implements Target {
+
+    private final MetricsServiceImpl metricsService;
+    private final MemoryDataAccess memoryDataAccess;
+    private final Cluster cluster;
+
+    private InProcessTarget(MetricsServiceImpl metricsService, MemoryDataAccess memoryDataAccess, Cluster cluster) {
+        this.metricsService = metricsService;
+        this.memoryDataAccess = memoryDataAccess;
+        this.cluster = cluster;
+    }
+
+    /**
+     * Creates a target storing data with {@link MemoryDataAccess}, which measures the service alone.
+     */
+    public static InProcessTarget inMemory() {
+        MemoryDataAccess dataAccess = new MemoryDataAccess();
+        MetricsServiceImpl metricsService = new MetricsServiceImpl();
+        metricsService.setDataAccess(dataAccess);
+        metricsService.setDateTimeService(new DateTimeService());
+        metricsService.startUp(new MetricRegistry());
+        return new InProcessTarget(metricsService, dataAccess, null);
+    }
+
+    /**
+     * Creates a target storing data in Cassandra, creating the schema if needed.
+     */
+    public static InProcessTarget cassandra(String[] nodes, String keyspace) {
+        Cluster cluster = new Cluster.Builder().addContactPoints(nodes).build();
+        try {
+            Session session = cluster.connect();
+            MetricsServiceImpl metricsService = new MetricsServiceImpl();
+            metricsService.setDataAccess(new DataAccessImpl(session));
+            metricsService.setDateTimeService(new DateTimeService());
+            metricsService.startUp(session, keyspace, false, true, new MetricRegistry());
+            return new InProcessTarget(metricsService, null, cluster);
+        } catch (RuntimeException e) {
+            cluster.close();
+            throw e;
+        }
+    }
+
+    private static void await(Observable<?> observable) {
+        observable.toBlocking().lastOrDefault(null);
+    }
+
+    @Override
+    public void createMetric(Metric<?> metric) {
+        try {
+            await(metricsService.createMetric(metric));
+        } catch (MetricAlreadyExistsException e) {
+            // Left over from a previous run
+        }
+    }
+
+    @Override
+    public <T> void addDataPoints(String tenantId, MetricType<T> type, List<Metric<T>> metrics) {
+        await(metricsService.addDataPoints(type, Observable.from(metrics)));
+    }
+
+    @Override
+    public void findGaugeStats(String tenantId, String gauge, long start, long end, int buckets) {
+        await(metricsService.findGaugeStats(new MetricId<>(tenantId, MetricType.GAUGE, gauge), start, end,
+                Buckets.fromCount(start, end, buckets), emptyList()));
+    }
+
+    @Override
+    public void findRateStats(String tenantId, String counter, long start, long end, int buckets) {
+        await(metricsService.findRateStats(new MetricId<>(tenantId, MetricType.COUNTER, counter), start, end,
+                Buckets.fromCount(start, end, buckets), emptyList()));
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void findGaugesByTags(String tenantId, Map<String, String> tags) {
+        await(metricsService.findMetricsWithFilters(tenantId, MetricType.GAUGE, tags).toList());
+    }
+
+    @Override
+    public void close() {
+        metricsService.shutdown();
+        if (memoryDataAccess != null) {
+            memoryDataAccess.shutdown();
+        }
+        if (cluster != null) {
+            cluster.close();
+        }
+    }
+}
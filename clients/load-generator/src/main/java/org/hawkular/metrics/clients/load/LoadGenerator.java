@@ -0,0 +1,217 @@
+/*
+ * Copyright 2014-2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.metrics.clients.load;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import org.hawkular.metrics.model.Metric;
+
+/**
+ * Runs a {@link Workload} against a {@link Target}.
+ * <p>
+ * Each enabled operation is driven by its own threads following an open model: the n-th request of an operation is
+ * due at {@code start + n / rate}, whether or not the previous ones are done. Latencies are measured from that
+ * intended time rather than from the moment the request is actually sent, so that when the target falls behind the
+ * time requests spend waiting is counted instead of hidden, which is known as correcting for coordinated omission.
+ * The number of threads of an operation bounds the requests in flight; once they are all busy, requests queue up.
+ * <p>
+ * Nothing is recorded during the warmup. Progress is printed periodically from interval histograms.
+ */
+public class LoadGenerator {
+
+    private static final long PROGRESS_INTERVAL = 5_000;
+    private static final int SIGNIFICANT_DIGITS = 3;
+
+    private final WorkloadProfile profile;
+    private final Workload workload;
+    private final Target target;
+    private final String targetDescription;
+    private final PrintStream out;
+    private final Map<Operation, Driver> drivers = new EnumMap<>(Operation.class);
+
+    private class Driver {
+        private final Operation operation;
+        private final long period;
+        private final AtomicLong sequence = new AtomicLong();
+        private final AtomicLong errors = new AtomicLong();
+        private final Recorder recorder = new Recorder(SIGNIFICANT_DIGITS);
+        private final Histogram total = new Histogram(SIGNIFICANT_DIGITS);
+        private Histogram intervalHistogram;
+
+        Driver(Operation operation) {
+            this.operation = operation;
+            this.period = (long) (SECONDS.toNanos(1) / profile.getRequestRate(operation));
+        }
+
+        void run(long start, long measureStart, long end) {
+            while (true) {
+                long n = sequence.getAndIncrement();
+                long intended = start + n * period;
+                if (intended >= end || System.nanoTime() >= end) {
+                    return;
+                }
+                long wait;
+                while ((wait = intended - System.nanoTime()) > 0) {
+                    LockSupport.parkNanos(wait);
+                }
+                boolean failed = false;
+                try {
+                    workload.execute(operation, n, target);
+                } catch (Exception e) {
+                    failed = true;
+                }
+                if (intended >= measureStart) {
+                    recorder.recordValue(NANOSECONDS.toMicros(System.nanoTime() - intended));
+                    if (failed) {
+                        errors.incrementAndGet();
+                    }
+                }
+            }
+        }
+
+        /**
+         * Moves what was recorded since the last call into the total, and returns it.
+         */
+        Histogram drain() {
+            intervalHistogram = intervalHistogram == null ? recorder.getIntervalHistogram()
+                    : recorder.getIntervalHistogram(intervalHistogram);
+            total.add(intervalHistogram);
+            return intervalHistogram;
+        }
+    }
+
+    public LoadGenerator(WorkloadProfile profile, Target target, String targetDescription, PrintStream out) {
+        this.profile = profile;
+        this.workload = new Workload(profile);
+        this.target = target;
+        this.targetDescription = targetDescription;
+        this.out = out;
+        for (Operation operation : Operation.values()) {
+            if (profile.isEnabled(operation)) {
+                drivers.put(operation, new Driver(operation));
+            }
+        }
+    }
+
+    /**
+     * Creates the metrics of the workload and writes their history.
+     */
+    public void setUp() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(profile.getConcurrency());
+        try {
+            long now = System.currentTimeMillis();
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < profile.getTenants(); i++) {
+                int tenant = i;
+                futures.add(executor.submit(() -> {
+                    for (Metric<?> metric : workload.getMetrics(tenant)) {
+                        target.createMetric(metric);
+                    }
+                    if (profile.getBackfill() > 0) {
+                        workload.backfill(target, tenant, now);
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        out.printf("Created %d tenants with %d gauges, %d counters and %d availability metrics each%n",
+                profile.getTenants(), profile.getGauges(), profile.getCounters(), profile.getAvailabilities());
+    }
+
+    public Report run() throws InterruptedException {
+        if (drivers.isEmpty()) {
+            throw new IllegalStateException("Profile " + profile.getName() + " does not enable any operation");
+        }
+        int threads = drivers.size() * profile.getConcurrency();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        long start = System.nanoTime() + MILLISECONDS.toNanos(100);
+        long measureStart = start + SECONDS.toNanos(profile.getWarmup());
+        long end = measureStart + SECONDS.toNanos(profile.getDuration());
+        for (Driver driver : drivers.values()) {
+            for (int i = 0; i < profile.getConcurrency(); i++) {
+                executor.execute(() -> driver.run(start, measureStart, end));
+            }
+        }
+        executor.shutdown();
+        out.printf("Running profile %s for %d s after a warmup of %d s%n", profile.getName(), profile.getDuration(),
+                profile.getWarmup());
+        while (!executor.awaitTermination(PROGRESS_INTERVAL, MILLISECONDS)) {
+            if (System.nanoTime() >= measureStart) {
+                printProgress(measureStart);
+            }
+        }
+
+        Report report = new Report(profile.getName(), targetDescription, profile.getDuration());
+        drivers.forEach((operation, driver) -> {
+            driver.drain();
+            report.getResults().put(operation.getText(), new Report.Result(driver.total, driver.errors.get(),
+                    profile.getDuration()));
+        });
+        return report;
+    }
+
+    private void printProgress(long measureStart) {
+        StringBuilder line = new StringBuilder(String.format("%4d s", NANOSECONDS.toSeconds(System.nanoTime()
+                - measureStart)));
+        drivers.forEach((operation, driver) -> {
+            Histogram interval = driver.drain();
+            double seconds = (interval.getEndTimeStamp() - interval.getStartTimeStamp()) / 1000.0;
+            line.append(String.format(" | %s %.0f req/s p99 %.1f ms", operation.getText(),
+                    seconds > 0 ? interval.getTotalCount() / seconds : 0.0,
+                    interval.getValueAtPercentile(99) / 1000.0));
+        });
+        out.println(line);
+    }
+
+    /**
+     * Writes the full latency distribution of each operation, in milliseconds, to {@code <operation>.hgrm} files.
+     */
+    public void writeDistributions(File directory) throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Cannot create " + directory);
+        }
+        for (Map.Entry<Operation, Driver> entry : drivers.entrySet()) {
+            File file = new File(directory, entry.getKey().getText() + ".hgrm");
+            try (PrintStream stream = new PrintStream(new FileOutputStream(file), false, "UTF-8")) {
+                entry.getValue().total.outputPercentileDistribution(stream, 1000.0);
+            }
+        }
+    }
+}
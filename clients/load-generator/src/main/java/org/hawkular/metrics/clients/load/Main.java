@@ -0,0 +1,144 @@
+/*
+ * Copyright 2014-2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.metrics.clients.load;
+
+import java.io.File;
+import java.util.List;
+import java.util.Properties;
+
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.CommandLineParser;
+import org.apache.commons.cli.HelpFormatter;
+import org.apache.commons.cli.Option;
+import org.apache.commons.cli.Options;
+import org.apache.commons.cli.ParseException;
+import org.apache.commons.cli.PosixParser;
+
+/**
+ * Generates a mixed read and write load against a Hawkular Metrics server, or against the metrics service running in
+ * process, and reports the latency distribution of each kind of request. See README.adoc for the profiles.
+ */
+public class Main {
+
+    private static final String URL_OPT = "url";
+    private static final String IN_PROCESS_OPT = "in-process";
+    private static final String NODES_OPT = "nodes";
+    private static final String KEYSPACE_OPT = "keyspace";
+    private static final String PROFILE_OPT = "profile";
+    private static final String SET_OPT = "D";
+    private static final String SKIP_SETUP_OPT = "skip-setup";
+    private static final String REPORT_OPT = "report";
+    private static final String DISTRIBUTIONS_OPT = "distributions";
+    private static final String COMPARE_OPT = "compare";
+    private static final String MAX_REGRESSION_OPT = "max-regression";
+    private static final String HELP_OPT = "help";
+
+    private static final int REGRESSION_STATUS = 2;
+
+    private static Options getOptions() {
+        Options options = new Options();
+        options.addOption(new Option("u", URL_OPT, true,
+                "Root of the REST API, defaults to http://localhost:8080/hawkular/metrics"));
+        options.addOption(new Option(null, IN_PROCESS_OPT, false,
+                "Run the metrics service in process, storing data in memory unless --nodes is set"));
+        options.addOption(new Option("n", NODES_OPT, true, "Comma separated Cassandra nodes, with --in-process"));
+        options.addOption(new Option("k", KEYSPACE_OPT, true, "Keyspace, defaults to hawkular_metrics"));
+        options.addOption(new Option("p", PROFILE_OPT, true,
+                "Built-in profile (ingest, dashboard, mixed) or profile file, defaults to mixed"));
+        Option set = new Option(SET_OPT, "Overrides a property of the profile, -D gauge-writes.rate=5000 for example");
+        set.setArgName("property=value");
+        set.setArgs(2);
+        set.setValueSeparator('=');
+        options.addOption(set);
+        options.addOption(new Option(null, SKIP_SETUP_OPT, false,
+                "Do not create the metrics, nor write their history, before the run"));
+        options.addOption(new Option("r", REPORT_OPT, true, "Save the report as JSON to this file"));
+        options.addOption(new Option(null, DISTRIBUTIONS_OPT, true,
+                "Write the full latency distributions to this directory"));
+        options.addOption(new Option("c", COMPARE_OPT, true, "Compare with the JSON report of a previous run"));
+        options.addOption(new Option(null, MAX_REGRESSION_OPT, true,
+                "Percentage by which throughput or p99 latency may get worse than the baseline, defaults to 10"));
+        options.addOption(new Option("h", HELP_OPT, false, "Print usage and exit"));
+        return options;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Options options = getOptions();
+        CommandLine cmd;
+        try {
+            CommandLineParser parser = new PosixParser();
+            cmd = parser.parse(options, args);
+        } catch (ParseException e) {
+            System.err.println(e.getMessage());
+            new HelpFormatter().printHelp("hawkular-metrics-load-generator", options, true);
+            System.exit(1);
+            return;
+        }
+        if (cmd.hasOption(HELP_OPT)) {
+            new HelpFormatter().printHelp("hawkular-metrics-load-generator", options, true);
+            System.exit(0);
+            return;
+        }
+        Properties overrides = cmd.hasOption(SET_OPT) ? cmd.getOptionProperties(SET_OPT) : new Properties();
+        WorkloadProfile profile = WorkloadProfile.load(cmd.getOptionValue(PROFILE_OPT, "mixed"), overrides);
+        double maxRegression = Double.parseDouble(cmd.getOptionValue(MAX_REGRESSION_OPT, "10"));
+
+        String description;
+        Target target;
+        if (cmd.hasOption(IN_PROCESS_OPT)) {
+            if (cmd.hasOption(NODES_OPT)) {
+                String keyspace = cmd.getOptionValue(KEYSPACE_OPT, "hawkular_metrics");
+                description = "in-process, Cassandra " + cmd.getOptionValue(NODES_OPT) + "/" + keyspace;
+                target = InProcessTarget.cassandra(cmd.getOptionValue(NODES_OPT).split(","), keyspace);
+            } else {
+                description = "in-process, in memory";
+                target = InProcessTarget.inMemory();
+            }
+        } else {
+            description = cmd.getOptionValue(URL_OPT, "http://localhost:8080/hawkular/metrics");
+            target = new RestTarget(description);
+        }
+
+        Report report;
+        LoadGenerator generator = new LoadGenerator(profile, target, description, System.out);
+        try {
+            if (!cmd.hasOption(SKIP_SETUP_OPT)) {
+                generator.setUp();
+            }
+            report = generator.run();
+        } finally {
+            target.close();
+        }
+        report.print(System.out);
+        if (cmd.hasOption(REPORT_OPT)) {
+            report.save(new File(cmd.getOptionValue(REPORT_OPT)));
+        }
+        if (cmd.hasOption(DISTRIBUTIONS_OPT)) {
+            generator.writeDistributions(new File(cmd.getOptionValue(DISTRIBUTIONS_OPT)));
+        }
+        int status = 0;
+        if (cmd.hasOption(COMPARE_OPT)) {
+            Report baseline = Report.load(new File(cmd.getOptionValue(COMPARE_OPT)));
+            List<String> regressions = report.compare(baseline, maxRegression, System.out);
+            if (!regressions.isEmpty()) {
+                regressions.forEach(regression -> System.out.println("Regression: " + regression));
+                status = REGRESSION_STATUS;
+            }
+        }
+        System.exit(status);
+    }
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright 2014-2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.metrics.clients.load;
+
+/**
+ * The operations of a workload. Each one runs at the rate set by the {@link WorkloadProfile} and gets its own latency
+ * histogram.
+ */
+public enum Operation {
+    /**
+     * Writes a batch of gauge data points.
+     */
+    GAUGE_WRITES("gauge-writes"),
+    /**
+     * Writes a batch of counter data points.
+     */
+    COUNTER_WRITES("counter-writes"),
+    /**
+     * Writes a batch of availability data points.
+     */
+    AVAILABILITY_WRITES("availability-writes"),
+    /**
+     * Reads the bucketed statistics of a gauge over the query range, as a dashboard chart does.
+     */
+    GAUGE_STATS("gauge-stats"),
+    /**
+     * Finds the gauges matching a tag filter.
+     */
+    TAG_QUERIES("tag-queries"),
+    /**
+     * Reads the bucketed rate statistics of a counter over the query range.
+     */
+    RATE_QUERIES("rate-queries");
+
+    private final String text;
+
+    Operation(String text) {
+        this.text = text;
+    }
+
+    /**
+     * @return the name of the operation in profiles and reports
+     */
+    public String getText() {
+        return text;
+    }
+}
@@ -0,0 +1,260 @@
+/*
+ * Copyright 2014-2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.metrics.clients.load;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.HdrHistogram.Histogram;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+/**
+ * The results of a run, per {@link Operation}. Reports are saved as JSON so that a run can be compared with a baseline
+ * made with the same profile, on the same hardware.
+ */
+public class Report {
+
+    /**
+     * The results of one operation. Latencies are in milliseconds and include the time a request waited for its turn
+     * when the target could not keep up with the rate.
+     */
+    public static class Result {
+        private long count;
+        private long errors;
+        private double throughput;
+        private double mean;
+        private double p50;
+        private double p90;
+        private double p99;
+        private double p999;
+        private double max;
+
+        public Result() {
+        }
+
+        Result(Histogram histogram, long errors, double seconds) {
+            this.count = histogram.getTotalCount();
+            this.errors = errors;
+            this.throughput = count / seconds;
+            // Latencies are recorded in microseconds
+            this.mean = histogram.getMean() / 1000;
+            this.p50 = histogram.getValueAtPercentile(50) / 1000.0;
+            this.p90 = histogram.getValueAtPercentile(90) / 1000.0;
+            this.p99 = histogram.getValueAtPercentile(99) / 1000.0;
+            this.p999 = histogram.getValueAtPercentile(99.9) / 1000.0;
+            this.max = histogram.getMaxValue() / 1000.0;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public void setCount(long count) {
+            this.count = count;
+        }
+
+        public long getErrors() {
+            return errors;
+        }
+
+        public void setErrors(long errors) {
+            this.errors = errors;
+        }
+
+        /**
+         * @return the number of requests per second
+         */
+        public double getThroughput() {
+            return throughput;
+        }
+
+        public void setThroughput(double throughput) {
+            this.throughput = throughput;
+        }
+
+        public double getMean() {
+            return mean;
+        }
+
+        public void setMean(double mean) {
+            this.mean = mean;
+        }
+
+        public double getP50() {
+            return p50;
+        }
+
+        public void setP50(double p50) {
+            this.p50 = p50;
+        }
+
+        public double getP90() {
+            return p90;
+        }
+
+        public void setP90(double p90) {
+            this.p90 = p90;
+        }
+
+        public double getP99() {
+            return p99;
+        }
+
+        public void setP99(double p99) {
+            this.p99 = p99;
+        }
+
+        public double getP999() {
+            return p999;
+        }
+
+        public void setP999(double p999) {
+            this.p999 = p999;
+        }
+
+        public double getMax() {
+            return max;
+        }
+
+        public void setMax(double max) {
+            this.max = max;
+        }
+    }
+
+    private String profile;
+    private String target;
+    private long timestamp;
+    private long duration;
+    private Map<String, Result> results = new LinkedHashMap<>();
+
+    public Report() {
+    }
+
+    Report(String profile, String target, long duration) {
+        this.profile = profile;
+        this.target = target;
+        this.timestamp = System.currentTimeMillis();
+        this.duration = duration;
+    }
+
+    public String getProfile() {
+        return profile;
+    }
+
+    public void setProfile(String profile) {
+        this.profile = profile;
+    }
+
+    public String getTarget() {
+        return target;
+    }
+
+    public void setTarget(String target) {
+        this.target = target;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public void setTimestamp(long timestamp) {
+        this.timestamp = timestamp;
+    }
+
+    /**
+     * @return the duration of the measured part of the run, in seconds
+     */
+    public long getDuration() {
+        return duration;
+    }
+
+    public void setDuration(long duration) {
+        this.duration = duration;
+    }
+
+    /**
+     * @return the results keyed by {@link Operation#getText() operation}
+     */
+    public Map<String, Result> getResults() {
+        return results;
+    }
+
+    public void setResults(Map<String, Result> results) {
+        this.results = results;
+    }
+
+    public static Report load(File file) throws IOException {
+        return new ObjectMapper().readValue(file, Report.class);
+    }
+
+    public void save(File file) throws IOException {
+        new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT).writeValue(file, this);
+    }
+
+    public void print(PrintStream out) {
+        out.printf("%-20s %10s %8s %10s %9s %9s %9s %9s %9s %9s%n", "operation", "count", "errors", "req/s", "mean",
+                "p50", "p90", "p99", "p99.9", "max");
+        results.forEach((operation, result) -> out.printf("%-20s %10d %8d %10.1f %9.2f %9.2f %9.2f %9.2f %9.2f %9.2f%n",
+                operation, result.count, result.errors, result.throughput, result.mean, result.p50, result.p90,
+                result.p99, result.p999, result.max));
+        out.println("Latencies are in milliseconds");
+    }
+
+    /**
+     * Prints how this report differs from {@code baseline}, and finds the regressions: operations whose throughput
+     * dropped, or whose 99th percentile latency grew, by more than {@code maxRegression} percent.
+     *
+     * @return the regressions found, empty if there are none
+     */
+    public List<String> compare(Report baseline, double maxRegression, PrintStream out) {
+        List<String> regressions = new ArrayList<>();
+        if (!baseline.profile.equals(profile)) {
+            out.printf("Warning: the baseline was made with profile %s%n", baseline.profile);
+        }
+        out.printf("%-20s %10s %10s %8s %9s %9s %8s%n", "operation", "req/s", "baseline", "change", "p99",
+                "baseline", "change");
+        results.forEach((operation, result) -> {
+            Result base = baseline.results.get(operation);
+            if (base == null) {
+                out.printf("%-20s not in the baseline%n", operation);
+                return;
+            }
+            double throughputChange = change(base.throughput, result.throughput);
+            double p99Change = change(base.p99, result.p99);
+            out.printf("%-20s %10.1f %10.1f %+7.1f%% %9.2f %9.2f %+7.1f%%%n", operation, result.throughput,
+                    base.throughput, throughputChange, result.p99, base.p99, p99Change);
+            if (-throughputChange > maxRegression) {
+                regressions.add(String.format("%s: throughput dropped by %.1f%%", operation, -throughputChange));
+            }
+            if (p99Change > maxRegression) {
+                regressions.add(String.format("%s: p99 latency grew by %.1f%%", operation, p99Change));
+            }
+        });
+        return regressions;
+    }
+
+    private static double change(double before, double after) {
+        return before == 0 ? 0 : (after - before) * 100 / before;
+    }
+}
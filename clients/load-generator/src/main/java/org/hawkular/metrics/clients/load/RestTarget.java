@@ -0,0 +1,164 @@
+/*
+ * Copyright 2014-2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.metrics.clients.load;
+
+import static java.util.stream.Collectors.joining;
+import static java.util.stream.Collectors.toList;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.hawkular.metrics.model.AvailabilityType;
+import org.hawkular.metrics.model.DataPoint;
+import org.hawkular.metrics.model.Metric;
+import org.hawkular.metrics.model.MetricType;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Sends the load to a Hawkular Metrics server through the REST API.
+ */
+public class RestTarget implements Target {
+
+    private static final String TENANT_HEADER = "Hawkular-Tenant";
+
+    private final String baseUrl;
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    /**
+     * @param baseUrl the root of the REST API, http://localhost:8080/hawkular/metrics for example
+     */
+    public RestTarget(String baseUrl) {
+        this.baseUrl = baseUrl.endsWith("/") ? baseUrl.substring(0, baseUrl.length() - 1) : baseUrl;
+    }
+
+    private static String path(MetricType<?> type) {
+        if (type == MetricType.GAUGE) {
+            return "/gauges";
+        }
+        if (type == MetricType.COUNTER) {
+            return "/counters";
+        }
+        return "/availability";
+    }
+
+    private static String encode(String s) {
+        try {
+            return URLEncoder.encode(s, "UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    public void createMetric(Metric<?> metric) throws Exception {
+        Map<String, Object> body = new HashMap<>();
+        body.put("id", metric.getMetricId().getName());
+        body.put("tags", metric.getTags());
+        int status = send("POST", path(metric.getMetricId().getType()), metric.getMetricId().getTenantId(), body);
+        if (status >= 400 && status != HttpURLConnection.HTTP_CONFLICT) {
+            throw new IOException("Creating " + metric.getMetricId() + " failed with status " + status);
+        }
+    }
+
+    @Override
+    public <T> void addDataPoints(String tenantId, MetricType<T> type, List<Metric<T>> metrics) throws Exception {
+        List<Map<String, Object>> body = metrics.stream().map(metric -> {
+            Map<String, Object> json = new HashMap<>();
+            json.put("id", metric.getMetricId().getName());
+            json.put("data", metric.getDataPoints().stream().map(RestTarget::toJson).collect(toList()));
+            return json;
+        }).collect(toList());
+        check(send("POST", path(type) + "/data", tenantId, body));
+    }
+
+    private static Map<String, Object> toJson(DataPoint<?> dataPoint) {
+        Map<String, Object> json = new HashMap<>();
+        json.put("timestamp", dataPoint.getTimestamp());
+        Object value = dataPoint.getValue();
+        json.put("value", value instanceof AvailabilityType ? ((AvailabilityType) value).getText() : value);
+        return json;
+    }
+
+    @Override
+    public void findGaugeStats(String tenantId, String gauge, long start, long end, int buckets) throws Exception {
+        check(send("GET", "/gauges/" + encode(gauge) + "/data?start=" + start + "&end=" + end + "&buckets=" + buckets,
+                tenantId, null));
+    }
+
+    @Override
+    public void findRateStats(String tenantId, String counter, long start, long end, int buckets) throws Exception {
+        check(send("GET", "/counters/" + encode(counter) + "/rate?start=" + start + "&end=" + end + "&buckets="
+                + buckets, tenantId, null));
+    }
+
+    @Override
+    public void findGaugesByTags(String tenantId, Map<String, String> tags) throws Exception {
+        String filter = tags.entrySet().stream()
+                .map(tag -> encode(tag.getKey()) + ":" + encode(tag.getValue()))
+                .collect(joining(","));
+        check(send("GET", "/gauges?tags=" + filter, tenantId, null));
+    }
+
+    private static void check(int status) throws IOException {
+        if (status >= 400) {
+            throw new IOException("Request failed with status " + status);
+        }
+    }
+
+    private int send(String method, String path, String tenantId, Object body) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(baseUrl + path).openConnection();
+        try {
+            connection.setRequestMethod(method);
+            connection.setRequestProperty(TENANT_HEADER, tenantId);
+            connection.setRequestProperty("Accept", "application/json");
+            if (body != null) {
+                connection.setDoOutput(true);
+                connection.setRequestProperty("Content-Type", "application/json");
+                try (OutputStream output = connection.getOutputStream()) {
+                    mapper.writeValue(output, body);
+                }
+            }
+            int status = connection.getResponseCode();
+            // Reading the whole response is part of the latency, and lets the connection be reused
+            try (InputStream input = status >= 400 ? connection.getErrorStream() : connection.getInputStream()) {
+                if (input != null) {
+                    byte[] buffer = new byte[8192];
+                    while (input.read(buffer) != -1) {
+                        // Discarded
+                    }
+                }
+            }
+            return status;
+        } catch (IOException e) {
+            connection.disconnect();
+            throw e;
+        }
+    }
+
+    @Override
+    public void close() {
+    }
+}
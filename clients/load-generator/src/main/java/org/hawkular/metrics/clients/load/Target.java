@@ -0,0 +1,43 @@
+/*
+ * Copyright 2014-2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.metrics.clients.load;
+
+import java.util.List;
+import java.util.Map;
+
+import org.hawkular.metrics.model.Metric;
+import org.hawkular.metrics.model.MetricType;
+
+/**
+ * What the load is sent to. Every call blocks until the request is complete and throws on failure, which is what the
+ * latency is measured on.
+ */
+public interface Target extends AutoCloseable {
+
+    /**
+     * Creates a metric, doing nothing when it already exists.
+     */
+    void createMetric(Metric<?> metric) throws Exception;
+
+    <T> void addDataPoints(String tenantId, MetricType<T> type, List<Metric<T>> metrics) throws Exception;
+
+    void findGaugeStats(String tenantId, String gauge, long start, long end, int buckets) throws Exception;
+
+    void findRateStats(String tenantId, String counter, long start, long end, int buckets) throws Exception;
+
+    void findGaugesByTags(String tenantId, Map<String, String> tags) throws Exception;
+}
@@ -0,0 +1,184 @@
+/*
+ * Copyright 2014-2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.metrics.clients.load;
+
+import static java.util.Collections.singletonMap;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.hawkular.metrics.model.AvailabilityType;
+import org.hawkular.metrics.model.DataPoint;
+import org.hawkular.metrics.model.Metric;
+import org.hawkular.metrics.model.MetricId;
+import org.hawkular.metrics.model.MetricType;
+
+/**
+ * Turns a {@link WorkloadProfile} into requests.
+ * <p>
+ * Tenants are named load-tenant-0, load-tenant-1, and so on, each with the same gauges, counters and availability
+ * metrics. Every metric has a {@code host} tag, whose values repeat every {@link WorkloadProfile#getTagCardinality()}
+ * metrics. Write requests go through the tenants in turn, and through the metrics of the tenant, so that every
+ * metric receives data at the same pace. Queries pick a tenant and a metric at random.
+ */
+class Workload {
+
+    private static final String TAG = "host";
+    private static final long BACKFILL_STEP = 60_000;
+
+    private final WorkloadProfile profile;
+
+    Workload(WorkloadProfile profile) {
+        this.profile = profile;
+    }
+
+    static String tenant(int tenant) {
+        return "load-tenant-" + tenant;
+    }
+
+    private static String name(MetricType<?> type, int metric) {
+        return type.getText() + "-" + metric;
+    }
+
+    private Map<String, String> tags(int metric) {
+        return singletonMap(TAG, "host-" + (metric % profile.getTagCardinality()));
+    }
+
+    private int count(MetricType<?> type) {
+        if (type == MetricType.GAUGE) {
+            return profile.getGauges();
+        }
+        if (type == MetricType.COUNTER) {
+            return profile.getCounters();
+        }
+        return profile.getAvailabilities();
+    }
+
+    /**
+     * @return the definitions of the metrics of {@code tenant}
+     */
+    List<Metric<?>> getMetrics(int tenant) {
+        List<Metric<?>> metrics = new ArrayList<>();
+        for (MetricType<?> type : MetricType.userTypes()) {
+            for (int i = 0; i < count(type); i++) {
+                metrics.add(new Metric<>(new MetricId<>(tenant(tenant), type, name(type, i)), tags(i), null));
+            }
+        }
+        return metrics;
+    }
+
+    /**
+     * Writes {@link WorkloadProfile#getBackfill()} minutes of history, one data point per minute, for the metrics of
+     * {@code tenant}.
+     */
+    void backfill(Target target, int tenant, long now) throws Exception {
+        int points = profile.getBackfill();
+        for (MetricType<?> type : MetricType.userTypes()) {
+            int metricsPerBatch = Math.max(1, profile.getBatchSize() / Math.max(1, points));
+            for (int first = 0; first < count(type); first += metricsPerBatch) {
+                List<Metric<Object>> batch = new ArrayList<>();
+                for (int i = first; i < Math.min(first + metricsPerBatch, count(type)); i++) {
+                    List<DataPoint<Object>> dataPoints = new ArrayList<>(points);
+                    for (int j = points; j > 0; j--) {
+                        long timestamp = now - j * BACKFILL_STEP;
+                        dataPoints.add(new DataPoint<>(timestamp, value(type, timestamp)));
+                    }
+                    batch.add(metric(tenant, type, i, dataPoints));
+                }
+                addDataPoints(target, tenant, type, batch);
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Metric<Object> metric(int tenant, MetricType<?> type, int metric, List<DataPoint<Object>> points) {
+        return new Metric<>(new MetricId<>(tenant(tenant), (MetricType<Object>) type, name(type, metric)), points);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void addDataPoints(Target target, int tenant, MetricType<?> type, List<Metric<Object>> batch)
+            throws Exception {
+        target.addDataPoints(tenant(tenant), (MetricType<Object>) type, batch);
+    }
+
+    private static Object value(MetricType<?> type, long timestamp) {
+        Random random = ThreadLocalRandom.current();
+        if (type == MetricType.GAUGE) {
+            return 50 + random.nextGaussian() * 10;
+        }
+        if (type == MetricType.COUNTER) {
+            // Counters only go up, at about 100 per second
+            return timestamp / 10;
+        }
+        return random.nextInt(10) == 0 ? AvailabilityType.DOWN : AvailabilityType.UP;
+    }
+
+    /**
+     * Executes the {@code sequence}-th request of {@code operation}.
+     */
+    void execute(Operation operation, long sequence, Target target) throws Exception {
+        long now = System.currentTimeMillis();
+        Random random = ThreadLocalRandom.current();
+        int tenant = random.nextInt(profile.getTenants());
+        switch (operation) {
+            case GAUGE_WRITES:
+                write(target, MetricType.GAUGE, sequence, now);
+                break;
+            case COUNTER_WRITES:
+                write(target, MetricType.COUNTER, sequence, now);
+                break;
+            case AVAILABILITY_WRITES:
+                write(target, MetricType.AVAILABILITY, sequence, now);
+                break;
+            case GAUGE_STATS:
+                target.findGaugeStats(tenant(tenant), name(MetricType.GAUGE, random.nextInt(profile.getGauges())),
+                        now - profile.getQueryRange(), now, profile.getBuckets());
+                break;
+            case TAG_QUERIES:
+                target.findGaugesByTags(tenant(tenant), tags(random.nextInt(profile.getTagCardinality())));
+                break;
+            case RATE_QUERIES:
+                target.findRateStats(tenant(tenant), name(MetricType.COUNTER, random.nextInt(profile.getCounters())),
+                        now - profile.getQueryRange(), now, profile.getBuckets());
+                break;
+            default:
+                throw new IllegalArgumentException(operation.getText());
+        }
+    }
+
+    private void write(Target target, MetricType<?> type, long sequence, long now) throws Exception {
+        int tenant = (int) (sequence % profile.getTenants());
+        int metrics = count(type);
+        int batchSize = profile.getBatchSize();
+        long first = (sequence / profile.getTenants()) * batchSize;
+        List<Metric<Object>> batch = new ArrayList<>();
+        for (int i = 0; i < Math.min(batchSize, metrics); i++) {
+            int metric = (int) ((first + i) % metrics);
+            List<DataPoint<Object>> dataPoints = new ArrayList<>();
+            // When the batch is bigger than the number of metrics, each metric gets several points a millisecond apart
+            for (int j = i; j < batchSize; j += metrics) {
+                long timestamp = now - j / metrics;
+                dataPoints.add(new DataPoint<>(timestamp, value(type, timestamp)));
+            }
+            batch.add(metric(tenant, type, metric, dataPoints));
+        }
+        addDataPoints(target, tenant, type, batch);
+    }
+}
@@ -0,0 +1,234 @@
+/*
+ * Copyright 2014-2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.metrics.clients.load;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * Describes a workload: the shape of the data set and the rate of each {@link Operation}.
+ * <p>
+ * Profiles are properties files. The built-in ones, {@code ingest}, {@code dashboard} and {@code mixed}, are loaded
+ * from the class path; any other name is read as a file. The keys are:
+ * <ul>
+ *     <li>tenants, gauges, counters, availabilities: the number of tenants and of metrics of each type per tenant</li>
+ *     <li>tag-cardinality: the number of distinct values of the {@code host} tag of the metrics</li>
+ *     <li>batch-size: the number of data points written by a request</li>
+ *     <li>&lt;operation&gt;.rate: data points per second for writes, requests per second for queries, zero to disable
+ *     the operation</li>
+ *     <li>query-range: how far back queries look, in minutes, and buckets: the number of buckets of statistics</li>
+ *     <li>backfill: minutes of history written, one data point per minute, before the run</li>
+ *     <li>concurrency: the maximum number of requests in flight per operation</li>
+ *     <li>warmup and duration: in seconds; nothing is recorded during the warmup</li>
+ * </ul>
+ * Keys which are not set take the values of {@link #DEFAULTS}.
+ */
+public class WorkloadProfile {
+
+    static final Properties DEFAULTS = new Properties();
+
+    static {
+        DEFAULTS.setProperty("tenants", "1");
+        DEFAULTS.setProperty("gauges", "100");
+        DEFAULTS.setProperty("counters", "10");
+        DEFAULTS.setProperty("availabilities", "10");
+        DEFAULTS.setProperty("tag-cardinality", "10");
+        DEFAULTS.setProperty("batch-size", "100");
+        DEFAULTS.setProperty("query-range", "60");
+        DEFAULTS.setProperty("buckets", "60");
+        DEFAULTS.setProperty("backfill", "0");
+        DEFAULTS.setProperty("concurrency", "8");
+        DEFAULTS.setProperty("warmup", "10");
+        DEFAULTS.setProperty("duration", "60");
+        for (Operation operation : Operation.values()) {
+            DEFAULTS.setProperty(operation.getText() + ".rate", "0");
+        }
+    }
+
+    private final String name;
+    private final int tenants;
+    private final int gauges;
+    private final int counters;
+    private final int availabilities;
+    private final int tagCardinality;
+    private final int batchSize;
+    private final long queryRange;
+    private final int buckets;
+    private final int backfill;
+    private final int concurrency;
+    private final long warmup;
+    private final long duration;
+    private final Map<Operation, Double> rates = new EnumMap<>(Operation.class);
+
+    WorkloadProfile(String name, Properties properties) {
+        this.name = name;
+        tenants = getInt(properties, "tenants");
+        gauges = getInt(properties, "gauges");
+        counters = getInt(properties, "counters");
+        availabilities = getInt(properties, "availabilities");
+        tagCardinality = Math.max(1, getInt(properties, "tag-cardinality"));
+        batchSize = Math.max(1, getInt(properties, "batch-size"));
+        queryRange = getInt(properties, "query-range") * 60_000L;
+        buckets = getInt(properties, "buckets");
+        backfill = getInt(properties, "backfill");
+        concurrency = Math.max(1, getInt(properties, "concurrency"));
+        warmup = getInt(properties, "warmup");
+        duration = getInt(properties, "duration");
+        for (Operation operation : Operation.values()) {
+            rates.put(operation, Double.parseDouble(properties.getProperty(operation.getText() + ".rate")));
+        }
+        if (tenants < 1 || gauges < 1) {
+            throw new IllegalArgumentException("A workload needs at least one tenant and one gauge");
+        }
+    }
+
+    private static int getInt(Properties properties, String key) {
+        try {
+            return Integer.parseInt(properties.getProperty(key).trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid value for " + key + ": " + properties.getProperty(key));
+        }
+    }
+
+    /**
+     * Loads a built-in profile, or a profile file, and applies {@code overrides} on top of it.
+     */
+    public static WorkloadProfile load(String name, Properties overrides) throws IOException {
+        Properties properties = new Properties();
+        properties.putAll(DEFAULTS);
+        try (InputStream builtIn = WorkloadProfile.class.getResourceAsStream("/profiles/" + name + ".properties")) {
+            if (builtIn != null) {
+                properties.load(builtIn);
+            } else {
+                Path path = Paths.get(name);
+                try (Reader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+                    properties.load(reader);
+                }
+            }
+        }
+        properties.putAll(overrides);
+        return new WorkloadProfile(name, properties);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getTenants() {
+        return tenants;
+    }
+
+    /**
+     * @return the number of gauges per tenant
+     */
+    public int getGauges() {
+        return gauges;
+    }
+
+    public int getCounters() {
+        return counters;
+    }
+
+    public int getAvailabilities() {
+        return availabilities;
+    }
+
+    public int getTagCardinality() {
+        return tagCardinality;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    /**
+     * @return how far back queries look, in milliseconds
+     */
+    public long getQueryRange() {
+        return queryRange;
+    }
+
+    public int getBuckets() {
+        return buckets;
+    }
+
+    /**
+     * @return the minutes of history written before the run
+     */
+    public int getBackfill() {
+        return backfill;
+    }
+
+    public int getConcurrency() {
+        return concurrency;
+    }
+
+    /**
+     * @return the warmup, in seconds
+     */
+    public long getWarmup() {
+        return warmup;
+    }
+
+    /**
+     * @return the duration of the measured part of the run, in seconds
+     */
+    public long getDuration() {
+        return duration;
+    }
+
+    /**
+     * @return the number of requests per second of {@code operation}, writes being batched
+     */
+    public double getRequestRate(Operation operation) {
+        double rate = rates.get(operation);
+        switch (operation) {
+            case GAUGE_WRITES:
+            case COUNTER_WRITES:
+            case AVAILABILITY_WRITES:
+                return rate / batchSize;
+            default:
+                return rate;
+        }
+    }
+
+    /**
+     * @return whether {@code operation} has something to work on and a rate above zero
+     */
+    public boolean isEnabled(Operation operation) {
+        if (rates.get(operation) <= 0) {
+            return false;
+        }
+        switch (operation) {
+            case COUNTER_WRITES:
+            case RATE_QUERIES:
+                return counters > 0;
+            case AVAILABILITY_WRITES:
+                return availabilities > 0;
+            default:
+                return true;
+        }
+    }
+}
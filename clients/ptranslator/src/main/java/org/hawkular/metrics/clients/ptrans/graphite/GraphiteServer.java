@@ -63,19 +63,27 @@ public class GraphiteServer extends AbstractVerticle {
     }
 
     private void handleRecord(Buffer buf) {
-        String msg = buf.toString("UTF-8");
+        SingleMetric metric = parseRecord(buf.toString("UTF-8"));
+        if (metric != null) {
+            vertx.eventBus().publish(METRIC_ADDRESS, metric);
+        }
+    }
 
+    /**
+     * @param msg a line of the plaintext protocol: name, value and timestamp in seconds, separated by spaces
+     * @return the metric, or null if the line is not in the expected format
+     */
+    static SingleMetric parseRecord(String msg) {
         String[] items = msg.split(" ");
         if (items.length != 3) {
             log.tracef("Unknown data format for '%s', skipping", msg);
-            return;
+            return null;
         }
 
         String name = items[0];
         double value = Double.parseDouble(items[1]);
         long timestamp = MILLISECONDS.convert(Long.parseLong(items[2]), SECONDS);
 
-        SingleMetric metric = new SingleMetric(name, timestamp, value);
-        vertx.eventBus().publish(METRIC_ADDRESS, metric);
+        return new SingleMetric(name, timestamp, value);
     }
 }
@@ -1,5 +1,5 @@
 /*
- * Copyright 2014-2015 Red Hat, Inc. and/or its affiliates
+ * Copyright 2014-2016 Red Hat, Inc. and/or its affiliates
  * and other contributors as indicated by the @author tags.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
@@ -19,13 +19,14 @@ package org.hawkular.metrics.core.service;
 import org.hawkular.metrics.model.DataPoint;
 import org.hawkular.metrics.model.MetricId;
 
-import rx.Observable;
 import rx.functions.Func1;
-import rx.observables.MathObservable;
 
 /**
  * Predefined aggregate functions usable with
  * {@link MetricsService#findGaugeData(MetricId, long, long, Func1[])}.
+ * <p>
+ * All of them are {@link AggregateFunction aggregate functions}, so any number of them are computed in a single pass
+ * over the data points. Functions which do not have a result for an empty range, like the average, emit nothing.
  *
  * @author john sanda
  * @author jay shaughnessy
@@ -35,25 +36,140 @@ public interface Aggregate {
     /**
      * A function that emits a single item, the average of {@link DataPoint data points} as a double.
      */
-    Func1<Observable<DataPoint<Double>>, Observable<Double>> Average = data ->
-            MathObservable.averageDouble(data.map((DataPoint<Double> dataPoint) -> dataPoint.getValue()));
+    AggregateFunction<Double> Average = new AggregateFunction<>(() -> new AggregateFunction.Accumulator<Double>() {
+        private double sum;
+        private long count;
+
+        @Override
+        public void increment(DataPoint<Double> dataPoint) {
+            sum += dataPoint.getValue();
+            count++;
+        }
+
+        @Override
+        public Double getResult() {
+            return count == 0 ? null : sum / count;
+        }
+    });
 
     /**
      * A function that emits a single item, the max of {@link DataPoint data points} as a double.
      */
-    Func1<Observable<DataPoint<Double>>, Observable<Double>> Max = data ->
-            MathObservable.max(data.map((DataPoint<Double> dataPoint) -> dataPoint.getValue()));
+    AggregateFunction<Double> Max = new AggregateFunction<>(() -> new AggregateFunction.Accumulator<Double>() {
+        private Double max;
+
+        @Override
+        public void increment(DataPoint<Double> dataPoint) {
+            if (max == null || dataPoint.getValue() > max) {
+                max = dataPoint.getValue();
+            }
+        }
+
+        @Override
+        public Double getResult() {
+            return max;
+        }
+    });
 
     /**
      * A function that emits a single item, the min of {@link DataPoint data points} as a double.
      */
-    Func1<Observable<DataPoint<Double>>, Observable<Double>> Min = data ->
-            MathObservable.min(data.map((DataPoint<Double> dataPoint) -> dataPoint.getValue()));
+    AggregateFunction<Double> Min = new AggregateFunction<>(() -> new AggregateFunction.Accumulator<Double>() {
+        private Double min;
+
+        @Override
+        public void increment(DataPoint<Double> dataPoint) {
+            if (min == null || dataPoint.getValue() < min) {
+                min = dataPoint.getValue();
+            }
+        }
+
+        @Override
+        public Double getResult() {
+            return min;
+        }
+    });
 
     /**
      * A function that emits a single item, the sum of {@link DataPoint data points} as a double.
      */
-    Func1<Observable<DataPoint<Double>>, Observable<Double>> Sum = data ->
-            MathObservable.sumDouble(data.map((DataPoint<Double> dataPoint) -> dataPoint.getValue()));
+    AggregateFunction<Double> Sum = new AggregateFunction<>(() -> new AggregateFunction.Accumulator<Double>() {
+        private double sum;
+
+        @Override
+        public void increment(DataPoint<Double> dataPoint) {
+            sum += dataPoint.getValue();
+        }
+
+        @Override
+        public Double getResult() {
+            return sum;
+        }
+    });
+
+    /**
+     * A function that emits a single item, the number of {@link DataPoint data points} as a double so that it can be
+     * combined with the other aggregates.
+     */
+    AggregateFunction<Double> Count = new AggregateFunction<>(() -> new AggregateFunction.Accumulator<Double>() {
+        private long count;
+
+        @Override
+        public void increment(DataPoint<Double> dataPoint) {
+            count++;
+        }
+
+        @Override
+        public Double getResult() {
+            return (double) count;
+        }
+    });
+
+    /**
+     * A function that emits a single item, the value of the most recent {@link DataPoint data point}.
+     */
+    AggregateFunction<Double> Last = new AggregateFunction<>(() -> new AggregateFunction.Accumulator<Double>() {
+        private DataPoint<Double> last;
+
+        @Override
+        public void increment(DataPoint<Double> dataPoint) {
+            if (last == null || dataPoint.getTimestamp() > last.getTimestamp()) {
+                last = dataPoint;
+            }
+        }
+
+        @Override
+        public Double getResult() {
+            return last == null ? null : last.getValue();
+        }
+    });
+
+    /**
+     * A function that emits a single item, the median of {@link DataPoint data points} as a double.
+     */
+    AggregateFunction<Double> Median = percentile(50.0);
+
+    /**
+     * Creates a function that emits a single item, an estimate of the given percentile of {@link DataPoint data
+     * points}. The estimate is computed without keeping the data points in memory.
+     *
+     * @param quantile the requested percentile, between 0 and 100
+     */
+    static AggregateFunction<Double> percentile(double quantile) {
+        return new AggregateFunction<>(() -> new AggregateFunction.Accumulator<Double>() {
+            private final PercentileWrapper percentile = NumericDataPointCollector.createPercentile.apply(quantile);
+            private boolean empty = true;
+
+            @Override
+            public void increment(DataPoint<Double> dataPoint) {
+                percentile.addValue(dataPoint.getValue());
+                empty = false;
+            }
 
+            @Override
+            public Double getResult() {
+                return empty ? null : percentile.getResult();
+            }
+        });
+    }
 }
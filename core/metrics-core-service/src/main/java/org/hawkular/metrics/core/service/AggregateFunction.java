@@ -0,0 +1,77 @@
+/*
+ * Copyright 2014-2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.metrics.core.service;
+
+import org.hawkular.metrics.model.DataPoint;
+
+import rx.Observable;
+import rx.functions.Func0;
+import rx.functions.Func1;
+
+/**
+ * A function over gauge data points which can be computed incrementally, one data point at a time. When all the
+ * functions passed to {@link MetricsService#findGaugeData(org.hawkular.metrics.model.MetricId, long, long, Func1[])}
+ * are aggregate functions, they are fed from a single scan of the data points and nothing is kept in memory but their
+ * accumulators.
+ *
+ * @param <T> the type of the result
+ * @see Aggregate
+ */
+public final class AggregateFunction<T> implements Func1<Observable<DataPoint<Double>>, Observable<T>> {
+
+    /**
+     * Holds the state of an aggregate function while data points are consumed. Accumulators are not thread safe.
+     *
+     * @param <T> the type of the result
+     */
+    public interface Accumulator<T> {
+
+        void increment(DataPoint<Double> dataPoint);
+
+        /**
+         * @return the result, or null if it is undefined for the data points consumed, like the average of no data
+         * points
+         */
+        T getResult();
+    }
+
+    private final Func0<Accumulator<T>> accumulatorFactory;
+
+    /**
+     * @param accumulatorFactory creates a new accumulator for each evaluation of the function
+     */
+    public AggregateFunction(Func0<Accumulator<T>> accumulatorFactory) {
+        this.accumulatorFactory = accumulatorFactory;
+    }
+
+    public Accumulator<T> newAccumulator() {
+        return accumulatorFactory.call();
+    }
+
+    @Override
+    public Observable<T> call(Observable<DataPoint<Double>> data) {
+        return data.collect(this::newAccumulator, Accumulator::increment).concatMap(AggregateFunction::result);
+    }
+
+    /**
+     * @return an {@link Observable} which emits the result of {@code accumulator}, or nothing if it is undefined
+     */
+    static <T> Observable<T> result(Accumulator<T> accumulator) {
+        T result = accumulator.getResult();
+        return result == null ? Observable.empty() : Observable.just(result);
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright 2014-2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.metrics.core.service;
+
+import org.hawkular.metrics.model.AvailabilityType;
+
+import com.google.common.base.Objects;
+
+/**
+ * A period during which the availability of a metric did not change, from the timestamp of its first data point to
+ * the timestamp of its last one.
+ */
+final class AvailabilityRun {
+    private final long start;
+    private final long end;
+    private final AvailabilityType value;
+
+    AvailabilityRun(long start, long end, AvailabilityType value) {
+        this.start = start;
+        this.end = end;
+        this.value = value;
+    }
+
+    long getStart() {
+        return start;
+    }
+
+    long getEnd() {
+        return end;
+    }
+
+    AvailabilityType getValue() {
+        return value;
+    }
+
+    /**
+     * @return a run extended to {@code timestamp}
+     */
+    AvailabilityRun extend(long timestamp) {
+        return new AvailabilityRun(start, timestamp, value);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        AvailabilityRun that = (AvailabilityRun) o;
+        return start == that.start && end == that.end && value == that.value;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hashCode(start, end, value);
+    }
+
+    @Override
+    public String toString() {
+        return Objects.toStringHelper(this)
+                .add("start", start)
+                .add("end", end)
+                .add("value", value)
+                .toString();
+    }
+}
@@ -0,0 +1,304 @@
+/*
+ * Copyright 2014-2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.metrics.core.service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.hawkular.metrics.model.AvailabilityType;
+import org.hawkular.metrics.model.Buckets;
+import org.hawkular.metrics.model.DataPoint;
+import org.hawkular.metrics.model.Metric;
+import org.hawkular.metrics.model.MetricId;
+
+import com.codahale.metrics.Meter;
+import com.datastax.driver.core.Row;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+import rx.Observable;
+
+/**
+ * Maintains the availability_runs table, which stores availability as a sequence of {@link AvailabilityRun runs}, and
+ * reads it back. A metric reporting the same availability every few seconds for months has a single run over that
+ * period, so that distinct queries and statistics are computed in time proportional to the number of state changes.
+ * <p>
+ * Runs are updated once the data points are stored in the data table. The last run of each metric is cached to tell
+ * whether incoming data points extend it or start a new one. A data point older than the last run cannot be merged
+ * incrementally: the runs from that point on are rebuilt from the data table.
+ * <p>
+ * Runs are only recorded from the time the feature is enabled. Queries starting before the first run of a metric are
+ * therefore answered from the data table. Like the latest data point cache, the cache of last runs only sees the
+ * writes handled by this node; availability of a given metric is expected to be written through one node at a time.
+ */
+final class AvailabilityRuns {
+
+    private final DataAccess dataAccess;
+    private final Cache<MetricId<AvailabilityType>, AvailabilityRun> lastRuns;
+    private final Meter rebuilds;
+
+    /**
+     * @param maxMetrics the maximum number of metrics for which the last run is kept in memory
+     * @param rebuilds marked each time runs are rebuilt because of out of order data points
+     */
+    AvailabilityRuns(DataAccess dataAccess, long maxMetrics, Meter rebuilds) {
+        this.dataAccess = dataAccess;
+        this.lastRuns = CacheBuilder.newBuilder().maximumSize(maxMetrics).build();
+        this.rebuilds = rebuilds;
+    }
+
+    /**
+     * Updates the runs of a metric with data points which have been stored. The returned Observable does not emit any
+     * item.
+     */
+    Observable<Void> update(Metric<AvailabilityType> metric, int ttl) {
+        MetricId<AvailabilityType> id = metric.getMetricId();
+        AvailabilityRun cached = lastRuns.getIfPresent(id);
+        Observable<AvailabilityRun> lastRun = cached == null ? findRun(id, Long.MAX_VALUE) : Observable.just(cached);
+        return lastRun.toList().flatMap(runs -> {
+            Merge merge;
+            synchronized (this) {
+                AvailabilityRun last = lastRuns.getIfPresent(id);
+                if (last == null && !runs.isEmpty()) {
+                    last = runs.get(0);
+                }
+                merge = merge(last, metric.getDataPoints());
+                if (merge.isOutOfOrder()) {
+                    lastRuns.invalidate(id);
+                } else if (merge.getLast() != null) {
+                    lastRuns.put(id, merge.getLast());
+                }
+            }
+            if (merge.isOutOfOrder()) {
+                return rebuild(id, merge.getRebuildStart(), merge.getRebuildEnd(), ttl);
+            }
+            return write(id, merge.getUpdated(), ttl);
+        });
+    }
+
+    private Observable<Void> write(MetricId<AvailabilityType> id, List<AvailabilityRun> runs, int ttl) {
+        return Observable.from(runs)
+                .flatMap(run -> dataAccess.updateAvailabilityRun(id, run.getStart(), run.getEnd(), run.getValue(),
+                        ttl))
+                .flatMap(resultSet -> Observable.<Void>empty());
+    }
+
+    /**
+     * Rebuilds the runs from the run holding {@code start} up to {@code end} by reading the data table.
+     */
+    private Observable<Void> rebuild(MetricId<AvailabilityType> id, long start, long end, int ttl) {
+        rebuilds.mark();
+        return findRun(id, start)
+                .map(AvailabilityRun::getStart)
+                .defaultIfEmpty(start)
+                .flatMap(rebuildStart -> {
+                    Observable<List<AvailabilityRun>> rebuilt = dataAccess.findAvailabilityData(id, rebuildStart, end,
+                            0, Order.ASC, false)
+                            .flatMap(Observable::from)
+                            .map(Functions::getAvailabilityDataPoint)
+                            .collect(RunBuilder::new, RunBuilder::add)
+                            .map(RunBuilder::getRuns);
+                    Observable<Long> existing = dataAccess.findAvailabilityRuns(id, rebuildStart, end)
+                            .flatMap(Observable::from)
+                            .map(row -> fromRow(row).getStart());
+                    return Observable.zip(rebuilt, existing.toList(), (runs, starts) -> {
+                        Set<Long> stale = new HashSet<>(starts);
+                        runs.forEach(run -> stale.remove(run.getStart()));
+                        Observable<Void> deletes = Observable.from(stale)
+                                .flatMap(runStart -> dataAccess.deleteAvailabilityRun(id, runStart))
+                                .flatMap(resultSet -> Observable.<Void>empty());
+                        return deletes.concatWith(write(id, runs, ttl));
+                    }).flatMap(updates -> updates);
+                })
+                .doOnTerminate(() -> lastRuns.invalidate(id));
+    }
+
+    /**
+     * @return the most recent run which started at or before {@code time}, if any
+     */
+    private Observable<AvailabilityRun> findRun(MetricId<AvailabilityType> id, long time) {
+        return dataAccess.findAvailabilityRun(id, time)
+                .flatMap(Observable::from)
+                .map(AvailabilityRuns::fromRow);
+    }
+
+    /**
+     * Finds the runs overlapping a time range.
+     *
+     * @return an Observable emitting the runs in ascending order, or nothing when the metric has no run starting at or
+     * before {@code start}, in which case runs do not cover the time range and the data table has to be read instead
+     */
+    Observable<List<AvailabilityRun>> findRuns(MetricId<AvailabilityType> id, long start, long end) {
+        return findRun(id, start).flatMap(first -> dataAccess.findAvailabilityRuns(id, start, end)
+                .flatMap(Observable::from)
+                .map(AvailabilityRuns::fromRow)
+                .filter(run -> run.getStart() != first.getStart())
+                .toList()
+                .map(runs -> {
+                    Collections.reverse(runs);
+                    if (first.getEnd() >= start) {
+                        runs.add(0, first);
+                    }
+                    return runs;
+                }));
+    }
+
+    static AvailabilityRun fromRow(Row row) {
+        return new AvailabilityRun(row.getTimestamp(0).getTime(), row.getTimestamp(1).getTime(),
+                AvailabilityType.fromBytes(row.getBytes(2)));
+    }
+
+    /**
+     * Turns runs into data points from which {@link AvailabilityDataPointCollector} computes the same statistics as
+     * from the data points stored: a data point at the start of each run, and one at the start of each bucket a run
+     * extends to.
+     *
+     * @param runs runs in ascending order
+     */
+    static Observable<DataPoint<AvailabilityType>> toDataPoints(List<AvailabilityRun> runs, Buckets buckets) {
+        long start = buckets.getStart();
+        long end = start + buckets.getCount() * buckets.getStep();
+        List<DataPoint<AvailabilityType>> dataPoints = new ArrayList<>();
+        for (AvailabilityRun run : runs) {
+            long timestamp = Math.max(run.getStart(), start);
+            long last = Math.min(run.getEnd(), end - 1);
+            if (timestamp > last) {
+                continue;
+            }
+            dataPoints.add(new DataPoint<>(timestamp, run.getValue()));
+            for (int i = buckets.getIndex(timestamp) + 1; i <= buckets.getIndex(last); i++) {
+                dataPoints.add(new DataPoint<>(buckets.getBucketStart(i), run.getValue()));
+            }
+        }
+        return Observable.from(dataPoints);
+    }
+
+    /**
+     * Merges data points into the last run of a metric.
+     */
+    static Merge merge(AvailabilityRun last, List<DataPoint<AvailabilityType>> dataPoints) {
+        List<DataPoint<AvailabilityType>> sorted = new ArrayList<>(dataPoints);
+        sorted.sort(Comparator.comparing(DataPoint::getTimestamp));
+        RunBuilder builder = new RunBuilder(last);
+        for (DataPoint<AvailabilityType> dataPoint : sorted) {
+            if (!builder.add(dataPoint)) {
+                long lastEnd = last == null ? Long.MIN_VALUE : last.getEnd();
+                long end = Math.max(lastEnd, sorted.get(sorted.size() - 1).getTimestamp()) + 1;
+                return new Merge(null, null, sorted.get(0).getTimestamp(), end);
+            }
+        }
+        return new Merge(builder.getRuns(), builder.getCurrent(), 0, 0);
+    }
+
+    /**
+     * The outcome of {@link #merge(AvailabilityRun, List)}: either the runs to write, or the time range over which runs
+     * must be rebuilt.
+     */
+    static final class Merge {
+        private final List<AvailabilityRun> updated;
+        private final AvailabilityRun last;
+        private final long rebuildStart;
+        private final long rebuildEnd;
+
+        private Merge(List<AvailabilityRun> updated, AvailabilityRun last, long rebuildStart, long rebuildEnd) {
+            this.updated = updated;
+            this.last = last;
+            this.rebuildStart = rebuildStart;
+            this.rebuildEnd = rebuildEnd;
+        }
+
+        boolean isOutOfOrder() {
+            return updated == null;
+        }
+
+        /**
+         * @return the runs created or extended, in ascending order
+         */
+        List<AvailabilityRun> getUpdated() {
+            return updated;
+        }
+
+        /**
+         * @return the last run of the metric once the data points are merged
+         */
+        AvailabilityRun getLast() {
+            return last;
+        }
+
+        long getRebuildStart() {
+            return rebuildStart;
+        }
+
+        long getRebuildEnd() {
+            return rebuildEnd;
+        }
+    }
+
+    /**
+     * Builds runs from data points in ascending order of timestamp.
+     */
+    private static final class RunBuilder {
+        private final List<AvailabilityRun> runs = new ArrayList<>();
+        private AvailabilityRun current;
+
+        RunBuilder() {
+        }
+
+        /**
+         * @param last the run the data points follow, which is only returned if extended
+         */
+        RunBuilder(AvailabilityRun last) {
+            current = last;
+        }
+
+        /**
+         * @return false if the data point is older than the current run and cannot be merged
+         */
+        boolean add(DataPoint<AvailabilityType> dataPoint) {
+            long timestamp = dataPoint.getTimestamp();
+            AvailabilityType value = dataPoint.getValue();
+            if (current == null || (timestamp > current.getEnd() && value != current.getValue())) {
+                current = new AvailabilityRun(timestamp, timestamp, value);
+            } else if (timestamp > current.getEnd()) {
+                current = current.extend(timestamp);
+            } else if (timestamp >= current.getStart() && value == current.getValue()) {
+                // Already part of the current run
+                return true;
+            } else {
+                return false;
+            }
+            if (!runs.isEmpty() && runs.get(runs.size() - 1).getStart() == current.getStart()) {
+                runs.set(runs.size() - 1, current);
+            } else {
+                runs.add(current);
+            }
+            return true;
+        }
+
+        List<AvailabilityRun> getRuns() {
+            return runs;
+        }
+
+        AvailabilityRun getCurrent() {
+            return current;
+        }
+    }
+}
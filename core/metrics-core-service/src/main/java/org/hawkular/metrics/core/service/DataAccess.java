@@ -20,6 +20,7 @@ import java.util.Map;
 import java.util.Set;
 
 import org.hawkular.metrics.model.AvailabilityType;
+import org.hawkular.metrics.model.DataPoint;
 import org.hawkular.metrics.model.Interval;
 import org.hawkular.metrics.model.Metric;
 import org.hawkular.metrics.model.MetricId;
@@ -43,6 +44,10 @@ public interface DataAccess {
 
     Observable<ResultSet> findTenant(String id);
 
+    Observable<ResultSet> findTenantQuotas();
+
+    Observable<ResultSet> updateTenantQuotas(String tenantId, Map<String, Double> quotas);
+
     <T> ResultSetFuture insertMetricInMetricsIndex(Metric<T> metric);
 
     <T> Observable<ResultSet> findMetric(MetricId<T> id);
@@ -95,4 +100,23 @@ public interface DataAccess {
     Observable<ResultSet> findMetricsByTagName(String tenantId, String tag);
 
     Observable<ResultSet> findMetricsByTagNameValue(String tenantId, String tag, String tvalue);
+
+    <T> Observable<ResultSet> updateLatestData(MetricId<T> id, DataPoint<T> dataPoint, int ttl);
+
+    <T> Observable<ResultSet> findLatestData(MetricId<T> id);
+
+    Observable<ResultSet> updateAvailabilityRun(MetricId<AvailabilityType> id, long start, long end,
+            AvailabilityType availability, int ttl);
+
+    Observable<ResultSet> deleteAvailabilityRun(MetricId<AvailabilityType> id, long start);
+
+    /**
+     * Finds the most recent availability run which started at or before {@code time}.
+     */
+    Observable<ResultSet> findAvailabilityRun(MetricId<AvailabilityType> id, long time);
+
+    /**
+     * Finds the availability runs which started in the time range, most recent first.
+     */
+    Observable<ResultSet> findAvailabilityRuns(MetricId<AvailabilityType> id, long start, long end);
 }
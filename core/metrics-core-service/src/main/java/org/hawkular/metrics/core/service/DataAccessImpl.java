@@ -24,8 +24,10 @@ import static org.hawkular.metrics.model.MetricType.COUNTER;
 import static org.hawkular.metrics.model.MetricType.GAUGE;
 
 import java.nio.ByteBuffer;
+import java.util.Date;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 import java.util.function.BiFunction;
 
 import org.hawkular.metrics.core.service.transformers.BatchStatementTransformer;
@@ -38,12 +40,14 @@ import org.hawkular.metrics.model.MetricType;
 import org.hawkular.metrics.model.Tenant;
 import org.hawkular.rx.cassandra.driver.RxSession;
 import org.hawkular.rx.cassandra.driver.RxSessionImpl;
+import org.hawkular.rx.cassandra.driver.StatementMetrics;
 
 import com.datastax.driver.core.BoundStatement;
 import com.datastax.driver.core.PreparedStatement;
 import com.datastax.driver.core.ResultSet;
 import com.datastax.driver.core.ResultSetFuture;
 import com.datastax.driver.core.Session;
+import com.datastax.driver.core.Statement;
 import com.datastax.driver.core.utils.UUIDs;
 
 import rx.Observable;
@@ -69,6 +73,10 @@ public class DataAccessImpl implements DataAccess {
 
     private PreparedStatement findTenant;
 
+    private PreparedStatement findTenantQuotas;
+
+    private PreparedStatement updateTenantQuotas;
+
     private PreparedStatement insertIntoMetricsIndex;
 
     private PreparedStatement findMetric;
@@ -151,9 +159,35 @@ public class DataAccessImpl implements DataAccess {
 
     private PreparedStatement findMetricsByTagNameValue;
 
+    private PreparedStatement updateLatestGaugeData;
+
+    private PreparedStatement updateLatestCounterData;
+
+    private PreparedStatement updateLatestAvailability;
+
+    private PreparedStatement findLatestDataByMetric;
+
+    private PreparedStatement updateAvailabilityRun;
+
+    private PreparedStatement deleteAvailabilityRun;
+
+    private PreparedStatement findAvailabilityRun;
+
+    private PreparedStatement findAvailabilityRuns;
+
+    private StatementMetrics statementMetrics;
+
     public DataAccessImpl(Session session) {
+        this(session, null);
+    }
+
+    /**
+     * @param statementMetrics records the latency and outcome of the statements executed, can be null
+     */
+    public DataAccessImpl(Session session, StatementMetrics statementMetrics) {
         this.session = session;
-        rxSession = new RxSessionImpl(session);
+        this.statementMetrics = statementMetrics;
+        rxSession = new RxSessionImpl(session, statementMetrics);
         initPreparedStatements();
     }
 
@@ -161,13 +195,17 @@ public class DataAccessImpl implements DataAccess {
         insertTenantId = session.prepare("INSERT INTO tenants (id) VALUES (?)");
 
         insertTenant = session.prepare(
-            "INSERT INTO tenants (id, retentions) VALUES (?, ?) IF NOT EXISTS");
+            "INSERT INTO tenants (id, retentions, quotas) VALUES (?, ?, ?) IF NOT EXISTS");
 
         findAllTenantIds = session.prepare("SELECT DISTINCT id FROM tenants");
 
         findAllTenantIdsFromMetricsIdx = session.prepare("SELECT DISTINCT tenant_id, type FROM metrics_idx");
 
-        findTenant = session.prepare("SELECT id, retentions FROM tenants WHERE id = ?");
+        findTenant = session.prepare("SELECT id, retentions, quotas FROM tenants WHERE id = ?");
+
+        findTenantQuotas = session.prepare("SELECT id, quotas FROM tenants");
+
+        updateTenantQuotas = session.prepare("UPDATE tenants SET quotas = ? WHERE id = ?");
 
         findMetric = session.prepare(
             "SELECT metric, tags, data_retention " +
@@ -377,6 +415,52 @@ public class DataAccessImpl implements DataAccess {
                 "SELECT tenant_id, type, metric " +
                 "FROM metrics_tags_idx " +
                 "WHERE tenant_id = ? AND tname = ? AND tvalue = ?");
+
+        // The cell timestamp is the data point timestamp (in microseconds) so that an out of order write of an older
+        // data point does not overwrite the latest one.
+        updateLatestGaugeData = session.prepare(
+            "UPDATE latest_data " +
+            "USING TTL ? AND TIMESTAMP ? " +
+            "SET time = ?, n_value = ? " +
+            "WHERE tenant_id = ? AND type = ? AND metric = ?");
+
+        updateLatestCounterData = session.prepare(
+            "UPDATE latest_data " +
+            "USING TTL ? AND TIMESTAMP ? " +
+            "SET time = ?, l_value = ? " +
+            "WHERE tenant_id = ? AND type = ? AND metric = ?");
+
+        updateLatestAvailability = session.prepare(
+            "UPDATE latest_data " +
+            "USING TTL ? AND TIMESTAMP ? " +
+            "SET time = ?, availability = ? " +
+            "WHERE tenant_id = ? AND type = ? AND metric = ?");
+
+        findLatestDataByMetric = session.prepare(
+            "SELECT metric, time, n_value, availability, l_value " +
+            "FROM latest_data " +
+            "WHERE tenant_id = ? AND type = ? AND metric = ?");
+
+        updateAvailabilityRun = session.prepare(
+            "UPDATE availability_runs " +
+            "USING TTL ? " +
+            "SET end_time = ?, availability = ? " +
+            "WHERE tenant_id = ? AND metric = ? AND start_time = ?");
+
+        deleteAvailabilityRun = session.prepare(
+            "DELETE FROM availability_runs " +
+            "WHERE tenant_id = ? AND metric = ? AND start_time = ?");
+
+        findAvailabilityRun = session.prepare(
+            "SELECT start_time, end_time, availability " +
+            "FROM availability_runs " +
+            "WHERE tenant_id = ? AND metric = ? AND start_time <= ? " +
+            "LIMIT 1");
+
+        findAvailabilityRuns = session.prepare(
+            "SELECT start_time, end_time, availability " +
+            "FROM availability_runs " +
+            "WHERE tenant_id = ? AND metric = ? AND start_time >= ? AND start_time < ?");
     }
 
     @Override public Observable<ResultSet> insertTenant(String tenantId) {
@@ -387,7 +471,7 @@ public class DataAccessImpl implements DataAccess {
     public Observable<ResultSet> insertTenant(Tenant tenant) {
         Map<String, Integer> retentions = tenant.getRetentionSettings().entrySet().stream()
                 .collect(toMap(entry -> entry.getKey().getText(), Map.Entry::getValue));
-        return rxSession.execute(insertTenant.bind(tenant.getId(), retentions));
+        return rxSession.execute(insertTenant.bind(tenant.getId(), retentions, tenant.getQuotas()));
     }
 
     @Override
@@ -401,10 +485,27 @@ public class DataAccessImpl implements DataAccess {
         return rxSession.execute(findTenant.bind(id));
     }
 
+    @Override
+    public Observable<ResultSet> findTenantQuotas() {
+        return rxSession.execute(findTenantQuotas.bind());
+    }
+
+    @Override
+    public Observable<ResultSet> updateTenantQuotas(String tenantId, Map<String, Double> quotas) {
+        return rxSession.execute(updateTenantQuotas.bind(quotas, tenantId));
+    }
+
+    private ResultSetFuture executeAsync(Statement statement) {
+        if (statementMetrics == null) {
+            return session.executeAsync(statement);
+        }
+        return statementMetrics.track(statement, () -> session.executeAsync(statement));
+    }
+
     @Override
     public <T> ResultSetFuture insertMetricInMetricsIndex(Metric<T> metric) {
         MetricId<T> metricId = metric.getMetricId();
-        return session.executeAsync(insertIntoMetricsIndex.bind(metricId.getTenantId(), metricId.getType().getCode(),
+        return executeAsync(insertIntoMetricsIndex.bind(metricId.getTenantId(), metricId.getType().getCode(),
                 metricId.getName(), metric.getDataRetention(), metric.getTags()));
     }
 
@@ -647,7 +748,7 @@ public class DataAccessImpl implements DataAccess {
 
     @Override
     public <T> ResultSetFuture findDataRetentions(String tenantId, MetricType<T> type) {
-        return session.executeAsync(findDataRetentions.bind(tenantId, type.getCode()));
+        return executeAsync(findDataRetentions.bind(tenantId, type.getCode()));
     }
 
     @Override
@@ -690,9 +791,57 @@ public class DataAccessImpl implements DataAccess {
         return rxSession.execute(findMetricsByTagNameValue.bind(tenantId, tag, tvalue));
     }
 
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> Observable<ResultSet> updateLatestData(MetricId<T> id, DataPoint<T> dataPoint, int ttl) {
+        PreparedStatement statement;
+        Object value;
+        if (id.getType() == AVAILABILITY) {
+            statement = updateLatestAvailability;
+            value = getBytes((DataPoint<AvailabilityType>) dataPoint);
+        } else if (id.getType() == COUNTER) {
+            statement = updateLatestCounterData;
+            value = dataPoint.getValue();
+        } else {
+            statement = updateLatestGaugeData;
+            value = dataPoint.getValue();
+        }
+        return rxSession.execute(statement.bind(ttl, TimeUnit.MILLISECONDS.toMicros(dataPoint.getTimestamp()),
+                getTimeUUID(dataPoint.getTimestamp()), value, id.getTenantId(), id.getType().getCode(), id.getName()));
+    }
+
+    @Override
+    public <T> Observable<ResultSet> findLatestData(MetricId<T> id) {
+        return rxSession.execute(findLatestDataByMetric.bind(id.getTenantId(), id.getType().getCode(), id.getName()));
+    }
+
+    @Override
+    public Observable<ResultSet> updateAvailabilityRun(MetricId<AvailabilityType> id, long start, long end,
+            AvailabilityType availability, int ttl) {
+        return rxSession.execute(updateAvailabilityRun.bind(ttl, new Date(end),
+                ByteBuffer.wrap(new byte[]{availability.getCode()}), id.getTenantId(), id.getName(),
+                new Date(start)));
+    }
+
+    @Override
+    public Observable<ResultSet> deleteAvailabilityRun(MetricId<AvailabilityType> id, long start) {
+        return rxSession.execute(deleteAvailabilityRun.bind(id.getTenantId(), id.getName(), new Date(start)));
+    }
+
+    @Override
+    public Observable<ResultSet> findAvailabilityRun(MetricId<AvailabilityType> id, long time) {
+        return rxSession.execute(findAvailabilityRun.bind(id.getTenantId(), id.getName(), new Date(time)));
+    }
+
+    @Override
+    public Observable<ResultSet> findAvailabilityRuns(MetricId<AvailabilityType> id, long start, long end) {
+        return rxSession.execute(findAvailabilityRuns.bind(id.getTenantId(), id.getName(), new Date(start),
+                new Date(end)));
+    }
+
     @Override
     public <T> ResultSetFuture updateRetentionsIndex(Metric<T> metric) {
-        return session.executeAsync(updateRetentionsIndex.bind(metric.getMetricId().getTenantId(),
+        return executeAsync(updateRetentionsIndex.bind(metric.getMetricId().getTenantId(),
                 metric.getMetricId().getType().getCode(), metric.getMetricId().getName(), metric.getDataRetention()));
     }
 }
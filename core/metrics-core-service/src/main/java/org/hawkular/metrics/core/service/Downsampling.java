@@ -0,0 +1,72 @@
+/*
+ * Copyright 2014-2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.metrics.core.service;
+
+import org.hawkular.metrics.core.service.transformers.DownsampleTransformer;
+
+/**
+ * Algorithms reducing the number of data points of a series to what a chart can show, while keeping its visual
+ * shape. They all select existing data points, no value is computed.
+ *
+ * @see DownsampleTransformer
+ */
+public enum Downsampling {
+    /**
+     * Largest-Triangle-Three-Buckets: the first and last data points, and in each time bucket the data point forming
+     * the largest triangle with the point selected in the previous bucket and the average of the next bucket.
+     */
+    LTTB(3),
+    /**
+     * The data points with the smallest and largest value in each time bucket.
+     */
+    MINMAX(2),
+    /**
+     * The first, last, smallest and largest data points in each time bucket.
+     */
+    M4(4);
+
+    private final int minPoints;
+
+    Downsampling(int minPoints) {
+        this.minPoints = minPoints;
+    }
+
+    /**
+     * @return the smallest number of data points the algorithm can be asked for
+     */
+    public int getMinPoints() {
+        return minPoints;
+    }
+
+    /**
+     * @return the number of time buckets to use to return at most {@code maxPoints}
+     */
+    public int getBuckets(int maxPoints) {
+        switch (this) {
+            case LTTB:
+                return maxPoints - 2;
+            case MINMAX:
+                return maxPoints / 2;
+            default:
+                return maxPoints / 4;
+        }
+    }
+
+    public static Downsampling fromString(String s) {
+        return valueOf(s.toUpperCase());
+    }
+}
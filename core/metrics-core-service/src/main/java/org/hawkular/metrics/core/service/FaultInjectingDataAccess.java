@@ -0,0 +1,265 @@
+/*
+ * Copyright 2014-2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.metrics.core.service;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Supplier;
+
+import org.hawkular.metrics.model.AvailabilityType;
+import org.hawkular.metrics.model.DataPoint;
+import org.hawkular.metrics.model.Interval;
+import org.hawkular.metrics.model.Metric;
+import org.hawkular.metrics.model.MetricId;
+import org.hawkular.metrics.model.MetricType;
+import org.hawkular.metrics.model.Tenant;
+import org.hawkular.rx.cassandra.driver.FaultInjector;
+
+import com.datastax.driver.core.ResultSet;
+import com.datastax.driver.core.ResultSetFuture;
+
+import rx.Observable;
+import rx.functions.Func0;
+
+/**
+ * A {@link DataAccess} which injects faults, such as latency or timeouts, into the operations of another one. This is
+ * meant for tests, and for staging behind the fault injection switch, to see how the service copes when Cassandra
+ * slows down or fails.
+ * <p>
+ * Operations are named after the methods of {@link DataAccess}, such as {@code insertGaugeData}; the ones whose name
+ * starts with find or get are reads, the others are writes. When a rule applies, the operation is only executed once
+ * the returned Observable is subscribed to, and not at all when the injected fault is an overload or a timeout.
+ *
+ * @see FaultInjector
+ */
+public class FaultInjectingDataAccess implements DataAccess {
+
+    private final DataAccess delegate;
+    private final FaultInjector faultInjector;
+
+    public FaultInjectingDataAccess(DataAccess delegate, FaultInjector faultInjector) {
+        this.delegate = delegate;
+        this.faultInjector = faultInjector;
+    }
+
+    public DataAccess getDelegate() {
+        return delegate;
+    }
+
+    private <T> Observable<T> read(String operation, Func0<Observable<T>> execution) {
+        return faultInjector.inject(operation, false, execution);
+    }
+
+    private <T> Observable<T> write(String operation, Func0<Observable<T>> execution) {
+        return faultInjector.inject(operation, true, execution);
+    }
+
+    private ResultSetFuture readFuture(String operation, Supplier<ResultSetFuture> execution) {
+        return faultInjector.injectFuture(operation, false, execution);
+    }
+
+    private ResultSetFuture writeFuture(String operation, Supplier<ResultSetFuture> execution) {
+        return faultInjector.injectFuture(operation, true, execution);
+    }
+
+    @Override
+    public Observable<ResultSet> insertTenant(String tenantId) {
+        return write("insertTenant", () -> delegate.insertTenant(tenantId));
+    }
+
+    @Override
+    public Observable<ResultSet> insertTenant(Tenant tenant) {
+        return write("insertTenant", () -> delegate.insertTenant(tenant));
+    }
+
+    @Override
+    public Observable<ResultSet> findAllTenantIds() {
+        return read("findAllTenantIds", () -> delegate.findAllTenantIds());
+    }
+
+    @Override
+    public Observable<ResultSet> findTenant(String id) {
+        return read("findTenant", () -> delegate.findTenant(id));
+    }
+
+    @Override
+    public Observable<ResultSet> findTenantQuotas() {
+        return read("findTenantQuotas", () -> delegate.findTenantQuotas());
+    }
+
+    @Override
+    public Observable<ResultSet> updateTenantQuotas(String tenantId, Map<String, Double> quotas) {
+        return write("updateTenantQuotas", () -> delegate.updateTenantQuotas(tenantId, quotas));
+    }
+
+    @Override
+    public <T> ResultSetFuture insertMetricInMetricsIndex(Metric<T> metric) {
+        return writeFuture("insertMetricInMetricsIndex", () -> delegate.insertMetricInMetricsIndex(metric));
+    }
+
+    @Override
+    public <T> Observable<ResultSet> findMetric(MetricId<T> id) {
+        return read("findMetric", () -> delegate.findMetric(id));
+    }
+
+    @Override
+    public <T> Observable<ResultSet> addDataRetention(Metric<T> metric) {
+        return write("addDataRetention", () -> delegate.addDataRetention(metric));
+    }
+
+    @Override
+    public <T> Observable<ResultSet> getMetricTags(MetricId<T> id) {
+        return read("getMetricTags", () -> delegate.getMetricTags(id));
+    }
+
+    @Override
+    public <T> Observable<ResultSet> addTags(Metric<T> metric, Map<String, String> tags) {
+        return write("addTags", () -> delegate.addTags(metric, tags));
+    }
+
+    @Override
+    public <T> Observable<ResultSet> deleteTags(Metric<T> metric, Set<String> tags) {
+        return write("deleteTags", () -> delegate.deleteTags(metric, tags));
+    }
+
+    @Override
+    public <T> Observable<Integer> updateMetricsIndex(Observable<Metric<T>> metrics) {
+        return write("updateMetricsIndex", () -> delegate.updateMetricsIndex(metrics));
+    }
+
+    @Override
+    public <T> Observable<ResultSet> findMetricsInMetricsIndex(String tenantId, MetricType<T> type) {
+        return read("findMetricsInMetricsIndex", () -> delegate.findMetricsInMetricsIndex(tenantId, type));
+    }
+
+    @Override
+    public Observable<Integer> insertGaugeData(Metric<Double> metric, int ttl) {
+        return write("insertGaugeData", () -> delegate.insertGaugeData(metric, ttl));
+    }
+
+    @Override
+    public Observable<Integer> insertCounterData(Metric<Long> counter, int ttl) {
+        return write("insertCounterData", () -> delegate.insertCounterData(counter, ttl));
+    }
+
+    @Override
+    public Observable<ResultSet> findCounterData(MetricId<Long> id, long startTime, long endTime, int limit,
+            Order order) {
+        return read("findCounterData", () -> delegate.findCounterData(id, startTime, endTime, limit, order));
+    }
+
+    @Override
+    public Observable<ResultSet> findGaugeData(MetricId<Double> id, long startTime, long endTime, int limit,
+            Order order, boolean includeWriteTime) {
+        return read("findGaugeData", () -> delegate.findGaugeData(id, startTime, endTime, limit, order,
+                includeWriteTime));
+    }
+
+    @Override
+    public Observable<ResultSet> findGaugeData(MetricId<Double> id, long timestamp, boolean includeWriteTime) {
+        return read("findGaugeData", () -> delegate.findGaugeData(id, timestamp, includeWriteTime));
+    }
+
+    @Override
+    public Observable<ResultSet> findAvailabilityData(MetricId<AvailabilityType> id, long startTime, long endTime,
+            int limit, Order order, boolean includeWriteTime) {
+        return read("findAvailabilityData", () -> delegate.findAvailabilityData(id, startTime, endTime, limit, order,
+                includeWriteTime));
+    }
+
+    @Override
+    public Observable<ResultSet> findAvailabilityData(MetricId<AvailabilityType> id, long timestamp) {
+        return read("findAvailabilityData", () -> delegate.findAvailabilityData(id, timestamp));
+    }
+
+    @Override
+    public Observable<ResultSet> deleteGaugeMetric(String tenantId, String metric, Interval interval, long dpart) {
+        return write("deleteGaugeMetric", () -> delegate.deleteGaugeMetric(tenantId, metric, interval, dpart));
+    }
+
+    @Override
+    public Observable<Integer> insertAvailabilityData(Metric<AvailabilityType> metric, int ttl) {
+        return write("insertAvailabilityData", () -> delegate.insertAvailabilityData(metric, ttl));
+    }
+
+    @Override
+    public <T> ResultSetFuture findDataRetentions(String tenantId, MetricType<T> type) {
+        return readFuture("findDataRetentions", () -> delegate.findDataRetentions(tenantId, type));
+    }
+
+    @Override
+    public <T> Observable<ResultSet> updateRetentionsIndex(String tenantId, MetricType<T> type, Map<String,
+            Integer> retentions) {
+        return write("updateRetentionsIndex", () -> delegate.updateRetentionsIndex(tenantId, type, retentions));
+    }
+
+    @Override
+    public <T> ResultSetFuture updateRetentionsIndex(Metric<T> metric) {
+        return writeFuture("updateRetentionsIndex", () -> delegate.updateRetentionsIndex(metric));
+    }
+
+    @Override
+    public <T> Observable<ResultSet> insertIntoMetricsTagsIndex(Metric<T> metric, Map<String, String> tags) {
+        return write("insertIntoMetricsTagsIndex", () -> delegate.insertIntoMetricsTagsIndex(metric, tags));
+    }
+
+    @Override
+    public <T> Observable<ResultSet> deleteFromMetricsTagsIndex(Metric<T> metric, Map<String, String> tags) {
+        return write("deleteFromMetricsTagsIndex", () -> delegate.deleteFromMetricsTagsIndex(metric, tags));
+    }
+
+    @Override
+    public Observable<ResultSet> findMetricsByTagName(String tenantId, String tag) {
+        return read("findMetricsByTagName", () -> delegate.findMetricsByTagName(tenantId, tag));
+    }
+
+    @Override
+    public Observable<ResultSet> findMetricsByTagNameValue(String tenantId, String tag, String tvalue) {
+        return read("findMetricsByTagNameValue", () -> delegate.findMetricsByTagNameValue(tenantId, tag, tvalue));
+    }
+
+    @Override
+    public <T> Observable<ResultSet> updateLatestData(MetricId<T> id, DataPoint<T> dataPoint, int ttl) {
+        return write("updateLatestData", () -> delegate.updateLatestData(id, dataPoint, ttl));
+    }
+
+    @Override
+    public <T> Observable<ResultSet> findLatestData(MetricId<T> id) {
+        return read("findLatestData", () -> delegate.findLatestData(id));
+    }
+
+    @Override
+    public Observable<ResultSet> updateAvailabilityRun(MetricId<AvailabilityType> id, long start, long end,
+            AvailabilityType availability, int ttl) {
+        return write("updateAvailabilityRun", () -> delegate.updateAvailabilityRun(id, start, end, availability, ttl));
+    }
+
+    @Override
+    public Observable<ResultSet> deleteAvailabilityRun(MetricId<AvailabilityType> id, long start) {
+        return write("deleteAvailabilityRun", () -> delegate.deleteAvailabilityRun(id, start));
+    }
+
+    @Override
+    public Observable<ResultSet> findAvailabilityRun(MetricId<AvailabilityType> id, long time) {
+        return read("findAvailabilityRun", () -> delegate.findAvailabilityRun(id, time));
+    }
+
+    @Override
+    public Observable<ResultSet> findAvailabilityRuns(MetricId<AvailabilityType> id, long start, long end) {
+        return read("findAvailabilityRuns", () -> delegate.findAvailabilityRuns(id, start, end));
+    }
+}
@@ -64,6 +64,14 @@ public class Functions {
         WRITE_TIME
     }
 
+    private enum LATEST_DATA_COLS {
+        METRIC,
+        TIME,
+        N_VALUE,
+        AVAILABILITY,
+        L_VALUE
+    }
+
     private Functions() {
     }
 
@@ -103,12 +111,26 @@ public class Functions {
                 AvailabilityType.fromBytes(row.getBytes(AVAILABILITY_COLS.AVAILABILITY.ordinal())));
     }
 
+    @SuppressWarnings("unchecked")
+    public static <T> DataPoint<T> getLatestDataPoint(Row row, MetricType<T> type) {
+        long timestamp = UUIDs.unixTimestamp(row.getUUID(LATEST_DATA_COLS.TIME.ordinal()));
+        Object value;
+        if (type == MetricType.AVAILABILITY) {
+            value = AvailabilityType.fromBytes(row.getBytes(LATEST_DATA_COLS.AVAILABILITY.ordinal()));
+        } else if (type == MetricType.COUNTER) {
+            value = row.getLong(LATEST_DATA_COLS.L_VALUE.ordinal());
+        } else {
+            value = row.getDouble(LATEST_DATA_COLS.N_VALUE.ordinal());
+        }
+        return new DataPoint<>(timestamp, (T) value);
+    }
+
     public static Tenant getTenant(Row row) {
         String tenantId = row.getString(0);
         Map<MetricType<?>, Integer> retentions = row.getMap(1, String.class, Integer.class).entrySet().stream()
                 .collect(toMap(entry -> MetricType.fromTextCode(entry.getKey()), Map.Entry::getValue));
 
-        return new Tenant(tenantId, retentions);
+        return new Tenant(tenantId, retentions, row.getMap(2, String.class, Double.class));
     }
 
     public static <S> Observable<Metric<S>> metricToObservable(
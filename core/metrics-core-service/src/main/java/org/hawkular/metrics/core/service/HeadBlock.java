@@ -0,0 +1,284 @@
+/*
+ * Copyright 2014-2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.metrics.core.service;
+
+import static org.hawkular.metrics.model.MetricType.AVAILABILITY;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+import org.hawkular.metrics.model.AvailabilityType;
+import org.hawkular.metrics.model.DataPoint;
+import org.hawkular.metrics.model.Metric;
+import org.hawkular.metrics.model.MetricId;
+import org.hawkular.metrics.model.MetricType;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalCause;
+
+/**
+ * In-memory copy of the most recent data points written through this node, used to answer reads of a recent time
+ * range without going to Cassandra.
+ * <p>
+ * Each metric gets a series made of two sorted {@code long} arrays, one for timestamps and one for encoded values, so
+ * that a point costs 16 bytes. Points older than the window are dropped, and so are the oldest points of a series
+ * which reaches the per-metric limit. The number of series is bounded as well; the least recently used ones are
+ * evicted.
+ * <p>
+ * A series only knows about the points written since it was created, or since older points were dropped. That lower
+ * bound is tracked as the series' coverage, and reads report it so that callers can fetch the older part of a range
+ * from Cassandra. The head block assumes that every write of a metric goes through this node; it must not be enabled
+ * when several nodes receive writes for the same metrics.
+ */
+final class HeadBlock {
+
+    /**
+     * Result of a read. The data points cover the part of the requested range which starts at {@link #getFrom()}.
+     */
+    static final class Read<T> {
+        private final long from;
+        private final List<DataPoint<T>> dataPoints;
+
+        private Read(long from, List<DataPoint<T>> dataPoints) {
+            this.from = from;
+            this.dataPoints = dataPoints;
+        }
+
+        long getFrom() {
+            return from;
+        }
+
+        List<DataPoint<T>> getDataPoints() {
+            return dataPoints;
+        }
+    }
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final long window;
+    private final int maxPointsPerMetric;
+    private final LongSupplier clock;
+    private final Cache<MetricId<?>, Series> series;
+    private final AtomicLong pointCount = new AtomicLong();
+    private final AtomicLong evictionCount = new AtomicLong();
+
+    /**
+     * New series cannot cover anything which was written before the head block was created or before a series got
+     * evicted, as the points of the evicted series might belong to the new one.
+     */
+    private volatile long coverageStart;
+
+    /**
+     * @param window how long, in milliseconds, points are kept
+     * @param maxPointsPerMetric maximum number of points kept for a single metric
+     * @param maxMetrics maximum number of metrics kept
+     * @param clock the current time in milliseconds
+     */
+    HeadBlock(long window, int maxPointsPerMetric, long maxMetrics, LongSupplier clock) {
+        this.window = window;
+        this.maxPointsPerMetric = maxPointsPerMetric;
+        this.clock = clock;
+        this.coverageStart = clock.getAsLong();
+        this.series = CacheBuilder.newBuilder()
+                .maximumSize(maxMetrics)
+                .expireAfterAccess(window, TimeUnit.MILLISECONDS)
+                .<MetricId<?>, Series>removalListener(notification -> {
+                    if (notification.getCause() != RemovalCause.EXPLICIT) {
+                        coverageStart = Math.max(coverageStart, this.clock.getAsLong());
+                        evictionCount.incrementAndGet();
+                    }
+                    pointCount.addAndGet(-notification.getValue().size);
+                })
+                .build();
+    }
+
+    /**
+     * Stores the data points of {@code metric}. Points which are older than the window are ignored.
+     */
+    <T> void add(Metric<T> metric) {
+        MetricType<T> type = metric.getMetricId().getType();
+        long windowStart = clock.getAsLong() - window;
+        Series s;
+        try {
+            s = series.get(metric.getMetricId(), () -> new Series(coverageStart));
+        } catch (ExecutionException e) {
+            throw new RuntimeException(e);
+        }
+        synchronized (s) {
+            for (DataPoint<T> dataPoint : metric.getDataPoints()) {
+                s.add(dataPoint.getTimestamp(), encode(type, dataPoint.getValue()), windowStart);
+            }
+        }
+    }
+
+    /**
+     * Looks up the points of a metric in the range [{@code start}, {@code end}).
+     *
+     * @return the points found, or null if the head block does not cover any part of the range
+     */
+    <T> Read<T> read(MetricId<T> id, long start, long end, Order order) {
+        Series s = series.getIfPresent(id);
+        if (s == null) {
+            return null;
+        }
+        long windowStart = clock.getAsLong() - window;
+        synchronized (s) {
+            s.evictBefore(windowStart);
+            long from = Math.max(start, s.coverageStart);
+            if (from >= end) {
+                return null;
+            }
+            int low = s.indexOf(from);
+            int high = s.indexOf(end);
+            List<DataPoint<T>> dataPoints = new ArrayList<>(high - low);
+            for (int i = low; i < high; i++) {
+                dataPoints.add(new DataPoint<>(s.timestamps[i], decode(id.getType(), s.values[i])));
+            }
+            if (order == Order.DESC) {
+                Collections.reverse(dataPoints);
+            }
+            return new Read<>(from, dataPoints);
+        }
+    }
+
+    /**
+     * @return the number of metrics kept
+     */
+    long size() {
+        return series.size();
+    }
+
+    /**
+     * @return the number of data points kept
+     */
+    long getPointCount() {
+        return pointCount.get();
+    }
+
+    /**
+     * @return the number of metrics evicted because of the size limit or inactivity
+     */
+    long getEvictionCount() {
+        return evictionCount.get();
+    }
+
+    void clear() {
+        series.invalidateAll();
+    }
+
+    private static long encode(MetricType<?> type, Object value) {
+        if (type == AVAILABILITY) {
+            return ((AvailabilityType) value).ordinal();
+        }
+        if (value instanceof Double) {
+            return Double.doubleToRawLongBits((Double) value);
+        }
+        return (Long) value;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T decode(MetricType<T> type, long value) {
+        if (type == AVAILABILITY) {
+            return (T) AvailabilityType.values()[(int) value];
+        }
+        if (type == MetricType.COUNTER) {
+            return (T) Long.valueOf(value);
+        }
+        return (T) Double.valueOf(Double.longBitsToDouble(value));
+    }
+
+    /**
+     * Points of a single metric, sorted by timestamp. Access must be synchronized on the instance.
+     */
+    private final class Series {
+        long coverageStart;
+        long[] timestamps = new long[Math.min(INITIAL_CAPACITY, maxPointsPerMetric)];
+        long[] values = new long[timestamps.length];
+        int size;
+
+        Series(long coverageStart) {
+            this.coverageStart = coverageStart;
+        }
+
+        void add(long timestamp, long value, long windowStart) {
+            evictBefore(windowStart);
+            if (timestamp < coverageStart) {
+                return;
+            }
+            int i = indexOf(timestamp);
+            if (i < size && timestamps[i] == timestamp) {
+                values[i] = value;
+                return;
+            }
+            if (size == timestamps.length) {
+                if (size < maxPointsPerMetric) {
+                    int capacity = Math.min(size * 2, maxPointsPerMetric);
+                    timestamps = Arrays.copyOf(timestamps, capacity);
+                    values = Arrays.copyOf(values, capacity);
+                } else {
+                    // Drop the oldest points in chunks rather than one at a time to amortize the array copy
+                    int dropped = Math.max(1, size / 8);
+                    evict(dropped, timestamps[dropped - 1] + 1);
+                    if (timestamp < coverageStart) {
+                        return;
+                    }
+                    i -= dropped;
+                }
+            }
+            System.arraycopy(timestamps, i, timestamps, i + 1, size - i);
+            System.arraycopy(values, i, values, i + 1, size - i);
+            timestamps[i] = timestamp;
+            values[i] = value;
+            size++;
+            pointCount.incrementAndGet();
+        }
+
+        void evictBefore(long time) {
+            if (time > coverageStart) {
+                evict(indexOf(time), time);
+            }
+        }
+
+        /**
+         * Drops the first {@code count} points and moves the coverage start to {@code newCoverageStart}.
+         */
+        private void evict(int count, long newCoverageStart) {
+            if (count > 0) {
+                System.arraycopy(timestamps, count, timestamps, 0, size - count);
+                System.arraycopy(values, count, values, 0, size - count);
+                size -= count;
+                pointCount.addAndGet(-count);
+            }
+            coverageStart = Math.max(coverageStart, newCoverageStart);
+        }
+
+        /**
+         * @return the index of the first point whose timestamp is greater than or equal to {@code timestamp}
+         */
+        int indexOf(long timestamp) {
+            int i = Arrays.binarySearch(timestamps, 0, size, timestamp);
+            return i < 0 ? -(i + 1) : i;
+        }
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright 2014-2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.metrics.core.service;
+
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+import org.hawkular.metrics.model.DataPoint;
+import org.hawkular.metrics.model.Metric;
+import org.hawkular.metrics.model.MetricId;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+/**
+ * Keeps the most recent data point of the metrics written through (or read from) this node. The cache is bounded; when
+ * it is full the least recently used entries are evicted, and lookups for them fall back to Cassandra.
+ * <p>
+ * Note that each node only sees the writes it handles. When several nodes share the same cluster, entries should be
+ * given an expiration so that values written through other nodes are eventually picked up from the persisted
+ * latest_data table.
+ */
+final class LatestDataPointCache {
+
+    private final Cache<MetricId<?>, DataPoint<?>> cache;
+
+    /**
+     * @param maximumSize the maximum number of metrics for which the latest data point is kept
+     * @param expireAfterWrite how long, in seconds, an entry stays in the cache after its last update, or zero to
+     *                         keep entries until they get evicted
+     */
+    LatestDataPointCache(long maximumSize, long expireAfterWrite) {
+        CacheBuilder<Object, Object> builder = CacheBuilder.newBuilder().maximumSize(maximumSize);
+        if (expireAfterWrite > 0) {
+            builder.expireAfterWrite(expireAfterWrite, TimeUnit.SECONDS);
+        }
+        cache = builder.build();
+    }
+
+    /**
+     * Records the newest data point of {@code metric} if it is more recent than the cached one.
+     *
+     * @return the newest data point of the metric if the cache was updated, null otherwise
+     */
+    <T> DataPoint<T> update(Metric<T> metric) {
+        DataPoint<T> newest = null;
+        for (DataPoint<T> dataPoint : metric.getDataPoints()) {
+            if (newest == null || dataPoint.getTimestamp() > newest.getTimestamp()) {
+                newest = dataPoint;
+            }
+        }
+        if (newest == null) {
+            return null;
+        }
+        return update(metric.getMetricId(), newest) ? newest : null;
+    }
+
+    /**
+     * @return true if {@code dataPoint} is at least as recent as the cached one and replaced it
+     */
+    <T> boolean update(MetricId<T> id, DataPoint<T> dataPoint) {
+        ConcurrentMap<MetricId<?>, DataPoint<?>> map = cache.asMap();
+        for (;;) {
+            DataPoint<?> current = map.putIfAbsent(id, dataPoint);
+            if (current == null) {
+                return true;
+            }
+            if (current.getTimestamp() > dataPoint.getTimestamp()) {
+                return false;
+            }
+            if (map.replace(id, current, dataPoint)) {
+                return true;
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    <T> DataPoint<T> get(MetricId<T> id) {
+        return (DataPoint<T>) cache.getIfPresent(id);
+    }
+
+    long size() {
+        return cache.size();
+    }
+
+    void clear() {
+        cache.invalidateAll();
+    }
+}
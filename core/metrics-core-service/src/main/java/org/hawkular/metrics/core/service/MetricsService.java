@@ -33,6 +33,7 @@ import org.hawkular.metrics.model.Tenant;
 import org.hawkular.metrics.model.exception.MetricAlreadyExistsException;
 
 import rx.Observable;
+import rx.Observable.Transformer;
 import rx.functions.Func1;
 
 /**
@@ -63,6 +64,22 @@ public interface MetricsService {
 
     Observable<Tenant> getTenants();
 
+    /**
+     * Replaces the quotas of a tenant. The tenant does not have to be created beforehand.
+     *
+     * @param tenantId the tenant id
+     * @param quotas the rate limits, by quota name, in units per second; an empty map removes all quotas
+     */
+    Observable<Void> updateTenantQuotas(String tenantId, Map<String, Double> quotas);
+
+    /**
+     * Fetches the quotas of the tenants which have some. Only the tenants table is read, so this is much cheaper than
+     * {@link #getTenants()}.
+     *
+     * @return an {@link Observable} which emits a single map of the quotas, by tenant id
+     */
+    Observable<Map<String, Map<String, Double>>> getTenantQuotas();
+
     /**
      * <p>
      * Clients are not required to required to explicitly create a metric via this method before storing data for it.
@@ -146,9 +163,41 @@ public interface MetricsService {
      */
     <T> Observable<DataPoint<T>> findDataPoints(MetricId<T> id, long start, long end, int limit, Order order);
 
+    /**
+     * Fetches the data points of several metrics in one operation. The metrics are read concurrently, up to a limit
+     * set on the service.
+     *
+     * @param tenantId The id of the tenant to which the metrics belong
+     * @param metricType The type of the metrics
+     * @param metrics The names of the metrics
+     * @param start start time inclusive as a Unix timestamp in milliseconds
+     * @param end end time exclusive as a Unix timestamp in milliseconds
+     * @param limit limit the number of data points of each metric, 0 for no limit
+     * @param order the sort order of the data points of each metric
+     * @param transformer applied to the data points of each metric before they are collected, for example to
+     *                    downsample them
+     * @return An {@link Observable} emitting one {@link Metric} holding its data points for each of the metrics which
+     * have data in the time range, in no particular order
+     */
+    <T> Observable<Metric<T>> findDataPoints(String tenantId, MetricType<T> metricType, List<String> metrics,
+            long start, long end, int limit, Order order, Transformer<DataPoint<T>, DataPoint<T>> transformer);
+
+    /**
+     * Fetches the data points of the metrics matching a tags filter query.
+     *
+     * @see #findDataPoints(String, MetricType, List, long, long, int, Order, Transformer)
+     * @see #findMetricsWithFilters(String, MetricType, Map, Func1[])
+     */
+    <T> Observable<Metric<T>> findDataPoints(String tenantId, MetricType<T> metricType, Map<String, String> tagFilters,
+            long start, long end, int limit, Order order, Transformer<DataPoint<T>, DataPoint<T>> transformer);
+
     /**
      * This method applies one or more functions to an Observable that emits data points of a gauge metric. The data
      * points Observable is asynchronous. The functions however, are applied serially in the order specified.
+     * <p>
+     * When every function is an {@link AggregateFunction}, the data points are read once and fed to the accumulators
+     * of all the functions as they arrive. Otherwise the data points are cached in memory until every function is
+     * done with them.
      *
      * @param id The metric name
      * @param start The start time inclusive as a Unix timestamp in milliseconds
@@ -247,6 +296,40 @@ public interface MetricsService {
     Observable<List<NumericBucketPoint>> findRateStats(MetricId<Long> id, long start, long end, Buckets buckets,
                                                        List<Double> percentiles);
 
+    /**
+     * Fetches the most recent data point of a metric. The value is served from memory when this node has written or
+     * read it recently, otherwise it is looked up in Cassandra.
+     *
+     * @param id identifier of the metric
+     * @return an {@link Observable} emitting the latest {@link DataPoint data point}, or nothing if the metric has no
+     * data
+     */
+    <T> Observable<DataPoint<T>> findLatestDataPoint(MetricId<T> id);
+
+    /**
+     * Fetches the most recent data point of several metrics in one operation.
+     *
+     * @param tenantId The id of the tenant to which the metrics belong
+     * @param metricType The type of the metrics
+     * @param metrics The names of the metrics
+     * @return An {@link Observable} emitting one {@link Metric} holding a single data point for each of the metrics
+     * which have data
+     */
+    <T> Observable<Metric<T>> findLatestDataPoints(String tenantId, MetricType<T> metricType, List<String> metrics);
+
+    /**
+     * Fetches the most recent data point of the metrics matching a tags filter query.
+     *
+     * @param tenantId The id of the tenant to which the metrics belong
+     * @param metricType The type of the metrics
+     * @param tagFilters The metric tag filter used to query for metrics
+     * @return An {@link Observable} emitting one {@link Metric} holding a single data point for each of the matching
+     * metrics which have data
+     * @see #findMetricsWithFilters(String, MetricType, Map, Func1[])
+     */
+    <T> Observable<Metric<T>> findLatestDataPoints(String tenantId, MetricType<T> metricType,
+            Map<String, String> tagFilters);
+
     /**
      * <p>
      * For a specified date range, return a list of periods in which the predicate evaluates to true for each
@@ -271,10 +354,36 @@ public interface MetricsService {
      */
     Observable<List<long[]>> getPeriods(MetricId<Double> id, Predicate<Double> predicate, long start, long end);
 
+    /**
+     * Finds the condition periods of several gauges, which are read concurrently.
+     *
+     * @param metrics the names of the gauges
+     * @return a map of metric name to periods, as returned by
+     * {@link #getPeriods(MetricId, Predicate, long, long)}; metrics without any period are omitted
+     */
+    Observable<Map<String, List<long[]>>> getPeriods(String tenantId, List<String> metrics,
+            Predicate<Double> predicate, long start, long end);
+
+    /**
+     * Finds the condition periods of the gauges matching the tag filters, which are read concurrently.
+     *
+     * @see #getPeriods(String, List, Predicate, long, long)
+     * @see #findMetricsWithFilters(String, MetricType, Map, Func1[])
+     */
+    Observable<Map<String, List<long[]>>> getPeriods(String tenantId, Map<String, String> tagFilters,
+            Predicate<Double> predicate, long start, long end);
+
     /**
      * @return a hot {@link Observable} emitting {@link Metric} events after data has been inserted
      */
     Observable<Metric<?>> insertedDataEvents();
 
+    /**
+     * @param consumerName identifies the consumer in the metrics of its event queue
+     * @return an {@link Observable} emitting {@link Metric} events after data has been inserted; events are queued
+     * for each subscription, and delivered from a dedicated thread
+     */
+    Observable<Metric<?>> insertedDataEvents(String consumerName);
+
     <T> Func1<Metric<T>, Boolean> idFilter(String regexp);
 }
@@ -16,6 +16,8 @@
  */
 package org.hawkular.metrics.core.service;
 
+import static java.util.Collections.singletonList;
+
 import static org.hawkular.metrics.core.service.Functions.isValidTagMap;
 import static org.hawkular.metrics.core.service.Functions.makeSafe;
 import static org.hawkular.metrics.model.MetricType.AVAILABILITY;
@@ -26,7 +28,13 @@ import static org.hawkular.metrics.model.Utils.isValidTimeRange;
 
 import static com.google.common.base.Preconditions.checkArgument;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Paths;
+import java.util.AbstractMap.SimpleImmutableEntry;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
@@ -36,13 +44,23 @@ import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Predicate;
+import java.util.function.Supplier;
 import java.util.regex.Pattern;
+import java.util.stream.Collectors;
 
+import org.hawkular.metrics.core.service.events.InsertedDataEvents;
+import org.hawkular.metrics.core.service.events.OverflowPolicy;
+import org.hawkular.metrics.core.service.ingest.FsyncPolicy;
+import org.hawkular.metrics.core.service.ingest.IngestLog;
+import org.hawkular.metrics.core.service.ingest.IngestLogReplayer;
 import org.hawkular.metrics.core.service.log.CoreLogger;
 import org.hawkular.metrics.core.service.log.CoreLogging;
 import org.hawkular.metrics.core.service.transformers.ItemsToSetTransformer;
 import org.hawkular.metrics.core.service.transformers.MetricsIndexRowTransformer;
+import org.hawkular.metrics.core.service.transformers.PeriodsTransformer;
 import org.hawkular.metrics.core.service.transformers.TagsIndexRowTransformer;
 import org.hawkular.metrics.model.AvailabilityBucketPoint;
 import org.hawkular.metrics.model.AvailabilityType;
@@ -61,6 +79,7 @@ import org.hawkular.metrics.tasks.api.TaskScheduler;
 import org.hawkular.rx.cassandra.driver.RxUtil;
 import org.joda.time.Duration;
 
+import com.codahale.metrics.Gauge;
 import com.codahale.metrics.Meter;
 import com.codahale.metrics.MetricRegistry;
 import com.codahale.metrics.Timer;
@@ -77,10 +96,10 @@ import com.google.common.util.concurrent.ListeningExecutorService;
 import com.google.common.util.concurrent.MoreExecutors;
 
 import rx.Observable;
+import rx.Observable.Transformer;
 import rx.functions.Func1;
 import rx.functions.Func2;
 import rx.functions.Func5;
-import rx.subjects.PublishSubject;
 
 /**
  * @author John Sanda
@@ -125,7 +144,9 @@ public class MetricsServiceImpl implements MetricsService {
      * Note that while user specifies the durations in hours, we store them in seconds.
      */
     private final Map<DataRetentionKey, Integer> dataRetentions = new ConcurrentHashMap<>();
-    private final PublishSubject<Metric<?>> insertedDataPointEvents = PublishSubject.create();
+    private InsertedDataEvents insertedDataPointEvents;
+
+    private final AtomicInteger insertedDataEventsConsumers = new AtomicInteger();
 
     private ListeningExecutorService metricsTasks;
 
@@ -166,6 +187,79 @@ public class MetricsServiceImpl implements MetricsService {
 
     private int defaultTTL = Duration.standardDays(7).toStandardSeconds().getSeconds();
 
+    /**
+     * Most recent data point of the metrics written through or read from this node.
+     */
+    private LatestDataPointCache latestDataPoints;
+
+    private long latestDataCacheSize = 100_000;
+
+    private long latestDataCacheExpiration = 60;
+
+    /**
+     * When true, the most recent data point of each metric is also stored in the latest_data table.
+     */
+    private boolean persistLatestData;
+
+    /**
+     * Availability stored as runs of unchanged state, or null when disabled.
+     */
+    private AvailabilityRuns availabilityRuns;
+
+    private boolean availabilityRunsEnabled;
+
+    /**
+     * Recent data points kept in memory to serve reads of recent time ranges, or null when disabled.
+     */
+    private HeadBlock headBlock;
+
+    private long headBlockWindow = 0;
+
+    private int headBlockMaxPointsPerMetric = 1000;
+
+    private long headBlockMaxMetrics = 10_000;
+
+    private Meter headBlockHits;
+
+    private Meter headBlockPartialHits;
+
+    private Meter headBlockMisses;
+
+    /**
+     * When set, data points are acknowledged once appended to a local ingest log and stored in Cassandra in the
+     * background.
+     */
+    private String ingestLogDirectory;
+
+    private int ingestLogSegmentSize = 64 * 1024 * 1024;
+
+    private long ingestLogMaxSize = 1024 * 1024 * 1024;
+
+    private FsyncPolicy ingestLogFsyncPolicy = FsyncPolicy.INTERVAL;
+
+    private long ingestLogFsyncInterval = 1000;
+
+    private double ingestLogReplayRate = 0;
+
+    private IngestLog ingestLog;
+
+    private IngestLogReplayer ingestLogReplayer;
+
+    private Meter ingestLogOverflows;
+
+    /**
+     * The maximum number of metrics read at the same time by a multi-metric query.
+     */
+    private int maxConcurrentReads = 20;
+
+    private int insertedDataEventsCapacity = 10_000;
+
+    private OverflowPolicy insertedDataEventsOverflowPolicy = OverflowPolicy.DROP_OLDEST;
+
+    private String insertedDataEventsSpillDirectory;
+
+    private long insertedDataEventsSpillMaxSize = 256 * 1024 * 1024;
+
     public void startUp(Session session, String keyspace, boolean resetDb, MetricRegistry metricRegistry) {
         startUp(session, keyspace, resetDb, true, metricRegistry);
     }
@@ -182,11 +276,37 @@ public class MetricsServiceImpl implements MetricsService {
         }
         session.execute("USE " + keyspace);
         log.infoKeyspaceUsed(keyspace);
+        startUp(metricRegistry);
+    }
+
+    /**
+     * Starts the service on top of the {@link DataAccess} already {@link #setDataAccess(DataAccess) set}, without
+     * touching any Cassandra schema. This is how the service is started with an in-memory storage.
+     */
+    public void startUp(MetricRegistry metricRegistry) {
         metricsTasks = MoreExecutors.listeningDecorator(Executors.newFixedThreadPool(4, new MetricsThreadFactory()));
+        latestDataPoints = new LatestDataPointCache(latestDataCacheSize, latestDataCacheExpiration);
         loadDataRetentions();
 
         this.metricRegistry = metricRegistry;
 
+        if (headBlockWindow > 0) {
+            headBlock = new HeadBlock(TimeUnit.MINUTES.toMillis(headBlockWindow), headBlockMaxPointsPerMetric,
+                    headBlockMaxMetrics, () -> dateTimeService.now.get().getMillis());
+            registerGauge("head-block-metrics", headBlock::size);
+            registerGauge("head-block-points", headBlock::getPointCount);
+            registerGauge("head-block-evictions", headBlock::getEvictionCount);
+            headBlockHits = metricRegistry.meter("head-block-hits");
+            headBlockPartialHits = metricRegistry.meter("head-block-partial-hits");
+            headBlockMisses = metricRegistry.meter("head-block-misses");
+        }
+
+        if (availabilityRunsEnabled) {
+            // The last run of a metric is cached like its latest data point
+            availabilityRuns = new AvailabilityRuns(dataAccess, latestDataCacheSize,
+                    metricRegistry.meter("availability-run-rebuilds"));
+        }
+
         dataPointInserters = ImmutableMap
                 .<MetricType<?>, Func2<? extends Metric<?>, Integer,
                 Observable<Integer>>>builder()
@@ -239,6 +359,14 @@ public class MetricsServiceImpl implements MetricsService {
                 .build();
 
         initMetrics();
+
+        insertedDataPointEvents = new InsertedDataEvents(insertedDataEventsCapacity, insertedDataEventsOverflowPolicy,
+                insertedDataEventsSpillDirectory == null ? null : Paths.get(insertedDataEventsSpillDirectory),
+                insertedDataEventsSpillMaxSize, metricRegistry);
+
+        if (ingestLogDirectory != null) {
+            startIngestLog();
+        }
     }
 
     void loadDataRetentions() {
@@ -339,6 +467,108 @@ public class MetricsServiceImpl implements MetricsService {
         this.defaultTTL = Duration.standardDays(defaultTTL).toStandardSeconds().getSeconds();
     }
 
+    /**
+     * @param latestDataCacheSize maximum number of metrics for which the latest data point is kept in memory
+     */
+    public void setLatestDataCacheSize(long latestDataCacheSize) {
+        this.latestDataCacheSize = latestDataCacheSize;
+    }
+
+    /**
+     * @param latestDataCacheExpiration how long, in seconds, a latest data point is kept in memory after it has been
+     *                                  updated, or zero to keep it until it gets evicted; with several nodes, this is
+     *                                  how long a node may serve a value older than one written through another node
+     */
+    public void setLatestDataCacheExpiration(long latestDataCacheExpiration) {
+        this.latestDataCacheExpiration = latestDataCacheExpiration;
+    }
+
+    /**
+     * @param headBlockWindow how long, in minutes, recent data points are kept in memory to serve reads, or zero to
+     *                        disable the head block
+     */
+    public void setHeadBlockWindow(long headBlockWindow) {
+        this.headBlockWindow = headBlockWindow;
+    }
+
+    public void setHeadBlockMaxPointsPerMetric(int headBlockMaxPointsPerMetric) {
+        this.headBlockMaxPointsPerMetric = headBlockMaxPointsPerMetric;
+    }
+
+    public void setHeadBlockMaxMetrics(long headBlockMaxMetrics) {
+        this.headBlockMaxMetrics = headBlockMaxMetrics;
+    }
+
+    /**
+     * @param ingestLogDirectory where the ingest log is stored, or null to store data points in Cassandra before
+     *                           acknowledging them
+     */
+    public void setIngestLogDirectory(String ingestLogDirectory) {
+        this.ingestLogDirectory = ingestLogDirectory;
+    }
+
+    public void setIngestLogSegmentSize(int ingestLogSegmentSize) {
+        this.ingestLogSegmentSize = ingestLogSegmentSize;
+    }
+
+    public void setIngestLogMaxSize(long ingestLogMaxSize) {
+        this.ingestLogMaxSize = ingestLogMaxSize;
+    }
+
+    public void setIngestLogFsyncPolicy(FsyncPolicy ingestLogFsyncPolicy) {
+        this.ingestLogFsyncPolicy = ingestLogFsyncPolicy;
+    }
+
+    public void setIngestLogFsyncInterval(long ingestLogFsyncInterval) {
+        this.ingestLogFsyncInterval = ingestLogFsyncInterval;
+    }
+
+    /**
+     * @param ingestLogReplayRate the maximum number of data points per second stored from the ingest log, or zero for
+     *                            no limit
+     */
+    public void setIngestLogReplayRate(double ingestLogReplayRate) {
+        this.ingestLogReplayRate = ingestLogReplayRate;
+    }
+
+    public void setPersistLatestData(boolean persistLatestData) {
+        this.persistLatestData = persistLatestData;
+    }
+
+    /**
+     * @param availabilityRunsEnabled whether availability is also stored as runs of unchanged state, which are used to
+     *                                answer distinct availability queries and availability statistics
+     */
+    public void setAvailabilityRunsEnabled(boolean availabilityRunsEnabled) {
+        this.availabilityRunsEnabled = availabilityRunsEnabled;
+    }
+
+    public void setMaxConcurrentReads(int maxConcurrentReads) {
+        this.maxConcurrentReads = maxConcurrentReads;
+    }
+
+    /**
+     * @param insertedDataEventsCapacity the maximum number of inserted data events queued for a consumer
+     */
+    public void setInsertedDataEventsCapacity(int insertedDataEventsCapacity) {
+        this.insertedDataEventsCapacity = insertedDataEventsCapacity;
+    }
+
+    public void setInsertedDataEventsOverflowPolicy(OverflowPolicy insertedDataEventsOverflowPolicy) {
+        this.insertedDataEventsOverflowPolicy = insertedDataEventsOverflowPolicy;
+    }
+
+    /**
+     * @param insertedDataEventsSpillDirectory where consumers spill events with {@link OverflowPolicy#SPILL}
+     */
+    public void setInsertedDataEventsSpillDirectory(String insertedDataEventsSpillDirectory) {
+        this.insertedDataEventsSpillDirectory = insertedDataEventsSpillDirectory;
+    }
+
+    public void setInsertedDataEventsSpillMaxSize(long insertedDataEventsSpillMaxSize) {
+        this.insertedDataEventsSpillMaxSize = insertedDataEventsSpillMaxSize;
+    }
+
     @Override
     public Observable<Void> createTenant(final Tenant tenant) {
         return Observable.create(subscriber -> {
@@ -373,6 +603,19 @@ public class MetricsServiceImpl implements MetricsService {
                 );
     }
 
+    @Override
+    public Observable<Void> updateTenantQuotas(String tenantId, Map<String, Double> quotas) {
+        return dataAccess.updateTenantQuotas(tenantId, quotas).map(resultSet -> null);
+    }
+
+    @Override
+    public Observable<Map<String, Map<String, Double>>> getTenantQuotas() {
+        return dataAccess.findTenantQuotas()
+                .flatMap(Observable::from)
+                .filter(row -> !row.isNull(1))
+                .toMap(row -> row.getString(0), row -> row.getMap(1, String.class, Double.class));
+    }
+
     private List<String> loadTenantIds() {
         Iterable<String> tenantIds = dataAccess.findAllTenantIds()
                 .flatMap(Observable::from)
@@ -547,10 +790,56 @@ public class MetricsServiceImpl implements MetricsService {
                 dataAccess.deleteFromMetricsTagsIndex(metric, tags)).toList().map(r -> null);
     }
 
+    private void startIngestLog() {
+        try {
+            ingestLog = new IngestLog(Paths.get(ingestLogDirectory), ingestLogSegmentSize, ingestLogMaxSize,
+                    ingestLogFsyncPolicy, ingestLogFsyncInterval);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        ingestLogOverflows = metricRegistry.meter("ingest-log-overflows");
+        ingestLogReplayer = new IngestLogReplayer(ingestLog, this::storeDataPoints, ingestLogReplayRate,
+                metricRegistry);
+        ingestLogReplayer.start();
+    }
+
     @Override
     public <T> Observable<Void> addDataPoints(MetricType<T> metricType, Observable<Metric<T>> metrics) {
         checkArgument(metricType != null, "metricType is null");
 
+        if (ingestLog == null) {
+            return storeDataPoints(metricType, metrics);
+        }
+        return metrics
+                .filter(metric -> !metric.getDataPoints().isEmpty())
+                .toList()
+                .flatMap(list -> {
+                    try {
+                        if (list.isEmpty() || ingestLog.append(list)) {
+                            return Observable.just(null);
+                        }
+                    } catch (IOException e) {
+                        return Observable.error(e);
+                    }
+                    // The log is full, fall back to a synchronous write
+                    ingestLogOverflows.mark();
+                    return storeDataPoints(metricType, Observable.from(list));
+                });
+    }
+
+    /**
+     * Stores data points read from the ingest log, which may be of different types.
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private Observable<Void> storeDataPoints(List<Metric<?>> metrics) {
+        Map<MetricType<?>, List<Metric<?>>> byType = metrics.stream()
+                .collect(Collectors.groupingBy(metric -> metric.getMetricId().getType()));
+        return Observable.from(byType.entrySet())
+                .flatMap(entry -> storeDataPoints((MetricType) entry.getKey(),
+                        Observable.from((List) entry.getValue())));
+    }
+
+    private <T> Observable<Void> storeDataPoints(MetricType<T> metricType, Observable<Metric<T>> metrics) {
         // We write to both the data and the metrics_idx tables. Each metric can have one or more data points. We
         // currently write a separate batch statement for each metric.
         //
@@ -575,9 +864,14 @@ public class MetricsServiceImpl implements MetricsService {
         Observable<Integer> updates = metrics
                 .filter(metric -> !metric.getDataPoints().isEmpty())
                 .flatMap(metric -> {
-                    return inserter.call(metric, getTTL(metric.getMetricId())).doOnNext(i -> {
-                        insertedDataPointEvents.onNext(metric);
-                    });
+                    int ttl = getTTL(metric.getMetricId());
+                    return inserter.call(metric, ttl).doOnNext(i -> {
+                        if (headBlock != null) {
+                            headBlock.add(metric);
+                        }
+                        insertedDataPointEvents.publish(metric);
+                    }).concatWith(Observable.defer(() -> updateLatestDataPoint(metric, ttl)))
+                            .concatWith(Observable.defer(() -> updateAvailabilityRuns(metric, ttl)));
                 }).doOnNext(meter::mark);
 
         Observable<Integer> indexUpdates = dataAccess.updateMetricsIndex(metrics)
@@ -587,6 +881,30 @@ public class MetricsServiceImpl implements MetricsService {
                 .map(count -> null);
     }
 
+    /**
+     * Updates the latest data point of the metric once its data has been stored. The returned Observable does not emit
+     * any item.
+     */
+    private <T> Observable<Integer> updateLatestDataPoint(Metric<T> metric, int ttl) {
+        DataPoint<T> latest = latestDataPoints.update(metric);
+        if (latest == null || !persistLatestData) {
+            return Observable.empty();
+        }
+        return dataAccess.updateLatestData(metric.getMetricId(), latest, ttl).flatMap(resultSet -> Observable.empty());
+    }
+
+    /**
+     * Updates the availability runs of the metric once its data has been stored. The returned Observable does not emit
+     * any item.
+     */
+    @SuppressWarnings("unchecked")
+    private <T> Observable<Integer> updateAvailabilityRuns(Metric<T> metric, int ttl) {
+        if (availabilityRuns == null || metric.getMetricId().getType() != AVAILABILITY) {
+            return Observable.empty();
+        }
+        return availabilityRuns.update((Metric<AvailabilityType>) metric, ttl).map(aVoid -> 0);
+    }
+
     private <T> Meter getInsertMeter(MetricType<T> metricType) {
         Meter meter = dataPointInsertMeters.get(metricType);
         if (meter == null) {
@@ -609,6 +927,57 @@ public class MetricsServiceImpl implements MetricsService {
     public <T> Observable<DataPoint<T>> findDataPoints(MetricId<T> metricId, long start, long end, int limit,
             Order order) {
         checkArgument(isValidTimeRange(start, end), "Invalid time range");
+        HeadBlock.Read<T> recent = headBlock == null ? null : headBlock.read(metricId, start, end, order);
+        if (recent == null) {
+            if (headBlock != null) {
+                headBlockMisses.mark();
+            }
+            return findStoredDataPoints(metricId, start, end, limit, order);
+        }
+        Observable<DataPoint<T>> dataPoints = Observable.from(recent.getDataPoints());
+        if (recent.getFrom() <= start) {
+            headBlockHits.mark();
+        } else {
+            // The older part of the range is not in memory
+            headBlockPartialHits.mark();
+            Observable<DataPoint<T>> older = Observable.defer(() -> findStoredDataPoints(metricId, start,
+                    recent.getFrom(), limit, order));
+            dataPoints = order == Order.ASC ? older.concatWith(dataPoints) : dataPoints.concatWith(older);
+        }
+        return limit > 0 ? dataPoints.take(limit) : dataPoints;
+    }
+
+    @Override
+    public <T> Observable<Metric<T>> findDataPoints(String tenantId, MetricType<T> metricType, List<String> metrics,
+            long start, long end, int limit, Order order, Transformer<DataPoint<T>, DataPoint<T>> transformer) {
+        checkArgument(isValidTimeRange(start, end), "Invalid time range");
+        return Observable.from(metrics)
+                .distinct()
+                .map(name -> new MetricId<>(tenantId, metricType, name))
+                .flatMap(id -> findMetricDataPoints(id, start, end, limit, order, transformer), maxConcurrentReads);
+    }
+
+    @Override
+    public <T> Observable<Metric<T>> findDataPoints(String tenantId, MetricType<T> metricType,
+            Map<String, String> tagFilters, long start, long end, int limit, Order order,
+            Transformer<DataPoint<T>, DataPoint<T>> transformer) {
+        checkArgument(isValidTimeRange(start, end), "Invalid time range");
+        return findMetricsWithFilters(tenantId, metricType, tagFilters)
+                .map(Metric::getMetricId)
+                .flatMap(id -> findMetricDataPoints(id, start, end, limit, order, transformer), maxConcurrentReads);
+    }
+
+    private <T> Observable<Metric<T>> findMetricDataPoints(MetricId<T> id, long start, long end, int limit,
+            Order order, Transformer<DataPoint<T>, DataPoint<T>> transformer) {
+        return findDataPoints(id, start, end, limit, order)
+                .compose(transformer)
+                .toList()
+                .filter(dataPoints -> !dataPoints.isEmpty())
+                .map(dataPoints -> new Metric<>(id, dataPoints));
+    }
+
+    private <T> Observable<DataPoint<T>> findStoredDataPoints(MetricId<T> metricId, long start, long end, int limit,
+            Order order) {
         MetricType<T> metricType = metricId.getType();
         Timer timer = getDataPointFindTimer(metricType);
         Func5<MetricId<T>, Long, Long, Integer, Order, Observable<ResultSet>> finder = getDataPointFinder(metricType);
@@ -618,6 +987,11 @@ public class MetricsServiceImpl implements MetricsService {
                 .map(mapper));
     }
 
+    private void registerGauge(String name, Supplier<Long> value) {
+        metricRegistry.remove(name);
+        metricRegistry.register(name, (Gauge<Long>) value::get);
+    }
+
     private <T> Timer getDataPointFindTimer(MetricType<T> metricType) {
         Timer timer = dataPointReadTimers.get(metricType);
         if (timer == null) {
@@ -676,8 +1050,29 @@ public class MetricsServiceImpl implements MetricsService {
     @Override
     public <T> Observable<T> findGaugeData(MetricId<Double> id, long start, long end,
                                            Func1<Observable<DataPoint<Double>>, Observable<T>>... funcs) {
-        Observable<DataPoint<Double>> dataCache = this.findDataPoints(id, start, end, 0, Order.DESC).cache();
-        return Observable.from(funcs).flatMap(fn -> fn.call(dataCache));
+        Observable<DataPoint<Double>> dataPoints = this.findDataPoints(id, start, end, 0, Order.DESC);
+        if (Arrays.stream(funcs).allMatch(fn -> fn instanceof AggregateFunction)) {
+            // Single pass over the data points, only the accumulators are kept in memory
+            return dataPoints
+                    .collect(() -> createAccumulators(funcs), (accumulators, dataPoint) -> {
+                        for (AggregateFunction.Accumulator<T> accumulator : accumulators) {
+                            accumulator.increment(dataPoint);
+                        }
+                    })
+                    .concatMap(accumulators -> Observable.from(accumulators).concatMap(AggregateFunction::result));
+        }
+        Observable<DataPoint<Double>> dataCache = dataPoints.cache();
+        return Observable.from(funcs).concatMap(fn -> fn.call(dataCache));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> List<AggregateFunction.Accumulator<T>> createAccumulators(
+            Func1<Observable<DataPoint<Double>>, Observable<T>>[] funcs) {
+        List<AggregateFunction.Accumulator<T>> accumulators = new ArrayList<>(funcs.length);
+        for (Func1<Observable<DataPoint<Double>>, Observable<T>> fn : funcs) {
+            accumulators.add(((AggregateFunction<T>) fn).newAccumulator());
+        }
+        return accumulators;
     }
 
     @Override
@@ -775,8 +1170,8 @@ public class MetricsServiceImpl implements MetricsService {
         }
     }
 
-    private Observable<List<NumericBucketPoint>> bucketize(Observable<? extends DataPoint<? extends Number>> dataPoints,
-                                                           Buckets buckets, List<Double> percentiles) {
+    static Observable<List<NumericBucketPoint>> bucketize(Observable<? extends DataPoint<? extends Number>> dataPoints,
+            Buckets buckets, List<Double> percentiles) {
         return dataPoints
                 .groupBy(dataPoint -> buckets.getIndex(dataPoint.getTimestamp()))
                 .flatMap(group -> group.collect(()
@@ -792,8 +1187,17 @@ public class MetricsServiceImpl implements MetricsService {
             long end, boolean distinct, int limit, Order order) {
         checkArgument(isValidTimeRange(start, end), "Invalid time range");
         if (distinct) {
-            Observable<DataPoint<AvailabilityType>> availabilityData = findDataPoints(id, start, end, 0, order)
-                    .distinctUntilChanged(DataPoint::getValue);
+            Observable<DataPoint<AvailabilityType>> availabilityData;
+            if (availabilityRuns == null) {
+                availabilityData = findDataPoints(id, start, end, 0, order);
+            } else {
+                availabilityData = availabilityRuns.findRuns(id, start, end)
+                        .map(Optional::of)
+                        .defaultIfEmpty(Optional.empty())
+                        .flatMap(runs -> runs.isPresent() ? findDistinctAvailability(id, runs.get(), start, end, order)
+                                : findDataPoints(id, start, end, 0, order));
+            }
+            availabilityData = availabilityData.distinctUntilChanged(DataPoint::getValue);
             if (limit <= 0) {
                 return availabilityData;
             } else {
@@ -804,11 +1208,54 @@ public class MetricsServiceImpl implements MetricsService {
         }
     }
 
+    /**
+     * Emits the first data point of each run in the time range, or the last one in descending order. The boundaries of
+     * the runs which overlap the start or end of the time range are read from the data table.
+     *
+     * @param runs the runs overlapping the time range, in ascending order
+     */
+    private Observable<DataPoint<AvailabilityType>> findDistinctAvailability(MetricId<AvailabilityType> id,
+            List<AvailabilityRun> runs, long start, long end, Order order) {
+        if (runs.isEmpty()) {
+            return Observable.empty();
+        }
+        List<Observable<DataPoint<AvailabilityType>>> dataPoints = new ArrayList<>(runs.size());
+        for (AvailabilityRun run : runs) {
+            if (order == Order.ASC) {
+                if (run.getStart() < start) {
+                    dataPoints.add(findDataPoints(id, start, Math.min(run.getEnd() + 1, end), 1, Order.ASC));
+                } else {
+                    dataPoints.add(Observable.just(new DataPoint<>(run.getStart(), run.getValue())));
+                }
+            } else {
+                if (run.getEnd() >= end) {
+                    dataPoints.add(findDataPoints(id, Math.max(run.getStart(), start), end, 1, Order.DESC));
+                } else {
+                    dataPoints.add(Observable.just(new DataPoint<>(run.getEnd(), run.getValue())));
+                }
+            }
+        }
+        if (order == Order.DESC) {
+            Collections.reverse(dataPoints);
+        }
+        return Observable.concat(Observable.from(dataPoints));
+    }
+
     @Override
     public Observable<List<AvailabilityBucketPoint>> findAvailabilityStats(MetricId<AvailabilityType> metricId,
             long start, long end, Buckets buckets) {
         checkArgument(isValidTimeRange(start, end), "Invalid time range");
-        return this.findDataPoints(metricId, start, end, 0, Order.ASC)
+        Observable<DataPoint<AvailabilityType>> dataPoints;
+        if (availabilityRuns == null) {
+            dataPoints = findDataPoints(metricId, start, end, 0, Order.ASC);
+        } else {
+            dataPoints = availabilityRuns.findRuns(metricId, start, end)
+                    .map(Optional::of)
+                    .defaultIfEmpty(Optional.empty())
+                    .flatMap(runs -> runs.isPresent() ? AvailabilityRuns.toDataPoints(runs.get(), buckets)
+                            : findDataPoints(metricId, start, end, 0, Order.ASC));
+        }
+        return dataPoints
                 .groupBy(dataPoint -> buckets.getIndex(dataPoint.getTimestamp()))
                 .flatMap(group -> group.collect(() -> new AvailabilityDataPointCollector(buckets, group.getKey()),
                         AvailabilityDataPointCollector::increment))
@@ -835,42 +1282,87 @@ public class MetricsServiceImpl implements MetricsService {
         return bucketize(findDataPoints(id, start, end, 0, Order.ASC), buckets, percentiles);
     }
 
+    @Override
+    public <T> Observable<DataPoint<T>> findLatestDataPoint(MetricId<T> id) {
+        DataPoint<T> cached = latestDataPoints.get(id);
+        if (cached != null) {
+            return Observable.just(cached);
+        }
+        // Data written before persistence of latest data points got enabled is only available in the data table
+        Observable<DataPoint<T>> latestFromData = Observable.defer(() -> findDataPoints(id, 0,
+                System.currentTimeMillis() + 1, 1, Order.DESC));
+        Observable<DataPoint<T>> latest;
+        if (persistLatestData) {
+            latest = dataAccess.findLatestData(id)
+                    .flatMap(Observable::from)
+                    .map(row -> Functions.getLatestDataPoint(row, id.getType()))
+                    .switchIfEmpty(latestFromData);
+        } else {
+            latest = latestFromData;
+        }
+        return latest.doOnNext(dataPoint -> latestDataPoints.update(id, dataPoint));
+    }
+
+    @Override
+    public <T> Observable<Metric<T>> findLatestDataPoints(String tenantId, MetricType<T> metricType,
+            List<String> metrics) {
+        return Observable.from(metrics)
+                .distinct()
+                .map(name -> new MetricId<>(tenantId, metricType, name))
+                .flatMap(id -> findLatestDataPoint(id).map(dataPoint -> new Metric<>(id, singletonList(dataPoint))),
+                        maxConcurrentReads);
+    }
+
+    @Override
+    public <T> Observable<Metric<T>> findLatestDataPoints(String tenantId, MetricType<T> metricType,
+            Map<String, String> tagFilters) {
+        return findMetricsWithFilters(tenantId, metricType, tagFilters)
+                .map(Metric::getMetricId)
+                .flatMap(id -> findLatestDataPoint(id).map(dataPoint -> new Metric<>(id, singletonList(dataPoint))),
+                        maxConcurrentReads);
+    }
+
     @Override
     public Observable<List<long[]>> getPeriods(MetricId<Double> id, Predicate<Double> predicate, long start,
             long end) {
         checkArgument(isValidTimeRange(start, end), "Invalid time range");
-        return dataAccess.findGaugeData(id, start, end, 0, Order.ASC, false)
-                .flatMap(Observable::from)
-                .map(Functions::getGaugeDataPoint)
-                .toList().map(data -> {
-                    List<long[]> periods = new ArrayList<>(data.size());
-                    long[] period = null;
-                    DataPoint<Double> previous = null;
-                    for (DataPoint<Double> d : data) {
-                        if (predicate.test(d.getValue())) {
-                            if (period == null) {
-                                period = new long[2];
-                                period[0] = d.getTimestamp();
-                            }
-                            previous = d;
-                        } else if (period != null) {
-                            period[1] = previous.getTimestamp();
-                            periods.add(period);
-                            period = null;
-                            previous = null;
-                        }
-                    }
-                    if (period != null) {
-                        period[1] = previous.getTimestamp();
-                        periods.add(period);
-                    }
-                    return periods;
-                });
+        return findDataPoints(id, start, end, 0, Order.ASC)
+                .compose(new PeriodsTransformer(predicate))
+                .toList();
+    }
+
+    @Override
+    public Observable<Map<String, List<long[]>>> getPeriods(String tenantId, List<String> metrics,
+            Predicate<Double> predicate, long start, long end) {
+        checkArgument(isValidTimeRange(start, end), "Invalid time range");
+        return findPeriods(Observable.from(metrics).distinct().map(name -> new MetricId<>(tenantId, GAUGE, name)),
+                predicate, start, end);
+    }
+
+    @Override
+    public Observable<Map<String, List<long[]>>> getPeriods(String tenantId, Map<String, String> tagFilters,
+            Predicate<Double> predicate, long start, long end) {
+        checkArgument(isValidTimeRange(start, end), "Invalid time range");
+        return findPeriods(findMetricsWithFilters(tenantId, GAUGE, tagFilters).map(Metric::getMetricId), predicate,
+                start, end);
+    }
+
+    private Observable<Map<String, List<long[]>>> findPeriods(Observable<MetricId<Double>> ids,
+            Predicate<Double> predicate, long start, long end) {
+        return ids.flatMap(id -> getPeriods(id, predicate, start, end)
+                .filter(periods -> !periods.isEmpty())
+                .map(periods -> new SimpleImmutableEntry<>(id.getName(), periods)), maxConcurrentReads)
+                .toMap(Map.Entry::getKey, Map.Entry::getValue);
     }
 
     @Override
     public Observable<Metric<?>> insertedDataEvents() {
-        return insertedDataPointEvents;
+        return insertedDataEvents("consumer-" + insertedDataEventsConsumers.incrementAndGet());
+    }
+
+    @Override
+    public Observable<Metric<?>> insertedDataEvents(String consumerName) {
+        return insertedDataPointEvents.observe(consumerName);
     }
 
     private int getTTL(MetricId<?> metricId) {
@@ -883,9 +1375,24 @@ public class MetricsServiceImpl implements MetricsService {
     }
 
     public void shutdown() {
-        insertedDataPointEvents.onCompleted();
+        if (ingestLog != null) {
+            // Whatever is left in the log is stored on the next start
+            ingestLogReplayer.stop();
+            try {
+                ingestLog.close();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        if (insertedDataPointEvents != null) {
+            insertedDataPointEvents.shutdown();
+        }
         metricsTasks.shutdown();
         unloadDataRetentions();
+        latestDataPoints.clear();
+        if (headBlock != null) {
+            headBlock.clear();
+        }
     }
 
     private <T> T time(Timer timer, Callable<T> callable) {
@@ -0,0 +1,307 @@
+/*
+ * Copyright 2014-2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.metrics.core.service.events;
+
+import static java.util.Collections.singletonList;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.hawkular.metrics.core.service.ingest.FsyncPolicy;
+import org.hawkular.metrics.core.service.ingest.IngestLog;
+import org.hawkular.metrics.core.service.log.CoreLogger;
+import org.hawkular.metrics.core.service.log.CoreLogging;
+import org.hawkular.metrics.model.Metric;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+
+import rx.Observable;
+import rx.Subscriber;
+import rx.subscriptions.Subscriptions;
+
+/**
+ * Delivers inserted data events to consumers without slowing down the write path.
+ * <p>
+ * Each consumer, that is each subscription to {@link #observe(String)}, gets a bounded queue and a thread which
+ * delivers the queued events. Publishing an event only offers it to the queues; when a queue is full, the
+ * {@link OverflowPolicy} of the pipeline decides what is dropped, or spills the event to disk. A slow consumer thus
+ * loses events, or lags behind, instead of blocking writes or filling the heap.
+ * <p>
+ * The following metrics are registered for each consumer:
+ * <ul>
+ *     <li>inserted-data-events-[consumer]-pending: the number of events waiting to be delivered</li>
+ *     <li>inserted-data-events-[consumer]-lag: how long, in milliseconds, the last delivered event waited</li>
+ *     <li>inserted-data-events-[consumer]-delivered: meter of the delivered events</li>
+ *     <li>inserted-data-events-[consumer]-dropped: how many events were dropped</li>
+ * </ul>
+ * They are removed when the consumer completes or unsubscribes.
+ */
+public final class InsertedDataEvents {
+    private static final CoreLogger log = CoreLogging.getCoreLogger(InsertedDataEvents.class);
+
+    private static final long POLL_TIMEOUT = 100;
+    private static final int SPILL_BATCH_SIZE = 100;
+    private static final int SPILL_SEGMENT_SIZE = 16 * 1024 * 1024;
+
+    private final int capacity;
+    private final OverflowPolicy overflowPolicy;
+    private final Path spillDirectory;
+    private final long spillMaxSize;
+    private final MetricRegistry metricRegistry;
+    private final List<Consumer> consumers = new CopyOnWriteArrayList<>();
+    private volatile boolean shutdown;
+
+    /**
+     * @param capacity the maximum number of events queued for a consumer
+     * @param overflowPolicy what happens to events published while the queue of a consumer is full
+     * @param spillDirectory where consumers spill events with {@link OverflowPolicy#SPILL}, one sub-directory each
+     * @param spillMaxSize the maximum number of bytes spilled by a consumer; events are dropped beyond it
+     * @param metricRegistry where consumer metrics are registered
+     */
+    public InsertedDataEvents(int capacity, OverflowPolicy overflowPolicy, Path spillDirectory, long spillMaxSize,
+            MetricRegistry metricRegistry) {
+        if (overflowPolicy == OverflowPolicy.SPILL && spillDirectory == null) {
+            throw new IllegalArgumentException("A spill directory is required with " + overflowPolicy);
+        }
+        this.capacity = capacity;
+        this.overflowPolicy = overflowPolicy;
+        this.spillDirectory = spillDirectory;
+        this.spillMaxSize = spillMaxSize;
+        this.metricRegistry = metricRegistry;
+    }
+
+    /**
+     * Offers {@code metric} to every consumer. This method never blocks on a consumer.
+     */
+    public void publish(Metric<?> metric) {
+        for (Consumer consumer : consumers) {
+            consumer.offer(metric);
+        }
+    }
+
+    /**
+     * @param consumerName identifies the consumer in metric names
+     * @return an {@link Observable} emitting, from a thread dedicated to the subscription, the events published after
+     * it subscribed
+     */
+    public Observable<Metric<?>> observe(String consumerName) {
+        return Observable.create(subscriber -> {
+            if (shutdown) {
+                subscriber.onCompleted();
+                return;
+            }
+            Consumer consumer;
+            try {
+                consumer = new Consumer(consumerName, subscriber);
+            } catch (IOException e) {
+                subscriber.onError(e);
+                return;
+            }
+            consumers.add(consumer);
+            subscriber.add(Subscriptions.create(consumer::stop));
+            consumer.start();
+        });
+    }
+
+    /**
+     * Stops accepting events. Consumers complete once their queued events are delivered.
+     */
+    public void shutdown() {
+        shutdown = true;
+        consumers.forEach(Consumer::stop);
+    }
+
+    private static final class Event {
+        final Metric<?> metric;
+        final long time;
+
+        Event(Metric<?> metric, long time) {
+            this.metric = metric;
+            this.time = time;
+        }
+    }
+
+    private final class Consumer implements Runnable {
+        private final String name;
+        private final String metricPrefix;
+        private final Subscriber<? super Metric<?>> subscriber;
+        private final BlockingQueue<Event> queue;
+        private final IngestLog spill;
+        private final Thread thread;
+        private final Meter delivered;
+        private final Counter dropped;
+        // Guarded by this, so that events are not queued while older ones are still spilled
+        private boolean spilling;
+        private volatile boolean stopped;
+        private volatile long lag;
+
+        Consumer(String name, Subscriber<? super Metric<?>> subscriber) throws IOException {
+            this.name = name;
+            this.subscriber = subscriber;
+            queue = new ArrayBlockingQueue<>(capacity);
+            if (overflowPolicy == OverflowPolicy.SPILL) {
+                spill = new IngestLog(spillDirectory.resolve(name), Math.min(SPILL_SEGMENT_SIZE,
+                        (int) Math.min(Integer.MAX_VALUE, spillMaxSize)), spillMaxSize, FsyncPolicy.NEVER, 0);
+            } else {
+                spill = null;
+            }
+            thread = new Thread(this, "InsertedDataEvents-" + name);
+            thread.setDaemon(true);
+
+            metricPrefix = "inserted-data-events-" + name + "-";
+            register(metricPrefix + "pending", () -> queue.size() + (spill == null ? 0 : spill.getPendingRecords()));
+            register(metricPrefix + "lag", () -> lag);
+            metricRegistry.remove(metricPrefix + "delivered");
+            delivered = metricRegistry.meter(metricPrefix + "delivered");
+            metricRegistry.remove(metricPrefix + "dropped");
+            dropped = metricRegistry.counter(metricPrefix + "dropped");
+        }
+
+        private void unregister() {
+            metricRegistry.remove(metricPrefix + "pending");
+            metricRegistry.remove(metricPrefix + "lag");
+            metricRegistry.remove(metricPrefix + "delivered");
+            metricRegistry.remove(metricPrefix + "dropped");
+        }
+
+        private void register(String metricName, Gauge<Long> gauge) {
+            metricRegistry.remove(metricName);
+            metricRegistry.register(metricName, gauge);
+        }
+
+        void start() {
+            thread.start();
+        }
+
+        void stop() {
+            stopped = true;
+        }
+
+        void offer(Metric<?> metric) {
+            if (stopped) {
+                return;
+            }
+            Event event = new Event(metric, System.currentTimeMillis());
+            switch (overflowPolicy) {
+                case DROP_NEWEST:
+                    if (!queue.offer(event)) {
+                        dropped.inc();
+                    }
+                    break;
+                case DROP_OLDEST:
+                    while (!queue.offer(event)) {
+                        if (queue.poll() != null) {
+                            dropped.inc();
+                        }
+                    }
+                    break;
+                case SPILL:
+                    offerOrSpill(event);
+                    break;
+                default:
+                    throw new IllegalStateException("Unexpected policy: " + overflowPolicy);
+            }
+        }
+
+        private synchronized void offerOrSpill(Event event) {
+            // Once spilling, events keep going to disk until the spill is drained, to preserve their order
+            if (!spilling && queue.offer(event)) {
+                return;
+            }
+            spilling = true;
+            try {
+                if (!spill.append(singletonList(event.metric))) {
+                    dropped.inc();
+                }
+            } catch (IOException e) {
+                dropped.inc();
+            }
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (!subscriber.isUnsubscribed()) {
+                    Event event = queue.poll(POLL_TIMEOUT, TimeUnit.MILLISECONDS);
+                    if (event != null) {
+                        deliver(event.metric, event.time);
+                    } else if (!deliverSpilledEvents()) {
+                        if (stopped) {
+                            subscriber.onCompleted();
+                            break;
+                        }
+                        lag = 0;
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (Exception e) {
+                log.warnInsertedDataEventsConsumerFailed(name, e);
+                subscriber.onError(e);
+            } finally {
+                stopped = true;
+                consumers.remove(this);
+                unregister();
+                if (spill != null) {
+                    try {
+                        spill.close();
+                    } catch (IOException e) {
+                        log.warnInsertedDataEventsConsumerFailed(name, e);
+                    }
+                }
+            }
+        }
+
+        /**
+         * @return false if there were no spilled events to deliver
+         */
+        private boolean deliverSpilledEvents() throws IOException {
+            List<IngestLog.Record> records;
+            synchronized (this) {
+                if (spill == null || !spilling) {
+                    return false;
+                }
+                records = spill.read(spill.getCommittedOffset(), SPILL_BATCH_SIZE);
+                if (records.isEmpty()) {
+                    spilling = false;
+                    return false;
+                }
+            }
+            for (IngestLog.Record record : records) {
+                for (Metric<?> metric : record.getMetrics()) {
+                    deliver(metric, record.getAppendTime());
+                }
+            }
+            spill.commit(records.get(records.size() - 1).getNextOffset(), records.size());
+            return true;
+        }
+
+        private void deliver(Metric<?> metric, long time) {
+            subscriber.onNext(metric);
+            delivered.mark();
+            lag = System.currentTimeMillis() - time;
+        }
+    }
+}
@@ -0,0 +1,43 @@
+/*
+ * Copyright 2014-2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.metrics.core.service.events;
+
+/**
+ * What happens to an inserted data event when the queue of a consumer is full.
+ */
+public enum OverflowPolicy {
+    /**
+     * The oldest queued event is dropped to make room. Consumers get the most recent data.
+     */
+    DROP_OLDEST,
+    /**
+     * The new event is dropped.
+     */
+    DROP_NEWEST,
+    /**
+     * The new event is appended to a log on disk, and delivered once the queued events are. Nothing is dropped until
+     * the log is full.
+     */
+    SPILL;
+
+    /**
+     * @param s the name of a policy, like {@code drop-oldest}
+     */
+    public static OverflowPolicy fromString(String s) {
+        return valueOf(s.trim().replace('-', '_').toUpperCase());
+    }
+}
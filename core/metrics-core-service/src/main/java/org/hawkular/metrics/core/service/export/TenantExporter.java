@@ -0,0 +1,263 @@
+/*
+ * Copyright 2014-2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.metrics.core.service.export;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.hawkular.metrics.core.service.MetricsService;
+import org.hawkular.metrics.core.service.Order;
+import org.hawkular.metrics.model.AvailabilityType;
+import org.hawkular.metrics.model.DataPoint;
+import org.hawkular.metrics.model.Metric;
+import org.hawkular.metrics.model.MetricId;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import rx.Notification;
+import rx.Observable;
+import rx.Subscriber;
+import rx.exceptions.Exceptions;
+
+/**
+ * Streams all the metrics of a tenant, with their data points, as newline-delimited JSON.
+ * <p>
+ * The first line describes the export:
+ * <pre>
+ * {"format": "hawkular-metrics-export", "version": 1, "tenantId": "t1", "start": 0, "end": 1449000000000}
+ * </pre>
+ * Every metric found in the metrics index then gets a line holding its definition, followed by lines of at most
+ * {@code chunkSize} data points in ascending order:
+ * <pre>
+ * {"id": "cpu", "type": "gauge", "tags": {"host": "a"}, "dataRetention": 7, "data": []}
+ * {"id": "cpu", "type": "gauge", "data": [{"timestamp": 1448999940000, "value": 0.5}, ...]}
+ * </pre>
+ * Each line is self-contained so that lines of different metrics can be interleaved, which lets several metrics be
+ * read at the same time. The output can be read back by the NDJSON format of the bulk import.
+ */
+public class TenantExporter {
+
+    public static final String FORMAT = "hawkular-metrics-export";
+    public static final int VERSION = 1;
+
+    /**
+     * The maximum number of lines read ahead of the output when writing the export to a stream.
+     */
+    static final int MAX_PENDING_LINES = 128;
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    private final MetricsService metricsService;
+    private final int parallelism;
+    private final int chunkSize;
+
+    /**
+     * @param metricsService where data is read from
+     * @param parallelism the maximum number of metrics read at the same time
+     * @param chunkSize the maximum number of data points per line
+     */
+    public TenantExporter(MetricsService metricsService, int parallelism, int chunkSize) {
+        this.metricsService = metricsService;
+        this.parallelism = parallelism;
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * @return the lines of the export, without line separators
+     */
+    public Observable<String> export(String tenantId, long start, long end) {
+        return export(tenantId, start, end, new Summary());
+    }
+
+    private Observable<String> export(String tenantId, long start, long end, Summary summary) {
+        Observable<String> metrics = metricsService.findMetrics(tenantId, null)
+                .flatMap(metric -> exportMetric(metric, start, end, summary), parallelism);
+        return Observable.just(header(tenantId, start, end)).concatWith(metrics);
+    }
+
+    private <T> Observable<String> exportMetric(Metric<T> metric, long start, long end, Summary summary) {
+        Observable<String> data = metricsService.findDataPoints(metric.getMetricId(), start, end, 0, Order.ASC)
+                .buffer(chunkSize)
+                .map(dataPoints -> {
+                    summary.dataPoints.addAndGet(dataPoints.size());
+                    return line(metric.getMetricId(), null, null, dataPoints);
+                });
+        return Observable.defer(() -> {
+            summary.metrics.incrementAndGet();
+            return Observable.just(line(metric.getMetricId(), metric.getTags(), metric.getDataRetention(),
+                    Collections.emptyList()));
+        }).concatWith(data);
+    }
+
+    /**
+     * Writes the export to {@code output}, blocking until it is complete. The stream is flushed but not closed.
+     * <p>
+     * Lines are written by the calling thread, never by the driver threads the export is read on, and at most
+     * {@link #MAX_PENDING_LINES} lines are read ahead of the output. The export is cancelled if writing fails.
+     *
+     * @return the number of metrics and data points written
+     */
+    public Summary export(String tenantId, long start, long end, OutputStream output) throws IOException {
+        Writer writer = new OutputStreamWriter(output, StandardCharsets.UTF_8);
+        Summary summary = new Summary();
+        LineSubscriber lines = new LineSubscriber();
+        export(tenantId, start, end, summary).onBackpressureBuffer(MAX_PENDING_LINES).subscribe(lines);
+        try {
+            for (Notification<String> line = lines.take(); !line.isOnCompleted(); line = lines.take()) {
+                if (line.isOnError()) {
+                    throw Exceptions.propagate(line.getThrowable());
+                }
+                writer.write(line.getValue());
+                writer.write('\n');
+                lines.requestMore();
+            }
+        } finally {
+            lines.unsubscribe();
+        }
+        writer.flush();
+        return summary;
+    }
+
+    /**
+     * Queues the lines of an export until the writing thread takes them, only requesting as many lines as the queue
+     * has room for.
+     */
+    private static class LineSubscriber extends Subscriber<String> {
+        private final BlockingQueue<Notification<String>> queue = new ArrayBlockingQueue<>(MAX_PENDING_LINES + 1);
+
+        @Override
+        public void onStart() {
+            request(MAX_PENDING_LINES);
+        }
+
+        @Override
+        public void onNext(String line) {
+            queue.add(Notification.createOnNext(line));
+        }
+
+        @Override
+        public void onError(Throwable e) {
+            queue.add(Notification.createOnError(e));
+        }
+
+        @Override
+        public void onCompleted() {
+            queue.add(Notification.createOnCompleted());
+        }
+
+        Notification<String> take() throws InterruptedIOException {
+            try {
+                return queue.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for the export");
+            }
+        }
+
+        void requestMore() {
+            request(1);
+        }
+    }
+
+    private static String header(String tenantId, long start, long end) {
+        return json(generator -> {
+            generator.writeStringField("format", FORMAT);
+            generator.writeNumberField("version", VERSION);
+            generator.writeStringField("tenantId", tenantId);
+            generator.writeNumberField("start", start);
+            generator.writeNumberField("end", end);
+        });
+    }
+
+    private static <T> String line(MetricId<T> id, Map<String, String> tags, Integer dataRetention,
+            List<DataPoint<T>> dataPoints) {
+        return json(generator -> {
+            generator.writeStringField("id", id.getName());
+            generator.writeStringField("type", id.getType().getText());
+            if (tags != null && !tags.isEmpty()) {
+                generator.writeObjectFieldStart("tags");
+                for (Map.Entry<String, String> tag : tags.entrySet()) {
+                    generator.writeStringField(tag.getKey(), tag.getValue());
+                }
+                generator.writeEndObject();
+            }
+            if (dataRetention != null) {
+                generator.writeNumberField("dataRetention", dataRetention);
+            }
+            generator.writeArrayFieldStart("data");
+            for (DataPoint<T> dataPoint : dataPoints) {
+                generator.writeStartObject();
+                generator.writeNumberField("timestamp", dataPoint.getTimestamp());
+                Object value = dataPoint.getValue();
+                if (value instanceof Double) {
+                    generator.writeNumberField("value", (Double) value);
+                } else if (value instanceof Long) {
+                    generator.writeNumberField("value", (Long) value);
+                } else {
+                    generator.writeStringField("value", ((AvailabilityType) value).getText());
+                }
+                generator.writeEndObject();
+            }
+            generator.writeEndArray();
+        });
+    }
+
+    private interface Fields {
+        void write(JsonGenerator generator) throws IOException;
+    }
+
+    private static String json(Fields fields) {
+        StringWriter writer = new StringWriter();
+        try (JsonGenerator generator = JSON_FACTORY.createGenerator(writer)) {
+            generator.writeStartObject();
+            fields.write(generator);
+            generator.writeEndObject();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return writer.toString();
+    }
+
+    /**
+     * What an export wrote.
+     */
+    public static class Summary {
+        private final AtomicLong metrics = new AtomicLong();
+        private final AtomicLong dataPoints = new AtomicLong();
+
+        public long getMetrics() {
+            return metrics.get();
+        }
+
+        public long getDataPoints() {
+            return dataPoints.get();
+        }
+    }
+}
@@ -0,0 +1,40 @@
+/*
+ * Copyright 2014-2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.metrics.core.service.ingest;
+
+/**
+ * When appended records are flushed to disk.
+ */
+public enum FsyncPolicy {
+    /**
+     * Every append is flushed before it is acknowledged. A crash of the host loses nothing, but each write pays for a
+     * disk flush.
+     */
+    ALWAYS,
+    /**
+     * Appends are flushed periodically. A crash of the host can lose the records appended since the last flush.
+     */
+    INTERVAL,
+    /**
+     * Flushing is left to the operating system. Only a crash of the process is survived.
+     */
+    NEVER;
+
+    public static FsyncPolicy fromString(String s) {
+        return valueOf(s.toUpperCase());
+    }
+}
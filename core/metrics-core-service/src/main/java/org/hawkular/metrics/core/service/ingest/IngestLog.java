@@ -0,0 +1,284 @@
+/*
+ * Copyright 2014-2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.metrics.core.service.ingest;
+
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.hawkular.metrics.core.service.log.CoreLogger;
+import org.hawkular.metrics.core.service.log.CoreLogging;
+import org.hawkular.metrics.model.Metric;
+
+/**
+ * Durable, append-only log of the data points accepted by this node and not yet stored in Cassandra.
+ * <p>
+ * The log is made of memory-mapped segment files. Each append writes one record to the current segment, rotating to a
+ * new segment when it is full. Records are addressed by offset, a position which keeps growing across segments. The
+ * offset up to which records have been stored in Cassandra is saved in a checkpoint file; segments which lie entirely
+ * before it are deleted. On startup the segments are scanned to recover from an interrupted append.
+ * <p>
+ * Appends may come from several threads. Reads and commits are expected from a single consumer, see
+ * {@link IngestLogReplayer}.
+ */
+public final class IngestLog implements Closeable {
+    private static final CoreLogger log = CoreLogging.getCoreLogger(IngestLog.class);
+
+    private static final String CHECKPOINT = "checkpoint";
+
+    /**
+     * A record read from the log.
+     */
+    public static final class Record {
+        private final long offset;
+        private final long nextOffset;
+        private final long appendTime;
+        private final byte[] payload;
+
+        Record(long offset, long nextOffset, long appendTime, byte[] payload) {
+            this.offset = offset;
+            this.nextOffset = nextOffset;
+            this.appendTime = appendTime;
+            this.payload = payload;
+        }
+
+        public long getOffset() {
+            return offset;
+        }
+
+        /**
+         * @return the offset of the record which follows this one
+         */
+        public long getNextOffset() {
+            return nextOffset;
+        }
+
+        /**
+         * @return the time, in milliseconds, at which the record was appended
+         */
+        public long getAppendTime() {
+            return appendTime;
+        }
+
+        public List<Metric<?>> getMetrics() throws IOException {
+            return IngestLogCodec.decode(payload);
+        }
+    }
+
+    private final Path directory;
+    private final int segmentSize;
+    private final long maxSize;
+    private final FsyncPolicy fsyncPolicy;
+    private final List<IngestLogSegment> segments = new CopyOnWriteArrayList<>();
+    private final AtomicLong pendingRecords = new AtomicLong();
+    private final ScheduledExecutorService flusher;
+    private volatile long committedOffset;
+
+    /**
+     * Opens the log stored in {@code directory}, creating it if needed.
+     *
+     * @param directory where segment files are stored
+     * @param segmentSize the size, in bytes, of a segment file
+     * @param maxSize the maximum number of bytes waiting to be stored in Cassandra; appends are refused beyond it
+     * @param fsyncPolicy when appended records are flushed to disk
+     * @param fsyncInterval how often, in milliseconds, records are flushed with {@link FsyncPolicy#INTERVAL}
+     */
+    public IngestLog(Path directory, int segmentSize, long maxSize, FsyncPolicy fsyncPolicy, long fsyncInterval)
+            throws IOException {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.maxSize = maxSize;
+        this.fsyncPolicy = fsyncPolicy;
+
+        Files.createDirectories(directory);
+        committedOffset = readCheckpoint();
+        List<Path> paths = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, IngestLogSegment::isSegment)) {
+            stream.forEach(paths::add);
+        }
+        Collections.sort(paths);
+        for (Path path : paths) {
+            IngestLogSegment segment = IngestLogSegment.open(path, segmentSize);
+            if (segment.isTruncated()) {
+                log.warnIngestLogSegmentTruncated(path.toString(), segment.getEndOffset());
+            }
+            segments.add(segment);
+        }
+        deleteCommittedSegments();
+        if (segments.isEmpty()) {
+            segments.add(IngestLogSegment.create(directory, committedOffset, segmentSize));
+        } else if (committedOffset < segments.get(0).getBaseOffset()) {
+            // The checkpoint is missing or stale, all the records left have to be replayed
+            committedOffset = segments.get(0).getBaseOffset();
+        }
+        for (IngestLogSegment segment : segments) {
+            long start = Math.max(committedOffset, segment.getBaseOffset());
+            pendingRecords.addAndGet(segment.countRecordsFrom((int) (start - segment.getBaseOffset())));
+        }
+        log.infoIngestLogOpened(directory.toString(), pendingRecords.get());
+
+        if (fsyncPolicy == FsyncPolicy.INTERVAL) {
+            flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "IngestLogFlusher");
+                thread.setDaemon(true);
+                return thread;
+            });
+            flusher.scheduleWithFixedDelay(this::flush, fsyncInterval, fsyncInterval, TimeUnit.MILLISECONDS);
+        } else {
+            flusher = null;
+        }
+    }
+
+    /**
+     * Appends a record holding {@code metrics}.
+     *
+     * @return false if the record was not appended because the log is full, or the record bigger than a segment
+     */
+    public synchronized boolean append(List<? extends Metric<?>> metrics) throws IOException {
+        byte[] payload = IngestLogCodec.encode(metrics);
+        if (payload.length + IngestLogSegment.HEADER_SIZE > segmentSize
+                || getPendingBytes() + payload.length + IngestLogSegment.HEADER_SIZE > maxSize) {
+            return false;
+        }
+        IngestLogSegment current = segments.get(segments.size() - 1);
+        long now = System.currentTimeMillis();
+        if (!current.append(payload, now)) {
+            current.force();
+            current = IngestLogSegment.create(directory, current.getEndOffset(), segmentSize);
+            segments.add(current);
+            current.append(payload, now);
+        }
+        if (fsyncPolicy == FsyncPolicy.ALWAYS) {
+            current.force();
+        }
+        pendingRecords.incrementAndGet();
+        return true;
+    }
+
+    /**
+     * Reads the records which follow {@code offset}.
+     *
+     * @param offset the offset of the first record to read, usually {@link #getCommittedOffset()} or the
+     *               {@link Record#getNextOffset() next offset} of the last record read
+     * @param maxRecords the maximum number of records to return
+     */
+    public List<Record> read(long offset, int maxRecords) {
+        List<Record> records = new ArrayList<>();
+        for (IngestLogSegment segment : segments) {
+            if (offset >= segment.getEndOffset()) {
+                continue;
+            }
+            // Segments are not contiguous when the end of one of them was erased during recovery
+            offset = Math.max(offset, segment.getBaseOffset());
+            while (records.size() < maxRecords) {
+                Record record = segment.read((int) (offset - segment.getBaseOffset()));
+                if (record == null) {
+                    break;
+                }
+                records.add(record);
+                offset = record.getNextOffset();
+            }
+            if (records.size() == maxRecords) {
+                break;
+            }
+        }
+        return records;
+    }
+
+    /**
+     * Records that every record before {@code offset} has been stored, and deletes the segments which are no longer
+     * needed.
+     *
+     * @param offset the {@link Record#getNextOffset() next offset} of the last record stored
+     * @param records the number of records stored since the last commit
+     */
+    public void commit(long offset, int records) throws IOException {
+        Path tmp = directory.resolve(CHECKPOINT + ".tmp");
+        Files.write(tmp, Long.toString(offset).getBytes(StandardCharsets.UTF_8));
+        Files.move(tmp, directory.resolve(CHECKPOINT), ATOMIC_MOVE, REPLACE_EXISTING);
+        committedOffset = offset;
+        pendingRecords.addAndGet(-records);
+        deleteCommittedSegments();
+    }
+
+    private long readCheckpoint() throws IOException {
+        Path checkpoint = directory.resolve(CHECKPOINT);
+        if (!Files.exists(checkpoint)) {
+            return 0;
+        }
+        return Long.parseLong(new String(Files.readAllBytes(checkpoint), StandardCharsets.UTF_8).trim());
+    }
+
+    private void deleteCommittedSegments() throws IOException {
+        // The last segment is kept even when fully committed since it is the one appended to
+        while (segments.size() > 1 && segments.get(1).getBaseOffset() <= committedOffset) {
+            IngestLogSegment segment = segments.remove(0);
+            segment.delete();
+        }
+    }
+
+    public long getCommittedOffset() {
+        return committedOffset;
+    }
+
+    /**
+     * @return the number of bytes appended and not yet committed
+     */
+    public long getPendingBytes() {
+        return segments.get(segments.size() - 1).getEndOffset() - committedOffset;
+    }
+
+    /**
+     * @return the number of records appended and not yet committed
+     */
+    public long getPendingRecords() {
+        return pendingRecords.get();
+    }
+
+    public int getSegmentCount() {
+        return segments.size();
+    }
+
+    public void flush() {
+        segments.get(segments.size() - 1).force();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (flusher != null) {
+            flusher.shutdown();
+        }
+        for (IngestLogSegment segment : segments) {
+            segment.force();
+            segment.close();
+        }
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright 2014-2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.metrics.core.service.ingest;
+
+import static org.hawkular.metrics.model.MetricType.AVAILABILITY;
+import static org.hawkular.metrics.model.MetricType.COUNTER;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.hawkular.metrics.model.AvailabilityType;
+import org.hawkular.metrics.model.DataPoint;
+import org.hawkular.metrics.model.Metric;
+import org.hawkular.metrics.model.MetricId;
+import org.hawkular.metrics.model.MetricType;
+
+/**
+ * Binary encoding of the metrics stored in an ingest log record. Tags and data retention are not part of the encoding
+ * since {@link org.hawkular.metrics.core.service.MetricsService#addDataPoints(MetricType, rx.Observable)} ignores them.
+ */
+final class IngestLogCodec {
+
+    static byte[] encode(List<? extends Metric<?>> metrics) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(metrics.size());
+        for (Metric<?> metric : metrics) {
+            MetricType<?> type = metric.getMetricId().getType();
+            out.writeByte(type.getCode());
+            out.writeUTF(metric.getMetricId().getTenantId());
+            out.writeUTF(metric.getMetricId().getName());
+            out.writeInt(metric.getDataPoints().size());
+            for (DataPoint<?> dataPoint : metric.getDataPoints()) {
+                out.writeLong(dataPoint.getTimestamp());
+                if (type == AVAILABILITY) {
+                    out.writeByte(((AvailabilityType) dataPoint.getValue()).getCode());
+                } else if (type == COUNTER) {
+                    out.writeLong((Long) dataPoint.getValue());
+                } else {
+                    out.writeDouble((Double) dataPoint.getValue());
+                }
+            }
+        }
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    static List<Metric<?>> decode(byte[] payload) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+        int count = in.readInt();
+        List<Metric<?>> metrics = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            MetricType<?> type = MetricType.fromCode(in.readByte());
+            MetricId<?> id = new MetricId(in.readUTF(), type, in.readUTF());
+            int size = in.readInt();
+            List<DataPoint<?>> dataPoints = new ArrayList<>(size);
+            for (int j = 0; j < size; j++) {
+                long timestamp = in.readLong();
+                Object value;
+                if (type == AVAILABILITY) {
+                    value = AvailabilityType.fromBytes(ByteBuffer.wrap(new byte[]{in.readByte()}));
+                } else if (type == COUNTER) {
+                    value = in.readLong();
+                } else {
+                    value = in.readDouble();
+                }
+                dataPoints.add(new DataPoint(timestamp, value));
+            }
+            metrics.add(new Metric(id, dataPoints));
+        }
+        return metrics;
+    }
+
+    private IngestLogCodec() {
+    }
+}
@@ -0,0 +1,218 @@
+/*
+ * Copyright 2014-2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.metrics.core.service.ingest;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.hawkular.metrics.core.service.log.CoreLogger;
+import org.hawkular.metrics.core.service.log.CoreLogging;
+import org.hawkular.metrics.model.Metric;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.datastax.driver.core.exceptions.InvalidQueryException;
+import com.google.common.util.concurrent.RateLimiter;
+
+import rx.Observable;
+import rx.functions.Func1;
+
+/**
+ * Drains an {@link IngestLog} into Cassandra from a background thread.
+ * <p>
+ * Records are stored in order, at a rate which can be limited to leave room for the regular traffic while Cassandra
+ * catches up. A record is committed only once its data points are stored; when storing fails, the replayer backs off
+ * and retries the same record. Records can therefore be stored more than once after a crash, which is harmless since
+ * writing a data point again for the same timestamp overwrites it.
+ * <p>
+ * The data points of the log were already acknowledged to clients, so a record is only given up when storing it
+ * cannot succeed: when it cannot be decoded, or when Cassandra rejects it as invalid. Both are logged and counted.
+ * Any other failure, such as a timeout or no host being available, is retried with a backoff capped at
+ * {@link #MAX_BACKOFF} milliseconds for as long as it takes.
+ * <p>
+ * The following metrics are registered:
+ * <ul>
+ *     <li>ingest-log-pending-bytes and ingest-log-pending-records: what is waiting to be stored</li>
+ *     <li>ingest-log-lag: how long, in milliseconds, the last stored record waited in the log</li>
+ *     <li>ingest-log-segments: the number of segment files</li>
+ *     <li>ingest-log-replayed-points: meter of the data points stored by the replayer</li>
+ *     <li>ingest-log-replay-failures: how many times storing a record failed</li>
+ *     <li>ingest-log-skipped-records: how many records were skipped, because they were corrupted or kept failing</li>
+ * </ul>
+ */
+public final class IngestLogReplayer {
+    private static final CoreLogger log = CoreLogging.getCoreLogger(IngestLogReplayer.class);
+
+    private static final int BATCH_SIZE = 100;
+    private static final long POLL_DELAY = 100;
+    static final long MAX_BACKOFF = 30_000;
+
+    private final IngestLog ingestLog;
+    private final Func1<List<Metric<?>>, Observable<Void>> writer;
+    private final RateLimiter rateLimiter;
+    private final ScheduledExecutorService executor;
+    private final Meter replayedPoints;
+    private final Counter failures;
+    private final Counter skippedRecords;
+    private final long maxBackoff;
+    private volatile long lag;
+    private long backoff;
+
+    /**
+     * @param ingestLog the log to drain
+     * @param writer stores data points in Cassandra
+     * @param maxPointsPerSecond the maximum number of data points stored per second, or zero for no limit
+     * @param metricRegistry where replay metrics are registered
+     */
+    public IngestLogReplayer(IngestLog ingestLog, Func1<List<Metric<?>>, Observable<Void>> writer,
+            double maxPointsPerSecond, MetricRegistry metricRegistry) {
+        this(ingestLog, writer, maxPointsPerSecond, MAX_BACKOFF, metricRegistry);
+    }
+
+    IngestLogReplayer(IngestLog ingestLog, Func1<List<Metric<?>>, Observable<Void>> writer,
+            double maxPointsPerSecond, long maxBackoff, MetricRegistry metricRegistry) {
+        this.ingestLog = ingestLog;
+        this.writer = writer;
+        this.maxBackoff = maxBackoff;
+        this.rateLimiter = maxPointsPerSecond > 0 ? RateLimiter.create(maxPointsPerSecond) : null;
+        ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1,
+                r -> new Thread(r, "IngestLogReplayer"));
+        executor.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+        this.executor = executor;
+
+        register(metricRegistry, "ingest-log-pending-bytes", ingestLog::getPendingBytes);
+        register(metricRegistry, "ingest-log-pending-records", ingestLog::getPendingRecords);
+        register(metricRegistry, "ingest-log-lag", () -> lag);
+        register(metricRegistry, "ingest-log-segments", () -> (long) ingestLog.getSegmentCount());
+        replayedPoints = metricRegistry.meter("ingest-log-replayed-points");
+        failures = metricRegistry.counter("ingest-log-replay-failures");
+        skippedRecords = metricRegistry.counter("ingest-log-skipped-records");
+    }
+
+    private static void register(MetricRegistry metricRegistry, String name, Gauge<Long> gauge) {
+        metricRegistry.remove(name);
+        metricRegistry.register(name, gauge);
+    }
+
+    public void start() {
+        executor.schedule(this::replay, 0, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stops replaying once the record being stored, if any, is done. Records left in the log are replayed on the next
+     * start.
+     */
+    public void stop() {
+        executor.shutdown();
+        try {
+            executor.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void replay() {
+        long delay = POLL_DELAY;
+        try {
+            if (replayBatch()) {
+                delay = 0;
+            }
+            backoff = 0;
+        } catch (Exception e) {
+            failures.inc();
+            backoff = backoff == 0 ? Math.min(POLL_DELAY, maxBackoff) : Math.min(backoff * 2, maxBackoff);
+            delay = backoff;
+            log.warnIngestLogReplayFailed(backoff, e);
+        }
+        try {
+            executor.schedule(this::replay, delay, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            // Stopped
+        }
+    }
+
+    /**
+     * @return true if a full batch was replayed, meaning that more records are probably waiting
+     */
+    private boolean replayBatch() throws IOException {
+        List<IngestLog.Record> records = ingestLog.read(ingestLog.getCommittedOffset(), BATCH_SIZE);
+        if (records.isEmpty()) {
+            lag = 0;
+            return false;
+        }
+        int stored = 0;
+        try {
+            for (IngestLog.Record record : records) {
+                if (executor.isShutdown()) {
+                    break;
+                }
+                List<Metric<?>> metrics;
+                try {
+                    metrics = record.getMetrics();
+                } catch (Exception e) {
+                    // The checksum matched, so retrying would not help either
+                    log.errorIngestLogRecordCorrupted(record.getOffset(), e);
+                    skippedRecords.inc();
+                    stored++;
+                    continue;
+                }
+                int points = metrics.stream().mapToInt(metric -> metric.getDataPoints().size()).sum();
+                if (rateLimiter != null && points > 0) {
+                    rateLimiter.acquire(points);
+                }
+                try {
+                    writer.call(metrics).toBlocking().lastOrDefault(null);
+                } catch (Exception e) {
+                    if (!isRejected(e)) {
+                        throw e;
+                    }
+                    failures.inc();
+                    log.errorIngestLogRecordDropped(record.getOffset(), points, e);
+                    skippedRecords.inc();
+                    stored++;
+                    continue;
+                }
+                replayedPoints.mark(points);
+                lag = System.currentTimeMillis() - record.getAppendTime();
+                stored++;
+            }
+        } finally {
+            if (stored > 0) {
+                ingestLog.commit(records.get(stored - 1).getNextOffset(), stored);
+            }
+        }
+        return records.size() == BATCH_SIZE;
+    }
+
+    /**
+     * @return true if storing failed because of the data itself, so that retrying would fail the same way
+     */
+    private static boolean isRejected(Throwable t) {
+        for (Throwable cause = t; cause != null; cause = cause.getCause()) {
+            if (cause instanceof InvalidQueryException || cause instanceof IllegalArgumentException) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,206 @@
+/*
+ * Copyright 2014-2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.metrics.core.service.ingest;
+
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.CRC32;
+
+/**
+ * A memory-mapped file of fixed size holding a sequence of records. Each record is made of a header, with the payload
+ * length, a CRC32 checksum and the append time, followed by the payload. A zero length marks the end of the records.
+ * <p>
+ * There is a single writer; reads are safe from another thread as they never go past the published write position.
+ */
+final class IngestLogSegment {
+
+    static final int HEADER_SIZE = 16;
+
+    private static final String SUFFIX = ".log";
+
+    private final Path path;
+    private final long baseOffset;
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private volatile int writePosition;
+    private boolean truncated;
+
+    private IngestLogSegment(Path path, long baseOffset, int size) throws IOException {
+        this.path = path;
+        this.baseOffset = baseOffset;
+        this.channel = FileChannel.open(path, CREATE, READ, WRITE);
+        this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+    }
+
+    /**
+     * Creates an empty segment whose first record will be at {@code baseOffset}.
+     */
+    static IngestLogSegment create(Path directory, long baseOffset, int size) throws IOException {
+        return new IngestLogSegment(directory.resolve(String.format("%020d%s", baseOffset, SUFFIX)), baseOffset, size);
+    }
+
+    /**
+     * Opens an existing segment and looks for the end of its records. A record which is incomplete or whose checksum
+     * does not match, as left by a crash in the middle of an append, ends the segment; it and whatever follows are
+     * erased.
+     *
+     * @return the segment, which reports through {@link #isTruncated()} if records were erased
+     */
+    static IngestLogSegment open(Path path, int size) throws IOException {
+        String name = path.getFileName().toString();
+        long baseOffset = Long.parseLong(name.substring(0, name.length() - SUFFIX.length()));
+        int fileSize = (int) Math.max(size, Files.size(path));
+        IngestLogSegment segment = new IngestLogSegment(path, baseOffset, fileSize);
+        segment.recover();
+        return segment;
+    }
+
+    static boolean isSegment(Path path) {
+        return path.getFileName().toString().matches("\\d{20}\\" + SUFFIX);
+    }
+
+    private void recover() {
+        int position = 0;
+        while (true) {
+            int length = lengthAt(position);
+            if (length <= 0 || !isValid(position, length)) {
+                break;
+            }
+            position += HEADER_SIZE + length;
+        }
+        writePosition = position;
+        for (int i = position; i < buffer.capacity() && !truncated; i++) {
+            truncated = buffer.get(i) != 0;
+        }
+        if (truncated) {
+            for (int i = position; i < buffer.capacity(); i++) {
+                buffer.put(i, (byte) 0);
+            }
+            buffer.force();
+        }
+    }
+
+    private int lengthAt(int position) {
+        if (position + HEADER_SIZE > buffer.capacity()) {
+            return 0;
+        }
+        return buffer.getInt(position);
+    }
+
+    private boolean isValid(int position, int length) {
+        if (position + HEADER_SIZE + length > buffer.capacity()) {
+            return false;
+        }
+        byte[] payload = new byte[length];
+        ByteBuffer view = buffer.duplicate();
+        view.position(position + HEADER_SIZE);
+        view.get(payload);
+        return buffer.getInt(position + 4) == checksum(buffer.getLong(position + 8), payload);
+    }
+
+    private static int checksum(long appendTime, byte[] payload) {
+        CRC32 crc = new CRC32();
+        crc.update(ByteBuffer.allocate(8).putLong(appendTime).array());
+        crc.update(payload);
+        return (int) crc.getValue();
+    }
+
+    /**
+     * @return false if there is not enough room left for the record
+     */
+    boolean append(byte[] payload, long appendTime) {
+        int position = writePosition;
+        if (position + HEADER_SIZE + payload.length > buffer.capacity()) {
+            return false;
+        }
+        ByteBuffer view = buffer.duplicate();
+        view.position(position + 4);
+        view.putInt(checksum(appendTime, payload));
+        view.putLong(appendTime);
+        view.put(payload);
+        // The length goes last so that a partially written record is never mistaken for a complete one
+        buffer.putInt(position, payload.length);
+        writePosition = position + HEADER_SIZE + payload.length;
+        return true;
+    }
+
+    /**
+     * @param position a position within this segment, as found from a previous record
+     * @return the record at {@code position}, or null if nothing has been written there yet
+     */
+    IngestLog.Record read(int position) {
+        if (position >= writePosition) {
+            return null;
+        }
+        int length = buffer.getInt(position);
+        byte[] payload = new byte[length];
+        ByteBuffer view = buffer.duplicate();
+        view.position(position + HEADER_SIZE);
+        view.get(payload);
+        return new IngestLog.Record(baseOffset + position, baseOffset + position + HEADER_SIZE + length,
+                buffer.getLong(position + 8), payload);
+    }
+
+    int countRecordsFrom(int position) {
+        int count = 0;
+        while (position < writePosition) {
+            position += HEADER_SIZE + buffer.getInt(position);
+            count++;
+        }
+        return count;
+    }
+
+    long getBaseOffset() {
+        return baseOffset;
+    }
+
+    /**
+     * @return the offset right after the last record
+     */
+    long getEndOffset() {
+        return baseOffset + writePosition;
+    }
+
+    boolean isTruncated() {
+        return truncated;
+    }
+
+    Path getPath() {
+        return path;
+    }
+
+    void force() {
+        buffer.force();
+    }
+
+    void close() throws IOException {
+        channel.close();
+    }
+
+    void delete() throws IOException {
+        close();
+        Files.deleteIfExists(path);
+    }
+}
@@ -16,6 +16,7 @@
  */
 package org.hawkular.metrics.core.service.log;
 
+import static org.jboss.logging.Logger.Level.ERROR;
 import static org.jboss.logging.Logger.Level.INFO;
 import static org.jboss.logging.Logger.Level.WARN;
 
@@ -59,4 +60,32 @@ public interface CoreLogger extends BasicLogger {
     @LogMessage(level = WARN)
     @Message(id = 100006, value = "There was an error persisting rates for {tenant= %s, start= %d, end= %d}")
     void warnFailedToPersistRates(String tenantId, Long start, Long end, @Cause Throwable t);
+
+    @LogMessage(level = WARN)
+    @Message(id = 100007, value = "Ingest log segment [%s] ends with an incomplete record, truncated at offset %d")
+    void warnIngestLogSegmentTruncated(String segment, long offset);
+
+    @LogMessage(level = INFO)
+    @Message(id = 100008, value = "Opened ingest log in [%s], %d records are waiting to be stored")
+    void infoIngestLogOpened(String directory, long pendingRecords);
+
+    @LogMessage(level = WARN)
+    @Message(id = 100009, value = "Failed to store ingest log records, will retry in %d ms")
+    void warnIngestLogReplayFailed(long delay, @Cause Throwable t);
+
+    @LogMessage(level = WARN)
+    @Message(id = 100010, value = "Failed to store the self-monitoring metrics")
+    void warnSelfMonitoringReportFailed(@Cause Throwable t);
+
+    @LogMessage(level = WARN)
+    @Message(id = 100011, value = "Inserted data events consumer [%s] failed, it will not receive events anymore")
+    void warnInsertedDataEventsConsumerFailed(String consumer, @Cause Throwable t);
+
+    @LogMessage(level = ERROR)
+    @Message(id = 100012, value = "Skipping corrupted ingest log record at offset %d")
+    void errorIngestLogRecordCorrupted(long offset, @Cause Throwable t);
+
+    @LogMessage(level = ERROR)
+    @Message(id = 100013, value = "Dropping ingest log record at offset %d holding %d data points, it was rejected")
+    void errorIngestLogRecordDropped(long offset, int dataPoints, @Cause Throwable t);
 }
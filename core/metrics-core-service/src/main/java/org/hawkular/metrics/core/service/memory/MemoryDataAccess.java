@@ -0,0 +1,732 @@
+/*
+ * Copyright 2014-2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.metrics.core.service.memory;
+
+import static java.util.Collections.emptyList;
+import static java.util.Collections.emptyMap;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.stream.Collectors.toMap;
+
+import static org.hawkular.metrics.core.service.TimeUUIDUtils.getTimeUUID;
+import static org.hawkular.metrics.model.MetricType.AVAILABILITY;
+import static org.hawkular.metrics.model.MetricType.COUNTER;
+import static org.hawkular.metrics.model.MetricType.COUNTER_RATE;
+import static org.hawkular.metrics.model.MetricType.GAUGE;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+import java.util.function.Predicate;
+
+import org.hawkular.metrics.core.service.DataAccess;
+import org.hawkular.metrics.core.service.DataAccessImpl;
+import org.hawkular.metrics.core.service.Order;
+import org.hawkular.metrics.model.AvailabilityType;
+import org.hawkular.metrics.model.DataPoint;
+import org.hawkular.metrics.model.Interval;
+import org.hawkular.metrics.model.Metric;
+import org.hawkular.metrics.model.MetricId;
+import org.hawkular.metrics.model.MetricType;
+import org.hawkular.metrics.model.Tenant;
+
+import com.datastax.driver.core.ResultSet;
+import com.datastax.driver.core.ResultSetFuture;
+import com.datastax.driver.core.Row;
+
+import rx.Observable;
+import rx.functions.Func0;
+
+/**
+ * A {@link DataAccess} which keeps everything in memory, for single-node deployments which can afford to lose their
+ * data on restart and for benchmarks which should not measure Cassandra.
+ * <p>
+ * Each table is mirrored by concurrent maps. The data points of a metric are kept in a skip list sorted by timestamp,
+ * so a range query walks a sub map view in either order. Results are {@link ResultSet}s whose rows hold the columns
+ * selected by the queries of {@link DataAccessImpl}, in the same order, so that they are read by the rest of the core
+ * unchanged. Conditional inserts report whether they were applied and the latest data of a metric is only replaced by
+ * a more recent data point, as with Cassandra.
+ * <p>
+ * TTLs are honored: expired cells are skipped by reads and purged in the background. Every statement completes on the
+ * calling thread; writes happen when the method is called or, for the methods which batch statements in
+ * {@link DataAccessImpl}, on subscription.
+ */
+public class MemoryDataAccess implements DataAccess {
+
+    private static final long PURGE_INTERVAL = 60_000;
+
+    private static final String[] TENANT_ID_COLUMNS = {"id"};
+    private static final String[] TENANT_COLUMNS = {"id", "retentions", "quotas"};
+    private static final String[] TENANT_QUOTAS_COLUMNS = {"id", "quotas"};
+    private static final String[] METRICS_IDX_TENANT_COLUMNS = {"tenant_id", "type"};
+    private static final String[] METRIC_COLUMNS = {"metric", "tags", "data_retention"};
+    private static final String[] TAGS_COLUMNS = {"tags"};
+    private static final String[] GAUGE_COLUMNS = {"time", "data_retention", "n_value"};
+    private static final String[] GAUGE_WRITE_TIME_COLUMNS = {"time", "data_retention", "n_value",
+            "writetime(n_value)"};
+    private static final String[] GAUGE_PARTITION_COLUMNS = {"tenant_id", "metric", "dpart", "time", "data_retention",
+            "n_value"};
+    private static final String[] COUNTER_COLUMNS = {"time", "data_retention", "l_value"};
+    private static final String[] AVAILABILITY_COLUMNS = {"time", "data_retention", "availability"};
+    private static final String[] AVAILABILITY_WRITE_TIME_COLUMNS = {"time", "data_retention", "availability",
+            "writetime(availability)"};
+    private static final String[] RETENTION_COLUMNS = {"tenant_id", "type", "metric", "retention"};
+    private static final String[] TAG_NAME_COLUMNS = {"type", "metric", "tvalue"};
+    private static final String[] TAG_VALUE_COLUMNS = {"tenant_id", "type", "metric"};
+    private static final String[] LATEST_DATA_COLUMNS = {"metric", "time", "n_value", "availability", "l_value"};
+    private static final String[] AVAILABILITY_RUN_COLUMNS = {"start_time", "end_time", "availability"};
+
+    private static final class TenantEntry {
+        static final TenantEntry EMPTY = new TenantEntry(null, null);
+
+        final Map<String, Integer> retentions;
+        final Map<String, Double> quotas;
+
+        TenantEntry(Map<String, Integer> retentions, Map<String, Double> quotas) {
+            this.retentions = copy(retentions);
+            this.quotas = copy(quotas);
+        }
+    }
+
+    private static final class IndexEntry {
+        static final IndexEntry EMPTY = new IndexEntry(null, null);
+
+        final Map<String, String> tags;
+        final Integer dataRetention;
+
+        IndexEntry(Map<String, String> tags, Integer dataRetention) {
+            this.tags = copy(tags);
+            this.dataRetention = dataRetention;
+        }
+    }
+
+    private static final class Cell {
+        final Object value;
+        final long writeTime;
+        final long expiresAt;
+
+        /**
+         * @param writeTime in microseconds, as returned by {@code WRITETIME}
+         * @param expiresAt in milliseconds
+         */
+        Cell(Object value, long writeTime, long expiresAt) {
+            this.value = value;
+            this.writeTime = writeTime;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    /**
+     * The partition of a metric in the data table.
+     */
+    private static final class Series {
+        final ConcurrentSkipListMap<Long, Cell> cells = new ConcurrentSkipListMap<>();
+        volatile Integer dataRetention;
+    }
+
+    private static final class LatestData {
+        final long timestamp;
+        final Object value;
+        final long expiresAt;
+
+        LatestData(long timestamp, Object value, long expiresAt) {
+            this.timestamp = timestamp;
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    private static final class Run {
+        final long end;
+        final ByteBuffer availability;
+        final long expiresAt;
+
+        Run(long end, ByteBuffer availability, long expiresAt) {
+            this.end = end;
+            this.availability = availability;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    private final LongSupplier clock;
+    private final ScheduledExecutorService purger;
+
+    private final ConcurrentMap<String, TenantEntry> tenants = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, ConcurrentMap<MetricId<?>, IndexEntry>> metricsIndex =
+            new ConcurrentHashMap<>();
+    private final ConcurrentMap<MetricId<?>, Series> data = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, ConcurrentMap<MetricId<?>, Integer>> retentionsIndex =
+            new ConcurrentHashMap<>();
+    /**
+     * tenant id -> tag name -> tag value -> metrics
+     */
+    private final ConcurrentMap<String, ConcurrentMap<String, ConcurrentMap<String, Set<MetricId<?>>>>> tagsIndex =
+            new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, ConcurrentMap<MetricId<?>, LatestData>> latestData =
+            new ConcurrentHashMap<>();
+    private final ConcurrentMap<MetricId<?>, ConcurrentSkipListMap<Long, Run>> availabilityRuns =
+            new ConcurrentHashMap<>();
+
+    public MemoryDataAccess() {
+        this(System::currentTimeMillis, PURGE_INTERVAL);
+    }
+
+    /**
+     * @param clock the current time, in milliseconds, against which TTLs are evaluated
+     * @param purgeInterval how often, in milliseconds, expired cells are purged, or zero to only skip them on reads
+     */
+    MemoryDataAccess(LongSupplier clock, long purgeInterval) {
+        this.clock = clock;
+        if (purgeInterval > 0) {
+            purger = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "MemoryDataAccessPurger");
+                thread.setDaemon(true);
+                return thread;
+            });
+            purger.scheduleWithFixedDelay(this::purgeExpired, purgeInterval, purgeInterval, MILLISECONDS);
+        } else {
+            purger = null;
+        }
+    }
+
+    /**
+     * Stops purging expired cells. The data is kept until this instance is garbage collected.
+     */
+    public void shutdown() {
+        if (purger != null) {
+            purger.shutdown();
+        }
+    }
+
+    void purgeExpired() {
+        long now = clock.getAsLong();
+        Predicate<Cell> expiredCell = cell -> cell.expiresAt <= now;
+        data.values().forEach(series -> purge(series.cells, expiredCell));
+        latestData.values().forEach(metrics -> purge(metrics, latest -> latest.expiresAt <= now));
+        availabilityRuns.values().forEach(runs -> purge(runs, run -> run.expiresAt <= now));
+    }
+
+    private static <K, V> void purge(ConcurrentMap<K, V> map, Predicate<V> expired) {
+        // A cell which has been overwritten in the meantime is left alone
+        map.forEach((key, value) -> {
+            if (expired.test(value)) {
+                map.remove(key, value);
+            }
+        });
+    }
+
+    private static <K, V> Map<K, V> copy(Map<K, V> map) {
+        return map == null || map.isEmpty() ? null : Collections.unmodifiableMap(new HashMap<>(map));
+    }
+
+    private static long expiresAt(long now, int ttl) {
+        return ttl > 0 ? now + ttl * 1000L : Long.MAX_VALUE;
+    }
+
+    private static <V> ConcurrentMap<MetricId<?>, V> forTenant(
+            ConcurrentMap<String, ConcurrentMap<MetricId<?>, V>> map, String tenantId) {
+        return map.computeIfAbsent(tenantId, id -> new ConcurrentHashMap<>());
+    }
+
+    private static <V> Map<MetricId<?>, V> readTenant(ConcurrentMap<String, ConcurrentMap<MetricId<?>, V>> map,
+            String tenantId) {
+        Map<MetricId<?>, V> metrics = map.get(tenantId);
+        return metrics == null ? emptyMap() : metrics;
+    }
+
+    private static Observable<ResultSet> done() {
+        return Observable.just(MemoryResultSet.empty());
+    }
+
+    private static Observable<ResultSet> done(boolean applied) {
+        return Observable.just(new MemoryResultSet(emptyList(), applied));
+    }
+
+    /**
+     * Reads on subscription, so that every subscriber gets its own, up to date, rows.
+     */
+    private static Observable<ResultSet> read(Func0<List<Row>> rows) {
+        return Observable.defer(() -> Observable.just(new MemoryResultSet(rows.call())));
+    }
+
+    private static List<Row> one(String[] columns, Object... values) {
+        return Collections.singletonList(new MemoryRow(columns, values));
+    }
+
+    @Override
+    public Observable<ResultSet> insertTenant(String tenantId) {
+        tenants.putIfAbsent(tenantId, TenantEntry.EMPTY);
+        return done();
+    }
+
+    @Override
+    public Observable<ResultSet> insertTenant(Tenant tenant) {
+        Map<String, Integer> retentions = tenant.getRetentionSettings().entrySet().stream()
+                .collect(toMap(entry -> entry.getKey().getText(), Map.Entry::getValue));
+        boolean applied = tenants.putIfAbsent(tenant.getId(), new TenantEntry(retentions, tenant.getQuotas())) == null;
+        return done(applied);
+    }
+
+    @Override
+    public Observable<ResultSet> findAllTenantIds() {
+        Observable<ResultSet> tenantIds = read(() -> {
+            List<Row> rows = new ArrayList<>();
+            tenants.keySet().forEach(id -> rows.add(new MemoryRow(TENANT_ID_COLUMNS, id)));
+            return rows;
+        });
+        Observable<ResultSet> metricsIndexTenantIds = read(() -> {
+            List<Row> rows = new ArrayList<>();
+            metricsIndex.forEach((tenantId, metrics) -> {
+                Set<MetricType<?>> types = new HashSet<>();
+                metrics.keySet().forEach(id -> types.add(id.getType()));
+                types.forEach(type -> rows.add(new MemoryRow(METRICS_IDX_TENANT_COLUMNS, tenantId, type.getCode())));
+            });
+            return rows;
+        });
+        return tenantIds.concatWith(metricsIndexTenantIds);
+    }
+
+    @Override
+    public Observable<ResultSet> findTenant(String id) {
+        return read(() -> {
+            TenantEntry tenant = tenants.get(id);
+            if (tenant == null) {
+                return emptyList();
+            }
+            return one(TENANT_COLUMNS, id, tenant.retentions, tenant.quotas);
+        });
+    }
+
+    @Override
+    public Observable<ResultSet> findTenantQuotas() {
+        return read(() -> {
+            List<Row> rows = new ArrayList<>();
+            tenants.forEach((id, tenant) -> rows.add(new MemoryRow(TENANT_QUOTAS_COLUMNS, id, tenant.quotas)));
+            return rows;
+        });
+    }
+
+    @Override
+    public Observable<ResultSet> updateTenantQuotas(String tenantId, Map<String, Double> quotas) {
+        tenants.compute(tenantId, (id, tenant) -> new TenantEntry(tenant == null ? null : tenant.retentions, quotas));
+        return done();
+    }
+
+    @Override
+    public <T> ResultSetFuture insertMetricInMetricsIndex(Metric<T> metric) {
+        MetricId<T> id = metric.getMetricId();
+        IndexEntry entry = new IndexEntry(metric.getTags(), metric.getDataRetention());
+        boolean applied = forTenant(metricsIndex, id.getTenantId()).putIfAbsent(id, entry) == null;
+        return new MemoryResultSetFuture(new MemoryResultSet(emptyList(), applied));
+    }
+
+    @Override
+    public <T> Observable<ResultSet> findMetric(MetricId<T> id) {
+        return read(() -> {
+            IndexEntry entry = readTenant(metricsIndex, id.getTenantId()).get(id);
+            if (entry == null) {
+                return emptyList();
+            }
+            return one(METRIC_COLUMNS, id.getName(), entry.tags, entry.dataRetention);
+        });
+    }
+
+    @Override
+    public <T> Observable<ResultSet> addDataRetention(Metric<T> metric) {
+        series(metric.getMetricId()).dataRetention = metric.getDataRetention();
+        return done();
+    }
+
+    @Override
+    public <T> Observable<ResultSet> getMetricTags(MetricId<T> id) {
+        return read(() -> {
+            IndexEntry entry = readTenant(metricsIndex, id.getTenantId()).get(id);
+            return entry == null ? emptyList() : one(TAGS_COLUMNS, entry.tags);
+        });
+    }
+
+    @Override
+    public <T> Observable<ResultSet> addTags(Metric<T> metric, Map<String, String> tags) {
+        MetricId<T> id = metric.getMetricId();
+        forTenant(metricsIndex, id.getTenantId()).compute(id, (key, entry) -> {
+            if (entry == null) {
+                return new IndexEntry(tags, null);
+            }
+            Map<String, String> updated = new HashMap<>();
+            if (entry.tags != null) {
+                updated.putAll(entry.tags);
+            }
+            updated.putAll(tags);
+            return new IndexEntry(updated, entry.dataRetention);
+        });
+        return done();
+    }
+
+    @Override
+    public <T> Observable<ResultSet> deleteTags(Metric<T> metric, Set<String> tags) {
+        MetricId<T> id = metric.getMetricId();
+        forTenant(metricsIndex, id.getTenantId()).computeIfPresent(id, (key, entry) -> {
+            if (entry.tags == null) {
+                return entry;
+            }
+            Map<String, String> updated = new HashMap<>(entry.tags);
+            updated.keySet().removeAll(tags);
+            return new IndexEntry(updated, entry.dataRetention);
+        });
+        return done();
+    }
+
+    @Override
+    public <T> Observable<Integer> updateMetricsIndex(Observable<Metric<T>> metrics) {
+        return metrics.map(Metric::getMetricId)
+                .doOnNext(id -> forTenant(metricsIndex, id.getTenantId()).putIfAbsent(id, IndexEntry.EMPTY))
+                .count()
+                .filter(count -> count > 0);
+    }
+
+    @Override
+    public <T> Observable<ResultSet> findMetricsInMetricsIndex(String tenantId, MetricType<T> type) {
+        return read(() -> {
+            List<Row> rows = new ArrayList<>();
+            readTenant(metricsIndex, tenantId).forEach((id, entry) -> {
+                if (id.getType() == type) {
+                    rows.add(new MemoryRow(METRIC_COLUMNS, id.getName(), entry.tags, entry.dataRetention));
+                }
+            });
+            return rows;
+        });
+    }
+
+    private Series series(MetricId<?> id) {
+        return data.computeIfAbsent(id, key -> new Series());
+    }
+
+    private <T> Observable<Integer> insertData(Metric<T> metric, int ttl, Function<DataPoint<T>, Object> value) {
+        return Observable.defer(() -> {
+            List<DataPoint<T>> dataPoints = metric.getDataPoints();
+            if (dataPoints.isEmpty()) {
+                return Observable.empty();
+            }
+            Series series = series(metric.getMetricId());
+            long now = clock.getAsLong();
+            long writeTime = MILLISECONDS.toMicros(now);
+            long expiresAt = expiresAt(now, ttl);
+            for (DataPoint<T> dataPoint : dataPoints) {
+                series.cells.put(dataPoint.getTimestamp(), new Cell(value.apply(dataPoint), writeTime, expiresAt));
+            }
+            return Observable.just(dataPoints.size());
+        });
+    }
+
+    @Override
+    public Observable<Integer> insertGaugeData(Metric<Double> metric, int ttl) {
+        return insertData(metric, ttl, DataPoint::getValue);
+    }
+
+    @Override
+    public Observable<Integer> insertCounterData(Metric<Long> counter, int ttl) {
+        return insertData(counter, ttl, DataPoint::getValue);
+    }
+
+    @Override
+    public Observable<Integer> insertAvailabilityData(Metric<AvailabilityType> metric, int ttl) {
+        return insertData(metric, ttl, dataPoint -> getBytes(dataPoint.getValue()));
+    }
+
+    private static ByteBuffer getBytes(AvailabilityType availability) {
+        return ByteBuffer.wrap(new byte[]{availability.getCode()});
+    }
+
+    /**
+     * Reads the data points of a metric in [start, end), with the columns of {@code columns}, the last one being the
+     * write time when there are four of them.
+     */
+    private Observable<ResultSet> findData(MetricId<?> id, long start, long end, int limit, Order order,
+            String[] columns) {
+        return read(() -> {
+            Series series = data.get(id);
+            if (series == null || start >= end) {
+                return emptyList();
+            }
+            NavigableMap<Long, Cell> range = series.cells.subMap(start, true, end, false);
+            if (order != Order.ASC) {
+                range = range.descendingMap();
+            }
+            long now = clock.getAsLong();
+            List<Row> rows = new ArrayList<>();
+            for (Map.Entry<Long, Cell> entry : range.entrySet()) {
+                if (limit > 0 && rows.size() == limit) {
+                    break;
+                }
+                Cell cell = entry.getValue();
+                if (cell.expiresAt > now) {
+                    rows.add(dataRow(columns, series, entry.getKey(), cell));
+                }
+            }
+            return rows;
+        });
+    }
+
+    private static Row dataRow(String[] columns, Series series, long timestamp, Cell cell) {
+        if (columns.length == 4) {
+            return new MemoryRow(columns, getTimeUUID(timestamp), series.dataRetention, cell.value, cell.writeTime);
+        }
+        return new MemoryRow(columns, getTimeUUID(timestamp), series.dataRetention, cell.value);
+    }
+
+    private List<Row> findDataPoint(MetricId<?> id, long timestamp, BiFunction<Series, Cell, Row> toRow) {
+        Series series = data.get(id);
+        Cell cell = series == null ? null : series.cells.get(timestamp);
+        if (cell == null || cell.expiresAt <= clock.getAsLong()) {
+            return emptyList();
+        }
+        return Collections.singletonList(toRow.apply(series, cell));
+    }
+
+    @Override
+    public Observable<ResultSet> findCounterData(MetricId<Long> id, long startTime, long endTime, int limit,
+            Order order) {
+        return findData(id, startTime, endTime, limit, order, COUNTER_COLUMNS);
+    }
+
+    @Override
+    public Observable<ResultSet> findGaugeData(MetricId<Double> id, long startTime, long endTime, int limit,
+            Order order, boolean includeWriteTime) {
+        return findData(id, startTime, endTime, limit, order,
+                includeWriteTime ? GAUGE_WRITE_TIME_COLUMNS : GAUGE_COLUMNS);
+    }
+
+    @Override
+    public Observable<ResultSet> findGaugeData(MetricId<Double> id, long timestamp, boolean includeWriteTime) {
+        return read(() -> findDataPoint(id, timestamp, (series, cell) -> {
+            if (includeWriteTime) {
+                return dataRow(GAUGE_WRITE_TIME_COLUMNS, series, timestamp, cell);
+            }
+            return new MemoryRow(GAUGE_PARTITION_COLUMNS, id.getTenantId(), id.getName(), DataAccessImpl.DPART,
+                    getTimeUUID(timestamp), series.dataRetention, cell.value);
+        }));
+    }
+
+    @Override
+    public Observable<ResultSet> findAvailabilityData(MetricId<AvailabilityType> id, long startTime, long endTime,
+            int limit, Order order, boolean includeWriteTime) {
+        return findData(id, startTime, endTime, limit, order,
+                includeWriteTime ? AVAILABILITY_WRITE_TIME_COLUMNS : AVAILABILITY_COLUMNS);
+    }
+
+    @Override
+    public Observable<ResultSet> findAvailabilityData(MetricId<AvailabilityType> id, long timestamp) {
+        return read(() -> findDataPoint(id, timestamp,
+                (series, cell) -> dataRow(AVAILABILITY_WRITE_TIME_COLUMNS, series, timestamp, cell)));
+    }
+
+    @Override
+    public Observable<ResultSet> deleteGaugeMetric(String tenantId, String metric, Interval interval, long dpart) {
+        data.remove(new MetricId<>(tenantId, GAUGE, metric));
+        return done();
+    }
+
+    @Override
+    public <T> ResultSetFuture findDataRetentions(String tenantId, MetricType<T> type) {
+        List<Row> rows = new ArrayList<>();
+        readTenant(retentionsIndex, tenantId).forEach((id, retention) -> {
+            if (id.getType() == type) {
+                rows.add(new MemoryRow(RETENTION_COLUMNS, tenantId, type.getCode(), id.getName(), retention));
+            }
+        });
+        return new MemoryResultSetFuture(new MemoryResultSet(rows));
+    }
+
+    @Override
+    public <T> Observable<ResultSet> updateRetentionsIndex(String tenantId, MetricType<T> type,
+            Map<String, Integer> retentions) {
+        return Observable.defer(() -> {
+            if (retentions.isEmpty()) {
+                return Observable.empty();
+            }
+            ConcurrentMap<MetricId<?>, Integer> index = forTenant(retentionsIndex, tenantId);
+            retentions.forEach((name, retention) -> index.put(new MetricId<>(tenantId, type, name), retention));
+            return done();
+        });
+    }
+
+    @Override
+    public <T> ResultSetFuture updateRetentionsIndex(Metric<T> metric) {
+        MetricId<T> id = metric.getMetricId();
+        ConcurrentMap<MetricId<?>, Integer> index = forTenant(retentionsIndex, id.getTenantId());
+        if (metric.getDataRetention() == null) {
+            index.remove(id);
+        } else {
+            index.put(id, metric.getDataRetention());
+        }
+        return new MemoryResultSetFuture(MemoryResultSet.empty());
+    }
+
+    private ConcurrentMap<String, Set<MetricId<?>>> tagValues(String tenantId, String name) {
+        return tagsIndex.computeIfAbsent(tenantId, id -> new ConcurrentHashMap<>())
+                .computeIfAbsent(name, key -> new ConcurrentHashMap<>());
+    }
+
+    @Override
+    public <T> Observable<ResultSet> insertIntoMetricsTagsIndex(Metric<T> metric, Map<String, String> tags) {
+        MetricId<T> id = metric.getMetricId();
+        return Observable.from(tags.entrySet()).map(tag -> {
+            tagValues(id.getTenantId(), tag.getKey()).compute(tag.getValue(), (value, metrics) -> {
+                Set<MetricId<?>> updated = metrics == null ? ConcurrentHashMap.newKeySet() : metrics;
+                updated.add(id);
+                return updated;
+            });
+            return MemoryResultSet.empty();
+        });
+    }
+
+    @Override
+    public <T> Observable<ResultSet> deleteFromMetricsTagsIndex(Metric<T> metric, Map<String, String> tags) {
+        MetricId<T> id = metric.getMetricId();
+        return Observable.from(tags.entrySet()).map(tag -> {
+            tagValues(id.getTenantId(), tag.getKey()).computeIfPresent(tag.getValue(), (value, metrics) -> {
+                metrics.remove(id);
+                return metrics.isEmpty() ? null : metrics;
+            });
+            return MemoryResultSet.empty();
+        });
+    }
+
+    private Map<String, Set<MetricId<?>>> readTagValues(String tenantId, String name) {
+        Map<String, ConcurrentMap<String, Set<MetricId<?>>>> names = tagsIndex.get(tenantId);
+        Map<String, Set<MetricId<?>>> values = names == null ? null : names.get(name);
+        return values == null ? emptyMap() : values;
+    }
+
+    @Override
+    public Observable<ResultSet> findMetricsByTagName(String tenantId, String tag) {
+        return read(() -> {
+            List<Row> rows = new ArrayList<>();
+            readTagValues(tenantId, tag).forEach((value, metrics) -> metrics.forEach(id ->
+                    rows.add(new MemoryRow(TAG_NAME_COLUMNS, id.getType().getCode(), id.getName(), value))));
+            return rows;
+        });
+    }
+
+    @Override
+    public Observable<ResultSet> findMetricsByTagNameValue(String tenantId, String tag, String tvalue) {
+        return read(() -> {
+            List<Row> rows = new ArrayList<>();
+            readTagValues(tenantId, tag).getOrDefault(tvalue, Collections.emptySet()).forEach(id ->
+                    rows.add(new MemoryRow(TAG_VALUE_COLUMNS, tenantId, id.getType().getCode(), id.getName())));
+            return rows;
+        });
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> Observable<ResultSet> updateLatestData(MetricId<T> id, DataPoint<T> dataPoint, int ttl) {
+        Object value = id.getType() == AVAILABILITY ? getBytes((AvailabilityType) dataPoint.getValue())
+                : dataPoint.getValue();
+        long now = clock.getAsLong();
+        LatestData update = new LatestData(dataPoint.getTimestamp(), value, expiresAt(now, ttl));
+        // Like the cell timestamp of the Cassandra update, an older data point does not replace the latest one
+        forTenant(latestData, id.getTenantId()).merge(id, update, (current, next) ->
+                current.expiresAt <= now || next.timestamp >= current.timestamp ? next : current);
+        return done();
+    }
+
+    private Row latestDataRow(MetricId<?> id, LatestData latest) {
+        MetricType<?> type = id.getType();
+        return new MemoryRow(LATEST_DATA_COLUMNS, id.getName(), getTimeUUID(latest.timestamp),
+                type == GAUGE || type == COUNTER_RATE ? latest.value : null,
+                type == AVAILABILITY ? latest.value : null,
+                type == COUNTER ? latest.value : null);
+    }
+
+    @Override
+    public <T> Observable<ResultSet> findLatestData(MetricId<T> id) {
+        return read(() -> {
+            LatestData latest = readTenant(latestData, id.getTenantId()).get(id);
+            if (latest == null || latest.expiresAt <= clock.getAsLong()) {
+                return emptyList();
+            }
+            return Collections.singletonList(latestDataRow(id, latest));
+        });
+    }
+
+    @Override
+    public Observable<ResultSet> updateAvailabilityRun(MetricId<AvailabilityType> id, long start, long end,
+            AvailabilityType availability, int ttl) {
+        Run run = new Run(end, getBytes(availability), expiresAt(clock.getAsLong(), ttl));
+        availabilityRuns.computeIfAbsent(id, key -> new ConcurrentSkipListMap<>()).put(start, run);
+        return done();
+    }
+
+    @Override
+    public Observable<ResultSet> deleteAvailabilityRun(MetricId<AvailabilityType> id, long start) {
+        ConcurrentSkipListMap<Long, Run> runs = availabilityRuns.get(id);
+        if (runs != null) {
+            runs.remove(start);
+        }
+        return done();
+    }
+
+    private List<Row> runRows(NavigableMap<Long, Run> runs, int limit) {
+        long now = clock.getAsLong();
+        List<Row> rows = new ArrayList<>();
+        for (Map.Entry<Long, Run> entry : runs.entrySet()) {
+            if (limit > 0 && rows.size() == limit) {
+                break;
+            }
+            Run run = entry.getValue();
+            if (run.expiresAt > now) {
+                rows.add(new MemoryRow(AVAILABILITY_RUN_COLUMNS, new Date(entry.getKey()), new Date(run.end),
+                        run.availability));
+            }
+        }
+        return rows;
+    }
+
+    @Override
+    public Observable<ResultSet> findAvailabilityRun(MetricId<AvailabilityType> id, long time) {
+        return read(() -> {
+            ConcurrentSkipListMap<Long, Run> runs = availabilityRuns.get(id);
+            return runs == null ? emptyList() : runRows(runs.headMap(time, true).descendingMap(), 1);
+        });
+    }
+
+    @Override
+    public Observable<ResultSet> findAvailabilityRuns(MetricId<AvailabilityType> id, long start, long end) {
+        return read(() -> {
+            ConcurrentSkipListMap<Long, Run> runs = availabilityRuns.get(id);
+            if (runs == null || start >= end) {
+                return emptyList();
+            }
+            return runRows(runs.subMap(start, true, end, false).descendingMap(), 0);
+        });
+    }
+}
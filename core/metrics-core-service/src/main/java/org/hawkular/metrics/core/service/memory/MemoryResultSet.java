@@ -0,0 +1,132 @@
+/*
+ * Copyright 2014-2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.metrics.core.service.memory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import com.datastax.driver.core.ColumnDefinitions;
+import com.datastax.driver.core.ExecutionInfo;
+import com.datastax.driver.core.ResultSet;
+import com.datastax.driver.core.Row;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+
+/**
+ * A fully fetched {@link ResultSet} over a list of {@link MemoryRow}s. Like the driver's, it is consumed as it is
+ * iterated and is not meant to be shared between threads.
+ */
+final class MemoryResultSet implements ResultSet {
+
+    private final List<Row> rows;
+    private final boolean applied;
+    private int position;
+
+    MemoryResultSet(List<Row> rows) {
+        this(rows, true);
+    }
+
+    /**
+     * @param applied the outcome of a conditional update, see {@link #wasApplied()}
+     */
+    MemoryResultSet(List<Row> rows, boolean applied) {
+        this.rows = rows;
+        this.applied = applied;
+    }
+
+    static ResultSet empty() {
+        return new MemoryResultSet(Collections.emptyList());
+    }
+
+    @Override
+    public ColumnDefinitions getColumnDefinitions() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public boolean isExhausted() {
+        return position >= rows.size();
+    }
+
+    @Override
+    public Row one() {
+        return isExhausted() ? null : rows.get(position++);
+    }
+
+    @Override
+    public List<Row> all() {
+        List<Row> remaining = new ArrayList<>(rows.subList(position, rows.size()));
+        position = rows.size();
+        return remaining;
+    }
+
+    @Override
+    public Iterator<Row> iterator() {
+        return new Iterator<Row>() {
+            @Override
+            public boolean hasNext() {
+                return !isExhausted();
+            }
+
+            @Override
+            public Row next() {
+                if (isExhausted()) {
+                    throw new NoSuchElementException();
+                }
+                return rows.get(position++);
+            }
+        };
+    }
+
+    @Override
+    public int getAvailableWithoutFetching() {
+        return rows.size() - position;
+    }
+
+    @Override
+    public boolean isFullyFetched() {
+        return true;
+    }
+
+    @Override
+    public ListenableFuture<ResultSet> fetchMoreResults() {
+        return Futures.immediateFuture(this);
+    }
+
+    @Override
+    public ExecutionInfo getExecutionInfo() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public List<ExecutionInfo> getAllExecutionInfo() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public boolean wasApplied() {
+        return applied;
+    }
+
+    @Override
+    public String toString() {
+        return "ResultSet[ exhausted: " + isExhausted() + ", " + rows + "]";
+    }
+}
@@ -0,0 +1,44 @@
+/*
+ * Copyright 2014-2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.metrics.core.service.memory;
+
+import java.util.concurrent.TimeUnit;
+
+import com.datastax.driver.core.ResultSet;
+import com.datastax.driver.core.ResultSetFuture;
+import com.google.common.util.concurrent.AbstractFuture;
+import com.google.common.util.concurrent.Futures;
+
+/**
+ * A {@link ResultSetFuture} which is already done, as every in-memory statement completes on the calling thread.
+ */
+final class MemoryResultSetFuture extends AbstractFuture<ResultSet> implements ResultSetFuture {
+
+    MemoryResultSetFuture(ResultSet resultSet) {
+        set(resultSet);
+    }
+
+    @Override
+    public ResultSet getUninterruptibly() {
+        return Futures.getUnchecked(this);
+    }
+
+    @Override
+    public ResultSet getUninterruptibly(long timeout, TimeUnit unit) {
+        return Futures.getUnchecked(this);
+    }
+}
@@ -0,0 +1,420 @@
+/*
+ * Copyright 2014-2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.metrics.core.service.memory;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.net.InetAddress;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+import com.datastax.driver.core.ColumnDefinitions;
+import com.datastax.driver.core.LocalDate;
+import com.datastax.driver.core.Row;
+import com.datastax.driver.core.Token;
+import com.datastax.driver.core.TupleValue;
+import com.datastax.driver.core.TypeCodec;
+import com.datastax.driver.core.UDTValue;
+import com.google.common.reflect.TypeToken;
+
+/**
+ * A {@link Row} whose values are held in an array, in the order of the columns selected by the equivalent CQL query.
+ * <p>
+ * Getters follow the driver when a value is null: primitives are zero or false, and collections are empty. The values
+ * are expected to already have the Java type the driver would map the column to; {@link #getColumnDefinitions()},
+ * which cannot be built outside of the driver, and tokens are not supported.
+ */
+final class MemoryRow implements Row {
+
+    private final String[] names;
+    private final Object[] values;
+
+    /**
+     * @param names the column names, as they would appear in the select clause
+     * @param values the column values, in the same order
+     */
+    MemoryRow(String[] names, Object... values) {
+        this.names = names;
+        this.values = values;
+    }
+
+    private Object value(int i) {
+        return values[i];
+    }
+
+    private int indexOf(String name) {
+        for (int i = 0; i < names.length; i++) {
+            if (names[i].equalsIgnoreCase(name)) {
+                return i;
+            }
+        }
+        throw new IllegalArgumentException(name + " is not a column defined in this metadata");
+    }
+
+    @Override
+    public ColumnDefinitions getColumnDefinitions() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public boolean isNull(int i) {
+        return value(i) == null;
+    }
+
+    @Override
+    public boolean isNull(String name) {
+        return isNull(indexOf(name));
+    }
+
+    @Override
+    public boolean getBool(int i) {
+        Object value = value(i);
+        return value != null && (Boolean) value;
+    }
+
+    @Override
+    public boolean getBool(String name) {
+        return getBool(indexOf(name));
+    }
+
+    @Override
+    public byte getByte(int i) {
+        Object value = value(i);
+        return value == null ? 0 : (Byte) value;
+    }
+
+    @Override
+    public byte getByte(String name) {
+        return getByte(indexOf(name));
+    }
+
+    @Override
+    public short getShort(int i) {
+        Object value = value(i);
+        return value == null ? 0 : (Short) value;
+    }
+
+    @Override
+    public short getShort(String name) {
+        return getShort(indexOf(name));
+    }
+
+    @Override
+    public int getInt(int i) {
+        Object value = value(i);
+        return value == null ? 0 : (Integer) value;
+    }
+
+    @Override
+    public int getInt(String name) {
+        return getInt(indexOf(name));
+    }
+
+    @Override
+    public long getLong(int i) {
+        Object value = value(i);
+        return value == null ? 0 : (Long) value;
+    }
+
+    @Override
+    public long getLong(String name) {
+        return getLong(indexOf(name));
+    }
+
+    @Override
+    public Date getTimestamp(int i) {
+        return (Date) value(i);
+    }
+
+    @Override
+    public Date getTimestamp(String name) {
+        return getTimestamp(indexOf(name));
+    }
+
+    @Override
+    public LocalDate getDate(int i) {
+        return (LocalDate) value(i);
+    }
+
+    @Override
+    public LocalDate getDate(String name) {
+        return getDate(indexOf(name));
+    }
+
+    @Override
+    public long getTime(int i) {
+        return getLong(i);
+    }
+
+    @Override
+    public long getTime(String name) {
+        return getTime(indexOf(name));
+    }
+
+    @Override
+    public float getFloat(int i) {
+        Object value = value(i);
+        return value == null ? 0 : (Float) value;
+    }
+
+    @Override
+    public float getFloat(String name) {
+        return getFloat(indexOf(name));
+    }
+
+    @Override
+    public double getDouble(int i) {
+        Object value = value(i);
+        return value == null ? 0 : (Double) value;
+    }
+
+    @Override
+    public double getDouble(String name) {
+        return getDouble(indexOf(name));
+    }
+
+    @Override
+    public ByteBuffer getBytesUnsafe(int i) {
+        return getBytes(i);
+    }
+
+    @Override
+    public ByteBuffer getBytesUnsafe(String name) {
+        return getBytes(indexOf(name));
+    }
+
+    @Override
+    public ByteBuffer getBytes(int i) {
+        // Readers are free to consume the buffer, the stored one must stay untouched
+        Object value = value(i);
+        return value == null ? null : ((ByteBuffer) value).duplicate();
+    }
+
+    @Override
+    public ByteBuffer getBytes(String name) {
+        return getBytes(indexOf(name));
+    }
+
+    @Override
+    public String getString(int i) {
+        return (String) value(i);
+    }
+
+    @Override
+    public String getString(String name) {
+        return getString(indexOf(name));
+    }
+
+    @Override
+    public BigInteger getVarint(int i) {
+        return (BigInteger) value(i);
+    }
+
+    @Override
+    public BigInteger getVarint(String name) {
+        return getVarint(indexOf(name));
+    }
+
+    @Override
+    public BigDecimal getDecimal(int i) {
+        return (BigDecimal) value(i);
+    }
+
+    @Override
+    public BigDecimal getDecimal(String name) {
+        return getDecimal(indexOf(name));
+    }
+
+    @Override
+    public UUID getUUID(int i) {
+        return (UUID) value(i);
+    }
+
+    @Override
+    public UUID getUUID(String name) {
+        return getUUID(indexOf(name));
+    }
+
+    @Override
+    public InetAddress getInet(int i) {
+        return (InetAddress) value(i);
+    }
+
+    @Override
+    public InetAddress getInet(String name) {
+        return getInet(indexOf(name));
+    }
+
+    @Override
+    public Token getToken(int i) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Token getToken(String name) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Token getPartitionKeyToken() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> List<T> getList(int i, Class<T> elementsClass) {
+        // Like the driver, every call returns a new collection
+        Object value = value(i);
+        return value == null ? new ArrayList<>() : new ArrayList<>((Collection<T>) value);
+    }
+
+    @Override
+    public <T> List<T> getList(String name, Class<T> elementsClass) {
+        return getList(indexOf(name), elementsClass);
+    }
+
+    @Override
+    public <T> List<T> getList(int i, TypeToken<T> elementsType) {
+        return getList(i, (Class<T>) null);
+    }
+
+    @Override
+    public <T> List<T> getList(String name, TypeToken<T> elementsType) {
+        return getList(indexOf(name), elementsType);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> Set<T> getSet(int i, Class<T> elementsClass) {
+        Object value = value(i);
+        return value == null ? new LinkedHashSet<>() : new LinkedHashSet<>((Collection<T>) value);
+    }
+
+    @Override
+    public <T> Set<T> getSet(String name, Class<T> elementsClass) {
+        return getSet(indexOf(name), elementsClass);
+    }
+
+    @Override
+    public <T> Set<T> getSet(int i, TypeToken<T> elementsType) {
+        return getSet(i, (Class<T>) null);
+    }
+
+    @Override
+    public <T> Set<T> getSet(String name, TypeToken<T> elementsType) {
+        return getSet(indexOf(name), elementsType);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <K, V> Map<K, V> getMap(int i, Class<K> keysClass, Class<V> valuesClass) {
+        Object value = value(i);
+        return value == null ? new LinkedHashMap<>() : new LinkedHashMap<>((Map<K, V>) value);
+    }
+
+    @Override
+    public <K, V> Map<K, V> getMap(String name, Class<K> keysClass, Class<V> valuesClass) {
+        return getMap(indexOf(name), keysClass, valuesClass);
+    }
+
+    @Override
+    public <K, V> Map<K, V> getMap(int i, TypeToken<K> keysType, TypeToken<V> valuesType) {
+        return getMap(i, (Class<K>) null, (Class<V>) null);
+    }
+
+    @Override
+    public <K, V> Map<K, V> getMap(String name, TypeToken<K> keysType, TypeToken<V> valuesType) {
+        return getMap(indexOf(name), keysType, valuesType);
+    }
+
+    @Override
+    public UDTValue getUDTValue(int i) {
+        return (UDTValue) value(i);
+    }
+
+    @Override
+    public UDTValue getUDTValue(String name) {
+        return getUDTValue(indexOf(name));
+    }
+
+    @Override
+    public TupleValue getTupleValue(int i) {
+        return (TupleValue) value(i);
+    }
+
+    @Override
+    public TupleValue getTupleValue(String name) {
+        return getTupleValue(indexOf(name));
+    }
+
+    @Override
+    public Object getObject(int i) {
+        Object value = value(i);
+        return value instanceof ByteBuffer ? ((ByteBuffer) value).duplicate() : value;
+    }
+
+    @Override
+    public Object getObject(String name) {
+        return getObject(indexOf(name));
+    }
+
+    @Override
+    public <T> T get(int i, Class<T> targetClass) {
+        return targetClass.cast(getObject(i));
+    }
+
+    @Override
+    public <T> T get(String name, Class<T> targetClass) {
+        return get(indexOf(name), targetClass);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(int i, TypeToken<T> targetType) {
+        return (T) getObject(i);
+    }
+
+    @Override
+    public <T> T get(String name, TypeToken<T> targetType) {
+        return get(indexOf(name), targetType);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(int i, TypeCodec<T> codec) {
+        return (T) getObject(i);
+    }
+
+    @Override
+    public <T> T get(String name, TypeCodec<T> codec) {
+        return get(indexOf(name), codec);
+    }
+
+    @Override
+    public String toString() {
+        return "Row" + Arrays.toString(values);
+    }
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyright 2014-2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.metrics.core.service.monitoring;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.ThreadMXBean;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Metric;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.MetricSet;
+
+/**
+ * Gauges of the JVM memory, threads and garbage collectors, read from the platform MXBeans.
+ */
+public class JvmMetricSet implements MetricSet {
+
+    @Override
+    public Map<String, Metric> getMetrics() {
+        Map<String, Metric> metrics = new HashMap<>();
+
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        metrics.put("heap.used", (Gauge<Long>) () -> memory.getHeapMemoryUsage().getUsed());
+        metrics.put("heap.committed", (Gauge<Long>) () -> memory.getHeapMemoryUsage().getCommitted());
+        metrics.put("heap.max", (Gauge<Long>) () -> memory.getHeapMemoryUsage().getMax());
+        metrics.put("non-heap.used", (Gauge<Long>) () -> memory.getNonHeapMemoryUsage().getUsed());
+
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        metrics.put("threads.count", (Gauge<Integer>) threads::getThreadCount);
+        metrics.put("threads.daemon", (Gauge<Integer>) threads::getDaemonThreadCount);
+
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            String name = gc.getName().replaceAll("\\s+", "-");
+            metrics.put(MetricRegistry.name("gc", name, "count"), (Gauge<Long>) gc::getCollectionCount);
+            metrics.put(MetricRegistry.name("gc", name, "time"), (Gauge<Long>) gc::getCollectionTime);
+        }
+
+        metrics.put("uptime", (Gauge<Long>) () -> ManagementFactory.getRuntimeMXBean().getUptime());
+        return metrics;
+    }
+}
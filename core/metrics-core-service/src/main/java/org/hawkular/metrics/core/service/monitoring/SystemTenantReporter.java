@@ -0,0 +1,163 @@
+/*
+ * Copyright 2014-2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.metrics.core.service.monitoring;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.singletonList;
+
+import static org.hawkular.metrics.model.MetricType.COUNTER;
+import static org.hawkular.metrics.model.MetricType.GAUGE;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.hawkular.metrics.core.service.MetricsService;
+import org.hawkular.metrics.core.service.MetricsServiceImpl;
+import org.hawkular.metrics.core.service.log.CoreLogger;
+import org.hawkular.metrics.core.service.log.CoreLogging;
+import org.hawkular.metrics.model.DataPoint;
+import org.hawkular.metrics.model.Metric;
+import org.hawkular.metrics.model.MetricId;
+import org.hawkular.rx.cassandra.driver.StatementMetrics;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricFilter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.ScheduledReporter;
+import com.codahale.metrics.Snapshot;
+import com.codahale.metrics.Timer;
+
+import rx.Observable;
+
+/**
+ * Periodically stores a snapshot of a {@link MetricRegistry} in the {@link MetricsServiceImpl#SYSTEM_TENANT_ID system
+ * tenant}, so that the server can be monitored with its own APIs.
+ * <p>
+ * Each report is written with a single call to {@link MetricsService#addDataPoints(
+ * org.hawkular.metrics.model.MetricType, Observable)} per metric type, one data point per metric:
+ * <ul>
+ *     <li>gauges and counters are stored as gauges with the same name</li>
+ *     <li>meters are stored as a counter, &lt;name&gt;.count, and a gauge of the one-minute rate per second,
+ *     &lt;name&gt;.rate</li>
+ *     <li>histograms and timers are additionally stored as gauges &lt;name&gt;.mean, .p50, .p95, .p99 and .max;
+ *     timer durations are in milliseconds</li>
+ * </ul>
+ * Only the server's own metrics, those matching {@link #SERVER_METRICS}, are stored. Metrics which are created per
+ * tenant or per event consumer are left out, as they would add an unbounded number of series to the system tenant.
+ * <p>
+ * A report is skipped if the previous one is still being stored.
+ */
+public class SystemTenantReporter extends ScheduledReporter {
+    private static final CoreLogger log = CoreLogging.getCoreLogger(SystemTenantReporter.class);
+
+    private static final List<String> SERVER_METRIC_PREFIXES = asList("availability-", "counter-", "gauge-",
+            "head-block-", "ingest-log-", "influx-query-cache-", "bus-", "cassandra.", StatementMetrics.PREFIX + ".",
+            "jvm.", "rest.", "scheduler-lag", "fault-injection-");
+
+    /**
+     * Matches the metrics the server registers for itself, as opposed to per tenant or per consumer metrics.
+     */
+    public static final MetricFilter SERVER_METRICS = (name, metric) -> SERVER_METRIC_PREFIXES.stream()
+            .anyMatch(name::startsWith);
+
+    private final MetricsService metricsService;
+    private final AtomicBoolean storing = new AtomicBoolean();
+
+    public SystemTenantReporter(MetricRegistry registry, MetricsService metricsService) {
+        super(registry, "system-tenant-reporter", SERVER_METRICS, TimeUnit.SECONDS, TimeUnit.MILLISECONDS);
+        this.metricsService = metricsService;
+    }
+
+    @Override
+    @SuppressWarnings("rawtypes")
+    public void report(SortedMap<String, Gauge> gauges, SortedMap<String, Counter> counters,
+            SortedMap<String, Histogram> histograms, SortedMap<String, Meter> meters,
+            SortedMap<String, Timer> timers) {
+        if (!storing.compareAndSet(false, true)) {
+            log.debug("Previous report is still being stored, skipping");
+            return;
+        }
+        Batch batch = new Batch(System.currentTimeMillis());
+        for (Map.Entry<String, Gauge> entry : gauges.entrySet()) {
+            Object value = entry.getValue().getValue();
+            if (value instanceof Number) {
+                batch.gauge(entry.getKey(), ((Number) value).doubleValue());
+            } else if (value instanceof Boolean) {
+                batch.gauge(entry.getKey(), (Boolean) value ? 1 : 0);
+            }
+        }
+        counters.forEach((name, counter) -> batch.gauge(name, counter.getCount()));
+        meters.forEach((name, meter) -> {
+            batch.counter(name + ".count", meter.getCount());
+            batch.gauge(name + ".rate", convertRate(meter.getOneMinuteRate()));
+        });
+        histograms.forEach((name, histogram) -> {
+            batch.counter(name + ".count", histogram.getCount());
+            batch.snapshot(name, histogram.getSnapshot(), 1);
+        });
+        timers.forEach((name, timer) -> {
+            batch.counter(name + ".count", timer.getCount());
+            batch.gauge(name + ".rate", convertRate(timer.getOneMinuteRate()));
+            batch.snapshot(name, timer.getSnapshot(), convertDuration(1));
+        });
+
+        metricsService.addDataPoints(GAUGE, Observable.from(batch.gauges))
+                .mergeWith(metricsService.addDataPoints(COUNTER, Observable.from(batch.counters)))
+                .finallyDo(() -> storing.set(false))
+                .subscribe(
+                        aVoid -> {
+                        },
+                        t -> log.warnSelfMonitoringReportFailed(t));
+    }
+
+    private static class Batch {
+        final long timestamp;
+        final List<Metric<Double>> gauges = new ArrayList<>();
+        final List<Metric<Long>> counters = new ArrayList<>();
+
+        Batch(long timestamp) {
+            this.timestamp = timestamp;
+        }
+
+        void gauge(String name, double value) {
+            if (!Double.isNaN(value) && !Double.isInfinite(value)) {
+                gauges.add(new Metric<>(new MetricId<>(MetricsServiceImpl.SYSTEM_TENANT_ID, GAUGE, name),
+                        singletonList(new DataPoint<>(timestamp, value))));
+            }
+        }
+
+        void counter(String name, long value) {
+            counters.add(new Metric<>(new MetricId<>(MetricsServiceImpl.SYSTEM_TENANT_ID, COUNTER, name),
+                    singletonList(new DataPoint<>(timestamp, value))));
+        }
+
+        void snapshot(String name, Snapshot snapshot, double factor) {
+            gauge(name + ".mean", snapshot.getMean() * factor);
+            gauge(name + ".p50", snapshot.getMedian() * factor);
+            gauge(name + ".p95", snapshot.get95thPercentile() * factor);
+            gauge(name + ".p99", snapshot.get99thPercentile() * factor);
+            gauge(name + ".max", snapshot.getMax() * factor);
+        }
+    }
+}
@@ -0,0 +1,244 @@
+/*
+ * Copyright 2014-2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.metrics.core.service.transformers;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import org.hawkular.metrics.core.service.Downsampling;
+import org.hawkular.metrics.model.DataPoint;
+
+import rx.Observable;
+
+/**
+ * Downsamples numeric data points, emitted in ascending order of timestamp, to at most a given number of points.
+ * <p>
+ * The time range is divided in buckets of equal duration. Data points are consumed as they come: at most two buckets
+ * are held in memory for {@link Downsampling#LTTB LTTB}, and a few data points for the other algorithms, so that the
+ * series is never materialized.
+ */
+public class DownsampleTransformer<T> implements Observable.Transformer<DataPoint<T>, DataPoint<T>> {
+    private final Downsampling downsampling;
+    private final long start;
+    private final long bucketSize;
+
+    /**
+     * @param downsampling the algorithm
+     * @param start start time of the range the data points belong to
+     * @param end end time of the range the data points belong to
+     * @param maxPoints the maximum number of data points emitted, at least {@link Downsampling#getMinPoints()}
+     */
+    public DownsampleTransformer(Downsampling downsampling, long start, long end, int maxPoints) {
+        checkArgument(maxPoints >= downsampling.getMinPoints(), "%s needs at least %s points", downsampling,
+                downsampling.getMinPoints());
+        checkArgument(end > start, "Invalid time range");
+        this.downsampling = downsampling;
+        this.start = start;
+        int buckets = downsampling.getBuckets(maxPoints);
+        this.bucketSize = Math.max(1, (end - start + buckets - 1) / buckets);
+    }
+
+    @Override
+    public Observable<DataPoint<T>> call(Observable<DataPoint<T>> dataPoints) {
+        return Observable.defer(() -> {
+            Sampler<T> sampler = newSampler();
+            return dataPoints.concatMap(dataPoint -> Observable.from(sampler.add(dataPoint)))
+                    .concatWith(Observable.defer(() -> Observable.from(sampler.finish())));
+        });
+    }
+
+    private Sampler<T> newSampler() {
+        switch (downsampling) {
+            case LTTB:
+                return new Lttb();
+            case MINMAX:
+                return new MinMax(false);
+            default:
+                return new MinMax(true);
+        }
+    }
+
+    private long bucket(DataPoint<T> dataPoint) {
+        return Math.floorDiv(dataPoint.getTimestamp() - start, bucketSize);
+    }
+
+    private static double value(DataPoint<?> dataPoint) {
+        return ((Number) dataPoint.getValue()).doubleValue();
+    }
+
+    private interface Sampler<T> {
+        /**
+         * @return the data points which can be emitted now
+         */
+        List<DataPoint<T>> add(DataPoint<T> dataPoint);
+
+        List<DataPoint<T>> finish();
+    }
+
+    private class Lttb implements Sampler<T> {
+        private DataPoint<T> selected;
+        private List<DataPoint<T>> current = new ArrayList<>();
+        private long currentBucket;
+        private List<DataPoint<T>> next = new ArrayList<>();
+        private long nextBucket;
+
+        @Override
+        public List<DataPoint<T>> add(DataPoint<T> dataPoint) {
+            if (selected == null) {
+                // The first data point is always kept
+                selected = dataPoint;
+                return Collections.singletonList(dataPoint);
+            }
+            long bucket = bucket(dataPoint);
+            if (current.isEmpty() || (next.isEmpty() && bucket == currentBucket)) {
+                currentBucket = bucket;
+                current.add(dataPoint);
+                return Collections.emptyList();
+            }
+            if (next.isEmpty() || bucket == nextBucket) {
+                nextBucket = bucket;
+                next.add(dataPoint);
+                return Collections.emptyList();
+            }
+            // The next bucket is complete, which is all that is needed to select a point in the current one
+            selected = select(current, averageTimestamp(next), averageValue(next));
+            current = next;
+            currentBucket = nextBucket;
+            next = new ArrayList<>();
+            next.add(dataPoint);
+            nextBucket = bucket;
+            return Collections.singletonList(selected);
+        }
+
+        @Override
+        public List<DataPoint<T>> finish() {
+            List<DataPoint<T>> tail = next.isEmpty() ? current : next;
+            if (tail.isEmpty()) {
+                return Collections.emptyList();
+            }
+            // The last data point is always kept
+            DataPoint<T> last = tail.remove(tail.size() - 1);
+            List<DataPoint<T>> result = new ArrayList<>(3);
+            if (!current.isEmpty()) {
+                if (next.isEmpty()) {
+                    selected = select(current, last.getTimestamp(), value(last));
+                } else {
+                    selected = select(current, averageTimestamp(next), averageValue(next));
+                }
+                result.add(selected);
+            }
+            if (!next.isEmpty()) {
+                result.add(select(next, last.getTimestamp(), value(last)));
+            }
+            result.add(last);
+            return result;
+        }
+
+        private DataPoint<T> select(List<DataPoint<T>> bucket, double nextTimestamp, double nextValue) {
+            double selectedTimestamp = selected.getTimestamp();
+            double selectedValue = value(selected);
+            DataPoint<T> result = null;
+            double maxArea = -1;
+            for (DataPoint<T> dataPoint : bucket) {
+                // Twice the area of the triangle, which is enough to compare them
+                double area = Math.abs((selectedTimestamp - nextTimestamp) * (value(dataPoint) - selectedValue)
+                        - (selectedTimestamp - dataPoint.getTimestamp()) * (nextValue - selectedValue));
+                if (area > maxArea) {
+                    maxArea = area;
+                    result = dataPoint;
+                }
+            }
+            return result;
+        }
+
+        private double averageTimestamp(List<DataPoint<T>> bucket) {
+            return bucket.stream().mapToLong(DataPoint::getTimestamp).average().getAsDouble();
+        }
+
+        private double averageValue(List<DataPoint<T>> bucket) {
+            return bucket.stream().mapToDouble(DownsampleTransformer::value).average().getAsDouble();
+        }
+    }
+
+    private class MinMax implements Sampler<T> {
+        private final boolean firstAndLast;
+        private long bucket;
+        private DataPoint<T> first;
+        private DataPoint<T> last;
+        private DataPoint<T> min;
+        private DataPoint<T> max;
+
+        /**
+         * @param firstAndLast whether to keep the first and last data points of each bucket too, as done by M4
+         */
+        MinMax(boolean firstAndLast) {
+            this.firstAndLast = firstAndLast;
+        }
+
+        @Override
+        public List<DataPoint<T>> add(DataPoint<T> dataPoint) {
+            long bucket = bucket(dataPoint);
+            List<DataPoint<T>> result = Collections.emptyList();
+            if (first != null && bucket != this.bucket) {
+                result = finish();
+            }
+            if (first == null) {
+                this.bucket = bucket;
+                first = dataPoint;
+                min = dataPoint;
+                max = dataPoint;
+            } else if (value(dataPoint) < value(min)) {
+                min = dataPoint;
+            } else if (value(dataPoint) > value(max)) {
+                max = dataPoint;
+            }
+            last = dataPoint;
+            return result;
+        }
+
+        @Override
+        public List<DataPoint<T>> finish() {
+            if (first == null) {
+                return Collections.emptyList();
+            }
+            List<DataPoint<T>> result = new ArrayList<>(4);
+            if (firstAndLast) {
+                result.add(first);
+                result.add(last);
+            }
+            result.add(min);
+            result.add(max);
+            first = null;
+            return distinctByTimestamp(result);
+        }
+
+        private List<DataPoint<T>> distinctByTimestamp(List<DataPoint<T>> dataPoints) {
+            dataPoints.sort(Comparator.comparingLong(DataPoint::getTimestamp));
+            List<DataPoint<T>> result = new ArrayList<>(dataPoints.size());
+            for (DataPoint<T> dataPoint : dataPoints) {
+                if (result.isEmpty() || result.get(result.size() - 1).getTimestamp() != dataPoint.getTimestamp()) {
+                    result.add(dataPoint);
+                }
+            }
+            return result;
+        }
+    }
+}
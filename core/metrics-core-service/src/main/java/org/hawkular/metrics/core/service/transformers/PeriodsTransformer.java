@@ -0,0 +1,83 @@
+/*
+ * Copyright 2014-2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.metrics.core.service.transformers;
+
+import java.util.function.Predicate;
+
+import org.hawkular.metrics.model.DataPoint;
+
+import rx.Observable;
+
+/**
+ * Finds the periods during which a condition holds true for each consecutive data point, the data points being
+ * emitted in ascending order of timestamp. A period is emitted as soon as it is closed by a data point which does not
+ * match, as a two element array holding the timestamps of its first and last data points; only the open period is
+ * kept in memory.
+ */
+public class PeriodsTransformer implements Observable.Transformer<DataPoint<Double>, long[]> {
+    private final Predicate<Double> predicate;
+
+    public PeriodsTransformer(Predicate<Double> predicate) {
+        this.predicate = predicate;
+    }
+
+    @Override
+    public Observable<long[]> call(Observable<DataPoint<Double>> dataPoints) {
+        return Observable.defer(() -> {
+            Detector detector = new Detector();
+            return dataPoints.concatMap(dataPoint -> {
+                long[] closed = detector.add(dataPoint);
+                return closed == null ? Observable.empty() : Observable.just(closed);
+            }).concatWith(Observable.defer(() -> {
+                long[] open = detector.finish();
+                return open == null ? Observable.empty() : Observable.just(open);
+            }));
+        });
+    }
+
+    private class Detector {
+        private long start;
+        private long end;
+        private boolean open;
+
+        /**
+         * @return the period closed by {@code dataPoint}, if any
+         */
+        long[] add(DataPoint<Double> dataPoint) {
+            if (predicate.test(dataPoint.getValue())) {
+                if (!open) {
+                    start = dataPoint.getTimestamp();
+                    open = true;
+                }
+                end = dataPoint.getTimestamp();
+                return null;
+            }
+            return finish();
+        }
+
+        /**
+         * @return the open period, if any
+         */
+        long[] finish() {
+            if (!open) {
+                return null;
+            }
+            open = false;
+            return new long[]{start, end};
+        }
+    }
+}
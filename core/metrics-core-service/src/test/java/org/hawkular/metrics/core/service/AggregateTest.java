@@ -0,0 +1,69 @@
+/*
+ * Copyright 2014-2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.metrics.core.service;
+
+import static java.util.Arrays.asList;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+
+import org.hawkular.metrics.model.DataPoint;
+import org.junit.Test;
+
+import rx.Observable;
+
+public class AggregateTest {
+
+    private static final List<DataPoint<Double>> DATA = asList(
+            new DataPoint<>(4L, 40.0),
+            new DataPoint<>(3L, 30.0),
+            new DataPoint<>(2L, 20.0),
+            new DataPoint<>(1L, 10.0));
+
+    @Test
+    public void shouldComputeAggregates() {
+        assertEquals(Double.valueOf(10.0), evaluate(Aggregate.Min));
+        assertEquals(Double.valueOf(40.0), evaluate(Aggregate.Max));
+        assertEquals(Double.valueOf(25.0), evaluate(Aggregate.Average));
+        assertEquals(Double.valueOf(100.0), evaluate(Aggregate.Sum));
+        assertEquals(Double.valueOf(4.0), evaluate(Aggregate.Count));
+        assertEquals(Double.valueOf(40.0), evaluate(Aggregate.Last));
+        assertEquals(30.0, evaluate(Aggregate.percentile(75.0)), 10.0);
+    }
+
+    @Test
+    public void shouldEmitNothingWhenUndefined() {
+        for (AggregateFunction<Double> fn : asList(Aggregate.Min, Aggregate.Max, Aggregate.Average, Aggregate.Last,
+                Aggregate.Median)) {
+            assertTrue(fn.call(Observable.empty()).isEmpty().toBlocking().single());
+        }
+        assertEquals(Double.valueOf(0.0), Aggregate.Sum.call(Observable.empty()).toBlocking().single());
+        assertEquals(Double.valueOf(0.0), Aggregate.Count.call(Observable.empty()).toBlocking().single());
+    }
+
+    @Test
+    public void shouldUseNewAccumulatorForEachEvaluation() {
+        assertEquals(Double.valueOf(100.0), evaluate(Aggregate.Sum));
+        assertEquals(Double.valueOf(100.0), evaluate(Aggregate.Sum));
+    }
+
+    private static Double evaluate(AggregateFunction<Double> fn) {
+        return fn.call(Observable.from(DATA)).toBlocking().single();
+    }
+}
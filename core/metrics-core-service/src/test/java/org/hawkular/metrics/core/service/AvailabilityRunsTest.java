@@ -0,0 +1,135 @@
+/*
+ * Copyright 2014-2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.metrics.core.service;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.singletonList;
+
+import static org.hawkular.metrics.core.service.AvailabilityBucketPointMatcher.matchesAvailabilityBucketPoint;
+import static org.hawkular.metrics.model.AvailabilityType.DOWN;
+import static org.hawkular.metrics.model.AvailabilityType.UNKNOWN;
+import static org.hawkular.metrics.model.AvailabilityType.UP;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.hawkular.metrics.model.AvailabilityBucketPoint;
+import org.hawkular.metrics.model.AvailabilityType;
+import org.hawkular.metrics.model.Buckets;
+import org.hawkular.metrics.model.DataPoint;
+import org.junit.Test;
+
+import rx.Observable;
+
+public class AvailabilityRunsTest {
+
+    @Test
+    public void shouldStartAndExtendRuns() {
+        AvailabilityRuns.Merge merge = AvailabilityRuns.merge(null, asList(
+                new DataPoint<>(20L, UP),
+                new DataPoint<>(10L, UP),
+                new DataPoint<>(30L, DOWN),
+                new DataPoint<>(40L, DOWN)));
+
+        assertFalse(merge.isOutOfOrder());
+        assertEquals(asList(new AvailabilityRun(10, 20, UP), new AvailabilityRun(30, 40, DOWN)), merge.getUpdated());
+        assertEquals(new AvailabilityRun(30, 40, DOWN), merge.getLast());
+
+        merge = AvailabilityRuns.merge(merge.getLast(), asList(new DataPoint<>(50L, DOWN), new DataPoint<>(60L, UP)));
+        assertEquals(asList(new AvailabilityRun(30, 50, DOWN), new AvailabilityRun(60, 60, UP)), merge.getUpdated());
+    }
+
+    @Test
+    public void shouldIgnoreDataPointsAlreadyInLastRun() {
+        AvailabilityRun last = new AvailabilityRun(10, 50, UP);
+        AvailabilityRuns.Merge merge = AvailabilityRuns.merge(last, singletonList(new DataPoint<>(30L, UP)));
+
+        assertFalse(merge.isOutOfOrder());
+        assertTrue(merge.getUpdated().isEmpty());
+        assertEquals(last, merge.getLast());
+    }
+
+    @Test
+    public void shouldRebuildOnOutOfOrderDataPoints() {
+        AvailabilityRun last = new AvailabilityRun(10, 50, UP);
+
+        AvailabilityRuns.Merge merge = AvailabilityRuns.merge(last, asList(new DataPoint<>(30L, DOWN),
+                new DataPoint<>(60L, UP)));
+        assertTrue(merge.isOutOfOrder());
+        assertNull(merge.getLast());
+        assertEquals(30, merge.getRebuildStart());
+        assertEquals(61, merge.getRebuildEnd());
+
+        merge = AvailabilityRuns.merge(last, singletonList(new DataPoint<>(5L, UP)));
+        assertTrue(merge.isOutOfOrder());
+        assertEquals(5, merge.getRebuildStart());
+        assertEquals(51, merge.getRebuildEnd());
+    }
+
+    @Test
+    public void shouldComputeSameStatsAsDataPoints() {
+        AvailabilityType[] values = {UP, UP, UP, DOWN, DOWN, UP, UNKNOWN, UP, UP, DOWN, DOWN, DOWN, DOWN, UP, UP, UP,
+                DOWN, UP, UP, UP};
+        List<DataPoint<AvailabilityType>> dataPoints = new ArrayList<>();
+        for (int i = 0; i < values.length; i++) {
+            dataPoints.add(new DataPoint<>(100L + i * 10, values[i]));
+        }
+        List<AvailabilityRun> runs = AvailabilityRuns.merge(null, dataPoints).getUpdated();
+        assertEquals(9, runs.size());
+
+        // A data point is reported at the start of every bucket, which is when both computations match
+        Buckets buckets = new Buckets(100, 30, 7);
+        List<AvailabilityBucketPoint> expected = stats(Observable.from(dataPoints), buckets);
+        List<AvailabilityBucketPoint> actual = stats(AvailabilityRuns.toDataPoints(runs, buckets), buckets);
+
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertThat(actual.get(i), matchesAvailabilityBucketPoint(expected.get(i)));
+        }
+    }
+
+    @Test
+    public void shouldClipRunsToBuckets() {
+        List<AvailabilityRun> runs = asList(new AvailabilityRun(0, 45, DOWN), new AvailabilityRun(50, 500, UP));
+        List<DataPoint<AvailabilityType>> dataPoints = AvailabilityRuns.toDataPoints(runs, new Buckets(20, 20, 3))
+                .toList().toBlocking().single();
+
+        assertEquals(asList(
+                new DataPoint<>(20L, DOWN),
+                new DataPoint<>(40L, DOWN),
+                new DataPoint<>(50L, UP),
+                new DataPoint<>(60L, UP)), dataPoints);
+    }
+
+    private static List<AvailabilityBucketPoint> stats(Observable<DataPoint<AvailabilityType>> dataPoints,
+            Buckets buckets) {
+        return dataPoints
+                .groupBy(dataPoint -> buckets.getIndex(dataPoint.getTimestamp()))
+                .flatMap(group -> group.collect(() -> new AvailabilityDataPointCollector(buckets, group.getKey()),
+                        AvailabilityDataPointCollector::increment))
+                .map(AvailabilityDataPointCollector::toBucketPoint)
+                .toMap(AvailabilityBucketPoint::getStart)
+                .map(pointMap -> AvailabilityBucketPoint.toList(pointMap, buckets))
+                .toBlocking()
+                .single();
+    }
+}
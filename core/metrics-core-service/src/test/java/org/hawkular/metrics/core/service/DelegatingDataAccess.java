@@ -20,6 +20,7 @@ import java.util.Map;
 import java.util.Set;
 
 import org.hawkular.metrics.model.AvailabilityType;
+import org.hawkular.metrics.model.DataPoint;
 import org.hawkular.metrics.model.Interval;
 import org.hawkular.metrics.model.Metric;
 import org.hawkular.metrics.model.MetricId;
@@ -62,6 +63,16 @@ public class DelegatingDataAccess implements DataAccess {
         return delegate.findTenant(id);
     }
 
+    @Override
+    public Observable<ResultSet> findTenantQuotas() {
+        return delegate.findTenantQuotas();
+    }
+
+    @Override
+    public Observable<ResultSet> updateTenantQuotas(String tenantId, Map<String, Double> quotas) {
+        return delegate.updateTenantQuotas(tenantId, quotas);
+    }
+
     @Override
     public <T> ResultSetFuture insertMetricInMetricsIndex(Metric<T> metric) {
         return delegate.insertMetricInMetricsIndex(metric);
@@ -185,4 +196,35 @@ public class DelegatingDataAccess implements DataAccess {
     public Observable<ResultSet> findAvailabilityData(MetricId<AvailabilityType> id, long timestamp) {
         return delegate.findAvailabilityData(id, timestamp);
     }
+
+    @Override
+    public <T> Observable<ResultSet> updateLatestData(MetricId<T> id, DataPoint<T> dataPoint, int ttl) {
+        return delegate.updateLatestData(id, dataPoint, ttl);
+    }
+
+    @Override
+    public <T> Observable<ResultSet> findLatestData(MetricId<T> id) {
+        return delegate.findLatestData(id);
+    }
+
+    @Override
+    public Observable<ResultSet> updateAvailabilityRun(MetricId<AvailabilityType> id, long start, long end,
+            AvailabilityType availability, int ttl) {
+        return delegate.updateAvailabilityRun(id, start, end, availability, ttl);
+    }
+
+    @Override
+    public Observable<ResultSet> deleteAvailabilityRun(MetricId<AvailabilityType> id, long start) {
+        return delegate.deleteAvailabilityRun(id, start);
+    }
+
+    @Override
+    public Observable<ResultSet> findAvailabilityRun(MetricId<AvailabilityType> id, long time) {
+        return delegate.findAvailabilityRun(id, time);
+    }
+
+    @Override
+    public Observable<ResultSet> findAvailabilityRuns(MetricId<AvailabilityType> id, long start, long end) {
+        return delegate.findAvailabilityRuns(id, start, end);
+    }
 }
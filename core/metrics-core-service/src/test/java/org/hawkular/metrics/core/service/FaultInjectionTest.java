@@ -0,0 +1,284 @@
+/*
+ * Copyright 2014-2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.metrics.core.service;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.singletonList;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+import static org.hawkular.metrics.model.MetricType.GAUGE;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.hawkular.metrics.core.service.memory.MemoryDataAccess;
+import org.hawkular.metrics.model.DataPoint;
+import org.hawkular.metrics.model.Metric;
+import org.hawkular.metrics.model.MetricId;
+import org.hawkular.rx.cassandra.driver.FaultInjectingRxSession;
+import org.hawkular.rx.cassandra.driver.FaultInjector;
+import org.hawkular.rx.cassandra.driver.FaultRule;
+import org.hawkular.rx.cassandra.driver.LatencyDistribution;
+import org.hawkular.rx.cassandra.driver.RxSession;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.codahale.metrics.MetricRegistry;
+import com.datastax.driver.core.ResultSet;
+import com.datastax.driver.core.ResultSetFuture;
+import com.datastax.driver.core.exceptions.OverloadedException;
+import com.datastax.driver.core.exceptions.ReadTimeoutException;
+import com.datastax.driver.core.exceptions.WriteTimeoutException;
+
+import rx.Observable;
+import rx.observers.TestSubscriber;
+import rx.schedulers.TestScheduler;
+
+public class FaultInjectionTest {
+
+    private TestScheduler scheduler;
+    private FaultInjector faultInjector;
+    private MemoryDataAccess memoryDataAccess;
+    private DataAccess dataAccess;
+
+    @Before
+    public void setUp() {
+        scheduler = new TestScheduler();
+        faultInjector = new FaultInjector(scheduler);
+        memoryDataAccess = new MemoryDataAccess();
+        dataAccess = new FaultInjectingDataAccess(memoryDataAccess, faultInjector);
+    }
+
+    @After
+    public void tearDown() {
+        memoryDataAccess.shutdown();
+    }
+
+    private static Metric<Double> gauge(String name, long timestamp) {
+        return new Metric<>(new MetricId<>("t1", GAUGE, name), singletonList(new DataPoint<>(timestamp, 1.0)));
+    }
+
+    private int countStored(String name) {
+        return memoryDataAccess.findGaugeData(new MetricId<>("t1", GAUGE, name), 0, Long.MAX_VALUE, 0, Order.ASC,
+                false).map(ResultSet::all).toBlocking().single().size();
+    }
+
+    @Test
+    public void shouldParseRules() {
+        Map<String, FaultRule> rules = FaultInjector.parseRules(
+                "write:latency=exponential:20,timeout=0.01 ; findGaugeData:overload=0.5,partial=0.25");
+        assertEquals(asList("write", "findGaugeData"), new ArrayList<>(rules.keySet()));
+        assertEquals("latency=exponential:20,timeout=0.01,timeout-after=5000", rules.get("write").toString());
+        assertEquals("overload=0.5,partial=0.25", rules.get("findGaugeData").toString());
+        assertEquals("pareto:1:1.5", LatencyDistribution.parse("pareto:1:1.5").toString());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectProbabilitiesAboveOne() {
+        FaultRule.parse("overload=0.6,timeout=0.6");
+    }
+
+    @Test
+    public void shouldLeaveOperationsWithoutRuleUntouched() {
+        faultInjector.setRule("findGaugeData", FaultRule.parse("overload=1"));
+
+        dataAccess.insertGaugeData(gauge("g1", 1), 0).toBlocking().single();
+        assertEquals(1, countStored("g1"));
+        assertEquals(0, faultInjector.getPending());
+    }
+
+    @Test
+    public void shouldDelayOperations() {
+        faultInjector.setRule(FaultInjector.WRITE, new FaultRule(LatencyDistribution.constant(50), 0, 0, 0, 0));
+
+        TestSubscriber<Integer> subscriber = new TestSubscriber<>();
+        dataAccess.insertGaugeData(gauge("g1", 1), 0).subscribe(subscriber);
+        scheduler.advanceTimeBy(49, MILLISECONDS);
+        subscriber.assertNoTerminalEvent();
+        assertEquals("The write should not be executed before the delay", 0, countStored("g1"));
+        assertEquals(1, faultInjector.getPending());
+
+        scheduler.advanceTimeBy(1, MILLISECONDS);
+        subscriber.assertNoErrors();
+        subscriber.assertCompleted();
+        assertEquals(1, countStored("g1"));
+        assertEquals(0, faultInjector.getPending());
+    }
+
+    @Test
+    public void shouldTimeOutWithoutExecuting() {
+        faultInjector.setRule("insertGaugeData", FaultRule.parse("timeout=1,timeout-after=100"));
+
+        TestSubscriber<Integer> subscriber = new TestSubscriber<>();
+        dataAccess.insertGaugeData(gauge("g1", 1), 0).subscribe(subscriber);
+        scheduler.advanceTimeBy(99, MILLISECONDS);
+        subscriber.assertNoTerminalEvent();
+
+        scheduler.advanceTimeBy(1, MILLISECONDS);
+        assertEquals(1, subscriber.getOnErrorEvents().size());
+        assertTrue(subscriber.getOnErrorEvents().get(0) instanceof WriteTimeoutException);
+        assertEquals(0, countStored("g1"));
+        assertEquals(0, faultInjector.getPending());
+    }
+
+    @Test
+    public void shouldRejectOverloadedOperationsAtOnce() {
+        faultInjector.setRule(FaultInjector.ANY, FaultRule.parse("overload=1"));
+
+        TestSubscriber<ResultSet> subscriber = new TestSubscriber<>();
+        dataAccess.findGaugeData(new MetricId<>("t1", GAUGE, "g1"), 0, 10, 0, Order.ASC, false)
+                .subscribe(subscriber);
+        assertEquals(1, subscriber.getOnErrorEvents().size());
+        assertTrue(subscriber.getOnErrorEvents().get(0) instanceof OverloadedException);
+    }
+
+    @Test
+    public void shouldFailPartially() {
+        faultInjector.setRule("batch", FaultRule.parse("partial=1"));
+
+        TestSubscriber<Integer> subscriber = new TestSubscriber<>();
+        faultInjector.inject("batch", true, () -> Observable.just(1, 2, 3)).subscribe(subscriber);
+        subscriber.assertReceivedOnNext(singletonList(1));
+        assertEquals(1, subscriber.getOnErrorEvents().size());
+        assertTrue(subscriber.getOnErrorEvents().get(0) instanceof WriteTimeoutException);
+    }
+
+    @Test
+    public void shouldInjectFaultsIntoFutures() {
+        faultInjector.setRule(FaultInjector.READ, FaultRule.parse("timeout=1,timeout-after=10"));
+
+        ResultSetFuture future = dataAccess.findDataRetentions("t1", GAUGE);
+        assertFalse(future.isDone());
+        scheduler.advanceTimeBy(10, MILLISECONDS);
+        assertTrue(future.isDone());
+        try {
+            future.getUninterruptibly();
+            fail("The read should have timed out");
+        } catch (ReadTimeoutException e) {
+            // Expected
+        }
+
+        faultInjector.clear();
+        assertTrue(dataAccess.findDataRetentions("t1", GAUGE).getUninterruptibly().all().isEmpty());
+    }
+
+    @Test
+    public void shouldNameStatementsAfterTheirTable() {
+        RxSession delegate = mock(RxSession.class);
+        ResultSet resultSet = mock(ResultSet.class);
+        String select = "SELECT time, n_value FROM data WHERE tenant_id = 't1'";
+        String insert = "INSERT INTO data (tenant_id, time) VALUES ('t1', now())";
+        when(delegate.execute(select)).thenReturn(Observable.just(resultSet));
+        when(delegate.execute(insert)).thenReturn(Observable.just(resultSet));
+        RxSession session = new FaultInjectingRxSession(delegate, faultInjector);
+
+        faultInjector.setRule("select.data", FaultRule.parse("timeout=1,timeout-after=10"));
+        faultInjector.setRule(FaultInjector.WRITE, FaultRule.parse("overload=1"));
+
+        TestSubscriber<ResultSet> reads = new TestSubscriber<>();
+        session.execute(select).subscribe(reads);
+        scheduler.advanceTimeBy(10, MILLISECONDS);
+        assertTrue(reads.getOnErrorEvents().get(0) instanceof ReadTimeoutException);
+
+        TestSubscriber<ResultSet> writes = new TestSubscriber<>();
+        session.execute(insert).subscribe(writes);
+        assertTrue(writes.getOnErrorEvents().get(0) instanceof OverloadedException);
+
+        faultInjector.clear();
+        assertEquals(resultSet, session.execute(select).toBlocking().single());
+        verify(delegate).execute(select);
+    }
+
+    /**
+     * Writes and reads through the service while Cassandra is slow and failing: every request has to complete, in a
+     * time bounded by the injected delays, and nothing must be left pending once the load stops.
+     */
+    @Test
+    public void shouldBoundLatencyAndPendingOperationsUnderFaults() throws Exception {
+        FaultInjector realTimeInjector = new FaultInjector();
+        MetricsServiceImpl metricsService = new MetricsServiceImpl();
+        metricsService.setDataAccess(new FaultInjectingDataAccess(memoryDataAccess, realTimeInjector));
+        metricsService.setDateTimeService(new DateTimeService());
+        metricsService.startUp(new MetricRegistry());
+        // Faults are injected once started, startup reads are not retried
+        realTimeInjector.setRules(FaultInjector.parseRules(
+                "write:latency=uniform:0:20,overload=0.1,timeout=0.1,timeout-after=50,partial=0.05;"
+                        + "read:latency=exponential:5,timeout=0.05,timeout-after=50"));
+
+        AtomicInteger insertedEvents = new AtomicInteger();
+        metricsService.insertedDataEvents().subscribe(metric -> insertedEvents.incrementAndGet());
+        AtomicInteger maxPending = new AtomicInteger();
+        ScheduledExecutorService sampler = Executors.newSingleThreadScheduledExecutor();
+        sampler.scheduleAtFixedRate(() -> maxPending.accumulateAndGet(realTimeInjector.getPending(), Math::max), 0, 1,
+                MILLISECONDS);
+
+        int requests = 400;
+        int concurrency = 16;
+        long start = System.currentTimeMillis() - 60_000;
+        List<Long> latencies = new ArrayList<>();
+        AtomicInteger failures = new AtomicInteger();
+        try {
+            Observable.range(0, requests)
+                    .flatMap(i -> {
+                        long begin = System.nanoTime();
+                        MetricId<Double> id = new MetricId<>("t1", GAUGE, "g" + (i % 20));
+                        Observable<?> request = i % 2 == 0
+                                ? metricsService.addDataPoints(GAUGE, Observable.just(new Metric<>(id,
+                                        singletonList(new DataPoint<>(start + i, 1.0)))))
+                                : metricsService.findDataPoints(id, start, start + requests, 0, Order.ASC);
+                        return request.ignoreElements().map(item -> 0L)
+                                .onErrorResumeNext(t -> {
+                                    failures.incrementAndGet();
+                                    return Observable.empty();
+                                })
+                                .concatWith(Observable.defer(() -> Observable.just(System.nanoTime() - begin)));
+                    }, concurrency)
+                    .timeout(30, SECONDS)
+                    .toBlocking()
+                    .forEach(latencies::add);
+        } finally {
+            sampler.shutdown();
+            metricsService.shutdown();
+        }
+
+        assertEquals("Every request should complete", requests, latencies.size());
+        assertTrue("Some requests should fail", failures.get() > 0);
+        assertTrue("Some requests should succeed", failures.get() < requests);
+        long slowest = latencies.stream().mapToLong(Long::longValue).max().getAsLong();
+        assertTrue("Requests should not take much longer than the injected delays, took "
+                + NANOSECONDS.toMillis(slowest) + " ms", slowest < SECONDS.toNanos(5));
+        assertTrue("Pending operations should be bounded by the concurrency, was " + maxPending.get(),
+                maxPending.get() <= concurrency * 4);
+        sampler.awaitTermination(1, SECONDS);
+        assertEquals("No operation should be left pending", 0, realTimeInjector.getPending());
+        assertTrue("Only stored data points should be published", insertedEvents.get() <= requests / 2);
+    }
+}
@@ -0,0 +1,148 @@
+/*
+ * Copyright 2014-2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.metrics.core.service;
+
+import static java.util.Arrays.asList;
+
+import static org.hawkular.metrics.model.MetricType.AVAILABILITY;
+import static org.hawkular.metrics.model.MetricType.COUNTER;
+import static org.hawkular.metrics.model.MetricType.GAUGE;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.hawkular.metrics.model.AvailabilityType;
+import org.hawkular.metrics.model.DataPoint;
+import org.hawkular.metrics.model.Metric;
+import org.hawkular.metrics.model.MetricId;
+import org.junit.Before;
+import org.junit.Test;
+
+public class HeadBlockTest {
+    private AtomicLong now;
+    private HeadBlock headBlock;
+    private MetricId<Double> id;
+
+    @Before
+    public void setup() {
+        now = new AtomicLong(10_000);
+        headBlock = new HeadBlock(1_000, 8, 100, now::get);
+        id = new MetricId<>("t1", GAUGE, "m1");
+    }
+
+    @Test
+    public void shouldReturnPointsInRangeAndOrder() {
+        headBlock.add(new Metric<>(id, asList(
+                new DataPoint<>(10_300L, 3.0),
+                new DataPoint<>(10_100L, 1.0),
+                new DataPoint<>(10_200L, 2.0))));
+
+        HeadBlock.Read<Double> read = headBlock.read(id, 10_100, 10_300, Order.ASC);
+        assertEquals(10_100, read.getFrom());
+        assertEquals(asList(new DataPoint<>(10_100L, 1.0), new DataPoint<>(10_200L, 2.0)), read.getDataPoints());
+
+        read = headBlock.read(id, 10_000, 11_000, Order.DESC);
+        assertEquals(asList(new DataPoint<>(10_300L, 3.0), new DataPoint<>(10_200L, 2.0),
+                new DataPoint<>(10_100L, 1.0)), read.getDataPoints());
+    }
+
+    @Test
+    public void shouldReportCoverageOfPartialRange() {
+        headBlock.add(new Metric<>(id, asList(new DataPoint<>(10_100L, 1.0))));
+
+        HeadBlock.Read<Double> read = headBlock.read(id, 5_000, 11_000, Order.ASC);
+        assertEquals(10_000, read.getFrom());
+        assertEquals(asList(new DataPoint<>(10_100L, 1.0)), read.getDataPoints());
+
+        assertNull(headBlock.read(id, 5_000, 9_000, Order.ASC));
+        assertNull(headBlock.read(new MetricId<>("t1", GAUGE, "m2"), 10_000, 11_000, Order.ASC));
+    }
+
+    @Test
+    public void shouldIgnorePointsOlderThanCoverage() {
+        headBlock.add(new Metric<>(id, asList(new DataPoint<>(9_000L, 1.0))));
+
+        assertEquals(0, headBlock.getPointCount());
+    }
+
+    @Test
+    public void shouldOverwritePointWithSameTimestamp() {
+        headBlock.add(new Metric<>(id, asList(new DataPoint<>(10_100L, 1.0))));
+        headBlock.add(new Metric<>(id, asList(new DataPoint<>(10_100L, 2.0))));
+
+        assertEquals(asList(new DataPoint<>(10_100L, 2.0)),
+                headBlock.read(id, 10_000, 11_000, Order.ASC).getDataPoints());
+        assertEquals(1, headBlock.getPointCount());
+    }
+
+    @Test
+    public void shouldDropPointsOutsideOfWindow() {
+        headBlock.add(new Metric<>(id, asList(new DataPoint<>(10_100L, 1.0), new DataPoint<>(10_900L, 2.0))));
+        now.set(11_500);
+
+        HeadBlock.Read<Double> read = headBlock.read(id, 10_000, 12_000, Order.ASC);
+        assertEquals(10_500, read.getFrom());
+        assertEquals(asList(new DataPoint<>(10_900L, 2.0)), read.getDataPoints());
+        assertEquals(1, headBlock.getPointCount());
+    }
+
+    @Test
+    public void shouldDropOldestPointsWhenMetricIsFull() {
+        List<DataPoint<Double>> dataPoints = new ArrayList<>();
+        for (int i = 0; i < 9; i++) {
+            dataPoints.add(new DataPoint<>(10_000L + i, (double) i));
+        }
+        headBlock.add(new Metric<>(id, dataPoints));
+
+        HeadBlock.Read<Double> read = headBlock.read(id, 10_000, 11_000, Order.ASC);
+        assertEquals(10_001, read.getFrom());
+        assertEquals(dataPoints.subList(1, 9), read.getDataPoints());
+        assertEquals(8, headBlock.getPointCount());
+    }
+
+    @Test
+    public void shouldDecodeValuesOfEachType() {
+        MetricId<Long> counter = new MetricId<>("t1", COUNTER, "c1");
+        headBlock.add(new Metric<>(counter, asList(new DataPoint<>(10_100L, 42L))));
+        MetricId<AvailabilityType> availability = new MetricId<>("t1", AVAILABILITY, "a1");
+        headBlock.add(new Metric<>(availability, asList(new DataPoint<>(10_100L, AvailabilityType.DOWN))));
+
+        assertEquals(asList(new DataPoint<>(10_100L, 42L)),
+                headBlock.read(counter, 10_000, 11_000, Order.ASC).getDataPoints());
+        assertEquals(asList(new DataPoint<>(10_100L, AvailabilityType.DOWN)),
+                headBlock.read(availability, 10_000, 11_000, Order.ASC).getDataPoints());
+    }
+
+    @Test
+    public void shouldNotCoverDataWrittenBeforeEviction() {
+        headBlock = new HeadBlock(1_000, 8, 1, now::get);
+        headBlock.add(new Metric<>(id, asList(new DataPoint<>(10_100L, 1.0))));
+        now.set(10_200);
+        MetricId<Double> other = new MetricId<>("t1", GAUGE, "m2");
+        headBlock.add(new Metric<>(other, asList(new DataPoint<>(10_200L, 1.0))));
+        now.set(10_300);
+        headBlock.add(new Metric<>(id, asList(new DataPoint<>(10_300L, 2.0))));
+
+        HeadBlock.Read<Double> read = headBlock.read(id, 10_000, 11_000, Order.ASC);
+        assertEquals(10_200, read.getFrom());
+        assertEquals(asList(new DataPoint<>(10_300L, 2.0)), read.getDataPoints());
+        assertEquals(2, headBlock.getEvictionCount());
+    }
+}
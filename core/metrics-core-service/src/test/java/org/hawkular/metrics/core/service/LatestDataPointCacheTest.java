@@ -0,0 +1,85 @@
+/*
+ * Copyright 2014-2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.metrics.core.service;
+
+import static java.util.Arrays.asList;
+
+import static org.hawkular.metrics.model.MetricType.GAUGE;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Collections;
+
+import org.hawkular.metrics.model.DataPoint;
+import org.hawkular.metrics.model.Metric;
+import org.hawkular.metrics.model.MetricId;
+import org.junit.Before;
+import org.junit.Test;
+
+public class LatestDataPointCacheTest {
+    private LatestDataPointCache cache;
+    private MetricId<Double> id;
+
+    @Before
+    public void setup() {
+        cache = new LatestDataPointCache(10, 0);
+        id = new MetricId<>("t1", GAUGE, "m1");
+    }
+
+    @Test
+    public void shouldKeepNewestDataPointOfMetric() {
+        DataPoint<Double> newest = new DataPoint<>(30L, 3.0);
+        Metric<Double> metric = new Metric<>(id, asList(new DataPoint<>(10L, 1.0), newest, new DataPoint<>(20L, 2.0)));
+
+        assertEquals(newest, cache.update(metric));
+        assertEquals(newest, cache.get(id));
+    }
+
+    @Test
+    public void shouldIgnoreOlderDataPoints() {
+        DataPoint<Double> newest = new DataPoint<>(30L, 3.0);
+        cache.update(new Metric<>(id, asList(newest)));
+
+        assertNull(cache.update(new Metric<>(id, asList(new DataPoint<>(20L, 2.0)))));
+        assertEquals(newest, cache.get(id));
+    }
+
+    @Test
+    public void shouldReplaceValueWithSameTimestamp() {
+        cache.update(new Metric<>(id, asList(new DataPoint<>(30L, 3.0))));
+        DataPoint<Double> overwrite = new DataPoint<>(30L, 4.0);
+
+        assertEquals(overwrite, cache.update(new Metric<>(id, asList(overwrite))));
+        assertEquals(overwrite, cache.get(id));
+    }
+
+    @Test
+    public void shouldIgnoreMetricWithoutData() {
+        assertNull(cache.update(new Metric<>(id, Collections.emptyList())));
+        assertNull(cache.get(id));
+    }
+
+    @Test
+    public void shouldBeBounded() {
+        for (int i = 0; i < 100; i++) {
+            MetricId<Double> metricId = new MetricId<>("t1", GAUGE, "m" + i);
+            cache.update(new Metric<>(metricId, asList(new DataPoint<>((long) i, (double) i))));
+        }
+        assertTrue(cache.size() <= 10);
+    }
+}
@@ -127,6 +127,7 @@ public class MetricsServiceITest extends MetricsITest {
         metricsService.setTaskScheduler(new FakeTaskScheduler());
         metricsService.setDateTimeService(dateTimeService);
         metricsService.setDefaultTTL(DEFAULT_TTL);
+        metricsService.setAvailabilityRunsEnabled(true);
         metricsService.startUp(session, getKeyspace(), false, new MetricRegistry());
 
 
@@ -151,6 +152,7 @@ public class MetricsServiceITest extends MetricsITest {
         session.execute("TRUNCATE retentions_idx");
         session.execute("TRUNCATE metrics_tags_idx");
         session.execute("TRUNCATE tenants_by_time");
+        session.execute("TRUNCATE availability_runs");
         metricsService.setDataAccess(dataAccess);
         NumericDataPointCollector.createPercentile = defaultCreatePercentile;
     }
@@ -544,6 +546,37 @@ public class MetricsServiceITest extends MetricsITest {
         assertMetricIndexMatches("t1", GAUGE, singletonList(new Metric<>(m1.getMetricId(), m1.getDataPoints(), 7)));
     }
 
+    @Test
+    public void fetchDataOfMultipleGauges() throws Exception {
+        DateTime start = now().minusMinutes(30);
+        DateTime end = start.plusMinutes(20);
+        String tenantId = "multi-gauge-data";
+
+        Metric<Double> m1 = new Metric<>(new MetricId<>(tenantId, GAUGE, "m1"), ImmutableMap.of("x", "1"), null,
+                asList(new DataPoint<>(start.getMillis(), 1.1),
+                        new DataPoint<>(start.plusMinutes(2).getMillis(), 2.2)));
+        Metric<Double> m2 = new Metric<>(new MetricId<>(tenantId, GAUGE, "m2"), ImmutableMap.of("x", "2"), null,
+                singletonList(new DataPoint<>(start.plusMinutes(1).getMillis(), 3.3)));
+        doAction(() -> metricsService.createMetric(m1));
+        doAction(() -> metricsService.createMetric(m2));
+        doAction(() -> metricsService.addDataPoints(GAUGE, Observable.just(m1, m2)));
+
+        Map<String, List<DataPoint<Double>>> actual = metricsService.findDataPoints(tenantId, GAUGE,
+                asList("m1", "m2", "m3"), start.getMillis(), end.getMillis(), 1, Order.ASC, dataPoints -> dataPoints)
+                .toMap(Metric::getId, Metric::getDataPoints)
+                .toBlocking().single();
+        assertEquals(actual, ImmutableMap.of(
+                "m1", singletonList(new DataPoint<>(start.getMillis(), 1.1)),
+                "m2", singletonList(new DataPoint<>(start.plusMinutes(1).getMillis(), 3.3))));
+
+        actual = metricsService.findDataPoints(tenantId, GAUGE, ImmutableMap.of("x", "1"), start.getMillis(),
+                end.getMillis(), 0, Order.DESC, dataPoints -> dataPoints)
+                .toMap(Metric::getId, Metric::getDataPoints)
+                .toBlocking().single();
+        assertEquals(actual, ImmutableMap.of("m1", asList(new DataPoint<>(start.plusMinutes(2).getMillis(), 2.2),
+                new DataPoint<>(start.getMillis(), 1.1))));
+    }
+
     @Test
     public void addAndFetchCounterData() throws Exception {
         DateTime start = now().minusMinutes(30);
@@ -1474,6 +1507,39 @@ public class MetricsServiceITest extends MetricsITest {
         assertEquals(actual, expected, "The availability data does not match the expected values");
     }
 
+    @Test
+    public void findDistinctAvailabilitiesAfterOutOfOrderWrite() throws Exception {
+        DateTime start = now().minusMinutes(20);
+        MetricId<AvailabilityType> metricId = new MetricId<>("tenant1", AVAILABILITY, "A2");
+
+        metricsService.addDataPoints(AVAILABILITY, Observable.just(new Metric<>(metricId, asList(
+                new DataPoint<>(start.minusMinutes(1).getMillis(), UP),
+                new DataPoint<>(start.plusMinutes(1).getMillis(), UP),
+                new DataPoint<>(start.plusMinutes(2).getMillis(), UP),
+                new DataPoint<>(start.plusMinutes(4).getMillis(), UP),
+                new DataPoint<>(start.plusMinutes(5).getMillis(), DOWN)))))
+                .toBlocking().lastOrDefault(null);
+        metricsService.addDataPoints(AVAILABILITY, Observable.just(new Metric<>(metricId, singletonList(
+                new DataPoint<>(start.plusMinutes(3).getMillis(), DOWN)))))
+                .toBlocking().lastOrDefault(null);
+
+        List<DataPoint<AvailabilityType>> actual = metricsService.findAvailabilityData(metricId, start.getMillis(),
+                now().getMillis(), true, 0, Order.ASC).toList().toBlocking().single();
+        assertEquals(actual, asList(
+                new DataPoint<>(start.plusMinutes(1).getMillis(), UP),
+                new DataPoint<>(start.plusMinutes(3).getMillis(), DOWN),
+                new DataPoint<>(start.plusMinutes(4).getMillis(), UP),
+                new DataPoint<>(start.plusMinutes(5).getMillis(), DOWN)));
+
+        actual = metricsService.findAvailabilityData(metricId, start.getMillis(), now().getMillis(), true, 0,
+                Order.DESC).toList().toBlocking().single();
+        assertEquals(actual, asList(
+                new DataPoint<>(start.plusMinutes(5).getMillis(), DOWN),
+                new DataPoint<>(start.plusMinutes(4).getMillis(), UP),
+                new DataPoint<>(start.plusMinutes(3).getMillis(), DOWN),
+                new DataPoint<>(start.plusMinutes(2).getMillis(), UP)));
+    }
+
     @Test
     public void getPeriodsAboveThreshold() throws Exception {
         String tenantId = "test-tenant";
@@ -0,0 +1,182 @@
+/*
+ * Copyright 2014-2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.metrics.core.service.events;
+
+import static java.util.Collections.singletonList;
+import static java.util.stream.Collectors.toList;
+
+import static org.hawkular.metrics.model.MetricType.GAUGE;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import org.hawkular.metrics.model.DataPoint;
+import org.hawkular.metrics.model.Metric;
+import org.hawkular.metrics.model.MetricId;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.MetricRegistry;
+
+import rx.Subscription;
+
+public class InsertedDataEventsTest {
+    private static final int CAPACITY = 10;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final MetricRegistry metricRegistry = new MetricRegistry();
+    private Counter dropped;
+
+    private static Metric<Double> gauge(int i) {
+        return new Metric<>(new MetricId<>("t1", GAUGE, "g" + i), singletonList(new DataPoint<>((long) i, 1.0)));
+    }
+
+    private static List<Metric<?>> gauges(IntStream indexes) {
+        return indexes.mapToObj(InsertedDataEventsTest::gauge).collect(toList());
+    }
+
+    private InsertedDataEvents create(OverflowPolicy overflowPolicy) {
+        return new InsertedDataEvents(CAPACITY, overflowPolicy, folder.getRoot().toPath(), 1024 * 1024,
+                metricRegistry);
+    }
+
+    /**
+     * Subscribes a consumer which blocks on the first event until {@code release} is counted down, and publishes
+     * {@code count} events once the first one is being delivered. The dropped events are counted by {@link #dropped}.
+     */
+    private List<Metric<?>> publishToBlockedConsumer(InsertedDataEvents events, int count) throws Exception {
+        List<Metric<?>> received = new CopyOnWriteArrayList<>();
+        CountDownLatch blocked = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        events.observe("slow").subscribe(metric -> {
+            received.add(metric);
+            blocked.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        dropped = metricRegistry.counter("inserted-data-events-slow-dropped");
+        events.publish(gauge(0));
+        assertTrue(blocked.await(10, TimeUnit.SECONDS));
+        for (int i = 1; i < count; i++) {
+            events.publish(gauge(i));
+        }
+        release.countDown();
+        events.shutdown();
+        return received;
+    }
+
+    private static void awaitDelivery(List<Metric<?>> received, int count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (received.size() < count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+    }
+
+    @Test
+    public void shouldDeliverEventsToEveryConsumer() throws Exception {
+        InsertedDataEvents events = create(OverflowPolicy.DROP_OLDEST);
+        List<Metric<?>> first = new CopyOnWriteArrayList<>();
+        List<Metric<?>> second = new CopyOnWriteArrayList<>();
+        events.observe("first").subscribe(first::add);
+        events.observe("second").subscribe(second::add);
+
+        gauges(IntStream.range(0, 5)).forEach(events::publish);
+        awaitDelivery(first, 5);
+        awaitDelivery(second, 5);
+
+        assertEquals(gauges(IntStream.range(0, 5)), first);
+        assertEquals(gauges(IntStream.range(0, 5)), second);
+        assertEquals(5, metricRegistry.meter("inserted-data-events-first-delivered").getCount());
+        events.shutdown();
+    }
+
+    @Test
+    public void shouldDropOldestEventsWhenFull() throws Exception {
+        InsertedDataEvents events = create(OverflowPolicy.DROP_OLDEST);
+        List<Metric<?>> received = publishToBlockedConsumer(events, 31);
+        awaitDelivery(received, CAPACITY + 1);
+
+        List<Metric<?>> expected = gauges(IntStream.concat(IntStream.of(0), IntStream.range(21, 31)));
+        assertEquals(expected, received);
+        assertEquals(20, dropped.getCount());
+    }
+
+    @Test
+    public void shouldDropNewestEventsWhenFull() throws Exception {
+        InsertedDataEvents events = create(OverflowPolicy.DROP_NEWEST);
+        List<Metric<?>> received = publishToBlockedConsumer(events, 31);
+        awaitDelivery(received, CAPACITY + 1);
+
+        assertEquals(gauges(IntStream.range(0, CAPACITY + 1)), received);
+        assertEquals(20, dropped.getCount());
+    }
+
+    @Test
+    public void shouldSpillEventsInOrderWhenFull() throws Exception {
+        InsertedDataEvents events = create(OverflowPolicy.SPILL);
+        List<Metric<?>> received = publishToBlockedConsumer(events, 100);
+        awaitDelivery(received, 100);
+
+        assertEquals(gauges(IntStream.range(0, 100)), received);
+        assertEquals(0, dropped.getCount());
+    }
+
+    @Test
+    public void shouldStopDeliveringOnceUnsubscribed() throws Exception {
+        InsertedDataEvents events = create(OverflowPolicy.DROP_OLDEST);
+        List<Metric<?>> received = new CopyOnWriteArrayList<>();
+        Subscription subscription = events.observe("consumer").subscribe(received::add);
+        events.publish(gauge(1));
+        awaitDelivery(received, 1);
+
+        subscription.unsubscribe();
+        events.publish(gauge(2));
+        Thread.sleep(200);
+
+        assertEquals(singletonList(gauge(1)), received);
+        events.shutdown();
+    }
+
+    @Test
+    public void shouldRemoveConsumerMetricsOnceUnsubscribed() throws Exception {
+        InsertedDataEvents events = create(OverflowPolicy.DROP_OLDEST);
+        Subscription subscription = events.observe("consumer").subscribe(metric -> {
+        });
+        assertEquals(4, metricRegistry.getNames().size());
+
+        subscription.unsubscribe();
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (!metricRegistry.getNames().isEmpty() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+
+        assertTrue(metricRegistry.getNames().isEmpty());
+        events.shutdown();
+    }
+}
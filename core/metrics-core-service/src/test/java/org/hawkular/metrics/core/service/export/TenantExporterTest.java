@@ -0,0 +1,116 @@
+/*
+ * Copyright 2014-2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.metrics.core.service.export;
+
+import static java.util.Arrays.asList;
+
+import static org.hawkular.metrics.model.MetricType.AVAILABILITY;
+import static org.hawkular.metrics.model.MetricType.GAUGE;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.hawkular.metrics.core.service.MetricsService;
+import org.hawkular.metrics.core.service.Order;
+import org.hawkular.metrics.model.AvailabilityType;
+import org.hawkular.metrics.model.DataPoint;
+import org.hawkular.metrics.model.Metric;
+import org.hawkular.metrics.model.MetricId;
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableMap;
+
+import rx.Observable;
+import rx.schedulers.Schedulers;
+
+public class TenantExporterTest {
+
+    @Test
+    public void shouldWriteDefinitionsAndChunksOfDataPoints() throws Exception {
+        MetricId<Double> cpu = new MetricId<>("t1", GAUGE, "cpu");
+        MetricId<AvailabilityType> db = new MetricId<>("t1", AVAILABILITY, "db");
+        MetricsService metricsService = mock(MetricsService.class);
+        doReturn(Observable.just(new Metric<>(cpu, ImmutableMap.of("host", "a"), 7),
+                new Metric<>(db, Collections.emptyMap(), 7))).when(metricsService).findMetrics("t1", null);
+        when(metricsService.findDataPoints(eq(cpu), anyLong(), anyLong(), anyInt(), any(Order.class)))
+                .thenReturn(Observable.just(new DataPoint<>(1L, 1.5), new DataPoint<>(2L, 2.5),
+                        new DataPoint<>(3L, 3.5)));
+        when(metricsService.findDataPoints(eq(db), anyLong(), anyLong(), anyInt(), any(Order.class)))
+                .thenReturn(Observable.just(new DataPoint<>(1L, AvailabilityType.DOWN)));
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        TenantExporter.Summary summary = new TenantExporter(metricsService, 1, 2).export("t1", 0, 10, output);
+
+        List<String> lines = asList(new String(output.toByteArray(), StandardCharsets.UTF_8).split("\n"));
+        assertEquals(asList(
+                "{\"format\":\"hawkular-metrics-export\",\"version\":1,\"tenantId\":\"t1\",\"start\":0,\"end\":10}",
+                "{\"id\":\"cpu\",\"type\":\"gauge\",\"tags\":{\"host\":\"a\"},\"dataRetention\":7,\"data\":[]}",
+                "{\"id\":\"cpu\",\"type\":\"gauge\",\"data\":[{\"timestamp\":1,\"value\":1.5}," +
+                        "{\"timestamp\":2,\"value\":2.5}]}",
+                "{\"id\":\"cpu\",\"type\":\"gauge\",\"data\":[{\"timestamp\":3,\"value\":3.5}]}",
+                "{\"id\":\"db\",\"type\":\"availability\",\"dataRetention\":7,\"data\":[]}",
+                "{\"id\":\"db\",\"type\":\"availability\",\"data\":[{\"timestamp\":1,\"value\":\"down\"}]}"),
+                lines);
+        assertEquals(2, summary.getMetrics());
+        assertEquals(4, summary.getDataPoints());
+    }
+
+    @Test
+    public void shouldWriteOnTheCallingThreadAndStopReadingWhenWritingFails() throws Exception {
+        MetricId<Double> cpu = new MetricId<>("t1", GAUGE, "cpu");
+        MetricsService metricsService = mock(MetricsService.class);
+        doReturn(Observable.just(new Metric<>(cpu, Collections.emptyMap(), 7))).when(metricsService)
+                .findMetrics("t1", null);
+        AtomicInteger read = new AtomicInteger();
+        when(metricsService.findDataPoints(eq(cpu), anyLong(), anyLong(), anyInt(), any(Order.class)))
+                .thenReturn(Observable.range(0, 100_000)
+                        .map(i -> new DataPoint<>((long) i, 1.0))
+                        .doOnNext(dataPoint -> read.incrementAndGet())
+                        .subscribeOn(Schedulers.computation()));
+
+        Thread caller = Thread.currentThread();
+        OutputStream output = new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                assertEquals(caller, Thread.currentThread());
+                throw new IOException("Connection reset");
+            }
+        };
+        try {
+            new TenantExporter(metricsService, 1, 1).export("t1", 0, 100_000, output);
+            fail("Expected the export to fail");
+        } catch (IOException e) {
+            assertEquals("Connection reset", e.getMessage());
+        }
+        assertTrue("Read " + read.get() + " data points", read.get() < 10_000);
+    }
+}
@@ -0,0 +1,181 @@
+/*
+ * Copyright 2014-2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.metrics.core.service.ingest;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.emptyMap;
+import static java.util.Collections.singletonList;
+
+import static org.hawkular.metrics.model.MetricType.GAUGE;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.hawkular.metrics.model.DataPoint;
+import org.hawkular.metrics.model.Metric;
+import org.hawkular.metrics.model.MetricId;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.codahale.metrics.MetricRegistry;
+import com.datastax.driver.core.ConsistencyLevel;
+import com.datastax.driver.core.WriteType;
+import com.datastax.driver.core.exceptions.InvalidQueryException;
+import com.datastax.driver.core.exceptions.NoHostAvailableException;
+import com.datastax.driver.core.exceptions.OverloadedException;
+import com.datastax.driver.core.exceptions.WriteTimeoutException;
+
+import rx.Observable;
+import rx.functions.Func1;
+
+public class IngestLogReplayerTest {
+
+    private static final int SEGMENT_SIZE = 1024;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Path directory;
+    private IngestLog ingestLog;
+    private IngestLogReplayer replayer;
+    private MetricRegistry metricRegistry;
+    private List<Metric<?>> stored;
+
+    @Before
+    public void setup() throws Exception {
+        directory = folder.getRoot().toPath();
+        ingestLog = open();
+        metricRegistry = new MetricRegistry();
+        stored = new CopyOnWriteArrayList<>();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        if (replayer != null) {
+            replayer.stop();
+        }
+        ingestLog.close();
+    }
+
+    private IngestLog open() throws IOException {
+        return new IngestLog(directory, SEGMENT_SIZE, 10_000, FsyncPolicy.NEVER, 0);
+    }
+
+    private static Metric<Double> gauge(String name) {
+        return new Metric<>(new MetricId<>("t1", GAUGE, name), singletonList(new DataPoint<>(1L, 1.5)));
+    }
+
+    private void startReplayer() {
+        startReplayer(metrics -> {
+            if (metrics.contains(gauge("bad"))) {
+                return Observable.error(new InvalidQueryException("Rejected"));
+            }
+            stored.addAll(metrics);
+            return Observable.empty();
+        });
+    }
+
+    private void startReplayer(Func1<List<Metric<?>>, Observable<Void>> writer) {
+        replayer = new IngestLogReplayer(ingestLog, writer, 0, 1, metricRegistry);
+        replayer.start();
+    }
+
+    private void awaitReplayed() throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (ingestLog.getPendingRecords() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(0, ingestLog.getPendingRecords());
+    }
+
+    @Test
+    public void shouldSkipCorruptedRecords() throws Exception {
+        assertTrue(ingestLog.append(singletonList(gauge("g1"))));
+        ingestLog.close();
+
+        // A record with a valid checksum but a payload which cannot be decoded
+        IngestLogSegment segment;
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*.log")) {
+            segment = IngestLogSegment.open(stream.iterator().next(), SEGMENT_SIZE);
+        }
+        assertTrue(segment.append(new byte[]{1, 2, 3}, System.currentTimeMillis()));
+        segment.close();
+
+        ingestLog = open();
+        assertTrue(ingestLog.append(singletonList(gauge("g2"))));
+        startReplayer();
+        awaitReplayed();
+
+        assertEquals(asList(gauge("g1"), gauge("g2")), stored);
+        assertEquals(1, metricRegistry.counter("ingest-log-skipped-records").getCount());
+        assertEquals(0, metricRegistry.counter("ingest-log-replay-failures").getCount());
+    }
+
+    @Test
+    public void shouldDropRejectedRecords() throws Exception {
+        assertTrue(ingestLog.append(singletonList(gauge("g1"))));
+        assertTrue(ingestLog.append(singletonList(gauge("bad"))));
+        assertTrue(ingestLog.append(singletonList(gauge("g2"))));
+
+        startReplayer();
+        awaitReplayed();
+
+        assertEquals(asList(gauge("g1"), gauge("g2")), stored);
+        assertEquals(1, metricRegistry.counter("ingest-log-skipped-records").getCount());
+        assertEquals(1, metricRegistry.counter("ingest-log-replay-failures").getCount());
+    }
+
+    @Test
+    public void shouldKeepRetryingWhileCassandraIsDown() throws Exception {
+        assertTrue(ingestLog.append(singletonList(gauge("g1"))));
+        assertTrue(ingestLog.append(singletonList(gauge("g2"))));
+
+        // Far more failures in a row than a replayer giving up after a few attempts would tolerate
+        List<Exception> outage = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            outage.add(new NoHostAvailableException(emptyMap()));
+            outage.add(new WriteTimeoutException(ConsistencyLevel.ONE, WriteType.SIMPLE, 0, 1));
+            outage.add(new OverloadedException(new InetSocketAddress(9042), "Overloaded"));
+        }
+        AtomicInteger attempts = new AtomicInteger();
+        startReplayer(metrics -> {
+            int attempt = attempts.getAndIncrement();
+            if (attempt < outage.size()) {
+                return Observable.error(outage.get(attempt));
+            }
+            stored.addAll(metrics);
+            return Observable.empty();
+        });
+        awaitReplayed();
+
+        assertEquals(asList(gauge("g1"), gauge("g2")), stored);
+        assertEquals(0, metricRegistry.counter("ingest-log-skipped-records").getCount());
+        assertEquals(outage.size(), metricRegistry.counter("ingest-log-replay-failures").getCount());
+    }
+}
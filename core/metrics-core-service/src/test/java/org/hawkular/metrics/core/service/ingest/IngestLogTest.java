@@ -0,0 +1,202 @@
+/*
+ * Copyright 2014-2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.metrics.core.service.ingest;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.singletonList;
+
+import static org.hawkular.metrics.model.MetricType.AVAILABILITY;
+import static org.hawkular.metrics.model.MetricType.COUNTER;
+import static org.hawkular.metrics.model.MetricType.GAUGE;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.hawkular.metrics.model.AvailabilityType;
+import org.hawkular.metrics.model.DataPoint;
+import org.hawkular.metrics.model.Metric;
+import org.hawkular.metrics.model.MetricId;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class IngestLogTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Path directory;
+    private IngestLog ingestLog;
+
+    @Before
+    public void setup() throws Exception {
+        directory = folder.getRoot().toPath();
+        ingestLog = open();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        ingestLog.close();
+    }
+
+    private IngestLog open() throws IOException {
+        return new IngestLog(directory, 1024, 10_000, FsyncPolicy.NEVER, 0);
+    }
+
+    private static Metric<Double> gauge(String name, long timestamp) {
+        return new Metric<>(new MetricId<>("t1", GAUGE, name), singletonList(new DataPoint<>(timestamp, 1.5)));
+    }
+
+    @Test
+    public void shouldEncodeAllTypes() throws Exception {
+        List<Metric<?>> metrics = asList(
+                gauge("g1", 1),
+                new Metric<>(new MetricId<>("t1", COUNTER, "c1"), asList(new DataPoint<>(1L, 10L),
+                        new DataPoint<>(2L, 20L))),
+                new Metric<>(new MetricId<>("t2", AVAILABILITY, "a1"), singletonList(
+                        new DataPoint<>(1L, AvailabilityType.DOWN))));
+
+        List<Metric<?>> decoded = IngestLogCodec.decode(IngestLogCodec.encode(metrics));
+
+        assertEquals(metrics, decoded);
+        for (int i = 0; i < metrics.size(); i++) {
+            assertEquals(metrics.get(i).getDataPoints(), decoded.get(i).getDataPoints());
+        }
+    }
+
+    @Test
+    public void shouldReadAppendedRecordsUntilCommitted() throws Exception {
+        assertTrue(ingestLog.append(singletonList(gauge("g1", 1))));
+        assertTrue(ingestLog.append(singletonList(gauge("g2", 2))));
+
+        List<IngestLog.Record> records = ingestLog.read(ingestLog.getCommittedOffset(), 10);
+        assertEquals(2, records.size());
+        assertEquals(singletonList(gauge("g1", 1)), records.get(0).getMetrics());
+        assertEquals(2, ingestLog.getPendingRecords());
+
+        ingestLog.commit(records.get(0).getNextOffset(), 1);
+        records = ingestLog.read(ingestLog.getCommittedOffset(), 10);
+        assertEquals(1, records.size());
+        assertEquals(singletonList(gauge("g2", 2)), records.get(0).getMetrics());
+        assertEquals(1, ingestLog.getPendingRecords());
+    }
+
+    @Test
+    public void shouldRotateAndDeleteCommittedSegments() throws Exception {
+        for (int i = 0; i < 50; i++) {
+            assertTrue(ingestLog.append(singletonList(gauge("g" + i, i))));
+        }
+        assertTrue(ingestLog.getSegmentCount() > 1);
+
+        List<IngestLog.Record> records = ingestLog.read(ingestLog.getCommittedOffset(), 100);
+        assertEquals(50, records.size());
+        for (int i = 0; i < 50; i++) {
+            assertEquals(singletonList(gauge("g" + i, i)), records.get(i).getMetrics());
+        }
+
+        ingestLog.commit(records.get(49).getNextOffset(), 50);
+        assertEquals(1, ingestLog.getSegmentCount());
+        assertEquals(0, ingestLog.getPendingBytes());
+        assertEquals(1, countSegmentFiles());
+    }
+
+    @Test
+    public void shouldRefuseAppendsWhenFull() throws Exception {
+        List<Metric<?>> metrics = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            metrics.add(gauge("g" + i, i));
+        }
+        assertFalse("A record bigger than a segment should be refused", ingestLog.append(metrics));
+
+        int appended = 0;
+        while (ingestLog.append(singletonList(gauge("g", appended)))) {
+            appended++;
+        }
+        assertTrue(ingestLog.getPendingBytes() <= 10_000);
+        assertEquals(appended, ingestLog.getPendingRecords());
+    }
+
+    @Test
+    public void shouldResumeFromCheckpointAfterRestart() throws Exception {
+        for (int i = 0; i < 30; i++) {
+            ingestLog.append(singletonList(gauge("g" + i, i)));
+        }
+        List<IngestLog.Record> records = ingestLog.read(ingestLog.getCommittedOffset(), 10);
+        ingestLog.commit(records.get(9).getNextOffset(), 10);
+        ingestLog.close();
+
+        ingestLog = open();
+        assertEquals(20, ingestLog.getPendingRecords());
+        records = ingestLog.read(ingestLog.getCommittedOffset(), 100);
+        assertEquals(20, records.size());
+        assertEquals(singletonList(gauge("g10", 10)), records.get(0).getMetrics());
+
+        assertTrue(ingestLog.append(singletonList(gauge("g30", 30))));
+        records = ingestLog.read(records.get(19).getNextOffset(), 100);
+        assertEquals(singletonList(gauge("g30", 30)), records.get(0).getMetrics());
+    }
+
+    @Test
+    public void shouldDropIncompleteRecordOnRecovery() throws Exception {
+        ingestLog.append(singletonList(gauge("g1", 1)));
+        ingestLog.append(singletonList(gauge("g2", 2)));
+        long end = ingestLog.read(ingestLog.getCommittedOffset(), 10).get(1).getNextOffset();
+        ingestLog.close();
+
+        // Simulate a crash in the middle of the second append
+        try (RandomAccessFile file = new RandomAccessFile(segmentFile().toFile(), "rw")) {
+            file.seek(end - 1);
+            file.write(0x7F);
+        }
+
+        ingestLog = open();
+        List<IngestLog.Record> records = ingestLog.read(ingestLog.getCommittedOffset(), 10);
+        assertEquals(1, records.size());
+        assertEquals(singletonList(gauge("g1", 1)), records.get(0).getMetrics());
+
+        assertTrue(ingestLog.append(singletonList(gauge("g3", 3))));
+        records = ingestLog.read(ingestLog.getCommittedOffset(), 10);
+        assertEquals(2, records.size());
+        assertEquals(singletonList(gauge("g3", 3)), records.get(1).getMetrics());
+    }
+
+    private long countSegmentFiles() throws IOException {
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*.log")) {
+            long count = 0;
+            for (Path ignored : stream) {
+                count++;
+            }
+            return count;
+        }
+    }
+
+    private Path segmentFile() throws IOException {
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*.log")) {
+            return stream.iterator().next();
+        }
+    }
+}
@@ -0,0 +1,195 @@
+/*
+ * Copyright 2014-2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.metrics.core.service.memory;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.emptyList;
+import static java.util.Collections.singletonList;
+import static java.util.Collections.singletonMap;
+import static java.util.stream.Collectors.toList;
+
+import static org.hawkular.metrics.model.MetricType.AVAILABILITY;
+import static org.hawkular.metrics.model.MetricType.COUNTER;
+import static org.hawkular.metrics.model.MetricType.GAUGE;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.hawkular.metrics.core.service.DateTimeService;
+import org.hawkular.metrics.core.service.Functions;
+import org.hawkular.metrics.core.service.MetricsServiceImpl;
+import org.hawkular.metrics.core.service.Order;
+import org.hawkular.metrics.model.AvailabilityType;
+import org.hawkular.metrics.model.DataPoint;
+import org.hawkular.metrics.model.Metric;
+import org.hawkular.metrics.model.MetricId;
+import org.hawkular.metrics.model.Tenant;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.codahale.metrics.MetricRegistry;
+import com.datastax.driver.core.ResultSet;
+import com.datastax.driver.core.Row;
+import com.google.common.collect.ImmutableMap;
+
+import rx.Observable;
+
+public class MemoryDataAccessTest {
+
+    private AtomicLong now;
+    private MemoryDataAccess dataAccess;
+
+    @Before
+    public void setup() {
+        now = new AtomicLong(1_000_000);
+        dataAccess = new MemoryDataAccess(now::get, 0);
+    }
+
+    @After
+    public void tearDown() {
+        dataAccess.shutdown();
+    }
+
+    private static List<Row> rows(Observable<ResultSet> resultSets) {
+        return resultSets.flatMap(Observable::from).toList().toBlocking().single();
+    }
+
+    private static Metric<Double> gauge(String name, long... timestamps) {
+        List<DataPoint<Double>> points = new ArrayList<>();
+        for (long timestamp : timestamps) {
+            points.add(new DataPoint<>(timestamp, (double) timestamp));
+        }
+        return new Metric<>(new MetricId<>("t1", GAUGE, name), points);
+    }
+
+    @Test
+    public void shouldFindDataPointsInRangeAndOrder() {
+        assertEquals(asList(4), dataAccess.insertGaugeData(gauge("g1", 10, 20, 30, 40), 0).toList().toBlocking()
+                .single());
+        MetricId<Double> id = new MetricId<>("t1", GAUGE, "g1");
+
+        List<Row> rows = rows(dataAccess.findGaugeData(id, 10, 40, 0, Order.DESC, false));
+        assertEquals(asList(new DataPoint<>(30L, 30.0), new DataPoint<>(20L, 20.0), new DataPoint<>(10L, 10.0)),
+                rows.stream().map(Functions::getGaugeDataPoint).collect(toList()));
+
+        rows = rows(dataAccess.findGaugeData(id, 0, 100, 2, Order.ASC, true));
+        assertEquals(2, rows.size());
+        assertEquals(new DataPoint<>(10L, 10.0), Functions.getGaugeDataPoint(rows.get(0)));
+        assertEquals(now.get() * 1000, rows.get(0).getLong(3));
+
+        assertEquals(1, rows(dataAccess.findGaugeData(id, 20, false)).size());
+        assertEquals(emptyList(), rows(dataAccess.findGaugeData(id, 21, false)));
+        assertEquals(emptyList(), rows(dataAccess.findGaugeData(id, 40, 10, 0, Order.DESC, false)));
+    }
+
+    @Test
+    public void shouldExpireDataPoints() {
+        dataAccess.insertGaugeData(gauge("g1", 10), 60).toBlocking().single();
+        dataAccess.insertGaugeData(gauge("g1", 20), 0).toBlocking().single();
+        MetricId<Double> id = new MetricId<>("t1", GAUGE, "g1");
+        assertEquals(2, rows(dataAccess.findGaugeData(id, 0, 100, 0, Order.DESC, false)).size());
+
+        now.addAndGet(60_000);
+        List<Row> rows = rows(dataAccess.findGaugeData(id, 0, 100, 0, Order.DESC, false));
+        assertEquals(1, rows.size());
+        assertEquals(new DataPoint<>(20L, 20.0), Functions.getGaugeDataPoint(rows.get(0)));
+
+        dataAccess.purgeExpired();
+        now.set(0);
+        assertEquals(1, rows(dataAccess.findGaugeData(id, 0, 100, 0, Order.DESC, false)).size());
+    }
+
+    @Test
+    public void shouldApplyConditionalInsertsOnce() throws Exception {
+        Tenant tenant = new Tenant("t1", singletonMap(GAUGE, 7), singletonMap("data-points", 10.0));
+        assertTrue(dataAccess.insertTenant(tenant).toBlocking().single().wasApplied());
+        assertFalse(dataAccess.insertTenant(new Tenant("t1")).toBlocking().single().wasApplied());
+        assertEquals(tenant, Functions.getTenant(rows(dataAccess.findTenant("t1")).get(0)));
+
+        Metric<Double> metric = new Metric<>(new MetricId<>("t1", GAUGE, "g1"), singletonMap("env", "prod"), 3);
+        assertTrue(dataAccess.insertMetricInMetricsIndex(metric).get().wasApplied());
+        assertFalse(dataAccess.insertMetricInMetricsIndex(metric).get().wasApplied());
+    }
+
+    @Test
+    public void shouldKeepMostRecentLatestData() {
+        MetricId<Long> id = new MetricId<>("t1", COUNTER, "c1");
+        dataAccess.updateLatestData(id, new DataPoint<>(20L, 2L), 0);
+        dataAccess.updateLatestData(id, new DataPoint<>(10L, 1L), 0);
+
+        List<Row> rows = rows(dataAccess.findLatestData(id));
+        assertEquals(1, rows.size());
+        assertEquals(new DataPoint<>(20L, 2L), Functions.getLatestDataPoint(rows.get(0), COUNTER));
+    }
+
+    @Test
+    public void shouldFindAvailabilityRuns() {
+        MetricId<AvailabilityType> id = new MetricId<>("t1", AVAILABILITY, "a1");
+        dataAccess.updateAvailabilityRun(id, 10, 20, AvailabilityType.UP, 0);
+        dataAccess.updateAvailabilityRun(id, 20, 30, AvailabilityType.DOWN, 0);
+
+        List<Row> rows = rows(dataAccess.findAvailabilityRun(id, 25));
+        assertEquals(1, rows.size());
+        assertEquals(20, rows.get(0).getTimestamp(0).getTime());
+        assertEquals(AvailabilityType.DOWN, AvailabilityType.fromBytes(rows.get(0).getBytes(2)));
+
+        rows = rows(dataAccess.findAvailabilityRuns(id, 0, 30));
+        assertEquals(2, rows.size());
+        assertEquals(20, rows.get(0).getTimestamp(0).getTime());
+        assertEquals(emptyList(), rows(dataAccess.findAvailabilityRun(id, 5)));
+    }
+
+    @Test
+    public void shouldRunMetricsServiceInMemory() {
+        MetricsServiceImpl metricsService = new MetricsServiceImpl();
+        metricsService.setDataAccess(dataAccess);
+        metricsService.setDateTimeService(new DateTimeService());
+        metricsService.startUp(new MetricRegistry());
+        try {
+            metricsService.createTenant(new Tenant("t1")).toBlocking().lastOrDefault(null);
+            Metric<Double> metric = new Metric<>(new MetricId<>("t1", GAUGE, "g1"),
+                    ImmutableMap.of("env", "prod", "host", "h1"), null);
+            metricsService.createMetric(metric).toBlocking().lastOrDefault(null);
+            long start = System.currentTimeMillis() - 1000;
+            metricsService.addDataPoints(GAUGE, Observable.just(new Metric<>(metric.getMetricId(),
+                    asList(new DataPoint<>(start, 1.0), new DataPoint<>(start + 1, 2.0)))))
+                    .toBlocking().lastOrDefault(null);
+
+            assertEquals(asList(new DataPoint<>(start + 1, 2.0), new DataPoint<>(start, 1.0)),
+                    metricsService.findDataPoints(metric.getMetricId(), start, start + 2, 0, Order.DESC).toList()
+                            .toBlocking().single());
+
+            Map<String, String> filters = ImmutableMap.of("env", "prod", "host", "h.*");
+            List<Metric<Double>> found = metricsService.findMetricsWithFilters("t1", GAUGE, filters).toList()
+                    .toBlocking().single();
+            assertEquals(1, found.size());
+            assertEquals(metric.getMetricId(), found.get(0).getMetricId());
+            assertEquals(metric.getTags(), found.get(0).getTags());
+
+            assertEquals(singletonList("t1"), metricsService.getTenants().map(Tenant::getId).toList().toBlocking()
+                    .single());
+        } finally {
+            metricsService.shutdown();
+        }
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright 2014-2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.metrics.core.service.monitoring;
+
+import static java.util.Arrays.asList;
+import static java.util.stream.Collectors.toList;
+
+import static org.hawkular.metrics.model.MetricType.COUNTER;
+import static org.hawkular.metrics.model.MetricType.GAUGE;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.hawkular.metrics.core.service.MetricsService;
+import org.hawkular.metrics.core.service.MetricsServiceImpl;
+import org.hawkular.metrics.model.Metric;
+import org.hawkular.metrics.model.MetricType;
+import org.junit.Test;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+
+import rx.Observable;
+
+public class SystemTenantReporterTest {
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void shouldStoreSnapshotInSystemTenant() {
+        MetricRegistry registry = new MetricRegistry();
+        registry.meter("gauge-inserts").mark(3);
+        registry.counter("ingest-log-pending-records").inc(2);
+        registry.register("head-block-ratio", (Gauge<Double>) () -> 0.5);
+        registry.register("jvm.unknown", (Gauge<String>) () -> "n/a");
+        registry.timer("gauge-read-latency").update(4, TimeUnit.MILLISECONDS);
+        registry.timer("cql.insert.data.latency").update(2, TimeUnit.MILLISECONDS);
+
+        Map<MetricType<?>, List<Metric<?>>> stored = new HashMap<>();
+        MetricsService metricsService = mock(MetricsService.class);
+        doAnswer(invocation -> {
+            Observable<Metric<?>> metrics = (Observable<Metric<?>>) invocation.getArguments()[1];
+            stored.put((MetricType<?>) invocation.getArguments()[0], metrics.toList().toBlocking().single());
+            return Observable.empty();
+        }).when(metricsService).addDataPoints(any(MetricType.class), any(Observable.class));
+
+        new SystemTenantReporter(registry, metricsService).report();
+
+        Map<String, Number> gauges = values(stored.get(GAUGE));
+        Map<String, Number> counters = values(stored.get(COUNTER));
+        assertEquals(0.5, gauges.get("head-block-ratio"));
+        assertEquals(2.0, gauges.get("ingest-log-pending-records"));
+        assertTrue(!gauges.containsKey("jvm.unknown"));
+        assertEquals(3L, counters.get("gauge-inserts.count"));
+        assertTrue(gauges.containsKey("gauge-inserts.rate"));
+        assertEquals(1L, counters.get("gauge-read-latency.count"));
+        assertEquals(4.0, gauges.get("gauge-read-latency.max").doubleValue(), 0.001);
+        assertEquals(1L, counters.get("cql.insert.data.latency.count"));
+        stored.values().forEach(metrics -> metrics.forEach(metric -> assertEquals(
+                MetricsServiceImpl.SYSTEM_TENANT_ID, metric.getMetricId().getTenantId())));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void shouldLeaveOutTenantAndConsumerMetrics() {
+        MetricRegistry registry = new MetricRegistry();
+        registry.meter("gauge-inserts").mark();
+        registry.meter(MetricRegistry.name("tenant", "t1", "data-points")).mark();
+        registry.counter("inserted-data-events-consumer-1-dropped").inc();
+
+        List<Metric<?>> stored = new ArrayList<>();
+        MetricsService metricsService = mock(MetricsService.class);
+        doAnswer(invocation -> {
+            Observable<Metric<?>> metrics = (Observable<Metric<?>>) invocation.getArguments()[1];
+            stored.addAll(metrics.toList().toBlocking().single());
+            return Observable.empty();
+        }).when(metricsService).addDataPoints(any(MetricType.class), any(Observable.class));
+
+        new SystemTenantReporter(registry, metricsService).report();
+
+        assertEquals(asList("gauge-inserts.count", "gauge-inserts.rate"), stored.stream()
+                .map(metric -> metric.getMetricId().getName())
+                .sorted()
+                .collect(toList()));
+    }
+
+    private static Map<String, Number> values(List<Metric<?>> metrics) {
+        Map<String, Number> values = new HashMap<>();
+        metrics.forEach(metric -> {
+            assertEquals(1, metric.getDataPoints().size());
+            values.put(metric.getMetricId().getName(), (Number) metric.getDataPoints().get(0).getValue());
+        });
+        return values;
+    }
+}
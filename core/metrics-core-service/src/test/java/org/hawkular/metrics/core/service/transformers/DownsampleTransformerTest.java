@@ -0,0 +1,106 @@
+/*
+ * Copyright 2014-2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.metrics.core.service.transformers;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.emptyList;
+import static java.util.Collections.singletonList;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.hawkular.metrics.core.service.Downsampling;
+import org.hawkular.metrics.model.DataPoint;
+import org.junit.Test;
+
+import rx.Observable;
+
+public class DownsampleTransformerTest {
+
+    private static List<DataPoint<Double>> downsample(Downsampling downsampling, int maxPoints,
+            List<DataPoint<Double>> dataPoints) {
+        return Observable.from(dataPoints)
+                .compose(new DownsampleTransformer<>(downsampling, 0, 100, maxPoints))
+                .toList()
+                .toBlocking()
+                .single();
+    }
+
+    private static List<DataPoint<Double>> series(double... values) {
+        List<DataPoint<Double>> dataPoints = new ArrayList<>();
+        for (int i = 0; i < values.length; i++) {
+            dataPoints.add(new DataPoint<>((long) i * 100 / values.length, values[i]));
+        }
+        return dataPoints;
+    }
+
+    @Test
+    public void shouldHandleShortSeries() {
+        for (Downsampling downsampling : Downsampling.values()) {
+            assertEquals(emptyList(), downsample(downsampling, 4, emptyList()));
+            DataPoint<Double> dataPoint = new DataPoint<>(10L, 1.0);
+            assertEquals(singletonList(dataPoint), downsample(downsampling, 4, singletonList(dataPoint)));
+        }
+    }
+
+    @Test
+    public void shouldKeepExtremesAndEndsWithLttb() {
+        double[] values = new double[100];
+        values[37] = 50;
+        values[80] = -20;
+        List<DataPoint<Double>> dataPoints = series(values);
+
+        List<DataPoint<Double>> actual = downsample(Downsampling.LTTB, 10, dataPoints);
+
+        assertTrue(actual.size() <= 10);
+        assertEquals(dataPoints.get(0), actual.get(0));
+        assertEquals(dataPoints.get(99), actual.get(actual.size() - 1));
+        assertTrue(actual.contains(dataPoints.get(37)));
+        assertTrue(actual.contains(dataPoints.get(80)));
+        for (int i = 1; i < actual.size(); i++) {
+            assertTrue(actual.get(i).getTimestamp() > actual.get(i - 1).getTimestamp());
+        }
+    }
+
+    @Test
+    public void shouldReturnAllPointsWhenThereAreFewerThanMaxPoints() {
+        List<DataPoint<Double>> dataPoints = series(1, 5, 2, 8);
+        for (Downsampling downsampling : Downsampling.values()) {
+            assertEquals(downsampling.toString(), dataPoints, downsample(downsampling, 8, dataPoints));
+        }
+    }
+
+    @Test
+    public void shouldKeepMinAndMaxOfEachBucket() {
+        // Two buckets of 50 ms with 5 points each
+        List<DataPoint<Double>> dataPoints = series(3, 1, 4, 1.5, 5, 9, 2, 6, 5, 3);
+
+        assertEquals(asList(dataPoints.get(1), dataPoints.get(4), dataPoints.get(5), dataPoints.get(6)),
+                downsample(Downsampling.MINMAX, 4, dataPoints));
+    }
+
+    @Test
+    public void shouldKeepFirstLastMinAndMaxOfEachBucketWithM4() {
+        List<DataPoint<Double>> dataPoints = series(3, 1, 4, 1.5, 5, 9, 2, 6, 5, 3);
+
+        assertEquals(asList(dataPoints.get(0), dataPoints.get(1), dataPoints.get(4), dataPoints.get(5),
+                dataPoints.get(6), dataPoints.get(9)), downsample(Downsampling.M4, 8, dataPoints));
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright 2014-2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.metrics.core.service.transformers;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.hawkular.metrics.model.DataPoint;
+import org.junit.Test;
+
+import rx.Observable;
+import rx.subjects.PublishSubject;
+
+public class PeriodsTransformerTest {
+
+    private static Observable<DataPoint<Double>> series(double... values) {
+        List<DataPoint<Double>> dataPoints = new ArrayList<>();
+        for (int i = 0; i < values.length; i++) {
+            dataPoints.add(new DataPoint<>(i + 1L, values[i]));
+        }
+        return Observable.from(dataPoints);
+    }
+
+    @Test
+    public void shouldFindPeriods() {
+        List<long[]> periods = series(5, 11, 12, 8, 14, 7, 16)
+                .compose(new PeriodsTransformer(value -> value > 10))
+                .toList()
+                .toBlocking()
+                .single();
+
+        assertEquals(3, periods.size());
+        assertArrayEquals(new long[]{2, 3}, periods.get(0));
+        assertArrayEquals(new long[]{5, 5}, periods.get(1));
+        assertArrayEquals(new long[]{7, 7}, periods.get(2));
+    }
+
+    @Test
+    public void shouldNotEmitWithoutMatch() {
+        assertTrue(series(1, 2, 3).compose(new PeriodsTransformer(value -> value > 10)).isEmpty().toBlocking()
+                .single());
+    }
+
+    @Test
+    public void shouldEmitPeriodsAsTheyClose() {
+        PublishSubject<DataPoint<Double>> dataPoints = PublishSubject.create();
+        List<long[]> periods = new ArrayList<>();
+        dataPoints.compose(new PeriodsTransformer(value -> value > 10)).subscribe(periods::add);
+
+        dataPoints.onNext(new DataPoint<>(1L, 11.0));
+        dataPoints.onNext(new DataPoint<>(2L, 12.0));
+        assertTrue(periods.isEmpty());
+
+        dataPoints.onNext(new DataPoint<>(3L, 1.0));
+        assertEquals(1, periods.size());
+        assertArrayEquals(new long[]{1, 2}, periods.get(0));
+
+        dataPoints.onNext(new DataPoint<>(4L, 13.0));
+        dataPoints.onCompleted();
+        assertEquals(2, periods.size());
+        assertArrayEquals(new long[]{4, 4}, periods.get(1));
+    }
+}
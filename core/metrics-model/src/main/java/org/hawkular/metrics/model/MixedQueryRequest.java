@@ -0,0 +1,145 @@
+/*
+ * Copyright 2014-2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.metrics.model;
+
+import static java.util.Collections.emptyList;
+import static java.util.Collections.emptyMap;
+import static java.util.Collections.unmodifiableList;
+import static java.util.Collections.unmodifiableMap;
+
+import java.util.List;
+import java.util.Map;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonCreator.Mode;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.google.common.base.Objects;
+
+import io.swagger.annotations.ApiModel;
+
+@ApiModel(description = "Raw data query of metrics of any type")
+public class MixedQueryRequest {
+    private final List<String> gauges;
+    private final List<String> counters;
+    private final List<String> availabilities;
+    private final Map<String, String> tags;
+    private final Long start;
+    private final Long end;
+    private final Integer limit;
+    private final String order;
+    private final Integer maxPoints;
+    private final String downsample;
+
+    @JsonCreator(mode = Mode.PROPERTIES)
+    public MixedQueryRequest(
+            @JsonProperty("gauges")
+            List<String> gauges,
+            @JsonProperty("counters")
+            List<String> counters,
+            @JsonProperty("availabilities")
+            List<String> availabilities,
+            @JsonProperty("tags")
+            Map<String, String> tags,
+            @JsonProperty("start")
+            Long start,
+            @JsonProperty("end")
+            Long end,
+            @JsonProperty("limit")
+            Integer limit,
+            @JsonProperty("order")
+            String order,
+            @JsonProperty("maxPoints")
+            Integer maxPoints,
+            @JsonProperty("downsample")
+            String downsample
+    ) {
+        this.gauges = gauges == null ? emptyList() : unmodifiableList(gauges);
+        this.counters = counters == null ? emptyList() : unmodifiableList(counters);
+        this.availabilities = availabilities == null ? emptyList() : unmodifiableList(availabilities);
+        this.tags = tags == null ? emptyMap() : unmodifiableMap(tags);
+        this.start = start;
+        this.end = end;
+        this.limit = limit;
+        this.order = order;
+        this.maxPoints = maxPoints;
+        this.downsample = downsample;
+    }
+
+    public List<String> getGauges() {
+        return gauges;
+    }
+
+    public List<String> getCounters() {
+        return counters;
+    }
+
+    public List<String> getAvailabilities() {
+        return availabilities;
+    }
+
+    public Map<String, String> getTags() {
+        return tags;
+    }
+
+    public Long getStart() {
+        return start;
+    }
+
+    public Long getEnd() {
+        return end;
+    }
+
+    public Integer getLimit() {
+        return limit;
+    }
+
+    public String getOrder() {
+        return order;
+    }
+
+    /**
+     * @return the maximum number of data points returned for each metric, selected by the {@link #getDownsample()
+     * downsampling} algorithm
+     */
+    public Integer getMaxPoints() {
+        return maxPoints;
+    }
+
+    /**
+     * @return the downsampling algorithm, one of lttb, minmax or m4
+     */
+    public String getDownsample() {
+        return downsample;
+    }
+
+    @Override
+    public String toString() {
+        return Objects.toStringHelper(this)
+                .add("gauges", gauges)
+                .add("counters", counters)
+                .add("availabilities", availabilities)
+                .add("tags", tags)
+                .add("start", start)
+                .add("end", end)
+                .add("limit", limit)
+                .add("order", order)
+                .add("maxPoints", maxPoints)
+                .add("downsample", downsample)
+                .omitNullValues()
+                .toString();
+    }
+}
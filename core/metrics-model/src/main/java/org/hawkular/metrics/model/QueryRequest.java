@@ -0,0 +1,127 @@
+/*
+ * Copyright 2014-2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.metrics.model;
+
+import static java.util.Collections.emptyList;
+import static java.util.Collections.emptyMap;
+import static java.util.Collections.unmodifiableList;
+import static java.util.Collections.unmodifiableMap;
+
+import java.util.List;
+import java.util.Map;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonCreator.Mode;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.google.common.base.Objects;
+
+import io.swagger.annotations.ApiModel;
+
+@ApiModel(description = "Raw data query of several metrics of the same type")
+public class QueryRequest {
+    private final List<String> ids;
+    private final Map<String, String> tags;
+    private final Long start;
+    private final Long end;
+    private final Integer limit;
+    private final String order;
+    private final Integer maxPoints;
+    private final String downsample;
+
+    @JsonCreator(mode = Mode.PROPERTIES)
+    public QueryRequest(
+            @JsonProperty("ids")
+            List<String> ids,
+            @JsonProperty("tags")
+            Map<String, String> tags,
+            @JsonProperty("start")
+            Long start,
+            @JsonProperty("end")
+            Long end,
+            @JsonProperty("limit")
+            Integer limit,
+            @JsonProperty("order")
+            String order,
+            @JsonProperty("maxPoints")
+            Integer maxPoints,
+            @JsonProperty("downsample")
+            String downsample
+    ) {
+        this.ids = ids == null ? emptyList() : unmodifiableList(ids);
+        this.tags = tags == null ? emptyMap() : unmodifiableMap(tags);
+        this.start = start;
+        this.end = end;
+        this.limit = limit;
+        this.order = order;
+        this.maxPoints = maxPoints;
+        this.downsample = downsample;
+    }
+
+    public List<String> getIds() {
+        return ids;
+    }
+
+    public Map<String, String> getTags() {
+        return tags;
+    }
+
+    public Long getStart() {
+        return start;
+    }
+
+    public Long getEnd() {
+        return end;
+    }
+
+    public Integer getLimit() {
+        return limit;
+    }
+
+    public String getOrder() {
+        return order;
+    }
+
+    /**
+     * @return the maximum number of data points returned for each metric, selected by the {@link #getDownsample()
+     * downsampling} algorithm
+     */
+    public Integer getMaxPoints() {
+        return maxPoints;
+    }
+
+    /**
+     * @return the downsampling algorithm, one of lttb, minmax or m4
+     */
+    public String getDownsample() {
+        return downsample;
+    }
+
+    @Override
+    public String toString() {
+        return Objects.toStringHelper(this)
+                .add("ids", ids)
+                .add("tags", tags)
+                .add("start", start)
+                .add("end", end)
+                .add("limit", limit)
+                .add("order", order)
+                .add("maxPoints", maxPoints)
+                .add("downsample", downsample)
+                .omitNullValues()
+                .toString();
+    }
+}
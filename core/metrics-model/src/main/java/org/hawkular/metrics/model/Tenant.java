@@ -33,15 +33,21 @@ import com.google.common.collect.ImmutableMap;
 public class Tenant {
     private final String id;
     private final Map<MetricType<?>, Integer> retentionSettings;
+    private final Map<String, Double> quotas;
 
     public Tenant(String id) {
         this(id, null);
     }
 
     public Tenant(String id, Map<MetricType<?>, Integer> retentionSettings) {
+        this(id, retentionSettings, null);
+    }
+
+    public Tenant(String id, Map<MetricType<?>, Integer> retentionSettings, Map<String, Double> quotas) {
         checkArgument(id != null, "Tenant id is null");
         this.id = id;
         this.retentionSettings = retentionSettings == null ? ImmutableMap.of() : ImmutableMap.copyOf(retentionSettings);
+        this.quotas = quotas == null ? ImmutableMap.of() : ImmutableMap.copyOf(quotas);
     }
 
     public String getId() {
@@ -52,6 +58,13 @@ public class Tenant {
         return retentionSettings;
     }
 
+    /**
+     * @return the rate limits applied to the tenant, by quota name, in units per second
+     */
+    public Map<String, Double> getQuotas() {
+        return quotas;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) {
@@ -74,6 +87,7 @@ public class Tenant {
         return com.google.common.base.Objects.toStringHelper(this)
                 .add("id", id)
                 .add("retentionSettings", retentionSettings)
+                .add("quotas", quotas)
                 .omitNullValues()
                 .toString();
     }
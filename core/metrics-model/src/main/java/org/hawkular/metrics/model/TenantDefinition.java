@@ -43,6 +43,7 @@ import io.swagger.annotations.ApiModelProperty;
 public class TenantDefinition {
     private final String id;
     private final Map<MetricType<?>, Integer> retentionSettings;
+    private final Map<String, Double> quotas;
 
     @JsonCreator(mode = Mode.PROPERTIES)
     public TenantDefinition(
@@ -50,15 +51,23 @@ public class TenantDefinition {
             String id,
             @JsonProperty("retentions")
             @JsonDeserialize(keyUsing = MetricTypeKeyDeserializer.class)
-            Map<MetricType<?>, Integer> retentionSettings) {
+            Map<MetricType<?>, Integer> retentionSettings,
+            @JsonProperty("quotas")
+            Map<String, Double> quotas) {
         checkArgument(id != null, "Tenant id is null");
         this.id = id;
         this.retentionSettings = retentionSettings == null ? emptyMap() : unmodifiableMap(retentionSettings);
+        this.quotas = quotas == null ? emptyMap() : unmodifiableMap(quotas);
+    }
+
+    public TenantDefinition(String id, Map<MetricType<?>, Integer> retentionSettings) {
+        this(id, retentionSettings, null);
     }
 
     public TenantDefinition(Tenant tenant) {
         id = tenant.getId();
         retentionSettings = tenant.getRetentionSettings();
+        quotas = tenant.getQuotas();
     }
 
     @ApiModelProperty(value = "Identifier of the tenant", required = true)
@@ -73,6 +82,12 @@ public class TenantDefinition {
         return retentionSettings;
     }
 
+    @ApiModelProperty("Rate limits for the tenant, by quota name, in units per second")
+    @JsonSerialize(include = Inclusion.NON_EMPTY)
+    public Map<String, Double> getQuotas() {
+        return quotas;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) {
@@ -99,6 +114,6 @@ public class TenantDefinition {
     }
 
     public Tenant toTenant() {
-        return new Tenant(id, retentionSettings);
+        return new Tenant(id, retentionSettings, quotas);
     }
 }
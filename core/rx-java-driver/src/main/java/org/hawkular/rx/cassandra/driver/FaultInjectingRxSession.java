@@ -0,0 +1,162 @@
+/*
+ * Copyright 2014-2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.rx.cassandra.driver;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
+
+import com.datastax.driver.core.BatchStatement;
+import com.datastax.driver.core.BoundStatement;
+import com.datastax.driver.core.Cluster;
+import com.datastax.driver.core.PreparedStatement;
+import com.datastax.driver.core.RegularStatement;
+import com.datastax.driver.core.ResultSet;
+import com.datastax.driver.core.Session;
+import com.datastax.driver.core.Statement;
+
+import rx.Observable;
+import rx.Scheduler;
+import rx.functions.Func0;
+
+/**
+ * An {@link RxSession} which injects faults into the statements it executes. Statements are named after the groups
+ * of {@link StatementMetrics}, such as {@code select.data} or {@code batch}, and the ones which do not select are
+ * writes. Preparing statements is left untouched.
+ */
+public class FaultInjectingRxSession implements RxSession {
+
+    private static final String BATCH = "batch";
+
+    private final RxSession delegate;
+    private final FaultInjector faultInjector;
+    private final ConcurrentMap<String, String> preparedNames = new ConcurrentHashMap<>();
+
+    public FaultInjectingRxSession(RxSession delegate, FaultInjector faultInjector) {
+        this.delegate = delegate;
+        this.faultInjector = faultInjector;
+    }
+
+    private String name(Statement statement) {
+        if (statement instanceof BoundStatement) {
+            String query = ((BoundStatement) statement).preparedStatement().getQueryString();
+            String name = preparedNames.get(query);
+            return name == null ? preparedNames.computeIfAbsent(query, StatementMetrics::groupName) : name;
+        }
+        if (statement instanceof BatchStatement) {
+            return BATCH;
+        }
+        if (statement instanceof RegularStatement) {
+            return StatementMetrics.groupName(((RegularStatement) statement).getQueryString());
+        }
+        return "other";
+    }
+
+    private Observable<ResultSet> inject(Supplier<String> naming, Func0<Observable<ResultSet>> execution) {
+        if (!faultInjector.isActive()) {
+            return execution.call();
+        }
+        String name = naming.get();
+        return faultInjector.inject(name, !name.startsWith("select."), execution);
+    }
+
+    @Override
+    public String getLoggedKeyspace() {
+        return delegate.getLoggedKeyspace();
+    }
+
+    @Override
+    public RxSession init() {
+        delegate.init();
+        return this;
+    }
+
+    @Override
+    public Observable<ResultSet> execute(String query) {
+        return inject(() -> StatementMetrics.groupName(query), () -> delegate.execute(query));
+    }
+
+    @Override
+    public Observable<ResultSet> execute(String query, Scheduler scheduler) {
+        return inject(() -> StatementMetrics.groupName(query), () -> delegate.execute(query, scheduler));
+    }
+
+    @Override
+    public Observable<ResultSet> execute(String query, Object... values) {
+        return inject(() -> StatementMetrics.groupName(query), () -> delegate.execute(query, values));
+    }
+
+    @Override
+    public Observable<ResultSet> execute(String query, Scheduler scheduler, Object... values) {
+        return inject(() -> StatementMetrics.groupName(query), () -> delegate.execute(query, scheduler, values));
+    }
+
+    @Override
+    public Observable<ResultSet> execute(Statement statement) {
+        return inject(() -> name(statement), () -> delegate.execute(statement));
+    }
+
+    @Override
+    public Observable<ResultSet> execute(Statement statement, Scheduler scheduler) {
+        return inject(() -> name(statement), () -> delegate.execute(statement, scheduler));
+    }
+
+    @Override
+    public Observable<PreparedStatement> prepare(String query) {
+        return delegate.prepare(query);
+    }
+
+    @Override
+    public Observable<PreparedStatement> prepare(String query, Scheduler scheduler) {
+        return delegate.prepare(query, scheduler);
+    }
+
+    @Override
+    public Observable<PreparedStatement> prepare(RegularStatement statement) {
+        return delegate.prepare(statement);
+    }
+
+    @Override
+    public Observable<PreparedStatement> prepare(RegularStatement statement, Scheduler scheduler) {
+        return delegate.prepare(statement, scheduler);
+    }
+
+    @Override
+    public void close() {
+        delegate.close();
+    }
+
+    @Override
+    public boolean isClosed() {
+        return delegate.isClosed();
+    }
+
+    @Override
+    public Cluster getCluster() {
+        return delegate.getCluster();
+    }
+
+    @Override
+    public Session getSession() {
+        return delegate.getSession();
+    }
+
+    @Override
+    public Session.State getState() {
+        return delegate.getState();
+    }
+}
@@ -0,0 +1,259 @@
+/*
+ * Copyright 2014-2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.rx.cassandra.driver;
+
+import static java.util.concurrent.TimeUnit.MICROSECONDS;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import com.datastax.driver.core.ConsistencyLevel;
+import com.datastax.driver.core.ResultSet;
+import com.datastax.driver.core.ResultSetFuture;
+import com.datastax.driver.core.WriteType;
+import com.datastax.driver.core.exceptions.DriverException;
+import com.datastax.driver.core.exceptions.OverloadedException;
+import com.datastax.driver.core.exceptions.ReadTimeoutException;
+import com.datastax.driver.core.exceptions.WriteTimeoutException;
+import com.google.common.util.concurrent.AbstractFuture;
+import com.google.common.util.concurrent.Uninterruptibles;
+
+import rx.Observable;
+import rx.Scheduler;
+import rx.functions.Func0;
+import rx.schedulers.Schedulers;
+
+/**
+ * Injects latency and failures into Cassandra operations, to see how the service behaves when Cassandra slows down.
+ * <p>
+ * A {@link FaultRule} is set per kind of operation. The rule of an operation is looked up by its name first, then by
+ * {@link #READ} or {@link #WRITE}, and finally {@link #ANY}. Operations without a rule are executed untouched, and
+ * an injector without any rule costs a map lookup. Faults are drawn anew each time an operation is subscribed to, so
+ * retries can succeed. Rules can be changed at any time; operations already started keep the rule they were given.
+ * <p>
+ * See {@link FaultInjectingRxSession}, whose operations are named after the statement groups of
+ * {@link StatementMetrics}, such as {@code select.data}.
+ */
+public class FaultInjector {
+
+    public static final String ANY = "*";
+    public static final String READ = "read";
+    public static final String WRITE = "write";
+
+    private static final InetSocketAddress INJECTED = new InetSocketAddress(InetAddress.getLoopbackAddress(), 9042);
+
+    private final ConcurrentMap<String, FaultRule> rules = new ConcurrentHashMap<>();
+    private final Scheduler scheduler;
+    private final AtomicInteger pending = new AtomicInteger();
+
+    public FaultInjector() {
+        this(Schedulers.computation());
+    }
+
+    /**
+     * @param scheduler where injected delays and timeouts are scheduled
+     */
+    public FaultInjector(Scheduler scheduler) {
+        this.scheduler = scheduler;
+    }
+
+    /**
+     * Parses rules written as {@code <operation>:<rule>}, separated by semicolons, for example
+     * {@code write:latency=exponential:20,timeout=0.01;findGaugeData:overload=0.1}.
+     *
+     * @see FaultRule
+     */
+    public static Map<String, FaultRule> parseRules(String spec) {
+        Map<String, FaultRule> rules = new LinkedHashMap<>();
+        for (String entry : spec.split(";")) {
+            if (entry.trim().isEmpty()) {
+                continue;
+            }
+            int separator = entry.indexOf(':');
+            if (separator < 0) {
+                throw new IllegalArgumentException("Expected <operation>:<rule>: " + entry);
+            }
+            rules.put(entry.substring(0, separator).trim(), FaultRule.parse(entry.substring(separator + 1)));
+        }
+        return rules;
+    }
+
+    public void setRule(String operation, FaultRule rule) {
+        rules.put(operation, rule);
+    }
+
+    /**
+     * Replaces all the rules.
+     */
+    public void setRules(Map<String, FaultRule> rules) {
+        this.rules.keySet().retainAll(rules.keySet());
+        this.rules.putAll(rules);
+    }
+
+    public void removeRule(String operation) {
+        rules.remove(operation);
+    }
+
+    public void clear() {
+        rules.clear();
+    }
+
+    public Map<String, FaultRule> getRules() {
+        return new LinkedHashMap<>(rules);
+    }
+
+    /**
+     * @return true if there is at least one rule
+     */
+    public boolean isActive() {
+        return !rules.isEmpty();
+    }
+
+    /**
+     * @return the number of operations being delayed or timed out by the injector
+     */
+    public int getPending() {
+        return pending.get();
+    }
+
+    private FaultRule getRule(String operation, boolean write) {
+        if (rules.isEmpty()) {
+            return null;
+        }
+        FaultRule rule = rules.get(operation);
+        if (rule == null) {
+            rule = rules.get(write ? WRITE : READ);
+        }
+        return rule == null ? rules.get(ANY) : rule;
+    }
+
+    /**
+     * Executes an operation, injecting the faults of its rule.
+     *
+     * @param operation the name of the operation
+     * @param write whether the operation writes
+     * @param execution executes the operation; it is called right away when the operation has no rule, on
+     *                  subscription otherwise
+     */
+    public <T> Observable<T> inject(String operation, boolean write, Func0<Observable<T>> execution) {
+        FaultRule rule = getRule(operation, write);
+        if (rule == null) {
+            return execution.call();
+        }
+        return Observable.defer(() -> apply(rule, write, Observable.defer(execution)));
+    }
+
+    /**
+     * Executes an operation returning a future, injecting the faults of its rule.
+     *
+     * @see #inject(String, boolean, Func0)
+     */
+    public ResultSetFuture injectFuture(String operation, boolean write, Supplier<ResultSetFuture> execution) {
+        FaultRule rule = getRule(operation, write);
+        if (rule == null) {
+            return execution.get();
+        }
+        InjectedResultSetFuture future = new InjectedResultSetFuture();
+        apply(rule, write, Observable.defer(() -> RxUtil.from(execution.get(), Runnable::run)))
+                .subscribe(future::set, future::setException);
+        return future;
+    }
+
+    private <T> Observable<T> apply(FaultRule rule, boolean write, Observable<T> execution) {
+        Random random = ThreadLocalRandom.current();
+        double roll = random.nextDouble();
+        if (roll < rule.getOverloadRate()) {
+            return Observable.error(new OverloadedException(INJECTED, "Injected overload"));
+        }
+        roll -= rule.getOverloadRate();
+        if (roll < rule.getTimeoutRate()) {
+            return track(Observable.timer(rule.getTimeoutAfter(), MILLISECONDS, scheduler)
+                    .flatMap(tick -> Observable.<T>error(timeout(write))));
+        }
+        roll -= rule.getTimeoutRate();
+        Observable<T> delayed = execution;
+        if (rule.getLatency() != null) {
+            delayed = track(Observable.timer(rule.getLatency().sample(random), MICROSECONDS, scheduler)
+                    .flatMap(tick -> execution));
+        }
+        if (roll < rule.getPartialFailureRate()) {
+            return delayed.take(1).concatWith(Observable.error(timeout(write)));
+        }
+        return delayed;
+    }
+
+    private <T> Observable<T> track(Observable<T> observable) {
+        return observable.doOnSubscribe(pending::incrementAndGet).doOnUnsubscribe(pending::decrementAndGet);
+    }
+
+    private static DriverException timeout(boolean write) {
+        if (write) {
+            return new WriteTimeoutException(ConsistencyLevel.ONE, WriteType.SIMPLE, 0, 1);
+        }
+        return new ReadTimeoutException(ConsistencyLevel.ONE, 0, 1, false);
+    }
+
+    private static final class InjectedResultSetFuture extends AbstractFuture<ResultSet> implements ResultSetFuture {
+
+        @Override
+        protected boolean set(ResultSet value) {
+            return super.set(value);
+        }
+
+        @Override
+        protected boolean setException(Throwable throwable) {
+            return super.setException(throwable);
+        }
+
+        @Override
+        public ResultSet getUninterruptibly() {
+            try {
+                return Uninterruptibles.getUninterruptibly(this);
+            } catch (ExecutionException e) {
+                throw propagate(e.getCause());
+            }
+        }
+
+        @Override
+        public ResultSet getUninterruptibly(long timeout, TimeUnit unit) throws TimeoutException {
+            try {
+                return Uninterruptibles.getUninterruptibly(this, timeout, unit);
+            } catch (ExecutionException e) {
+                throw propagate(e.getCause());
+            }
+        }
+
+        private static RuntimeException propagate(Throwable cause) {
+            if (cause instanceof DriverException) {
+                return ((DriverException) cause).copy();
+            }
+            return cause instanceof RuntimeException ? (RuntimeException) cause : new RuntimeException(cause);
+        }
+    }
+}
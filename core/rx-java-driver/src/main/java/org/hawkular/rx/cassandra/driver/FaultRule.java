@@ -0,0 +1,159 @@
+/*
+ * Copyright 2014-2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.rx.cassandra.driver;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * The faults injected into one kind of operation, written as comma separated {@code key=value} pairs:
+ * <ul>
+ *     <li>{@code latency}: the {@link LatencyDistribution} of the delay added before the operation is executed</li>
+ *     <li>{@code overload}: the probability that the operation is rejected at once, as by an overloaded node</li>
+ *     <li>{@code timeout}: the probability that the operation is not executed and fails with a read or write timeout
+ *     once {@code timeout-after} milliseconds, 5000 by default, have elapsed</li>
+ *     <li>{@code partial}: the probability that the operation is executed, but fails with a timeout after emitting its
+ *     first result, as when a write reached some replicas only or a batch was interrupted</li>
+ * </ul>
+ * For example {@code latency=exponential:20,timeout=0.01}. Probabilities are between 0 and 1, and add up to at most 1.
+ */
+public final class FaultRule {
+
+    private static final long DEFAULT_TIMEOUT_AFTER = 5000;
+
+    private final LatencyDistribution latency;
+    private final double overloadRate;
+    private final double timeoutRate;
+    private final long timeoutAfter;
+    private final double partialFailureRate;
+
+    /**
+     * @param latency the delay added before operations, or null for none
+     * @param overloadRate the probability that an operation is rejected
+     * @param timeoutRate the probability that an operation times out
+     * @param timeoutAfter how long, in milliseconds, a timed out operation takes to fail
+     * @param partialFailureRate the probability that an operation fails after emitting its first result
+     */
+    public FaultRule(LatencyDistribution latency, double overloadRate, double timeoutRate, long timeoutAfter,
+            double partialFailureRate) {
+        checkRate(overloadRate, "overload");
+        checkRate(timeoutRate, "timeout");
+        checkRate(partialFailureRate, "partial");
+        if (overloadRate + timeoutRate + partialFailureRate > 1) {
+            throw new IllegalArgumentException("Fault probabilities add up to more than 1");
+        }
+        if (timeoutAfter < 0) {
+            throw new IllegalArgumentException("timeout-after must not be negative");
+        }
+        this.latency = latency;
+        this.overloadRate = overloadRate;
+        this.timeoutRate = timeoutRate;
+        this.timeoutAfter = timeoutAfter;
+        this.partialFailureRate = partialFailureRate;
+    }
+
+    private static void checkRate(double rate, String name) {
+        if (!(rate >= 0 && rate <= 1)) {
+            throw new IllegalArgumentException(name + " must be a probability between 0 and 1");
+        }
+    }
+
+    public static FaultRule parse(String spec) {
+        LatencyDistribution latency = null;
+        double overloadRate = 0;
+        double timeoutRate = 0;
+        long timeoutAfter = DEFAULT_TIMEOUT_AFTER;
+        double partialFailureRate = 0;
+        for (String pair : spec.split(",")) {
+            if (pair.trim().isEmpty()) {
+                continue;
+            }
+            int separator = pair.indexOf('=');
+            if (separator < 0) {
+                throw new IllegalArgumentException("Expected key=value: " + pair);
+            }
+            String key = pair.substring(0, separator).trim().toLowerCase(Locale.ROOT);
+            String value = pair.substring(separator + 1).trim();
+            switch (key) {
+                case "latency":
+                    latency = LatencyDistribution.parse(value);
+                    break;
+                case "overload":
+                    overloadRate = Double.parseDouble(value);
+                    break;
+                case "timeout":
+                    timeoutRate = Double.parseDouble(value);
+                    break;
+                case "timeout-after":
+                    timeoutAfter = Long.parseLong(value);
+                    break;
+                case "partial":
+                    partialFailureRate = Double.parseDouble(value);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown fault: " + key);
+            }
+        }
+        return new FaultRule(latency, overloadRate, timeoutRate, timeoutAfter, partialFailureRate);
+    }
+
+    /**
+     * @return the delay added before operations, or null for none
+     */
+    public LatencyDistribution getLatency() {
+        return latency;
+    }
+
+    public double getOverloadRate() {
+        return overloadRate;
+    }
+
+    public double getTimeoutRate() {
+        return timeoutRate;
+    }
+
+    /**
+     * @return how long, in milliseconds, a timed out operation takes to fail
+     */
+    public long getTimeoutAfter() {
+        return timeoutAfter;
+    }
+
+    public double getPartialFailureRate() {
+        return partialFailureRate;
+    }
+
+    @Override
+    public String toString() {
+        List<String> pairs = new ArrayList<>();
+        if (latency != null) {
+            pairs.add("latency=" + latency);
+        }
+        if (overloadRate > 0) {
+            pairs.add("overload=" + overloadRate);
+        }
+        if (timeoutRate > 0) {
+            pairs.add("timeout=" + timeoutRate);
+            pairs.add("timeout-after=" + timeoutAfter);
+        }
+        if (partialFailureRate > 0) {
+            pairs.add("partial=" + partialFailureRate);
+        }
+        return String.join(",", pairs);
+    }
+}
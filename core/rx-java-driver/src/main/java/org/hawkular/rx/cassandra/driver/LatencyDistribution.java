@@ -0,0 +1,131 @@
+/*
+ * Copyright 2014-2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.rx.cassandra.driver;
+
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * A distribution of latencies, in milliseconds, written as {@code <shape>:<parameters>}:
+ * <ul>
+ *     <li>{@code constant:<latency>}</li>
+ *     <li>{@code uniform:<min>:<max>}</li>
+ *     <li>{@code exponential:<mean>}</li>
+ *     <li>{@code pareto:<min>:<alpha>}: a heavy tail, heavier as alpha gets close to 1</li>
+ * </ul>
+ * Samples are capped at a minute.
+ */
+public final class LatencyDistribution {
+
+    private static final double MAX_LATENCY = 60_000;
+
+    private enum Shape {
+        CONSTANT(1), UNIFORM(2), EXPONENTIAL(1), PARETO(2);
+
+        final int parameters;
+
+        Shape(int parameters) {
+            this.parameters = parameters;
+        }
+    }
+
+    private final Shape shape;
+    private final double[] parameters;
+
+    private LatencyDistribution(Shape shape, double... parameters) {
+        for (double parameter : parameters) {
+            if (!(parameter >= 0)) {
+                throw new IllegalArgumentException("Latency parameters must be positive numbers");
+            }
+        }
+        if (shape == Shape.PARETO && parameters[1] == 0) {
+            throw new IllegalArgumentException("The alpha of a pareto distribution must be above zero");
+        }
+        this.shape = shape;
+        this.parameters = parameters;
+    }
+
+    public static LatencyDistribution constant(double latency) {
+        return new LatencyDistribution(Shape.CONSTANT, latency);
+    }
+
+    public static LatencyDistribution uniform(double min, double max) {
+        return new LatencyDistribution(Shape.UNIFORM, min, Math.max(min, max));
+    }
+
+    public static LatencyDistribution exponential(double mean) {
+        return new LatencyDistribution(Shape.EXPONENTIAL, mean);
+    }
+
+    public static LatencyDistribution pareto(double min, double alpha) {
+        return new LatencyDistribution(Shape.PARETO, min, alpha);
+    }
+
+    public static LatencyDistribution parse(String spec) {
+        String[] parts = spec.trim().split(":");
+        Shape shape;
+        try {
+            shape = Shape.valueOf(parts[0].trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown latency distribution: " + spec);
+        }
+        if (parts.length != shape.parameters + 1) {
+            throw new IllegalArgumentException("Expected " + shape.parameters + " parameters: " + spec);
+        }
+        double[] parameters = new double[shape.parameters];
+        for (int i = 0; i < parameters.length; i++) {
+            parameters[i] = Double.parseDouble(parts[i + 1].trim());
+        }
+        return shape == Shape.UNIFORM ? uniform(parameters[0], parameters[1])
+                : new LatencyDistribution(shape, parameters);
+    }
+
+    /**
+     * @return a latency, in microseconds
+     */
+    public long sample(Random random) {
+        double latency;
+        switch (shape) {
+            case UNIFORM:
+                latency = parameters[0] + random.nextDouble() * (parameters[1] - parameters[0]);
+                break;
+            case EXPONENTIAL:
+                latency = -parameters[0] * Math.log(1 - random.nextDouble());
+                break;
+            case PARETO:
+                latency = parameters[0] / Math.pow(1 - random.nextDouble(), 1 / parameters[1]);
+                break;
+            default:
+                latency = parameters[0];
+        }
+        return (long) (Math.min(latency, MAX_LATENCY) * 1000);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder spec = new StringBuilder(shape.name().toLowerCase(Locale.ROOT));
+        for (double parameter : parameters) {
+            spec.append(':');
+            if (parameter == Math.rint(parameter)) {
+                spec.append((long) parameter);
+            } else {
+                spec.append(parameter);
+            }
+        }
+        return spec.toString();
+    }
+}
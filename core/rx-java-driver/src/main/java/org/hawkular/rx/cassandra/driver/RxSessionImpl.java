@@ -16,6 +16,8 @@
  */
 package org.hawkular.rx.cassandra.driver;
 
+import java.util.function.Supplier;
+
 import com.datastax.driver.core.Cluster;
 import com.datastax.driver.core.PreparedStatement;
 import com.datastax.driver.core.RegularStatement;
@@ -36,8 +38,18 @@ public class RxSessionImpl implements RxSession {
 
     private Session session;
 
+    private StatementMetrics statementMetrics;
+
     public RxSessionImpl(Session session) {
+        this(session, null);
+    }
+
+    /**
+     * @param statementMetrics records the latency and outcome of executed statements, can be null
+     */
+    public RxSessionImpl(Session session, StatementMetrics statementMetrics) {
         this.session = session;
+        this.statementMetrics = statementMetrics;
     }
 
     @Override
@@ -53,40 +65,49 @@ public class RxSessionImpl implements RxSession {
 
     @Override
     public Observable<ResultSet> execute(String query) {
-        ResultSetFuture future = session.executeAsync(query);
+        ResultSetFuture future = executeAsync(query, () -> session.executeAsync(query));
         return RxUtil.from(future, Schedulers.computation());
     }
 
     @Override
     public Observable<ResultSet> execute(String query, Scheduler scheduler) {
-        ResultSetFuture future = session.executeAsync(query);
+        ResultSetFuture future = executeAsync(query, () -> session.executeAsync(query));
         return RxUtil.from(future, scheduler);
     }
 
     @Override
     public Observable<ResultSet> execute(String query, Object... values) {
-        ResultSetFuture future = session.executeAsync(query, values);
+        ResultSetFuture future = executeAsync(query, () -> session.executeAsync(query, values));
         return RxUtil.from(future, Schedulers.computation());
     }
 
     @Override
     public Observable<ResultSet> execute(String query, Scheduler scheduler, Object... values) {
-        ResultSetFuture future = session.executeAsync(query, values, scheduler);
+        ResultSetFuture future = executeAsync(query,
+                () -> session.executeAsync(query, values, scheduler));
         return RxUtil.from(future, scheduler);
     }
 
     @Override
     public Observable<ResultSet> execute(Statement statement) {
-        ResultSetFuture future = session.executeAsync(statement);
+        ResultSetFuture future = executeAsync(statement, () -> session.executeAsync(statement));
         return RxUtil.from(future, Schedulers.computation());
     }
 
     @Override
     public Observable<ResultSet> execute(Statement statement, Scheduler scheduler) {
-        ResultSetFuture future = session.executeAsync(statement);
+        ResultSetFuture future = executeAsync(statement, () -> session.executeAsync(statement));
         return RxUtil.from(future, scheduler);
     }
 
+    private ResultSetFuture executeAsync(String query, Supplier<ResultSetFuture> execution) {
+        return statementMetrics == null ? execution.get() : statementMetrics.track(query, execution);
+    }
+
+    private ResultSetFuture executeAsync(Statement statement, Supplier<ResultSetFuture> execution) {
+        return statementMetrics == null ? execution.get() : statementMetrics.track(statement, execution);
+    }
+
     @Override
     public Observable<PreparedStatement> prepare(String query) {
         ListenableFuture<PreparedStatement> future = session.prepareAsync(query);
@@ -0,0 +1,290 @@
+/*
+ * Copyright 2014-2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.rx.cassandra.driver;
+
+import static java.util.regex.Pattern.CASE_INSENSITIVE;
+import static java.util.regex.Pattern.DOTALL;
+
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.hawkular.rx.cassandra.driver.log.DriverLogger;
+import org.hawkular.rx.cassandra.driver.log.DriverLogging;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.datastax.driver.core.BatchStatement;
+import com.datastax.driver.core.BoundStatement;
+import com.datastax.driver.core.RegularStatement;
+import com.datastax.driver.core.ResultSet;
+import com.datastax.driver.core.ResultSetFuture;
+import com.datastax.driver.core.Statement;
+import com.datastax.driver.core.exceptions.ReadTimeoutException;
+import com.datastax.driver.core.exceptions.WriteTimeoutException;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+
+/**
+ * Records the latency and outcome of the statements executed through an {@link RxSessionImpl}.
+ * <p>
+ * Statements are grouped by the operation and the table they target, as parsed from the query string, for example
+ * {@code insert.data} or {@code select.metrics_tags_idx}. Conditional statements (lightweight transactions) get a
+ * {@code .lwt} suffix. Batches are grouped by the table of their statements, when they all target the same one, and by
+ * their size rounded up to a power of two, as in {@code batch.data.16}, or {@code batch.16} for a batch spanning
+ * several tables. The following metrics are registered for each group under {@code cql.<group>}:
+ * <ul>
+ *     <li>latency: timer of the statements, from submission to completion</li>
+ *     <li>in-flight: counter of the statements submitted and not yet completed</li>
+ *     <li>errors: meter of the statements which failed</li>
+ *     <li>timeouts: meter of the read and write timeouts reported by Cassandra</li>
+ *     <li>rows: histogram of the rows in the first page of results, for selects only</li>
+ * </ul>
+ * The size of every batch is also recorded in the {@code cql.batch.size} histogram.
+ * <p>
+ * Statements slower than the slow query threshold are logged at WARN level. Parsed groups are cached by query string
+ * for prepared statements, so that tracking a statement costs little more than updating its metrics.
+ */
+public class StatementMetrics {
+    private static final DriverLogger log = DriverLogging.getDriverLogger(StatementMetrics.class);
+
+    /**
+     * The first segment of the name of every metric registered by this class.
+     */
+    public static final String PREFIX = "cql";
+
+    private static final int MAX_BATCH_BUCKET = 1024;
+
+    private static final Pattern TABLE = Pattern.compile(
+            "^\\s*(select\\b.*?\\bfrom|insert\\s+into|update|delete\\b.*?\\bfrom)\\s+(?:\"?\\w+\"?\\.)?\"?(\\w+)",
+            CASE_INSENSITIVE | DOTALL);
+    private static final Pattern CONDITIONAL = Pattern.compile("\\sif\\s", CASE_INSENSITIVE);
+
+    private final MetricRegistry registry;
+    private final long slowQueryThreshold;
+    private final ConcurrentMap<String, Group> groups = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Group> preparedGroups = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, String> preparedTables = new ConcurrentHashMap<>();
+    private final Histogram batchSizes;
+
+    /**
+     * @param registry where metrics are registered
+     * @param slowQueryThreshold the duration, in milliseconds, beyond which a statement is logged, or zero to never log
+     */
+    public StatementMetrics(MetricRegistry registry, long slowQueryThreshold) {
+        this.registry = registry;
+        this.slowQueryThreshold = TimeUnit.MILLISECONDS.toNanos(slowQueryThreshold);
+        this.batchSizes = registry.histogram(MetricRegistry.name(PREFIX, "batch", "size"));
+    }
+
+    /**
+     * Executes {@code statement} with {@code execution}, recording its metrics when it completes.
+     */
+    public ResultSetFuture track(Statement statement, Supplier<ResultSetFuture> execution) {
+        Group group;
+        if (statement instanceof BatchStatement) {
+            BatchStatement batch = (BatchStatement) statement;
+            batchSizes.update(batch.size());
+            String table = batchTable(batch);
+            group = getGroup(table == null ? "batch." + batchBucket(batch.size())
+                    : "batch." + table + "." + batchBucket(batch.size()), false);
+        } else {
+            group = getGroup(statement);
+        }
+        return track(group, statement, execution);
+    }
+
+    private Group getGroup(Statement statement) {
+        if (statement instanceof BoundStatement) {
+            String query = ((BoundStatement) statement).preparedStatement().getQueryString();
+            Group group = preparedGroups.get(query);
+            if (group == null) {
+                group = preparedGroups.computeIfAbsent(query, this::parse);
+            }
+            return group;
+        }
+        if (statement instanceof RegularStatement) {
+            return parse(((RegularStatement) statement).getQueryString());
+        }
+        return getGroup("other", false);
+    }
+
+    /**
+     * @return the table targeted by every statement of {@code batch}, or null if there is none or more than one
+     */
+    private String batchTable(BatchStatement batch) {
+        String table = null;
+        for (Statement statement : batch.getStatements()) {
+            String statementTable = getTable(statement);
+            if (statementTable.isEmpty() || (table != null && !table.equals(statementTable))) {
+                return null;
+            }
+            table = statementTable;
+        }
+        return table;
+    }
+
+    /**
+     * Unlike {@link #getGroup(Statement)}, this does not register metrics for statements only executed in batches.
+     *
+     * @return the table targeted by {@code statement}, or an empty string if it is unknown
+     */
+    private String getTable(Statement statement) {
+        if (statement instanceof BoundStatement) {
+            String query = ((BoundStatement) statement).preparedStatement().getQueryString();
+            String table = preparedTables.get(query);
+            if (table == null) {
+                table = preparedTables.computeIfAbsent(query, StatementMetrics::tableName);
+            }
+            return table;
+        }
+        if (statement instanceof RegularStatement) {
+            return tableName(((RegularStatement) statement).getQueryString());
+        }
+        return "";
+    }
+
+    private static String tableName(String query) {
+        Matcher matcher = TABLE.matcher(query);
+        return matcher.find() ? matcher.group(2) : "";
+    }
+
+    /**
+     * Executes {@code query} with {@code execution}, recording its metrics when it completes.
+     */
+    public ResultSetFuture track(String query, Supplier<ResultSetFuture> execution) {
+        return track(parse(query), query, execution);
+    }
+
+    private ResultSetFuture track(Group group, Object statement, Supplier<ResultSetFuture> execution) {
+        long start = System.nanoTime();
+        group.inFlight.inc();
+        ResultSetFuture future;
+        try {
+            future = execution.get();
+        } catch (RuntimeException e) {
+            completed(group, statement, start);
+            group.errors.mark();
+            throw e;
+        }
+        Futures.addCallback(future, new FutureCallback<ResultSet>() {
+            @Override
+            public void onSuccess(ResultSet resultSet) {
+                completed(group, statement, start);
+                if (group.rows != null && resultSet != null) {
+                    group.rows.update(resultSet.getAvailableWithoutFetching());
+                }
+            }
+
+            @Override
+            public void onFailure(Throwable t) {
+                completed(group, statement, start);
+                group.errors.mark();
+                if (t instanceof ReadTimeoutException || t instanceof WriteTimeoutException) {
+                    group.timeouts.mark();
+                }
+            }
+        });
+        return future;
+    }
+
+    private void completed(Group group, Object statement, long start) {
+        long elapsed = System.nanoTime() - start;
+        group.inFlight.dec();
+        group.latency.update(elapsed, TimeUnit.NANOSECONDS);
+        if (slowQueryThreshold > 0 && elapsed >= slowQueryThreshold) {
+            log.warnSlowStatement(group.name, TimeUnit.NANOSECONDS.toMillis(elapsed), describe(statement));
+        }
+    }
+
+    private static String describe(Object statement) {
+        if (statement instanceof BoundStatement) {
+            return ((BoundStatement) statement).preparedStatement().getQueryString();
+        }
+        if (statement instanceof BatchStatement) {
+            return "BATCH of " + ((BatchStatement) statement).size() + " statements";
+        }
+        return String.valueOf(statement);
+    }
+
+    static int batchBucket(int size) {
+        if (size <= 1) {
+            return 1;
+        }
+        return Math.min(Integer.highestOneBit(size - 1) << 1, MAX_BATCH_BUCKET);
+    }
+
+    /**
+     * @return the name of the group of {@code query}, such as {@code select.data}
+     */
+    static String groupName(String query) {
+        Matcher matcher = TABLE.matcher(query);
+        return matcher.find() ? groupName(query, matcher) : "other";
+    }
+
+    private static String groupName(String query, Matcher matcher) {
+        String operation = matcher.group(1);
+        int end = 0;
+        while (end < operation.length() && Character.isLetter(operation.charAt(end))) {
+            end++;
+        }
+        String name = operation.substring(0, end).toLowerCase(Locale.ROOT) + "." + matcher.group(2);
+        return CONDITIONAL.matcher(query).find() ? name + ".lwt" : name;
+    }
+
+    private Group parse(String query) {
+        Matcher matcher = TABLE.matcher(query);
+        if (!matcher.find()) {
+            return getGroup("other", false);
+        }
+        String name = groupName(query, matcher);
+        return getGroup(name, name.startsWith("select."));
+    }
+
+    private Group getGroup(String name, boolean read) {
+        Group group = groups.get(name);
+        if (group == null) {
+            group = groups.computeIfAbsent(name, key -> new Group(registry, key, read));
+        }
+        return group;
+    }
+
+    private static class Group {
+        final String name;
+        final Timer latency;
+        final Counter inFlight;
+        final Meter errors;
+        final Meter timeouts;
+        final Histogram rows;
+
+        Group(MetricRegistry registry, String name, boolean read) {
+            this.name = name;
+            latency = registry.timer(MetricRegistry.name(PREFIX, name, "latency"));
+            inFlight = registry.counter(MetricRegistry.name(PREFIX, name, "in-flight"));
+            errors = registry.meter(MetricRegistry.name(PREFIX, name, "errors"));
+            timeouts = registry.meter(MetricRegistry.name(PREFIX, name, "timeouts"));
+            rows = read ? registry.histogram(MetricRegistry.name(PREFIX, name, "rows")) : null;
+        }
+    }
+}
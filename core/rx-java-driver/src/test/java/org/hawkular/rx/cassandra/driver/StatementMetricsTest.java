@@ -0,0 +1,154 @@
+/*
+ * Copyright 2014-2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.rx.cassandra.driver;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.concurrent.Executor;
+
+import org.junit.Test;
+
+import com.codahale.metrics.MetricRegistry;
+import com.datastax.driver.core.BatchStatement;
+import com.datastax.driver.core.BoundStatement;
+import com.datastax.driver.core.PreparedStatement;
+import com.datastax.driver.core.RegularStatement;
+import com.datastax.driver.core.ResultSet;
+import com.datastax.driver.core.ResultSetFuture;
+import com.datastax.driver.core.Statement;
+
+public class StatementMetricsTest {
+
+    private final MetricRegistry registry = new MetricRegistry();
+    private final StatementMetrics statementMetrics = new StatementMetrics(registry, 0);
+
+    private static BoundStatement prepared(String query) {
+        PreparedStatement preparedStatement = mock(PreparedStatement.class);
+        when(preparedStatement.getQueryString()).thenReturn(query);
+        BoundStatement statement = mock(BoundStatement.class);
+        when(statement.preparedStatement()).thenReturn(preparedStatement);
+        return statement;
+    }
+
+    private static RegularStatement simple(String query) {
+        RegularStatement statement = mock(RegularStatement.class);
+        when(statement.getQueryString()).thenReturn(query);
+        return statement;
+    }
+
+    private static BatchStatement batch(Statement... statements) {
+        BatchStatement batch = new BatchStatement();
+        for (Statement statement : statements) {
+            batch.add(statement);
+        }
+        return batch;
+    }
+
+    /**
+     * @return a future which has already completed with an empty result set
+     */
+    private static ResultSetFuture completed() {
+        ResultSetFuture future = mock(ResultSetFuture.class);
+        when(future.isDone()).thenReturn(true);
+        when(future.getUninterruptibly()).thenReturn(mock(ResultSet.class));
+        try {
+            when(future.get()).thenReturn(mock(ResultSet.class));
+        } catch (Exception e) {
+            throw new AssertionError(e);
+        }
+        doAnswer(invocation -> {
+            ((Executor) invocation.getArguments()[1]).execute((Runnable) invocation.getArguments()[0]);
+            return null;
+        }).when(future).addListener(any(Runnable.class), any(Executor.class));
+        return future;
+    }
+
+    private long count(String group) {
+        return registry.timer(MetricRegistry.name(StatementMetrics.PREFIX, group, "latency")).getCount();
+    }
+
+    @Test
+    public void shouldNameGroupsAfterOperationAndTable() {
+        assertEquals("select.data", StatementMetrics.groupName(
+                "SELECT time, data FROM hawkular_metrics.data WHERE tenant_id = ?"));
+        assertEquals("insert.metrics_idx", StatementMetrics.groupName(
+                "INSERT INTO \"metrics_idx\" (tenant_id, type) VALUES (?, ?)"));
+        assertEquals("update.data", StatementMetrics.groupName("UPDATE data USING TTL ? SET n_value = ?"));
+        assertEquals("delete.metrics_tags_idx", StatementMetrics.groupName(
+                "DELETE FROM metrics_tags_idx WHERE tenant_id = ?"));
+        assertEquals("insert.tenants.lwt", StatementMetrics.groupName(
+                "INSERT INTO tenants (id, retentions) VALUES (?, ?) IF NOT EXISTS"));
+        assertEquals("other", StatementMetrics.groupName("TRUNCATE data"));
+    }
+
+    @Test
+    public void shouldBucketBatchesByPowerOfTwo() {
+        assertEquals(1, StatementMetrics.batchBucket(0));
+        assertEquals(1, StatementMetrics.batchBucket(1));
+        assertEquals(2, StatementMetrics.batchBucket(2));
+        assertEquals(4, StatementMetrics.batchBucket(3));
+        assertEquals(16, StatementMetrics.batchBucket(16));
+        assertEquals(32, StatementMetrics.batchBucket(17));
+        assertEquals(1024, StatementMetrics.batchBucket(100_000));
+    }
+
+    @Test
+    public void shouldTrackPreparedAndSimpleStatements() {
+        statementMetrics.track(prepared("SELECT * FROM data WHERE tenant_id = ?"), StatementMetricsTest::completed);
+        statementMetrics.track(prepared("SELECT * FROM data WHERE tenant_id = ?"), StatementMetricsTest::completed);
+        statementMetrics.track(simple("INSERT INTO tenants (id) VALUES ('t1') IF NOT EXISTS"),
+                StatementMetricsTest::completed);
+
+        assertEquals(2, count("select.data"));
+        assertEquals(2, registry.histogram("cql.select.data.rows").getCount());
+        assertEquals(1, count("insert.tenants.lwt"));
+        assertEquals(0, registry.counter("cql.select.data.in-flight").getCount());
+    }
+
+    @Test
+    public void shouldGroupBatchesByTableWhenTheyShareOne() {
+        statementMetrics.track(batch(prepared("INSERT INTO data (n_value) VALUES (?)"),
+                prepared("UPDATE data SET n_value = ?"), simple("INSERT INTO data (n_value) VALUES (1.0)")),
+                StatementMetricsTest::completed);
+        statementMetrics.track(batch(prepared("INSERT INTO data (n_value) VALUES (?)"),
+                prepared("INSERT INTO metrics_idx (metric) VALUES (?)")), StatementMetricsTest::completed);
+
+        assertEquals(1, count("batch.data.4"));
+        assertEquals(1, count("batch.2"));
+        assertEquals(2, registry.histogram("cql.batch.size").getCount());
+        assertTrue(registry.getNames().stream().noneMatch(name -> name.startsWith("cql.insert.")));
+    }
+
+    @Test
+    public void shouldCountFailedExecutions() {
+        try {
+            statementMetrics.track(simple("SELECT * FROM data"), () -> {
+                throw new IllegalStateException("Closed");
+            });
+        } catch (IllegalStateException e) {
+            // Expected
+        }
+
+        assertEquals(1, registry.meter("cql.select.data.errors").getCount());
+        assertEquals(0, registry.counter("cql.select.data.in-flight").getCount());
+    }
+}
@@ -200,6 +200,34 @@ class CassandraBackendITest extends RESTTest {
     assertEquals(204, response.status)
   }
 
+  @Test
+  void getPeriodsOfMultipleGauges() {
+    DateTime start = now().minusMinutes(30)
+    String tenantId = nextTenantId()
+
+    def response = hawkularMetrics.post(path: "gauges/data", body: [
+        [id: 'p1', data: [
+            [timestamp: start.millis, value: 22.3],
+            [timestamp: start.plusMinutes(1).millis, value: 17.4],
+            [timestamp: start.plusMinutes(2).millis, value: 22.7]
+        ]],
+        [id: 'p2', data: [[timestamp: start.millis, value: 12.1]]],
+        [id: 'p3', data: [[timestamp: start.millis, value: 25.0]]]
+    ], headers: [(tenantHeaderName): tenantId])
+    assertEquals(200, response.status)
+
+    response = hawkularMetrics.get(path: "gauges/periods", query: [threshold: 20, op: "gt", metrics: ['p1', 'p2']],
+        headers: [(tenantHeaderName): tenantId])
+    assertEquals(200, response.status)
+    assertEquals([
+        p1: [[start.millis, start.millis], [start.plusMinutes(2).millis, start.plusMinutes(2).millis]]
+    ], response.data)
+
+    badGet(path: "gauges/periods", query: [threshold: 20, op: "gt"], headers: [(tenantHeaderName): tenantId]) {
+      exception -> assertEquals(400, exception.response.status)
+    }
+  }
+
   @Test
   void insertGaugeDataForMultipleMetrics() {
     DateTime start = now().minusMinutes(10)
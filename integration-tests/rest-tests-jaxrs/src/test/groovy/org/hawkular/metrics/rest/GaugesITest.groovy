@@ -18,6 +18,7 @@ package org.hawkular.metrics.rest
 
 import static org.joda.time.DateTime.now
 import static org.junit.Assert.assertEquals
+import static org.junit.Assert.assertTrue
 
 import org.joda.time.DateTime
 import org.junit.Test
@@ -248,4 +249,113 @@ class GaugesITest extends RESTTest {
     ]
     assertEquals(expectedData, response.data)
   }
+
+  @Test
+  void findLatestGaugeData() {
+    DateTime start = now().minusHours(1)
+
+    def response = hawkularMetrics.post(path: "gauges/data", headers: [(tenantHeaderName): tenantId], body: [
+        [id: 'L1', data: [
+            [timestamp: start.plusMinutes(2).millis, value: 2.2],
+            [timestamp: start.millis, value: 1.1]
+        ]],
+        [id: 'L2', data: [[timestamp: start.plusMinutes(1).millis, value: 3.3]]]
+    ])
+    assertEquals(200, response.status)
+
+    response = hawkularMetrics.get(path: "gauges/L1/data/latest", headers: [(tenantHeaderName): tenantId])
+    assertEquals(200, response.status)
+    assertEquals([timestamp: start.plusMinutes(2).millis, value: 2.2], response.data)
+
+    response = hawkularMetrics.get(path: "gauges/L3/data/latest", headers: [(tenantHeaderName): tenantId])
+    assertEquals(204, response.status)
+
+    response = hawkularMetrics.get(path: "gauges/data/latest", headers: [(tenantHeaderName): tenantId],
+        query: [metrics: ['L1', 'L2', 'L3']])
+    assertEquals(200, response.status)
+    assertEquals([
+        [id: 'L1', data: [[timestamp: start.plusMinutes(2).millis, value: 2.2]]],
+        [id: 'L2', data: [[timestamp: start.plusMinutes(1).millis, value: 3.3]]]
+    ] as Set, response.data.collect { [id: it.id, data: it.data] } as Set)
+
+    badGet(path: "gauges/data/latest", headers: [(tenantHeaderName): tenantId]) { exception ->
+      assertEquals(400, exception.response.status)
+    }
+  }
+
+  @Test
+  void findRawDataOfMultipleGauges() {
+    DateTime start = now().minusHours(1)
+
+    def response = hawkularMetrics.post(path: "gauges/data", headers: [(tenantHeaderName): tenantId], body: [
+        [id: 'Q1', data: [
+            [timestamp: start.millis, value: 1.1],
+            [timestamp: start.plusMinutes(1).millis, value: 1.2]
+        ]],
+        [id: 'Q2', data: [[timestamp: start.plusMinutes(2).millis, value: 2.1]]]
+    ])
+    assertEquals(200, response.status)
+
+    response = hawkularMetrics.post(path: "gauges/raw/query", headers: [(tenantHeaderName): tenantId], body: [
+        ids: ['Q1', 'Q2', 'Q3'], start: start.millis, end: start.plusMinutes(5).millis, order: 'asc'
+    ])
+    assertEquals(200, response.status)
+    assertEquals([
+        Q1: [[timestamp: start.millis, value: 1.1], [timestamp: start.plusMinutes(1).millis, value: 1.2]],
+        Q2: [[timestamp: start.plusMinutes(2).millis, value: 2.1]]
+    ], response.data)
+
+    response = hawkularMetrics.post(path: "gauges/raw/query", headers: [(tenantHeaderName): tenantId], body: [
+        ids: ['Q1'], start: start.millis, end: start.plusMinutes(5).millis, limit: 1, order: 'desc'
+    ])
+    assertEquals(200, response.status)
+    assertEquals([Q1: [[timestamp: start.plusMinutes(1).millis, value: 1.2]]], response.data)
+
+    response = hawkularMetrics.post(path: "metrics/raw/query", headers: [(tenantHeaderName): tenantId], body: [
+        gauges: ['Q2'], counters: ['Q2'], start: start.millis, end: start.plusMinutes(5).millis
+    ])
+    assertEquals(200, response.status)
+    assertEquals([gauges: [Q2: [[timestamp: start.plusMinutes(2).millis, value: 2.1]]]], response.data)
+
+    badPost(path: "gauges/raw/query", headers: [(tenantHeaderName): tenantId],
+        body: [start: start.millis]) { exception ->
+      assertEquals(400, exception.response.status)
+    }
+  }
+
+  @Test
+  void findDownsampledGaugeData() {
+    DateTime start = now().minusHours(1)
+    def data = (0..99).collect { [timestamp: start.plusSeconds(it).millis, value: it % 10 == 0 ? 100.0 : 1.0] }
+
+    def response = hawkularMetrics.post(path: "gauges/D1/data", headers: [(tenantHeaderName): tenantId],
+        body: data)
+    assertEquals(200, response.status)
+
+    response = hawkularMetrics.get(path: "gauges/D1/data", headers: [(tenantHeaderName): tenantId], query: [
+        start: start.millis, end: start.plusSeconds(100).millis, maxPoints: 10, downsample: 'minmax', order: 'asc'
+    ])
+    assertEquals(200, response.status)
+    assertEquals(10, response.data.size())
+    assertEquals(response.data.collect { it.timestamp }.sort(), response.data.collect { it.timestamp })
+    assertEquals(5, response.data.count { it.value == 100.0 })
+
+    response = hawkularMetrics.post(path: "gauges/raw/query", headers: [(tenantHeaderName): tenantId], body: [
+        ids: ['D1'], start: start.millis, end: start.plusSeconds(100).millis, maxPoints: 12
+    ])
+    assertEquals(200, response.status)
+    assertTrue(response.data.D1.size() <= 12)
+    assertEquals(start.plusSeconds(99).millis, response.data.D1.first().timestamp)
+    assertEquals(start.millis, response.data.D1.last().timestamp)
+
+    badGet(path: "gauges/D1/data", headers: [(tenantHeaderName): tenantId],
+        query: [maxPoints: 10, limit: 5]) { exception ->
+      assertEquals(400, exception.response.status)
+    }
+
+    badGet(path: "gauges/D1/data", headers: [(tenantHeaderName): tenantId],
+        query: [maxPoints: 10, downsample: 'average']) { exception ->
+      assertEquals(400, exception.response.status)
+    }
+  }
 }
@@ -101,6 +101,32 @@ class InfluxITest extends RESTTest {
     verifySeriesNames(names, data)
   }
 
+  @Test
+  void testSelectSeveralSeries() {
+    def start = now().minus(4000)
+    postGaugeData('_gauge.web1', start)
+    postCounterData('_counter.web2', start)
+    postGaugeData('db1', start)
+
+    def influxQuery = """select mean(value) from "_counter.web2", missing, web1 where time > now() - 30s \
+group by time(30s)"""
+    def response = hawkularMetrics.get(path: "db/${tenantId}/series", query: [q: influxQuery])
+    assertEquals(200, response.status)
+    assertEquals(['_counter.web2', 'web1'], response.data.collect { it.name })
+    assertEquals([[start.plus(4000).millis, 42 as BigDecimal]], response.data[0].points)
+    assertEquals([[start.plus(4000).millis, 42.1]], response.data[1].points)
+
+    influxQuery = """select mean(value) from /^WEB\\d/i where time > now() - 30s group by time(30s)"""
+    response = hawkularMetrics.get(path: "db/${tenantId}/series", query: [q: influxQuery])
+    assertEquals(200, response.status)
+    assertEquals(['_counter.web2', '_gauge.web1'], response.data.collect { it.name })
+
+    influxQuery = """select value from /^nothing/"""
+    response = hawkularMetrics.get(path: "db/${tenantId}/series", query: [q: influxQuery])
+    assertEquals(200, response.status)
+    assertEquals([], response.data)
+  }
+
   @Test
   void testInfluxDataOrderedAsc() {
     def start = now().minus(4000)
@@ -484,6 +510,48 @@ class InfluxITest extends RESTTest {
     )
   }
 
+  @Test
+  void testLineProtocolWrite() {
+    def start = now().minus(4000)
+    def lines = """cpu,host=a usage=1.5,idle=98i ${start.millis}
+cpu,host=b usage=2.5 ${start.millis}
+_counter.requests value=42i ${start.plus(1000).millis}
+cpu,host=a usage=oops,state="idle" ${start.plus(1000).millis}
+not a line
+"""
+
+    hawkularMetrics.request(POST) { request ->
+      uri.path = "db/${tenantId}/write"
+      uri.query = [precision: 'ms']
+      body = lines
+      requestContentType = TEXT
+
+      response.success = { response ->
+        fail("Expected a partial write, got ${response.statusLine}")
+      }
+
+      response.failure = { response ->
+        assertEquals(400, response.status)
+        assertEquals('partial write: 1 invalid line(s), first at line 5: Invalid timestamp: line',
+            EntityUtils.toString(response.entity))
+      }
+    }
+
+    def influxQuery = """select value from "cpu.usage,host=a" order asc"""
+    def response = hawkularMetrics.get(path: "db/${tenantId}/series", query: [q: influxQuery])
+    assertEquals(200, response.status)
+    assertEquals([[start.millis, 1.5]], response.data[0].points)
+
+    influxQuery = """select value from "_counter.requests" """
+    response = hawkularMetrics.get(path: "db/${tenantId}/series", query: [q: influxQuery])
+    assertEquals(200, response.status)
+    assertEquals([[start.plus(1000).millis, 42]], response.data[0].points)
+
+    response = hawkularMetrics.get(path: "gauges", query: [tags: 'host:b'], headers: [(tenantHeaderName): tenantId])
+    assertEquals(200, response.status)
+    assertEquals(['cpu.usage,host=b'], response.data.collect { it.id })
+  }
+
   void postGaugeData(String timeseriesName, DateTime start) {
     postData(timeseriesName, start, 40.1)
   }
@@ -41,4 +41,17 @@ class StatusITest extends RESTTest {
         assertNotNull(response.data["Built-From-Git-SHA1"])
         assertNotEquals("Unknown", response.data["Built-From-Git-SHA1"])
     }
-}
\ No newline at end of file
+
+    @Test
+    void getInternalMetrics() {
+        def response = hawkularMetrics.get(path: "gauges/data/latest", query: [metrics: "G1"],
+                headers: [(tenantHeaderName): nextTenantId()])
+        assertEquals(204, response.status)
+
+        response = hawkularMetrics.get(path: "status/metrics")
+
+        assertEquals(200, response.status)
+        assertNotNull(response.data.timers["rest.GET.gauges.data.latest"])
+        assertNotNull(response.data.meters)
+    }
+}